@@ -0,0 +1,121 @@
+package com.osttra.fx.blockstream.benchmark;
+
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Rate;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Arithmetic on the amounts: contra amounts of the trades and sums of the wallets, per amount, with {@link BigDecimal}
+ * and with the minor units of {@link Money}. Run with the gc profiler to compare the allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AmountBenchmark {
+
+    private static final int AMOUNTS = 1000;
+
+    private List<SmartTrade> smartTrades;
+
+    private List<Wallet> wallets;
+
+    private final long[] minorUnits = new long[AMOUNTS];
+
+    private final int[] scales = new int[AMOUNTS];
+
+    private final Rate[] rates = new Rate[AMOUNTS];
+
+    private final int[] contraScales = new int[AMOUNTS];
+
+    private final long[] walletMinorUnits = new long[AMOUNTS];
+
+    @Setup
+    public void setup() {
+        smartTrades = BenchmarkData.smartTrades(AMOUNTS);
+        wallets = BenchmarkData.wallets(AMOUNTS);
+        for (int i = 0; i < AMOUNTS; i++) {
+            SmartTrade smartTrade = smartTrades.get(i);
+            Money amount = Money.of(smartTrade.getAmount(), smartTrade.getCurrencyBuy());
+            minorUnits[i] = amount.getMinorUnits();
+            scales[i] = amount.getScale();
+            rates[i] = Rate.of(smartTrade.getRate());
+            contraScales[i] = Money.scaleOf(smartTrade.getCurrencySell());
+            // The wallet amounts all have 2 decimals
+            walletMinorUnits[i] = Money.of(wallets.get(i).getAmount()).getMinorUnits();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public void contraAmount(Blackhole blackhole) {
+        for (SmartTrade smartTrade : smartTrades) {
+            blackhole.consume(smartTrade.getAmount().multiply(BigDecimal.valueOf(smartTrade.getRate())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public void roundedContraAmount(Blackhole blackhole) {
+        for (SmartTrade smartTrade : smartTrades) {
+            BigDecimal contraAmount = smartTrade.getAmount().multiply(BigDecimal.valueOf(smartTrade.getRate()));
+            blackhole.consume(contraAmount.setScale(2, RoundingMode.HALF_EVEN));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public BigDecimal sumAmounts() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (Wallet wallet : wallets) {
+            sum = sum.add(wallet.getAmount());
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public void moneyContraAmount(Blackhole blackhole) {
+        for (SmartTrade smartTrade : smartTrades) {
+            Money amount = Money.of(smartTrade.getAmount(), smartTrade.getCurrencyBuy());
+            blackhole.consume(amount.times(Rate.of(smartTrade.getRate()), Money.scaleOf(smartTrade.getCurrencySell())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public void minorUnitsContraAmount(Blackhole blackhole) {
+        for (int i = 0; i < AMOUNTS; i++) {
+            blackhole.consume(Money.convert(minorUnits[i], scales[i], rates[i], contraScales[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(AMOUNTS)
+    public long sumMinorUnits() {
+        long sum = 0;
+        for (long amount : walletMinorUnits) {
+            sum = Math.addExact(sum, amount);
+        }
+        return sum;
+    }
+}
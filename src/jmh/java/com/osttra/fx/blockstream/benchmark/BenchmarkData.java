@@ -0,0 +1,105 @@
+package com.osttra.fx.blockstream.benchmark;
+
+import com.osttra.fx.blockstream.domain.Authority;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.User;
+import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.security.AuthoritiesConstants;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic, reproducible data for the benchmarks.
+ */
+final class BenchmarkData {
+
+    static final String[] CURRENCIES = { "EUR", "USD", "GBP", "JPY", "CHF", "AUD", "CAD", "NZD", "SEK", "NOK" };
+
+    static final int LEGAL_ENTITIES = 50;
+
+    private BenchmarkData() {}
+
+    static String legalEntity(int index) {
+        return "LEI" + String.format("%017d", index % LEGAL_ENTITIES);
+    }
+
+    static List<SmartTrade> smartTrades(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        List<SmartTrade> smartTrades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            smartTrades.add(smartTrade(random, i));
+        }
+        return smartTrades;
+    }
+
+    static SmartTrade smartTrade(SplittableRandom random, int index) {
+        int buy = random.nextInt(CURRENCIES.length);
+        int sell = (buy + 1 + random.nextInt(CURRENCIES.length - 1)) % CURRENCIES.length;
+        BigDecimal amount = BigDecimal.valueOf(random.nextLong(1_000_00L, 10_000_000_00L), 2);
+        double rate = Math.round((0.5 + random.nextDouble()) * 100_000) / 100_000d;
+        LocalDate tradeDate = LocalDate.of(2022, 1, 1).plusDays(random.nextInt(365));
+        CustomerRef customer = new CustomerRef();
+        customer.setId(String.format("%024x", index % LEGAL_ENTITIES));
+        customer.setCustomerLegalEntity(legalEntity(index));
+        customer.setCustomerHashCode(Integer.toHexString(legalEntity(index).hashCode()));
+        return new SmartTrade()
+            .id(String.format("%024x", index))
+            .tradingParty(legalEntity(index))
+            .counterParty(legalEntity(index + 1 + random.nextInt(LEGAL_ENTITIES - 1)))
+            .currencyBuy(CURRENCIES[buy])
+            .currencySell(CURRENCIES[sell])
+            .rate(rate)
+            .amount(amount)
+            .contraAmount(amount.multiply(BigDecimal.valueOf(rate)))
+            .tradeDate(tradeDate)
+            .valueDate(tradeDate.plusDays(2))
+            .transactionId("TX" + index)
+            .direction(random.nextBoolean() ? "BUY" : "SELL")
+            .status(TradeStatus.SETTLED.name())
+            .customer(customer);
+    }
+
+    static List<Wallet> wallets(int count) {
+        SplittableRandom random = new SplittableRandom(count);
+        List<Wallet> wallets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CustomerRef customer = new CustomerRef();
+            customer.setId(String.format("%024x", i % LEGAL_ENTITIES));
+            customer.setCustomerLegalEntity(legalEntity(i));
+            wallets.add(
+                new Wallet()
+                    .id(String.format("%024x", i))
+                    .currencyCode(CURRENCIES[random.nextInt(CURRENCIES.length)])
+                    .amount(BigDecimal.valueOf(random.nextLong(-1_000_000_00L, 1_000_000_00L), 2))
+                    .customer(customer)
+            );
+        }
+        return wallets;
+    }
+
+    static List<User> users(int count) {
+        Authority user = new Authority();
+        user.setName(AuthoritiesConstants.USER);
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User u = new User();
+            u.setId(String.format("%024x", i));
+            u.setLogin("user-" + i);
+            u.setEmail("user-" + i + "@localhost");
+            u.setFirstName("First" + i);
+            u.setLastName("Last" + i);
+            u.setImageUrl("http://placehold.it/50x50");
+            u.setLangKey("en");
+            u.setActivated(true);
+            u.setAuthorities(Set.of(user));
+            users.add(u);
+        }
+        return users;
+    }
+}
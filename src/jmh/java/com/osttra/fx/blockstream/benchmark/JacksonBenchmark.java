@@ -0,0 +1,138 @@
+package com.osttra.fx.blockstream.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.osttra.fx.blockstream.config.JacksonConfiguration;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * JSON, Smile and CBOR (de)serialization of the trades and wallets, with an {@link ObjectMapper} configured like the
+ * application ones. The size of the payloads of each format is printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JacksonBenchmark {
+
+    /**
+     * Number of trades in a listing, the default page size.
+     */
+    @Param({ "20" })
+    public int pageSize;
+
+    @Param({ "json", "smile", "cbor" })
+    public String format;
+
+    private ObjectMapper objectMapper;
+
+    private ObjectReader smartTradesReader;
+
+    private SmartTrade smartTrade;
+
+    private List<SmartTrade> smartTrades;
+
+    private Wallet wallet;
+
+    private byte[] smartTradeBytes;
+
+    private byte[] smartTradesBytes;
+
+    private byte[] walletBytes;
+
+    @Setup
+    public void setup() throws IOException {
+        JacksonConfiguration jacksonConfiguration = new JacksonConfiguration();
+        // Same modules and defaults as the ObjectMapper built by Spring Boot
+        objectMapper =
+            Jackson2ObjectMapperBuilder
+                .json()
+                .factory(factory(format))
+                .modules(
+                    jacksonConfiguration.javaTimeModule(),
+                    jacksonConfiguration.jdk8TimeModule(),
+                    jacksonConfiguration.problemModule(),
+                    jacksonConfiguration.constraintViolationProblemModule()
+                )
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        smartTradesReader = objectMapper.readerForListOf(SmartTrade.class);
+        smartTrades = BenchmarkData.smartTrades(pageSize);
+        smartTrade = smartTrades.get(0);
+        wallet = BenchmarkData.wallets(1).get(0);
+        smartTradeBytes = objectMapper.writeValueAsBytes(smartTrade);
+        smartTradesBytes = objectMapper.writeValueAsBytes(smartTrades);
+        walletBytes = objectMapper.writeValueAsBytes(wallet);
+        System.out.printf(
+            "%n%s payloads: smartTrade %d bytes, %d smartTrades %d bytes, wallet %d bytes%n",
+            format,
+            smartTradeBytes.length,
+            pageSize,
+            smartTradesBytes.length,
+            walletBytes.length
+        );
+    }
+
+    private static JsonFactory factory(String format) {
+        switch (format) {
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+
+    @Benchmark
+    public byte[] writeSmartTrade() throws IOException {
+        return objectMapper.writeValueAsBytes(smartTrade);
+    }
+
+    @Benchmark
+    public SmartTrade readSmartTrade() throws IOException {
+        return objectMapper.readValue(smartTradeBytes, SmartTrade.class);
+    }
+
+    @Benchmark
+    public byte[] writeSmartTrades() throws IOException {
+        return objectMapper.writeValueAsBytes(smartTrades);
+    }
+
+    @Benchmark
+    public List<SmartTrade> readSmartTrades() throws IOException {
+        return smartTradesReader.readValue(smartTradesBytes);
+    }
+
+    @Benchmark
+    public byte[] writeWallet() throws IOException {
+        return objectMapper.writeValueAsBytes(wallet);
+    }
+
+    @Benchmark
+    public Wallet readWallet() throws IOException {
+        return objectMapper.readValue(walletBytes, Wallet.class);
+    }
+}
@@ -0,0 +1,99 @@
+package com.osttra.fx.blockstream.benchmark;
+
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.service.WalletBalanceService;
+import com.osttra.fx.blockstream.web.rest.util.KeysetPaginationUtil;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * In-memory parts of the trade and wallet listings of the current customer.
+ * <p>
+ * The {@code inMemory} benchmarks are the stream filters formerly run by {@code SmartTradeResource.getAllSmartTrades}
+ * and {@code WalletResource.getWallets} on whole collections, now replaced by MongoDB queries, and are kept as the
+ * reference of what those queries save.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ListingBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private String legalEntity;
+
+    private List<SmartTrade> smartTrades;
+
+    private List<Wallet> wallets;
+
+    private Map<String, Money> balances;
+
+    @Setup
+    public void setup() {
+        legalEntity = BenchmarkData.legalEntity(0);
+        smartTrades = BenchmarkData.smartTrades(size);
+        wallets = BenchmarkData.wallets(size);
+        balances =
+            wallets
+                .stream()
+                .filter(wallet -> wallet.getCustomer().getCustomerLegalEntity().equals(legalEntity))
+                .collect(
+                    Collectors.groupingBy(
+                        Wallet::getCurrencyCode,
+                        Collectors.reducing(Money.ZERO, wallet -> Money.of(wallet.getAmount()), Money::plus)
+                    )
+                );
+    }
+
+    @Benchmark
+    public List<SmartTrade> inMemorySmartTradesByParty() {
+        return smartTrades
+            .stream()
+            .filter(trade -> trade.getTradingParty().equals(legalEntity) || trade.getCounterParty().equals(legalEntity))
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Wallet> inMemoryWalletBalances() {
+        Map<String, Integer> conWallets = wallets
+            .stream()
+            .filter(w -> w.getCustomer().getCustomerLegalEntity().equals(legalEntity))
+            .collect(Collectors.groupingBy(Wallet::getCurrencyCode, Collectors.summingInt(wallet -> wallet.getAmount().intValue())));
+        return conWallets
+            .entrySet()
+            .stream()
+            .map(wle -> new Wallet().currencyCode(wle.getKey()).amount(new BigDecimal(wle.getValue())))
+            .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Wallet> projectedWalletBalances() {
+        return WalletBalanceService.toWallets(balances);
+    }
+
+    @Benchmark
+    public KeysetPaginationUtil.Cursor smartTradesCursor() {
+        SmartTrade last = smartTrades.get(smartTrades.size() - 1);
+        return KeysetPaginationUtil.decodeCursor(KeysetPaginationUtil.encodeCursor(last.getTradeDate(), last.getId()), "smartTrade");
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * JMH benchmarks of the hot paths, run with the {@code benchmarks} Maven profile.
+ */
+package com.osttra.fx.blockstream.benchmark;
@@ -1,6 +1,11 @@
 package com.osttra.fx.blockstream.config;
 
+import java.util.ArrayList;
+import java.util.List;
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
 
 /**
  * Properties specific to Service.
@@ -9,8 +14,624 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  * See {@link tech.jhipster.config.JHipsterProperties} for a good example.
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
+@Validated
 public class ApplicationProperties {
+
+    private final Export export = new Export();
+
+    private final Rx rx = new Rx();
+
+    @Valid
+    private final Batch batch = new Batch();
+
+    private final Lifecycle lifecycle = new Lifecycle();
+
+    private final Matching matching = new Matching();
+
+    @Valid
+    private final Events events = new Events();
+
+    private final Idempotency idempotency = new Idempotency();
+
+    private final Archive archive = new Archive();
+
+    private final PasswordHashing passwordHashing = new PasswordHashing();
+
+    private final LoginThrottling loginThrottling = new LoginThrottling();
+
+    private final ForwardedHeaders forwardedHeaders = new ForwardedHeaders();
+
+    private final Jwt jwt = new Jwt();
+
+    private final UserCache userCache = new UserCache();
+
     // jhipster-needle-application-properties-property
+
+    public Export getExport() {
+        return export;
+    }
+
+    public Rx getRx() {
+        return rx;
+    }
+
+    public Batch getBatch() {
+        return batch;
+    }
+
+    public Lifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    public Matching getMatching() {
+        return matching;
+    }
+
+    public Events getEvents() {
+        return events;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public Archive getArchive() {
+        return archive;
+    }
+
+    public PasswordHashing getPasswordHashing() {
+        return passwordHashing;
+    }
+
+    public LoginThrottling getLoginThrottling() {
+        return loginThrottling;
+    }
+
+    public ForwardedHeaders getForwardedHeaders() {
+        return forwardedHeaders;
+    }
+
+    public Jwt getJwt() {
+        return jwt;
+    }
+
+    public UserCache getUserCache() {
+        return userCache;
+    }
+
     // jhipster-needle-application-properties-property-getter
+
+    public static class Export {
+
+        /**
+         * Number of documents fetched from MongoDB per cursor batch.
+         */
+        private int fetchSize = 1000;
+
+        /**
+         * Number of documents written between two flushes of the response.
+         */
+        private int flushSize = 500;
+
+        /**
+         * Number of threads writing the exports, each one held for the whole export.
+         */
+        private int writerThreads = 16;
+
+        /**
+         * Number of exports waiting for a writer thread, beyond which the exports are rejected.
+         */
+        private int queueCapacity = 0;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        public int getFlushSize() {
+            return flushSize;
+        }
+
+        public void setFlushSize(int flushSize) {
+            this.flushSize = flushSize;
+        }
+
+        public int getWriterThreads() {
+            return writerThreads;
+        }
+
+        public void setWriterThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Rx {
+
+        /**
+         * Number of threads writing the reactive reads, apart from the export writer threads.
+         */
+        private int writerThreads = 16;
+
+        /**
+         * Number of reactive reads waiting for a writer thread, beyond which the reads are rejected.
+         */
+        private int queueCapacity = 256;
+
+        public int getWriterThreads() {
+            return writerThreads;
+        }
+
+        public void setWriterThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Batch {
+
+        /**
+         * Number of documents written per bulk write.
+         */
+        @Min(1)
+        private int chunkSize = 500;
+
+        /**
+         * Maximum number of documents per batch, beyond which the batch is rejected.
+         */
+        @Min(1)
+        private int maxSize = 10000;
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+        }
+    }
+
+    public static class Lifecycle {
+
+        /**
+         * Number of workers processing the trades, each one owning the trades of a subset of the customers.
+         */
+        private int partitions = 4;
+
+        /**
+         * Number of trades waiting for each worker before new trades are refused.
+         */
+        private int queueCapacity = 1000;
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public void setPartitions(int partitions) {
+            this.partitions = partitions;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    public static class Matching {
+
+        /**
+         * Number of locks guarding the index of the unmatched trades, each one shared by the currency pairs hashing to it.
+         */
+        private int stripes = 64;
+
+        /**
+         * Maximum number of match statuses written to MongoDB per bulk write.
+         */
+        private int batchSize = 500;
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    public static class Events {
+
+        /**
+         * Number of events buffered for each client before it is disconnected as too slow.
+         */
+        private int bufferSize = 256;
+
+        /**
+         * Time after which a connection is closed, for the client to reconnect, in milliseconds.
+         */
+        private long timeout = 1800000;
+
+        /**
+         * Number of threads sending the events, each one held while the events of a client are written.
+         */
+        @Min(1)
+        private int senderThreads = 8;
+
+        /**
+         * Number of clients waiting for a sender thread, beyond which the clients are disconnected.
+         */
+        @Min(1)
+        private int queueCapacity = 1000;
+
+        /**
+         * Time after which a client still being written to is disconnected as too slow, in milliseconds.
+         */
+        @Min(1)
+        private long sendTimeout = 10000;
+
+        /**
+         * Number of trades whose parties are kept to route their deletions, the deletions of the others resetting all the
+         * clients.
+         */
+        @Min(1)
+        private long ownersCapacity = 100000;
+
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public int getSenderThreads() {
+            return senderThreads;
+        }
+
+        public void setSenderThreads(int senderThreads) {
+            this.senderThreads = senderThreads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getSendTimeout() {
+            return sendTimeout;
+        }
+
+        public void setSendTimeout(long sendTimeout) {
+            this.sendTimeout = sendTimeout;
+        }
+
+        public long getOwnersCapacity() {
+            return ownersCapacity;
+        }
+
+        public void setOwnersCapacity(long ownersCapacity) {
+            this.ownersCapacity = ownersCapacity;
+        }
+    }
+
+    public static class Idempotency {
+
+        /**
+         * Minimum number of transaction ids the Bloom filter is sized for, whatever the number of trades at startup.
+         */
+        private long minCapacity = 100000;
+
+        /**
+         * Probability that the Bloom filter sends a new transaction id to MongoDB to check whether it exists.
+         */
+        private double falsePositiveProbability = 0.01;
+
+        public long getMinCapacity() {
+            return minCapacity;
+        }
+
+        public void setMinCapacity(long minCapacity) {
+            this.minCapacity = minCapacity;
+        }
+
+        public double getFalsePositiveProbability() {
+            return falsePositiveProbability;
+        }
+
+        public void setFalsePositiveProbability(double falsePositiveProbability) {
+            this.falsePositiveProbability = falsePositiveProbability;
+        }
+    }
+
+    public static class Archive {
+
+        /**
+         * Number of days after their trade date after which the settled and failed trades are archived.
+         */
+        private int horizon = 365;
+
+        /**
+         * Number of trades compressed together in an archive block.
+         */
+        private int blockSize = 1000;
+
+        /**
+         * Pause between two archive blocks, in milliseconds, to leave room for the other writes.
+         */
+        private long pause = 100;
+
+        /**
+         * Maximum number of archive blocks written per run, the remaining trades being archived by the next runs.
+         */
+        private int maxBlocksPerRun = 1000;
+
+        /**
+         * Maximum number of archive blocks decompressed to read a page of trades, the page being cut before the trades of
+         * the blocks left.
+         */
+        private int maxBlocksPerPage = 10;
+
+        public int getHorizon() {
+            return horizon;
+        }
+
+        public void setHorizon(int horizon) {
+            this.horizon = horizon;
+        }
+
+        public int getBlockSize() {
+            return blockSize;
+        }
+
+        public void setBlockSize(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        public long getPause() {
+            return pause;
+        }
+
+        public void setPause(long pause) {
+            this.pause = pause;
+        }
+
+        public int getMaxBlocksPerRun() {
+            return maxBlocksPerRun;
+        }
+
+        public void setMaxBlocksPerRun(int maxBlocksPerRun) {
+            this.maxBlocksPerRun = maxBlocksPerRun;
+        }
+
+        public int getMaxBlocksPerPage() {
+            return maxBlocksPerPage;
+        }
+
+        public void setMaxBlocksPerPage(int maxBlocksPerPage) {
+            this.maxBlocksPerPage = maxBlocksPerPage;
+        }
+    }
+
+    public static class PasswordHashing {
+
+        /**
+         * Number of threads hashing and matching the passwords, apart from the request threads.
+         */
+        private int threads = 2;
+
+        /**
+         * Number of passwords waiting to be hashed or matched, beyond which the requests are rejected.
+         */
+        private int queueCapacity = 64;
+
+        /**
+         * Time a request waits for its password to be hashed or matched before it is rejected, in milliseconds.
+         */
+        private long timeout = 1000;
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    public static class LoginThrottling {
+
+        /**
+         * Number of token buckets per row of each table, the logins and the addresses hashing to the same bucket sharing it.
+         */
+        private int slots = 16384;
+
+        /**
+         * Number of locks guarding the buckets of each table, each one shared by the buckets hashing to it.
+         */
+        private int stripes = 64;
+
+        /**
+         * Number of login attempts allowed in a burst for a login.
+         */
+        private int loginCapacity = 10;
+
+        /**
+         * Number of login attempts given back to a login per minute.
+         */
+        private int loginRefillPerMinute = 5;
+
+        /**
+         * Number of login attempts allowed in a burst from a client IP address.
+         */
+        private int ipCapacity = 50;
+
+        /**
+         * Number of login attempts given back to a client IP address per minute.
+         */
+        private int ipRefillPerMinute = 30;
+
+        public int getSlots() {
+            return slots;
+        }
+
+        public void setSlots(int slots) {
+            this.slots = slots;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public int getLoginCapacity() {
+            return loginCapacity;
+        }
+
+        public void setLoginCapacity(int loginCapacity) {
+            this.loginCapacity = loginCapacity;
+        }
+
+        public int getLoginRefillPerMinute() {
+            return loginRefillPerMinute;
+        }
+
+        public void setLoginRefillPerMinute(int loginRefillPerMinute) {
+            this.loginRefillPerMinute = loginRefillPerMinute;
+        }
+
+        public int getIpCapacity() {
+            return ipCapacity;
+        }
+
+        public void setIpCapacity(int ipCapacity) {
+            this.ipCapacity = ipCapacity;
+        }
+
+        public int getIpRefillPerMinute() {
+            return ipRefillPerMinute;
+        }
+
+        public void setIpRefillPerMinute(int ipRefillPerMinute) {
+            this.ipRefillPerMinute = ipRefillPerMinute;
+        }
+    }
+
+    public static class ForwardedHeaders {
+
+        /**
+         * Addresses or CIDR ranges of the proxies whose forwarded headers are applied, the headers of any other peer being
+         * removed.
+         */
+        private List<String> trustedProxies = new ArrayList<>(List.of("127.0.0.1/32", "::1"));
+
+        public List<String> getTrustedProxies() {
+            return trustedProxies;
+        }
+
+        public void setTrustedProxies(List<String> trustedProxies) {
+            this.trustedProxies = trustedProxies;
+        }
+    }
+
+    public static class Jwt {
+
+        /**
+         * Time after the issue of a token during which the customer it carries is trusted, in milliseconds, the customer
+         * being looked up afterwards. It bounds the time an update of the customer takes to reach the requests made with
+         * the tokens issued before.
+         */
+        private long customerClaimsValidity = 300000;
+
+        public long getCustomerClaimsValidity() {
+            return customerClaimsValidity;
+        }
+
+        public void setCustomerClaimsValidity(long customerClaimsValidity) {
+            this.customerClaimsValidity = customerClaimsValidity;
+        }
+    }
+
+    public static class UserCache {
+
+        /**
+         * Time a user stays in the caches of the users by login and by email, in seconds. The caches are local to each
+         * instance and only evicted by the instance that changes the user: it bounds the time a change made on another
+         * instance, e.g. a deactivation, takes to be seen by the current user lookups. Authentication does not use them.
+         */
+        private long timeToLiveSeconds = 120;
+
+        public long getTimeToLiveSeconds() {
+            return timeToLiveSeconds;
+        }
+
+        public void setTimeToLiveSeconds(long timeToLiveSeconds) {
+            this.timeToLiveSeconds = timeToLiveSeconds;
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
@@ -1,6 +1,9 @@
 package com.osttra.fx.blockstream.config;
 
+import com.osttra.fx.blockstream.web.rest.errors.StreamingSaturatedException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
@@ -9,24 +12,31 @@ import org.springframework.boot.autoconfigure.task.TaskExecutionProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import tech.jhipster.async.ExceptionHandlingAsyncTaskExecutor;
 
 @Configuration
 @EnableAsync
 @EnableScheduling
 @Profile("!testdev & !testprod")
-public class AsyncConfiguration implements AsyncConfigurer {
+public class AsyncConfiguration implements AsyncConfigurer, WebMvcConfigurer {
 
     private final Logger log = LoggerFactory.getLogger(AsyncConfiguration.class);
 
     private final TaskExecutionProperties taskExecutionProperties;
 
-    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    public AsyncConfiguration(TaskExecutionProperties taskExecutionProperties, ApplicationProperties applicationProperties) {
         this.taskExecutionProperties = taskExecutionProperties;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
@@ -41,8 +51,66 @@ public class AsyncConfiguration implements AsyncConfigurer {
         return new ExceptionHandlingAsyncTaskExecutor(executor);
     }
 
+    /**
+     * The executor writing the exports, which Spring MVC would otherwise run on a new thread each time. An export holds
+     * one of its threads until it is written, so the exports beyond the threads and the queue are rejected, with a
+     * {@code 503 (Service Unavailable)}, instead of waiting for the others. The reactive reads have their own threads,
+     * see {@link ReactiveConfiguration}.
+     */
+    @Bean(name = "mvcTaskExecutor")
+    public AsyncTaskExecutor getMvcAsyncExecutor() {
+        log.debug("Creating MVC Async Task Executor");
+        ThreadPoolTaskExecutor executor = new StreamingTaskExecutor();
+        executor.setCorePoolSize(applicationProperties.getExport().getWriterThreads());
+        executor.setMaxPoolSize(applicationProperties.getExport().getWriterThreads());
+        executor.setQueueCapacity(applicationProperties.getExport().getQueueCapacity());
+        executor.setThreadNamePrefix("service-mvc-");
+        return new ExceptionHandlingAsyncTaskExecutor(executor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(getMvcAsyncExecutor());
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return new SimpleAsyncUncaughtExceptionHandler();
     }
+
+    /**
+     * Rejects the exports with a {@link StreamingSaturatedException}, told apart from the rejections of the other
+     * executors.
+     */
+    private static class StreamingTaskExecutor extends ThreadPoolTaskExecutor {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void execute(Runnable task) {
+            try {
+                super.execute(task);
+            } catch (TaskRejectedException e) {
+                throw new StreamingSaturatedException(e);
+            }
+        }
+
+        @Override
+        public Future<?> submit(Runnable task) {
+            try {
+                return super.submit(task);
+            } catch (TaskRejectedException e) {
+                throw new StreamingSaturatedException(e);
+            }
+        }
+
+        @Override
+        public <T> Future<T> submit(Callable<T> task) {
+            try {
+                return super.submit(task);
+            } catch (TaskRejectedException e) {
+                throw new StreamingSaturatedException(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package com.osttra.fx.blockstream.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tech.jhipster.config.JHipsterProperties;
+
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+
+    private final javax.cache.configuration.Configuration<Object, Object> userJcacheConfiguration;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        JHipsterProperties.Cache.Caffeine caffeine = jHipsterProperties.getCache().getCaffeine();
+
+        CaffeineConfiguration<Object, Object> caffeineConfiguration = new CaffeineConfiguration<>();
+        caffeineConfiguration.setMaximumSize(OptionalLong.of(caffeine.getMaxEntries()));
+        caffeineConfiguration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(caffeine.getTimeToLiveSeconds())));
+        // Statistics back the cache.gets hit/miss meters bound by Spring Boot
+        caffeineConfiguration.setStatisticsEnabled(true);
+        jcacheConfiguration = caffeineConfiguration;
+
+        // The user caches are only evicted on the instance changing the user, so their entries expire sooner
+        CaffeineConfiguration<Object, Object> userCaffeineConfiguration = new CaffeineConfiguration<>(caffeineConfiguration);
+        userCaffeineConfiguration.setExpireAfterWrite(
+            OptionalLong.of(TimeUnit.SECONDS.toNanos(applicationProperties.getUserCache().getTimeToLiveSeconds()))
+        );
+        userJcacheConfiguration = userCaffeineConfiguration;
+    }
+
+    @Bean
+    public JCacheManagerCustomizer cacheManagerCustomizer() {
+        return cm -> {
+            createCache(cm, com.osttra.fx.blockstream.repository.UserRepository.USERS_BY_LOGIN_CACHE, userJcacheConfiguration);
+            createCache(cm, com.osttra.fx.blockstream.repository.UserRepository.USERS_BY_EMAIL_CACHE, userJcacheConfiguration);
+            createCache(cm, com.osttra.fx.blockstream.repository.CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE);
+            createCache(cm, com.osttra.fx.blockstream.service.SmartTradeIdempotencyService.TRADE_IDS_BY_TRANSACTION_ID_CACHE);
+            // jhipster-needle-caffeine-add-entry
+        };
+    }
+
+    private void createCache(javax.cache.CacheManager cm, String cacheName) {
+        createCache(cm, cacheName, jcacheConfiguration);
+    }
+
+    private void createCache(
+        javax.cache.CacheManager cm,
+        String cacheName,
+        javax.cache.configuration.Configuration<Object, Object> configuration
+    ) {
+        javax.cache.Cache<Object, Object> cache = cm.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        } else {
+            cm.createCache(cacheName, configuration);
+        }
+    }
+}
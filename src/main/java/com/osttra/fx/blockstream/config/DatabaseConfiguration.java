@@ -1,9 +1,11 @@
 package com.osttra.fx.blockstream.config;
 
+import com.osttra.fx.blockstream.repository.CollectionChangeCounters;
 import io.mongock.runner.springboot.EnableMongock;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
@@ -36,11 +38,18 @@ public class DatabaseConfiguration {
         return new LocalValidatorFactoryBean();
     }
 
+    @Bean
+    public MongoClientSettingsBuilderCustomizer collectionChangeCountersCustomizer(CollectionChangeCounters collectionChangeCounters) {
+        return builder -> builder.addCommandListener(collectionChangeCounters);
+    }
+
     @Bean
     public MongoCustomConversions customConversions() {
         List<Converter<?, ?>> converters = new ArrayList<>();
         converters.add(DateToZonedDateTimeConverter.INSTANCE);
         converters.add(ZonedDateTimeToDateConverter.INSTANCE);
+        converters.add(MoneyConverters.MoneyToDecimal128Converter.INSTANCE);
+        converters.add(MoneyConverters.Decimal128ToMoneyConverter.INSTANCE);
         return new MongoCustomConversions(converters);
     }
 }
@@ -1,9 +1,14 @@
 package com.osttra.fx.blockstream.config;
 
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.zalando.problem.jackson.ProblemModule;
 import org.zalando.problem.violations.ConstraintViolationProblemModule;
 
@@ -24,6 +29,15 @@ public class JacksonConfiguration {
         return new Jdk8Module();
     }
 
+    /**
+     * Support for the {@link com.osttra.fx.blockstream.domain.Money} and {@link com.osttra.fx.blockstream.domain.Rate} value types.
+     * @return the corresponding Jackson module.
+     */
+    @Bean
+    public MoneyModule moneyModule() {
+        return new MoneyModule();
+    }
+
     /*
      * Module for serialization/deserialization of RFC7807 Problem.
      */
@@ -39,4 +53,23 @@ public class JacksonConfiguration {
     public ConstraintViolationProblemModule constraintViolationProblemModule() {
         return new ConstraintViolationProblemModule();
     }
+
+    /**
+     * Smile request and response bodies, selected by the {@code Content-Type} and {@code Accept} headers.
+     * The mapper is built by Spring Boot like the JSON one, with the same modules and features.
+     * @return the message converter.
+     */
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder jacksonObjectMapperBuilder) {
+        return new MappingJackson2SmileHttpMessageConverter(jacksonObjectMapperBuilder.factory(new SmileFactory()).build());
+    }
+
+    /**
+     * CBOR request and response bodies, selected by the {@code Content-Type} and {@code Accept} headers.
+     * @return the message converter.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder jacksonObjectMapperBuilder) {
+        return new MappingJackson2CborHttpMessageConverter(jacksonObjectMapperBuilder.factory(new CBORFactory()).build());
+    }
 }
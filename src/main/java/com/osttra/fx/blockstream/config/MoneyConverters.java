@@ -0,0 +1,41 @@
+package com.osttra.fx.blockstream.config;
+
+import com.osttra.fx.blockstream.domain.Money;
+import org.bson.types.Decimal128;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+/**
+ * Converters storing {@link Money} as {@link Decimal128}, which keeps its scale and can be summed by MongoDB.
+ */
+public final class MoneyConverters {
+
+    private MoneyConverters() {}
+
+    @WritingConverter
+    public static class MoneyToDecimal128Converter implements Converter<Money, Decimal128> {
+
+        public static final MoneyToDecimal128Converter INSTANCE = new MoneyToDecimal128Converter();
+
+        private MoneyToDecimal128Converter() {}
+
+        @Override
+        public Decimal128 convert(Money source) {
+            return new Decimal128(source.toBigDecimal());
+        }
+    }
+
+    @ReadingConverter
+    public static class Decimal128ToMoneyConverter implements Converter<Decimal128, Money> {
+
+        public static final Decimal128ToMoneyConverter INSTANCE = new Decimal128ToMoneyConverter();
+
+        private Decimal128ToMoneyConverter() {}
+
+        @Override
+        public Money convert(Decimal128 source) {
+            return Money.of(source.bigDecimalValue());
+        }
+    }
+}
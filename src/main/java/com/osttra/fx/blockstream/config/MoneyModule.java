@@ -0,0 +1,113 @@
+package com.osttra.fx.blockstream.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Rate;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Jackson module writing {@link Money} and {@link Rate} as plain decimal numbers, with all their decimals.
+ */
+public class MoneyModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    public MoneyModule() {
+        super(MoneyModule.class.getSimpleName());
+        addSerializer(Money.class, new MoneySerializer());
+        addDeserializer(Money.class, new MoneyDeserializer());
+        addSerializer(Rate.class, new RateSerializer());
+        addDeserializer(Rate.class, new RateDeserializer());
+    }
+
+    /**
+     * Read a number, or a string holding one as some clients send exact decimals.
+     */
+    private static BigDecimal decimalValue(JsonParser p, DeserializationContext ctxt, Class<?> targetType) throws IOException {
+        if (p.hasToken(JsonToken.VALUE_STRING)) {
+            String text = p.getText().trim();
+            try {
+                return new BigDecimal(text);
+            } catch (NumberFormatException e) {
+                return (BigDecimal) ctxt.handleWeirdStringValue(targetType, text, "not a valid decimal");
+            }
+        }
+        if (p.hasToken(JsonToken.VALUE_NUMBER_INT) || p.hasToken(JsonToken.VALUE_NUMBER_FLOAT)) {
+            return p.getDecimalValue();
+        }
+        return (BigDecimal) ctxt.handleUnexpectedToken(targetType, p);
+    }
+
+    static class MoneySerializer extends StdScalarSerializer<Money> {
+
+        private static final long serialVersionUID = 1L;
+
+        MoneySerializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public void serialize(Money value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            // Written as text to keep the trailing zeros, also in binary formats
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    static class MoneyDeserializer extends StdScalarDeserializer<Money> {
+
+        private static final long serialVersionUID = 1L;
+
+        MoneyDeserializer() {
+            super(Money.class);
+        }
+
+        @Override
+        public Money deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            try {
+                return Money.of(decimalValue(p, ctxt, Money.class));
+            } catch (ArithmeticException e) {
+                return (Money) ctxt.handleWeirdNumberValue(Money.class, p.getNumberValue(), e.getMessage());
+            }
+        }
+    }
+
+    static class RateSerializer extends StdScalarSerializer<Rate> {
+
+        private static final long serialVersionUID = 1L;
+
+        RateSerializer() {
+            super(Rate.class);
+        }
+
+        @Override
+        public void serialize(Rate value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeNumber(value.toString());
+        }
+    }
+
+    static class RateDeserializer extends StdScalarDeserializer<Rate> {
+
+        private static final long serialVersionUID = 1L;
+
+        RateDeserializer() {
+            super(Rate.class);
+        }
+
+        @Override
+        public Rate deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            try {
+                return Rate.of(decimalValue(p, ctxt, Rate.class));
+            } catch (ArithmeticException e) {
+                return (Rate) ctxt.handleWeirdNumberValue(Rate.class, p.getNumberValue(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.osttra.fx.blockstream.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class ReactiveConfiguration {
+
+    /**
+     * The scheduler writing the reactive reads to the clients, apart from the export writer threads. A read waiting for
+     * a slow client holds one of its threads, so the reads beyond the threads and the queue are rejected, with a
+     * {@code 503 (Service Unavailable)}.
+     */
+    @Bean(name = "rxWriterScheduler", destroyMethod = "dispose")
+    public Scheduler rxWriterScheduler(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Rx rx = applicationProperties.getRx();
+        return Schedulers.newBoundedElastic(rx.getWriterThreads(), rx.getQueueCapacity(), "rx-writer");
+    }
+}
@@ -1,7 +1,9 @@
 package com.osttra.fx.blockstream.config;
 
+import com.osttra.fx.blockstream.management.SecurityMetersService;
 import com.osttra.fx.blockstream.security.*;
 import com.osttra.fx.blockstream.security.jwt.*;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpMethod;
@@ -42,8 +44,35 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        ApplicationProperties.PasswordHashing passwordHashing = applicationProperties.getPasswordHashing();
+        return new BoundedPasswordEncoder(
+            new BCryptPasswordEncoder(),
+            passwordHashing.getThreads(),
+            passwordHashing.getQueueCapacity(),
+            passwordHashing.getTimeout(),
+            meterRegistry
+        );
+    }
+
+    @Bean
+    public LoginThrottle loginThrottle(ApplicationProperties applicationProperties, SecurityMetersService securityMetersService) {
+        ApplicationProperties.LoginThrottling loginThrottling = applicationProperties.getLoginThrottling();
+        return new LoginThrottle(
+            new TokenBucketTable(
+                loginThrottling.getSlots(),
+                loginThrottling.getStripes(),
+                loginThrottling.getLoginCapacity(),
+                loginThrottling.getLoginRefillPerMinute()
+            ),
+            new TokenBucketTable(
+                loginThrottling.getSlots(),
+                loginThrottling.getStripes(),
+                loginThrottling.getIpCapacity(),
+                loginThrottling.getIpRefillPerMinute()
+            ),
+            securityMetersService
+        );
     }
 
     @Bean
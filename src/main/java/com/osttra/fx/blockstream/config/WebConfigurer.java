@@ -1,13 +1,16 @@
 package com.osttra.fx.blockstream.config;
 
+import com.osttra.fx.blockstream.security.TrustedProxyForwardedHeaderFilter;
 import javax.servlet.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.web.server.*;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.Profiles;
 import org.springframework.util.CollectionUtils;
@@ -28,9 +31,12 @@ public class WebConfigurer implements ServletContextInitializer {
 
     private final JHipsterProperties jHipsterProperties;
 
-    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties) {
+    private final ApplicationProperties applicationProperties;
+
+    public WebConfigurer(Environment env, JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
         this.env = env;
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
     }
 
     @Override
@@ -55,4 +61,18 @@ public class WebConfigurer implements ServletContextInitializer {
         }
         return new CorsFilter(source);
     }
+
+    /**
+     * The filter applying the forwarded headers of the trusted proxies, in place of the one Spring Boot registers for
+     * {@code server.forward-headers-strategy: framework}, which trusts them from any peer.
+     */
+    @Bean
+    public FilterRegistrationBean<TrustedProxyForwardedHeaderFilter> trustedProxyForwardedHeaderFilter() {
+        FilterRegistrationBean<TrustedProxyForwardedHeaderFilter> registration = new FilterRegistrationBean<>(
+            new TrustedProxyForwardedHeaderFilter(applicationProperties.getForwardedHeaders().getTrustedProxies())
+        );
+        registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC, DispatcherType.ERROR);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
 }
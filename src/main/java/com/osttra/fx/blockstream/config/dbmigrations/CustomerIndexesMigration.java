@@ -0,0 +1,36 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.Customer;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Creates the unique index used to resolve the current customer from its legal entity.
+ */
+@ChangeUnit(id = "customer-legal-entity-index", order = "004")
+public class CustomerIndexesMigration {
+
+    static final String LEGAL_ENTITY_INDEX = "customer_legal_entity";
+
+    private final MongoTemplate template;
+
+    public CustomerIndexesMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        template
+            .indexOps(Customer.class)
+            .ensureIndex(new Index().on("customer_legal_entity", Sort.Direction.ASC).unique().sparse().named(LEGAL_ENTITY_INDEX));
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(Customer.class).dropIndex(LEGAL_ENTITY_INDEX);
+    }
+}
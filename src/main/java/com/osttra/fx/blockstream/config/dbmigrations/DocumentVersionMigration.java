@@ -0,0 +1,47 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import com.osttra.fx.blockstream.domain.Currencies;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+/**
+ * Sets the initial version of the documents stored before they were versioned: Spring Data inserts an entity without
+ * a version, so saving one of them again would otherwise fail on its duplicate id.
+ */
+@ChangeUnit(id = "document-versions", order = "009")
+public class DocumentVersionMigration {
+
+    static final String VERSION_FIELD = "version";
+
+    private static final List<Class<?>> VERSIONED_CLASSES = List.of(SmartTrade.class, Wallet.class, Currencies.class, Customer.class);
+
+    private final MongoTemplate template;
+
+    public DocumentVersionMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        for (Class<?> versionedClass : VERSIONED_CLASSES) {
+            template
+                .getCollection(template.getCollectionName(versionedClass))
+                .updateMany(Filters.exists(VERSION_FIELD, false), Updates.set(VERSION_FIELD, 0L));
+        }
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        for (Class<?> versionedClass : VERSIONED_CLASSES) {
+            template.getCollection(template.getCollectionName(versionedClass)).updateMany(Filters.empty(), Updates.unset(VERSION_FIELD));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.mongodb.DBRef;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+/**
+ * Replaces the customer {@code DBRef} of the trades and wallets with an embedded reference holding the id, legal entity
+ * and hash code of the customer. The customers of each batch of documents are fetched with a single {@code $in} query.
+ */
+@ChangeUnit(id = "embedded-customer-refs", order = "007")
+public class EmbeddedCustomerRefsMigration {
+
+    static final String WALLET_CUSTOMER_INDEX = "customer_ref_id";
+    static final String WALLET_CUSTOMER_CURRENCY_INDEX = "customer_ref_currency_code";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate template;
+
+    public EmbeddedCustomerRefsMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        embedCustomerRefs(template.getCollection(template.getCollectionName(SmartTrade.class)));
+        embedCustomerRefs(template.getCollection(template.getCollectionName(Wallet.class)));
+
+        IndexOperations walletIndexes = template.indexOps(Wallet.class);
+        walletIndexes.ensureIndex(
+            new Index().on("customer._id", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named(WALLET_CUSTOMER_INDEX)
+        );
+        walletIndexes.ensureIndex(
+            new Index().on("customer._id", Sort.Direction.ASC).on("currency_code", Sort.Direction.ASC).named(WALLET_CUSTOMER_CURRENCY_INDEX)
+        );
+        walletIndexes.dropIndex(KeysetPaginationIndexesMigration.WALLET_CUSTOMER_INDEX);
+        walletIndexes.dropIndex(WalletBalancesMigration.CUSTOMER_CURRENCY_INDEX);
+
+        // The balances were first built while the wallets still referenced their customer with a DBRef
+        new WalletBalanceProjectionMigration(template).changeSet();
+    }
+
+    private void embedCustomerRefs(MongoCollection<Document> collection) {
+        List<Document> batch = new ArrayList<>(BATCH_SIZE);
+        for (Document document : collection.find(Filters.exists("customer")).projection(Projections.include("customer"))) {
+            if (document.get("customer") instanceof DBRef) {
+                batch.add(document);
+            }
+            if (batch.size() == BATCH_SIZE) {
+                embedCustomerRefs(collection, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            embedCustomerRefs(collection, batch);
+        }
+    }
+
+    private void embedCustomerRefs(MongoCollection<Document> collection, List<Document> batch) {
+        Set<Object> customerIds = batch.stream().map(document -> ((DBRef) document.get("customer")).getId()).collect(Collectors.toSet());
+        Map<Object, Document> customers = new HashMap<>();
+        template
+            .getCollection(template.getCollectionName(Customer.class))
+            .find(Filters.in("_id", customerIds))
+            .forEach(customer -> customers.put(customer.get("_id"), customer));
+
+        List<WriteModel<Document>> updates = new ArrayList<>(batch.size());
+        for (Document document : batch) {
+            Object customerId = ((DBRef) document.get("customer")).getId();
+            Document customerRef = new Document("_id", customerId);
+            Document customer = customers.get(customerId);
+            if (customer != null) {
+                customerRef.append("customer_legal_entity", customer.get("customer_legal_entity"));
+                customerRef.append("customer_hash_code", customer.get("customer_hash_code"));
+            }
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", document.get("_id")), Updates.set("customer", customerRef)));
+        }
+        collection.bulkWrite(updates);
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        IndexOperations walletIndexes = template.indexOps(Wallet.class);
+        walletIndexes.ensureIndex(
+            new Index()
+                .on("customer", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named(KeysetPaginationIndexesMigration.WALLET_CUSTOMER_INDEX)
+        );
+        walletIndexes.ensureIndex(
+            new Index()
+                .on("customer", Sort.Direction.ASC)
+                .on("currency_code", Sort.Direction.ASC)
+                .named(WalletBalancesMigration.CUSTOMER_CURRENCY_INDEX)
+        );
+        walletIndexes.dropIndex(WALLET_CUSTOMER_INDEX);
+        walletIndexes.dropIndex(WALLET_CUSTOMER_CURRENCY_INDEX);
+    }
+}
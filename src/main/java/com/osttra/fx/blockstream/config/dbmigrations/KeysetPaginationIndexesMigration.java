@@ -0,0 +1,64 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+/**
+ * Extends the party indexes with the {@code _id} tie-breaker used by keyset pagination, so that each branch of the
+ * party {@code $or} is read in sort order, and indexes the wallets by customer.
+ */
+@ChangeUnit(id = "keyset-pagination-indexes", order = "003")
+public class KeysetPaginationIndexesMigration {
+
+    static final String TRADING_PARTY_INDEX = "trading_party_trade_date_id";
+    static final String COUNTER_PARTY_INDEX = "counter_party_trade_date_id";
+    static final String WALLET_CUSTOMER_INDEX = "customer_id";
+
+    private final MongoTemplate template;
+
+    public KeysetPaginationIndexesMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        IndexOperations smartTradeIndexes = template.indexOps(SmartTrade.class);
+        smartTradeIndexes.ensureIndex(
+            new Index()
+                .on("trading_party", Sort.Direction.ASC)
+                .on("trade_date", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named(TRADING_PARTY_INDEX)
+        );
+        smartTradeIndexes.ensureIndex(
+            new Index()
+                .on("counter_party", Sort.Direction.ASC)
+                .on("trade_date", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named(COUNTER_PARTY_INDEX)
+        );
+        // The new indexes have the previous ones as prefix
+        smartTradeIndexes.dropIndex(SmartTradeIndexesMigration.TRADING_PARTY_INDEX);
+        smartTradeIndexes.dropIndex(SmartTradeIndexesMigration.COUNTER_PARTY_INDEX);
+
+        template
+            .indexOps(Wallet.class)
+            .ensureIndex(new Index().on("customer", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named(WALLET_CUSTOMER_INDEX));
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        new SmartTradeIndexesMigration(template).changeSet();
+        IndexOperations smartTradeIndexes = template.indexOps(SmartTrade.class);
+        smartTradeIndexes.dropIndex(TRADING_PARTY_INDEX);
+        smartTradeIndexes.dropIndex(COUNTER_PARTY_INDEX);
+        template.indexOps(Wallet.class).dropIndex(WALLET_CUSTOMER_INDEX);
+    }
+}
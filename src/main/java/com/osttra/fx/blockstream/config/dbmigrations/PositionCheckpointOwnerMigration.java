@@ -0,0 +1,42 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.Position;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Removes the position checkpoint shared by the instances, each instance rebuilding its positions and storing them in its
+ * own checkpoint, and creates the index used to load and replace the checkpoint of an instance.
+ */
+@ChangeUnit(id = "position-checkpoint-owner", order = "011")
+public class PositionCheckpointOwnerMigration {
+
+    static final String INSTANCE_INDEX = "position_instance_checkpoint_date";
+
+    private final MongoTemplate template;
+
+    public PositionCheckpointOwnerMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        template.remove(Query.query(Criteria.where("instanceId").exists(false)), Position.class);
+        template
+            .indexOps(Position.class)
+            .ensureIndex(
+                new Index().on("instance_id", Sort.Direction.ASC).on("checkpoint_date", Sort.Direction.ASC).named(INSTANCE_INDEX)
+            );
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(Position.class).dropIndex(INSTANCE_INDEX);
+    }
+}
@@ -0,0 +1,40 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.Position;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * Removes the position checkpoints of the instances, the positions being stored once for all the instances and rebuilt
+ * from the trades when none are stored, and creates the index used to read the positions of a legal entity.
+ */
+@ChangeUnit(id = "shared-positions", order = "012")
+public class SharedPositionsMigration {
+
+    static final String LEGAL_ENTITY_INDEX = "position_legal_entity";
+
+    private final MongoTemplate template;
+
+    public SharedPositionsMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        template.remove(new Query(), Position.class);
+        IndexOperations indexOperations = template.indexOps(Position.class);
+        indexOperations.dropIndex(PositionCheckpointOwnerMigration.INSTANCE_INDEX);
+        indexOperations.ensureIndex(new Index().on("legal_entity", Sort.Direction.ASC).named(LEGAL_ENTITY_INDEX));
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(Position.class).dropIndex(LEGAL_ENTITY_INDEX);
+    }
+}
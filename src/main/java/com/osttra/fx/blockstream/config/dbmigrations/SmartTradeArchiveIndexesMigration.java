@@ -0,0 +1,37 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Indexes the archived trade blocks by party and trade dates, so that only the blocks of a party overlapping a date
+ * range are decompressed.
+ */
+@ChangeUnit(id = "smart-trade-archive-indexes", order = "010")
+public class SmartTradeArchiveIndexesMigration {
+
+    static final String PARTIES_INDEX = "parties_to_date";
+
+    private final MongoTemplate template;
+
+    public SmartTradeArchiveIndexesMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        template
+            .indexOps(SmartTradeArchive.class)
+            .ensureIndex(new Index().on("parties", Sort.Direction.ASC).on("to_date", Sort.Direction.ASC).named(PARTIES_INDEX));
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(SmartTradeArchive.class).dropIndex(PARTIES_INDEX);
+    }
+}
@@ -0,0 +1,34 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Creates the index used to refresh the customer reference embedded in the trades when the customer is updated.
+ */
+@ChangeUnit(id = "smart-trade-customer-index", order = "013")
+public class SmartTradeCustomerIndexMigration {
+
+    static final String CUSTOMER_INDEX = "smart_trade_customer_ref_id";
+
+    private final MongoTemplate template;
+
+    public SmartTradeCustomerIndexMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        template.indexOps(SmartTrade.class).ensureIndex(new Index().on("customer._id", Sort.Direction.ASC).sparse().named(CUSTOMER_INDEX));
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(SmartTrade.class).dropIndex(CUSTOMER_INDEX);
+    }
+}
@@ -0,0 +1,44 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+
+/**
+ * Creates the indexes used by the party scoped trade queries.
+ */
+@ChangeUnit(id = "smart-trade-party-indexes", order = "002")
+public class SmartTradeIndexesMigration {
+
+    static final String TRADING_PARTY_INDEX = "trading_party_trade_date";
+    static final String COUNTER_PARTY_INDEX = "counter_party_trade_date";
+
+    private final MongoTemplate template;
+
+    public SmartTradeIndexesMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        IndexOperations indexOperations = template.indexOps(SmartTrade.class);
+        indexOperations.ensureIndex(
+            new Index().on("trading_party", Sort.Direction.ASC).on("trade_date", Sort.Direction.DESC).named(TRADING_PARTY_INDEX)
+        );
+        indexOperations.ensureIndex(
+            new Index().on("counter_party", Sort.Direction.ASC).on("trade_date", Sort.Direction.DESC).named(COUNTER_PARTY_INDEX)
+        );
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        IndexOperations indexOperations = template.indexOps(SmartTrade.class);
+        indexOperations.dropIndex(TRADING_PARTY_INDEX);
+        indexOperations.dropIndex(COUNTER_PARTY_INDEX);
+    }
+}
@@ -0,0 +1,68 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.List;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Creates the unique index making the capture of a trade idempotent on its transaction id.
+ * <p>
+ * Trades captured more than once before the index existed keep the transaction id on the first one only: it is moved
+ * to {@code duplicate_transaction_id} on the others, so that they can still be found and cleaned up.
+ */
+@ChangeUnit(id = "smart-trade-transaction-id-index", order = "008")
+public class TransactionIdIndexMigration {
+
+    static final String TRANSACTION_ID_INDEX = "transaction_id";
+
+    private final Logger log = LoggerFactory.getLogger(TransactionIdIndexMigration.class);
+
+    private final MongoTemplate template;
+
+    public TransactionIdIndexMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        MongoCollection<Document> collection = template.getCollection(template.getCollectionName(SmartTrade.class));
+        List<Bson> pipeline = List.of(
+            Aggregates.match(Filters.ne("transaction_id", null)),
+            Aggregates.sort(Sorts.ascending("_id")),
+            Aggregates.group("$transaction_id", Accumulators.push("ids", "$_id"), Accumulators.sum("count", 1)),
+            Aggregates.match(Filters.gt("count", 1))
+        );
+        for (Document duplicates : collection.aggregate(pipeline).allowDiskUse(true)) {
+            List<?> ids = duplicates.getList("ids", Object.class);
+            collection.updateMany(
+                Filters.in("_id", ids.subList(1, ids.size())),
+                Updates.rename("transaction_id", "duplicate_transaction_id")
+            );
+            log.warn("Transaction id {} is kept on trade {} only, out of {} trades", duplicates.get("_id"), ids.get(0), ids.size());
+        }
+
+        template
+            .indexOps(SmartTrade.class)
+            .ensureIndex(new Index().on("transaction_id", Sort.Direction.ASC).unique().sparse().named(TRANSACTION_ID_INDEX));
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(SmartTrade.class).dropIndex(TRANSACTION_ID_INDEX);
+    }
+}
@@ -0,0 +1,42 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.WalletBalance;
+import com.osttra.fx.blockstream.repository.WalletBalanceRepositoryCustomImpl;
+import com.osttra.fx.blockstream.repository.WalletRepositoryCustomImpl;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.util.stream.Stream;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
+
+/**
+ * Builds the wallet balances projection from the existing wallets.
+ */
+@ChangeUnit(id = "wallet-balance-projection", order = "006")
+public class WalletBalanceProjectionMigration {
+
+    private final MongoTemplate template;
+
+    public WalletBalanceProjectionMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        WalletRepositoryCustomImpl wallets = new WalletRepositoryCustomImpl(template);
+        WalletBalanceRepositoryCustomImpl walletBalances = new WalletBalanceRepositoryCustomImpl(template);
+        try (Stream<Customer> customers = StreamUtils.createStreamFromIterator(template.stream(new Query(), Customer.class))) {
+            customers.forEach(customer ->
+                walletBalances.replaceBalances(customer.getId(), null, wallets.findBalancesByCustomer(customer.getId()))
+            );
+        }
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.dropCollection(WalletBalance.class);
+    }
+}
@@ -0,0 +1,66 @@
+package com.osttra.fx.blockstream.config.dbmigrations;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.osttra.fx.blockstream.domain.Wallet;
+import io.mongock.api.annotations.ChangeUnit;
+import io.mongock.api.annotations.Execution;
+import io.mongock.api.annotations.RollbackExecution;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.BsonType;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+
+/**
+ * Converts the wallet amounts, previously stored as strings, to {@link Decimal128} so that they can be summed by the
+ * database, and indexes the wallets by customer and currency for the balance aggregation.
+ */
+@ChangeUnit(id = "wallet-balances", order = "005")
+public class WalletBalancesMigration {
+
+    static final String CUSTOMER_CURRENCY_INDEX = "customer_currency_code";
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final MongoTemplate template;
+
+    public WalletBalancesMigration(MongoTemplate template) {
+        this.template = template;
+    }
+
+    @Execution
+    public void changeSet() {
+        MongoCollection<Document> wallets = template.getCollection(template.getCollectionName(Wallet.class));
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        for (Document wallet : wallets.find(Filters.type("amount", BsonType.STRING))) {
+            Decimal128 amount = new Decimal128(new BigDecimal(wallet.getString("amount")));
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", wallet.get("_id")), Updates.set("amount", amount)));
+            if (updates.size() == BATCH_SIZE) {
+                wallets.bulkWrite(updates);
+                updates.clear();
+            }
+        }
+        if (!updates.isEmpty()) {
+            wallets.bulkWrite(updates);
+        }
+
+        template
+            .indexOps(Wallet.class)
+            .ensureIndex(
+                new Index().on("customer", Sort.Direction.ASC).on("currency_code", Sort.Direction.ASC).named(CUSTOMER_CURRENCY_INDEX)
+            );
+    }
+
+    @RollbackExecution
+    public void rollback() {
+        template.indexOps(Wallet.class).dropIndex(CUSTOMER_CURRENCY_INDEX);
+    }
+}
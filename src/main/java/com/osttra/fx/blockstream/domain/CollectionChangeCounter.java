@@ -0,0 +1,103 @@
+package com.osttra.fx.blockstream.domain;
+
+import java.io.Serializable;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * The count of the writes made to a collection by all the instances, so that a list of the collection can be told
+ * unchanged without reading it again.
+ */
+@Document(collection = "collection_change_counter")
+public class CollectionChangeCounter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The name of the counted collection.
+     */
+    @Id
+    private String id;
+
+    @Field("count")
+    private long count;
+
+    /**
+     * The time the counter was created, in milliseconds since the epoch, so that a counter created again after being
+     * dropped does not repeat the counts of the previous one.
+     */
+    @Field("epoch")
+    private long epoch;
+
+    /**
+     * The writes of the reading instance not added to the count yet, as the id of the instance and its count of writes
+     * to the collection, {@code null} if there are none.
+     */
+    @Transient
+    private String unstoredWrites;
+
+    public String getId() {
+        return this.id;
+    }
+
+    public CollectionChangeCounter id(String id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public CollectionChangeCounter count(long count) {
+        this.setCount(count);
+        return this;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public long getEpoch() {
+        return this.epoch;
+    }
+
+    public CollectionChangeCounter epoch(long epoch) {
+        this.setEpoch(epoch);
+        return this;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public String getUnstoredWrites() {
+        return this.unstoredWrites;
+    }
+
+    public CollectionChangeCounter unstoredWrites(String unstoredWrites) {
+        this.setUnstoredWrites(unstoredWrites);
+        return this;
+    }
+
+    public void setUnstoredWrites(String unstoredWrites) {
+        this.unstoredWrites = unstoredWrites;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CollectionChangeCounter{" +
+            "id=" + getId() +
+            ", count=" + getCount() +
+            ", epoch=" + getEpoch() +
+            ", unstoredWrites='" + getUnstoredWrites() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,102 @@
+package com.osttra.fx.blockstream.domain;
+
+import java.io.Serializable;
+import java.util.Objects;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * A reference to a {@link Customer}, embedded in the documents owned by the customer with the fields they are read
+ * with, so that loading them does not require loading the customer.
+ */
+public class CustomerRef implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    @Field("customer_legal_entity")
+    private String customerLegalEntity;
+
+    @Field("customer_hash_code")
+    private String customerHashCode;
+
+    /**
+     * Create the reference to a customer.
+     *
+     * @param customer the customer, may be {@code null}.
+     * @return the reference, or {@code null} if there is no customer.
+     */
+    public static CustomerRef of(Customer customer) {
+        if (customer == null) {
+            return null;
+        }
+        return new CustomerRef()
+            .id(customer.getId())
+            .customerLegalEntity(customer.getCustomerLegalEntity())
+            .customerHashCode(customer.getCustomerHashCode());
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public CustomerRef id(String id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCustomerLegalEntity() {
+        return this.customerLegalEntity;
+    }
+
+    public CustomerRef customerLegalEntity(String customerLegalEntity) {
+        this.setCustomerLegalEntity(customerLegalEntity);
+        return this;
+    }
+
+    public void setCustomerLegalEntity(String customerLegalEntity) {
+        this.customerLegalEntity = customerLegalEntity;
+    }
+
+    public String getCustomerHashCode() {
+        return this.customerHashCode;
+    }
+
+    public CustomerRef customerHashCode(String customerHashCode) {
+        this.setCustomerHashCode(customerHashCode);
+        return this;
+    }
+
+    public void setCustomerHashCode(String customerHashCode) {
+        this.customerHashCode = customerHashCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CustomerRef)) {
+            return false;
+        }
+        return id != null && id.equals(((CustomerRef) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "CustomerRef{" +
+            "id=" + getId() +
+            ", customerLegalEntity='" + getCustomerLegalEntity() + "'" +
+            "}";
+    }
+}
@@ -0,0 +1,331 @@
+package com.osttra.fx.blockstream.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * An amount of money, held as a number of minor units with their scale, e.g. 1234 with scale 2 for 12.34.
+ * <p>
+ * Arithmetic works on the longs: it does not allocate besides the result, and throws {@link ArithmeticException} rather
+ * than overflowing. The static methods work on minor units directly, for the loops which should not allocate at all.
+ */
+public final class Money implements Comparable<Money>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The largest scale of an amount, so that converting it at a {@link Rate} fits the arithmetic.
+     */
+    public static final int MAX_SCALE = 9;
+
+    /**
+     * The scale of the amounts of a currency which is not an ISO 4217 one, or has no minor unit defined.
+     */
+    public static final int DEFAULT_SCALE = 2;
+
+    public static final Money ZERO = new Money(0, 0);
+
+    private static final long[] POWERS_OF_TEN = {
+        1L,
+        10L,
+        100L,
+        1_000L,
+        10_000L,
+        100_000L,
+        1_000_000L,
+        10_000_000L,
+        100_000_000L,
+        1_000_000_000L,
+        10_000_000_000L,
+        100_000_000_000L,
+        1_000_000_000_000L,
+        10_000_000_000_000L,
+        100_000_000_000_000L,
+        1_000_000_000_000_000L,
+        10_000_000_000_000_000L,
+        100_000_000_000_000_000L,
+        1_000_000_000_000_000_000L,
+    };
+
+    private final long minorUnits;
+
+    private final int scale;
+
+    private Money(long minorUnits, int scale) {
+        this.minorUnits = minorUnits;
+        this.scale = scale;
+    }
+
+    /**
+     * Get an amount of minor units.
+     *
+     * @param minorUnits the number of minor units.
+     * @param scale the number of decimals of a minor unit, from 0 to {@value #MAX_SCALE}.
+     * @return the amount.
+     */
+    public static Money ofMinorUnits(long minorUnits, int scale) {
+        checkScale(scale);
+        return new Money(minorUnits, scale);
+    }
+
+    /**
+     * Get an amount of a decimal, keeping its decimals but the trailing zeros beyond {@value #MAX_SCALE}.
+     *
+     * @param amount the decimal.
+     * @return the amount.
+     * @throws ArithmeticException if the decimal has more than {@value #MAX_SCALE} significant decimals or is too large.
+     */
+    public static Money of(BigDecimal amount) {
+        return of(amount, 0);
+    }
+
+    /**
+     * Get an amount of a decimal in a currency, with at least the minor units of the currency.
+     *
+     * @param amount the decimal.
+     * @param currencyCode the currency code.
+     * @return the amount.
+     * @throws ArithmeticException if the decimal has more than {@value #MAX_SCALE} significant decimals or is too large.
+     */
+    public static Money of(BigDecimal amount, String currencyCode) {
+        return of(amount, scaleOf(currencyCode));
+    }
+
+    private static Money of(BigDecimal amount, int minScale) {
+        if (amount.scale() > MAX_SCALE) {
+            amount = amount.stripTrailingZeros();
+        }
+        int scale = Math.max(amount.scale(), minScale);
+        checkScale(scale);
+        return new Money(amount.setScale(scale).unscaledValue().longValueExact(), scale);
+    }
+
+    /**
+     * Get the scale of the minor units of a currency.
+     *
+     * @param currencyCode the currency code.
+     * @return the number of decimals of the ISO 4217 currency, or {@value #DEFAULT_SCALE}.
+     */
+    public static int scaleOf(String currencyCode) {
+        if (currencyCode == null || currencyCode.length() != 3) {
+            return DEFAULT_SCALE;
+        }
+        try {
+            int fractionDigits = Currency.getInstance(currencyCode).getDefaultFractionDigits();
+            return fractionDigits < 0 ? DEFAULT_SCALE : fractionDigits;
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_SCALE;
+        }
+    }
+
+    /**
+     * Convert minor units at a rate, rounding half even.
+     *
+     * @param minorUnits the number of minor units.
+     * @param scale the scale of the minor units, from 0 to {@value #MAX_SCALE}.
+     * @param rate the rate.
+     * @param targetScale the scale of the converted minor units, from 0 to {@value #MAX_SCALE}.
+     * @return the number of converted minor units.
+     * @throws ArithmeticException if the converted amount does not fit a long.
+     */
+    public static long convert(long minorUnits, int scale, Rate rate, int targetScale) {
+        checkScale(scale);
+        checkScale(targetScale);
+        // minorUnits * rate has scale + Rate.SCALE decimals, from 0 to 18 more than the target scale
+        return multiplyDivide(minorUnits, rate.getScaled(), POWERS_OF_TEN[scale + Rate.SCALE - targetScale]);
+    }
+
+    /**
+     * Rescale minor units to a larger scale.
+     *
+     * @param minorUnits the number of minor units.
+     * @param scale the scale of the minor units.
+     * @param targetScale the larger scale.
+     * @return the number of minor units at the target scale.
+     * @throws ArithmeticException if they don't fit a long.
+     */
+    public static long rescale(long minorUnits, int scale, int targetScale) {
+        checkScale(scale);
+        checkScale(targetScale);
+        if (targetScale < scale) {
+            throw new IllegalArgumentException("Cannot rescale from " + scale + " to " + targetScale + " decimals without rounding");
+        }
+        return Math.multiplyExact(minorUnits, POWERS_OF_TEN[targetScale - scale]);
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    public boolean isZero() {
+        return minorUnits == 0;
+    }
+
+    public Money plus(Money other) {
+        if (scale == other.scale) {
+            return new Money(Math.addExact(minorUnits, other.minorUnits), scale);
+        }
+        int targetScale = Math.max(scale, other.scale);
+        return new Money(
+            Math.addExact(rescale(minorUnits, scale, targetScale), rescale(other.minorUnits, other.scale, targetScale)),
+            targetScale
+        );
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(minorUnits), scale);
+    }
+
+    /**
+     * Convert the amount at a rate, rounding half even.
+     *
+     * @param rate the rate.
+     * @param targetScale the scale of the converted amount.
+     * @return the converted amount.
+     * @throws ArithmeticException if the converted amount is too large.
+     */
+    public Money times(Rate rate, int targetScale) {
+        return new Money(convert(minorUnits, scale, rate, targetScale), targetScale);
+    }
+
+    /**
+     * Get the amount with another scale, rounding half even.
+     *
+     * @param targetScale the scale, from 0 to {@value #MAX_SCALE}.
+     * @return the amount with this scale.
+     * @throws ArithmeticException if the amount is too large for the scale.
+     */
+    public Money withScale(int targetScale) {
+        checkScale(targetScale);
+        if (targetScale >= scale) {
+            return targetScale == scale ? this : new Money(rescale(minorUnits, scale, targetScale), targetScale);
+        }
+        return new Money(multiplyDivide(minorUnits, 1, POWERS_OF_TEN[scale - targetScale]), targetScale);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    /**
+     * Compare the amounts, whatever their scales: 1.5 and 1.50 are equal.
+     */
+    @Override
+    public int compareTo(Money other) {
+        if (scale == other.scale) {
+            return Long.compare(minorUnits, other.minorUnits);
+        }
+        return toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    /**
+     * Amounts are equal whatever their scales, as by {@link #compareTo(Money)}.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Money)) {
+            return false;
+        }
+        return compareTo((Money) o) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long stripped = minorUnits;
+        int strippedScale = scale;
+        while (strippedScale > 0 && stripped % 10 == 0) {
+            stripped /= 10;
+            strippedScale--;
+        }
+        return 31 * Long.hashCode(stripped) + strippedScale;
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+
+    private static void checkScale(int scale) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new ArithmeticException("Scale out of range: " + scale);
+        }
+    }
+
+    /**
+     * Compute {@code a * b / divisor} rounded half even, with the 128 bits product.
+     */
+    static long multiplyDivide(long a, long b, long divisor) {
+        if (a == Long.MIN_VALUE || b == Long.MIN_VALUE) {
+            throw new ArithmeticException("long overflow");
+        }
+        boolean negative = (a < 0) != (b < 0);
+        long x = Math.abs(a);
+        long y = Math.abs(b);
+        long high = Math.multiplyHigh(x, y);
+        long low = x * y;
+        if (Long.compareUnsigned(high, divisor) >= 0) {
+            throw new ArithmeticException("long overflow");
+        }
+        long quotient = divideUnsigned(high, low, divisor);
+        long remainder = low - quotient * divisor;
+        if (quotient < 0) {
+            throw new ArithmeticException("long overflow");
+        }
+        // divisor is at most 10^18, so twice the remainder does not overflow
+        long twiceRemainder = remainder << 1;
+        if (twiceRemainder > divisor || (twiceRemainder == divisor && (quotient & 1) == 1)) {
+            quotient = Math.incrementExact(quotient);
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    /**
+     * Divide the unsigned 128 bits {@code high:low} by {@code divisor}, the quotient fitting 64 bits as {@code high} is
+     * less than {@code divisor} (Hacker's Delight, divlu).
+     */
+    private static long divideUnsigned(long high, long low, long divisor) {
+        final long base = 1L << 32;
+        int shift = Long.numberOfLeadingZeros(divisor);
+        long v = divisor << shift;
+        long vHigh = v >>> 32;
+        long vLow = v & 0xFFFFFFFFL;
+        long uHigh = shift == 0 ? high : (high << shift) | (low >>> (64 - shift));
+        long uLow = low << shift;
+        long uLowHigh = uLow >>> 32;
+        long uLowLow = uLow & 0xFFFFFFFFL;
+
+        long q1 = Long.divideUnsigned(uHigh, vHigh);
+        long rHat = Long.remainderUnsigned(uHigh, vHigh);
+        while (q1 >= base || Long.compareUnsigned(q1 * vLow, (rHat << 32) | uLowHigh) > 0) {
+            q1--;
+            rHat += vHigh;
+            if (rHat >= base) {
+                break;
+            }
+        }
+
+        long u21 = (uHigh << 32) + uLowHigh - q1 * v;
+        long q0 = Long.divideUnsigned(u21, vHigh);
+        rHat = Long.remainderUnsigned(u21, vHigh);
+        while (q0 >= base || Long.compareUnsigned(q0 * vLow, (rHat << 32) | uLowLow) > 0) {
+            q0--;
+            rHat += vHigh;
+            if (rHat >= base) {
+                break;
+            }
+        }
+        return (q1 << 32) + q0;
+    }
+}
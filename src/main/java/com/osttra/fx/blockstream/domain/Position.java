@@ -0,0 +1,200 @@
+package com.osttra.fx.blockstream.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * The net position of a legal entity in a currency pair for a value date: the sum of the amounts bought minus the
+ * amounts sold of each currency of the pair, over the trades the legal entity is the trading party of.
+ * <p>
+ * The currencies of the pair are in alphabetical order, so that the trades buying and selling them net out.
+ * Positions are stored once for all the instances, which add the changes of the trades they write to them.
+ */
+@Document(collection = "position")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class Position implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    @Field("legal_entity")
+    private String legalEntity;
+
+    @Field("base_currency")
+    private String baseCurrency;
+
+    @Field("quote_currency")
+    private String quoteCurrency;
+
+    @Field("value_date")
+    private LocalDate valueDate;
+
+    @Field("base_amount")
+    private Money baseAmount;
+
+    @Field("quote_amount")
+    private Money quoteAmount;
+
+    @Field("trade_count")
+    private Long tradeCount;
+
+    @JsonIgnore
+    @Field("update_date")
+    private Instant updateDate;
+
+    public String getId() {
+        return this.id;
+    }
+
+    public Position id(String id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getLegalEntity() {
+        return this.legalEntity;
+    }
+
+    public Position legalEntity(String legalEntity) {
+        this.setLegalEntity(legalEntity);
+        return this;
+    }
+
+    public void setLegalEntity(String legalEntity) {
+        this.legalEntity = legalEntity;
+    }
+
+    public String getBaseCurrency() {
+        return this.baseCurrency;
+    }
+
+    public Position baseCurrency(String baseCurrency) {
+        this.setBaseCurrency(baseCurrency);
+        return this;
+    }
+
+    public void setBaseCurrency(String baseCurrency) {
+        this.baseCurrency = baseCurrency;
+    }
+
+    public String getQuoteCurrency() {
+        return this.quoteCurrency;
+    }
+
+    public Position quoteCurrency(String quoteCurrency) {
+        this.setQuoteCurrency(quoteCurrency);
+        return this;
+    }
+
+    public void setQuoteCurrency(String quoteCurrency) {
+        this.quoteCurrency = quoteCurrency;
+    }
+
+    public LocalDate getValueDate() {
+        return this.valueDate;
+    }
+
+    public Position valueDate(LocalDate valueDate) {
+        this.setValueDate(valueDate);
+        return this;
+    }
+
+    public void setValueDate(LocalDate valueDate) {
+        this.valueDate = valueDate;
+    }
+
+    public Money getBaseAmount() {
+        return this.baseAmount;
+    }
+
+    public Position baseAmount(Money baseAmount) {
+        this.setBaseAmount(baseAmount);
+        return this;
+    }
+
+    public void setBaseAmount(Money baseAmount) {
+        this.baseAmount = baseAmount;
+    }
+
+    public Money getQuoteAmount() {
+        return this.quoteAmount;
+    }
+
+    public Position quoteAmount(Money quoteAmount) {
+        this.setQuoteAmount(quoteAmount);
+        return this;
+    }
+
+    public void setQuoteAmount(Money quoteAmount) {
+        this.quoteAmount = quoteAmount;
+    }
+
+    public Long getTradeCount() {
+        return this.tradeCount;
+    }
+
+    public Position tradeCount(Long tradeCount) {
+        this.setTradeCount(tradeCount);
+        return this;
+    }
+
+    public void setTradeCount(Long tradeCount) {
+        this.tradeCount = tradeCount;
+    }
+
+    public Instant getUpdateDate() {
+        return this.updateDate;
+    }
+
+    public Position updateDate(Instant updateDate) {
+        this.setUpdateDate(updateDate);
+        return this;
+    }
+
+    public void setUpdateDate(Instant updateDate) {
+        this.updateDate = updateDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Position)) {
+            return false;
+        }
+        return id != null && id.equals(((Position) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "Position{" +
+            "id=" + getId() +
+            ", legalEntity='" + getLegalEntity() + "'" +
+            ", baseCurrency='" + getBaseCurrency() + "'" +
+            ", quoteCurrency='" + getQuoteCurrency() + "'" +
+            ", valueDate='" + getValueDate() + "'" +
+            ", baseAmount=" + getBaseAmount() +
+            ", quoteAmount=" + getQuoteAmount() +
+            ", tradeCount=" + getTradeCount() +
+            "}";
+    }
+}
@@ -0,0 +1,107 @@
+package com.osttra.fx.blockstream.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * An exchange rate, held as a long scaled by 10<sup>{@value #SCALE}</sup> so that converting an amount with it does not
+ * allocate.
+ */
+public final class Rate implements Comparable<Rate>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The number of decimals of a rate.
+     */
+    public static final int SCALE = 9;
+
+    private static final double MULTIPLIER = 1e9;
+
+    private final long scaled;
+
+    private Rate(long scaled) {
+        this.scaled = scaled;
+    }
+
+    /**
+     * Get the rate of a scaled long.
+     *
+     * @param scaled the rate multiplied by 10<sup>{@value #SCALE}</sup>.
+     * @return the rate.
+     */
+    public static Rate ofScaled(long scaled) {
+        return new Rate(scaled);
+    }
+
+    /**
+     * Get the rate closest to a double.
+     *
+     * @param rate the rate.
+     * @return the rate, rounded to {@value #SCALE} decimals.
+     * @throws ArithmeticException if the rate is not finite or too large.
+     */
+    public static Rate of(double rate) {
+        double scaled = rate * MULTIPLIER;
+        if (!Double.isFinite(scaled) || Math.abs(scaled) >= 0x1p63) {
+            throw new ArithmeticException("Rate out of range: " + rate);
+        }
+        return new Rate(Math.round(scaled));
+    }
+
+    /**
+     * Get the rate of a decimal.
+     *
+     * @param rate the rate.
+     * @return the rate.
+     * @throws ArithmeticException if the rate has more than {@value #SCALE} decimals or is too large.
+     */
+    public static Rate of(BigDecimal rate) {
+        return new Rate(rate.setScale(SCALE).unscaledValue().longValueExact());
+    }
+
+    /**
+     * @return the rate multiplied by 10<sup>{@value #SCALE}</sup>.
+     */
+    public long getScaled() {
+        return scaled;
+    }
+
+    public int signum() {
+        return Long.signum(scaled);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(scaled, SCALE).stripTrailingZeros();
+    }
+
+    public double toDouble() {
+        return scaled / MULTIPLIER;
+    }
+
+    @Override
+    public int compareTo(Rate other) {
+        return Long.compare(scaled, other.scaled);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Rate)) {
+            return false;
+        }
+        return scaled == ((Rate) o).scaled;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(scaled);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -1,10 +1,12 @@
 package com.osttra.fx.blockstream.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -20,6 +22,9 @@ public class SmartTrade implements Serializable {
     @Id
     private String id;
 
+    @Version
+    private Long version;
+
     @Field("counter_party")
     private String counterParty;
 
@@ -59,9 +64,21 @@ public class SmartTrade implements Serializable {
     @Field("failure_reason")
     private String failureReason;
 
-    @DBRef
     @Field("customer")
-    private Customer customer;
+    private CustomerRef customer;
+
+    @Field("match_status")
+    private String matchStatus;
+
+    @Field("matched_trade_id")
+    private String matchedTradeId;
+
+    /**
+     * The parties the last update of the trade took it away from, for the readers of its changes to tell them.
+     */
+    @JsonIgnore
+    @Field("former_parties")
+    private List<String> formerParties;
 
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
@@ -78,6 +95,19 @@ public class SmartTrade implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public SmartTrade version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getCounterParty() {
         return this.counterParty;
     }
@@ -247,19 +277,58 @@ public class SmartTrade implements Serializable {
         this.failureReason = failureReason;
     }
 
-    public Customer getCustomer() {
+    public CustomerRef getCustomer() {
         return this.customer;
     }
 
-    public void setCustomer(Customer customer) {
+    public void setCustomer(CustomerRef customer) {
         this.customer = customer;
     }
 
-    public SmartTrade customer(Customer customer) {
+    public SmartTrade customer(CustomerRef customer) {
         this.setCustomer(customer);
         return this;
     }
 
+    public String getMatchStatus() {
+        return this.matchStatus;
+    }
+
+    public SmartTrade matchStatus(String matchStatus) {
+        this.setMatchStatus(matchStatus);
+        return this;
+    }
+
+    public void setMatchStatus(String matchStatus) {
+        this.matchStatus = matchStatus;
+    }
+
+    public String getMatchedTradeId() {
+        return this.matchedTradeId;
+    }
+
+    public SmartTrade matchedTradeId(String matchedTradeId) {
+        this.setMatchedTradeId(matchedTradeId);
+        return this;
+    }
+
+    public void setMatchedTradeId(String matchedTradeId) {
+        this.matchedTradeId = matchedTradeId;
+    }
+
+    public List<String> getFormerParties() {
+        return this.formerParties;
+    }
+
+    public SmartTrade formerParties(List<String> formerParties) {
+        this.setFormerParties(formerParties);
+        return this;
+    }
+
+    public void setFormerParties(List<String> formerParties) {
+        this.formerParties = formerParties;
+    }
+
     // jhipster-needle-entity-add-getters-setters - JHipster will add getters and setters here
 
     @Override
@@ -284,6 +353,7 @@ public class SmartTrade implements Serializable {
     public String toString() {
         return "SmartTrade{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", counterParty='" + getCounterParty() + "'" +
             ", tradingParty='" + getTradingParty() + "'" +
             ", currencyBuy='" + getCurrencyBuy() + "'" +
@@ -297,6 +367,8 @@ public class SmartTrade implements Serializable {
             ", tradeDate='" + getTradeDate() + "'" +
             ", status='" + getStatus() + "'" +
             ", failureReason='" + getFailureReason() + "'" +
+            ", matchStatus='" + getMatchStatus() + "'" +
+            ", matchedTradeId='" + getMatchedTradeId() + "'" +
             "}";
     }
 }
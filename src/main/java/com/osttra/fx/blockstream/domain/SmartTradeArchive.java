@@ -0,0 +1,150 @@
+package com.osttra.fx.blockstream.domain;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * A block of archived {@link SmartTrade}s, stored compressed in a single document.
+ * <p>
+ * The block is found by the parties of its trades and the range of their trade dates, then its trades are
+ * decompressed to be filtered.
+ */
+@Document(collection = "smart_trade_archive")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class SmartTradeArchive implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    @Field("parties")
+    private Set<String> parties = new HashSet<>();
+
+    @Field("from_date")
+    private LocalDate fromDate;
+
+    @Field("to_date")
+    private LocalDate toDate;
+
+    @Field("trade_count")
+    private Integer tradeCount;
+
+    @Field("trades")
+    private byte[] trades;
+
+    public String getId() {
+        return this.id;
+    }
+
+    public SmartTradeArchive id(String id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Set<String> getParties() {
+        return this.parties;
+    }
+
+    public SmartTradeArchive parties(Set<String> parties) {
+        this.setParties(parties);
+        return this;
+    }
+
+    public void setParties(Set<String> parties) {
+        this.parties = parties;
+    }
+
+    public LocalDate getFromDate() {
+        return this.fromDate;
+    }
+
+    public SmartTradeArchive fromDate(LocalDate fromDate) {
+        this.setFromDate(fromDate);
+        return this;
+    }
+
+    public void setFromDate(LocalDate fromDate) {
+        this.fromDate = fromDate;
+    }
+
+    public LocalDate getToDate() {
+        return this.toDate;
+    }
+
+    public SmartTradeArchive toDate(LocalDate toDate) {
+        this.setToDate(toDate);
+        return this;
+    }
+
+    public void setToDate(LocalDate toDate) {
+        this.toDate = toDate;
+    }
+
+    public Integer getTradeCount() {
+        return this.tradeCount;
+    }
+
+    public SmartTradeArchive tradeCount(Integer tradeCount) {
+        this.setTradeCount(tradeCount);
+        return this;
+    }
+
+    public void setTradeCount(Integer tradeCount) {
+        this.tradeCount = tradeCount;
+    }
+
+    /**
+     * @return the trades, as a deflated BSON document holding them in its {@code trades} array.
+     */
+    public byte[] getTrades() {
+        return this.trades;
+    }
+
+    public SmartTradeArchive trades(byte[] trades) {
+        this.setTrades(trades);
+        return this;
+    }
+
+    public void setTrades(byte[] trades) {
+        this.trades = trades;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SmartTradeArchive)) {
+            return false;
+        }
+        return id != null && id.equals(((SmartTradeArchive) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "SmartTradeArchive{" +
+            "id=" + getId() +
+            ", parties=" + getParties() +
+            ", fromDate='" + getFromDate() + "'" +
+            ", toDate='" + getToDate() + "'" +
+            ", tradeCount=" + getTradeCount() +
+            "}";
+    }
+}
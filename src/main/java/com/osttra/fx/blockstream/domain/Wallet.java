@@ -4,9 +4,10 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.mapping.FieldType;
 
 /**
  * A Wallet.
@@ -20,15 +21,17 @@ public class Wallet implements Serializable {
     @Id
     private String id;
 
+    @Version
+    private Long version;
+
     @Field("currency_code")
     private String currencyCode;
 
-    @Field("amount")
+    @Field(value = "amount", targetType = FieldType.DECIMAL128)
     private BigDecimal amount;
 
-    @DBRef
     @Field("customer")
-    private Customer customer;
+    private CustomerRef customer;
 
     // jhipster-needle-entity-add-field - JHipster will add fields here
 
@@ -45,6 +48,19 @@ public class Wallet implements Serializable {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return this.version;
+    }
+
+    public Wallet version(Long version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public String getCurrencyCode() {
         return this.currencyCode;
     }
@@ -71,15 +87,15 @@ public class Wallet implements Serializable {
         this.amount = amount;
     }
 
-    public Customer getCustomer() {
+    public CustomerRef getCustomer() {
         return this.customer;
     }
 
-    public void setCustomer(Customer customer) {
+    public void setCustomer(CustomerRef customer) {
         this.customer = customer;
     }
 
-    public Wallet customer(Customer customer) {
+    public Wallet customer(CustomerRef customer) {
         this.setCustomer(customer);
         return this;
     }
@@ -108,6 +124,7 @@ public class Wallet implements Serializable {
     public String toString() {
         return "Wallet{" +
             "id=" + getId() +
+            ", version=" + getVersion() +
             ", currencyCode='" + getCurrencyCode() + "'" +
             ", amount=" + getAmount() +
             "}";
@@ -0,0 +1,160 @@
+package com.osttra.fx.blockstream.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+/**
+ * The balances of a customer, one amount per currency code, maintained from the wallets of the customer.
+ * Its id is the id of the customer.
+ * <p>
+ * Its revision moves on with every change of the wallets of the customer, when the change starts and when it is applied
+ * to the balances, and the number of changes started and not applied yet is kept as pending, so that the balances can be
+ * rebuilt from the wallets without losing the changes made meanwhile.
+ */
+@Document(collection = "wallet_balance")
+@SuppressWarnings("common-java:DuplicatedBlocks")
+public class WalletBalance implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    private String id;
+
+    @Field("balances")
+    private Map<String, Money> balances = new HashMap<>();
+
+    @Field("revision")
+    private Long revision;
+
+    @Field("pending")
+    private Long pending;
+
+    @Field("changed_date")
+    private Instant changedDate;
+
+    public String getId() {
+        return this.id;
+    }
+
+    public WalletBalance id(String id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Map<String, Money> getBalances() {
+        return this.balances;
+    }
+
+    public WalletBalance balances(Map<String, Money> balances) {
+        this.setBalances(balances);
+        return this;
+    }
+
+    public void setBalances(Map<String, Money> balances) {
+        this.balances = balances;
+    }
+
+    public Long getRevision() {
+        return this.revision;
+    }
+
+    public WalletBalance revision(Long revision) {
+        this.setRevision(revision);
+        return this;
+    }
+
+    public void setRevision(Long revision) {
+        this.revision = revision;
+    }
+
+    public Long getPending() {
+        return this.pending;
+    }
+
+    public WalletBalance pending(Long pending) {
+        this.setPending(pending);
+        return this;
+    }
+
+    public void setPending(Long pending) {
+        this.pending = pending;
+    }
+
+    public Instant getChangedDate() {
+        return this.changedDate;
+    }
+
+    public WalletBalance changedDate(Instant changedDate) {
+        this.setChangedDate(changedDate);
+        return this;
+    }
+
+    public void setChangedDate(Instant changedDate) {
+        this.changedDate = changedDate;
+    }
+
+    /**
+     * Tell whether a currency code can be used as the name of a balance field, which must not contain a dot nor a dollar.
+     *
+     * @param currencyCode the currency code.
+     * @return {@code true} if the currency code is not empty and has neither {@code .} nor {@code $}.
+     */
+    public static boolean isValidCurrencyCode(String currencyCode) {
+        return currencyCode != null && !currencyCode.isEmpty() && currencyCode.indexOf('.') < 0 && currencyCode.indexOf('$') < 0;
+    }
+
+    /**
+     * Tell whether an amount can be added to the balances, which are read as {@link Money}.
+     *
+     * @param amount the amount.
+     * @return {@code true} if the amount has at most {@value Money#MAX_SCALE} significant decimals and fits a long of
+     * minor units.
+     */
+    public static boolean isValidAmount(BigDecimal amount) {
+        try {
+            Money.of(amount);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof WalletBalance)) {
+            return false;
+        }
+        return id != null && id.equals(((WalletBalance) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "WalletBalance{" +
+            "id=" + getId() +
+            ", balances=" + getBalances() +
+            ", revision=" + getRevision() +
+            ", pending=" + getPending() +
+            ", changedDate='" + getChangedDate() + "'" +
+            "}";
+    }
+}
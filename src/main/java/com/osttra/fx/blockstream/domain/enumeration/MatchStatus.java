@@ -0,0 +1,10 @@
+package com.osttra.fx.blockstream.domain.enumeration;
+
+/**
+ * The confirmation matching status of a booked {@link com.osttra.fx.blockstream.domain.SmartTrade}: {@code UNMATCHED}
+ * until the trade captured by the other party is paired with it, then {@code MATCHED}.
+ */
+public enum MatchStatus {
+    UNMATCHED,
+    MATCHED,
+}
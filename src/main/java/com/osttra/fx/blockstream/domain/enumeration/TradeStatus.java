@@ -0,0 +1,32 @@
+package com.osttra.fx.blockstream.domain.enumeration;
+
+/**
+ * The lifecycle status of a {@link com.osttra.fx.blockstream.domain.SmartTrade}:
+ * {@code NEW -> VALIDATED -> BOOKED -> SETTLED}, or {@code FAILED} from any non terminal status.
+ */
+public enum TradeStatus {
+    NEW,
+    VALIDATED,
+    BOOKED,
+    SETTLED,
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == SETTLED || this == FAILED;
+    }
+
+    /**
+     * Get the status with a given name.
+     *
+     * @param name the name of the status.
+     * @return the status, or {@code null} if the name is not the one of a lifecycle status.
+     */
+    public static TradeStatus fromName(String name) {
+        for (TradeStatus status : values()) {
+            if (status.name().equals(name)) {
+                return status;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Domain enumerations.
+ */
+package com.osttra.fx.blockstream.domain.enumeration;
@@ -0,0 +1,185 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.osttra.fx.blockstream.domain.CollectionChangeCounter;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the write commands sent to each MongoDB collection, whatever the repository or template they come from, so
+ * that a list can be told unchanged without reading it again.
+ * <p>
+ * The counters are stored in MongoDB, as {@link CollectionChangeCounter}s incremented by all the instances. The writes
+ * of this instance are added to them right after they complete, from a separate thread as the command listener must
+ * not send commands itself. Reading a counter does not wait for them: until they are added, the counter read here
+ * carries the count of writes of this instance, which only grows, so that it still changes with every write. The
+ * writes of another instance are seen once that instance added them.
+ */
+@Component
+public class CollectionChangeCounters implements CommandListener {
+
+    private static final Set<String> WRITE_COMMANDS = Set.of("insert", "update", "delete", "findAndModify");
+
+    private static final String COUNTERS_COLLECTION = collectionOf(CollectionChangeCounter.class);
+
+    private final Logger log = LoggerFactory.getLogger(CollectionChangeCounters.class);
+
+    /**
+     * Provided lazily, as the MongoDB client is built with this listener.
+     */
+    private final ObjectProvider<MongoTemplate> mongoTemplate;
+
+    /**
+     * Tells the writes of this instance from the writes of the other instances in the counters read here.
+     */
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    /**
+     * The writes completed since this instance started, by collection name.
+     */
+    private final Map<String, AtomicLong> written = new ConcurrentHashMap<>();
+
+    /**
+     * The writes completed and not added to the stored counters yet, by collection name. They are subtracted only once
+     * added, so that a counter read meanwhile does not miss them.
+     */
+    private final Map<String, AtomicLong> unflushed = new ConcurrentHashMap<>();
+
+    /**
+     * The collection of each write command sent and not answered yet, by request id.
+     */
+    private final Map<Integer, String> pendingWrites = new ConcurrentHashMap<>();
+
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("collection-change-counters-"));
+
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+
+    public CollectionChangeCounters(ObjectProvider<MongoTemplate> mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Get the counter of the writes to the collection of a document class, the writes of this instance included.
+     *
+     * @param documentClass the document class.
+     * @return the counter, with a count and an epoch of 0 if the collection was never written, and with the writes of
+     * this instance not added to the count yet, if any.
+     */
+    public CollectionChangeCounter getCounter(Class<?> documentClass) {
+        String collectionName = collectionOf(documentClass);
+        // Read before the stored counter: when no write is left to add, the stored counter has them all
+        long writes = count(written, collectionName);
+        boolean unstored = count(unflushed, collectionName) > 0;
+        CollectionChangeCounter counter = mongoTemplate.getObject().findById(collectionName, CollectionChangeCounter.class);
+        if (counter == null) {
+            counter = new CollectionChangeCounter().id(collectionName);
+        }
+        return unstored ? counter.unstoredWrites(instanceId + "." + writes) : counter;
+    }
+
+    private static long count(Map<String, AtomicLong> counts, String collectionName) {
+        AtomicLong count = counts.get(collectionName);
+        return count == null ? 0 : count.get();
+    }
+
+    private static String collectionOf(Class<?> documentClass) {
+        Document document = AnnotationUtils.findAnnotation(documentClass, Document.class);
+        if (document == null || document.collection().isEmpty()) {
+            throw new IllegalArgumentException(documentClass + " does not name its collection");
+        }
+        return document.collection();
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (WRITE_COMMANDS.contains(event.getCommandName())) {
+            BsonValue collectionName = event.getCommand().get(event.getCommandName());
+            if (collectionName != null && collectionName.isString() && !COUNTERS_COLLECTION.equals(collectionName.asString().getValue())) {
+                pendingWrites.put(event.getRequestId(), collectionName.asString().getValue());
+            }
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        increment(pendingWrites.remove(event.getRequestId()));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        // part of an unordered or interrupted write may still have been applied
+        increment(pendingWrites.remove(event.getRequestId()));
+    }
+
+    private void increment(String collectionName) {
+        if (collectionName == null) {
+            return;
+        }
+        written.computeIfAbsent(collectionName, name -> new AtomicLong()).incrementAndGet();
+        unflushed.computeIfAbsent(collectionName, name -> new AtomicLong()).incrementAndGet();
+        if (flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flushAll);
+        }
+    }
+
+    /**
+     * Add the writes of this instance to the stored counters, before the MongoDB client is closed.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public synchronized void flushAll() {
+        flushQueued.set(false);
+        for (String collectionName : unflushed.keySet()) {
+            try {
+                flush(collectionName);
+            } catch (RuntimeException e) {
+                // Retried with the next write of any collection
+                log.warn("Cannot store the change counter of {}: {}", collectionName, e.getMessage());
+            }
+        }
+    }
+
+    private void flush(String collectionName) {
+        AtomicLong writes = unflushed.get(collectionName);
+        long delta = writes.get();
+        if (delta == 0) {
+            return;
+        }
+        mongoTemplate
+            .getObject()
+            .upsert(
+                Query.query(Criteria.where("id").is(collectionName)),
+                new Update().inc("count", delta).setOnInsert("epoch", System.currentTimeMillis()),
+                CollectionChangeCounter.class
+            );
+        writes.addAndGet(-delta);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+    }
+}
@@ -1,6 +1,7 @@
 package com.osttra.fx.blockstream.repository;
 
 import com.osttra.fx.blockstream.domain.Currencies;
+import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -10,4 +11,13 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface CurrenciesRepository extends MongoRepository<Currencies, String> {}
+public interface CurrenciesRepository extends MongoRepository<Currencies, String> {
+    /**
+     * Get a currencies with its version only, to check whether a client has it already without reading all of it.
+     *
+     * @param id the id of the currencies.
+     * @return the currencies with only its id and version set, if any.
+     */
+    @Query(value = "{'id': ?0}", fields = "{'version': 1}")
+    Optional<Currencies> findVersionById(String id);
+}
@@ -1,6 +1,8 @@
 package com.osttra.fx.blockstream.repository;
 
 import com.osttra.fx.blockstream.domain.Customer;
+import java.util.Optional;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -10,4 +12,9 @@ import org.springframework.stereotype.Repository;
  */
 @SuppressWarnings("unused")
 @Repository
-public interface CustomerRepository extends MongoRepository<Customer, String> {}
+public interface CustomerRepository extends MongoRepository<Customer, String> {
+    String CUSTOMERS_BY_LEGAL_ENTITY_CACHE = "customersByLegalEntity";
+
+    @Cacheable(cacheNames = CUSTOMERS_BY_LEGAL_ENTITY_CACHE, unless = "#result == null")
+    Optional<Customer> findOneByCustomerLegalEntity(String customerLegalEntity);
+}
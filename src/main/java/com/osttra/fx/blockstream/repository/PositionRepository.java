@@ -0,0 +1,14 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.Position;
+import java.util.List;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data MongoDB repository for the Position entity, shared by the instances.
+ */
+@Repository
+public interface PositionRepository extends MongoRepository<Position, String>, PositionRepositoryCustom {
+    List<Position> findAllByLegalEntity(String legalEntity);
+}
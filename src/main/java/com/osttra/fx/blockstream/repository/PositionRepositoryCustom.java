@@ -0,0 +1,30 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.Position;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Custom updates of the {@link PositionRepository}.
+ */
+public interface PositionRepositoryCustom {
+    /**
+     * Add changes to the stored positions with {@code $inc}, so that the instances can change the same positions
+     * concurrently. The positions not stored yet are created.
+     *
+     * @param deltas the changes, as positions with their id.
+     * @param updateDate the date of the changes.
+     */
+    void incrementAll(List<Position> deltas, Instant updateDate);
+
+    /**
+     * Replace all the stored positions.
+     * <p>
+     * The positions are upserted with unordered bulk writes, then the positions not updated since are removed, so that
+     * an interrupted replacement leaves the previous values rather than none.
+     *
+     * @param positions the positions, with their id.
+     * @param updateDate the date of the replacement.
+     */
+    void replaceAll(List<Position> positions, Instant updateDate);
+}
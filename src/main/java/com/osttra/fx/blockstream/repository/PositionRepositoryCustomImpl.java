@@ -0,0 +1,64 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.Position;
+import java.time.Instant;
+import java.util.List;
+import org.bson.types.Decimal128;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Implementation of {@link PositionRepositoryCustom} on top of the {@link MongoTemplate}.
+ */
+public class PositionRepositoryCustomImpl implements PositionRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    public PositionRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void incrementAll(List<Position> deltas, Instant updateDate) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Position.class);
+        for (Position delta : deltas) {
+            bulkOperations.upsert(
+                Query.query(Criteria.where("id").is(delta.getId())),
+                new Update()
+                    .inc("baseAmount", new Decimal128(delta.getBaseAmount().toBigDecimal()))
+                    .inc("quoteAmount", new Decimal128(delta.getQuoteAmount().toBigDecimal()))
+                    .inc("tradeCount", delta.getTradeCount())
+                    .set("updateDate", updateDate)
+                    .setOnInsert("legalEntity", delta.getLegalEntity())
+                    .setOnInsert("baseCurrency", delta.getBaseCurrency())
+                    .setOnInsert("quoteCurrency", delta.getQuoteCurrency())
+                    .setOnInsert("valueDate", delta.getValueDate())
+            );
+        }
+        bulkOperations.execute();
+    }
+
+    @Override
+    public void replaceAll(List<Position> positions, Instant updateDate) {
+        if (!positions.isEmpty()) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Position.class);
+            for (Position position : positions) {
+                position.setUpdateDate(updateDate);
+                bulkOperations.replaceOne(
+                    Query.query(Criteria.where("id").is(position.getId())),
+                    position,
+                    FindAndReplaceOptions.options().upsert()
+                );
+            }
+            bulkOperations.execute();
+        }
+        mongoTemplate.remove(Query.query(Criteria.where("updateDate").lt(updateDate)), Position.class);
+    }
+}
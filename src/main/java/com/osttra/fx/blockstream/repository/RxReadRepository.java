@@ -0,0 +1,59 @@
+package com.osttra.fx.blockstream.repository;
+
+import static com.osttra.fx.blockstream.repository.SmartTradeRepositoryCustomImpl.KEYSET_SORT;
+import static com.osttra.fx.blockstream.repository.SmartTradeRepositoryCustomImpl.partyCriteria;
+
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import com.osttra.fx.blockstream.domain.Wallet;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+/**
+ * Non-blocking reads of the {@link SmartTrade}s and {@link Wallet}s, on top of the {@link ReactiveMongoTemplate}.
+ * <p>
+ * The documents are fetched as the subscriber requests them, so a slow consumer holds no more than a batch of
+ * documents, and no thread while waiting for MongoDB.
+ */
+@Repository
+public class RxReadRepository {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public RxReadRepository(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    /**
+     * Find the trades of a party, ordered by trade date (newest first) then id, followed by its archived trades.
+     *
+     * @param party the legal entity of the party.
+     * @return the trades.
+     */
+    public Flux<SmartTrade> findAllSmartTradesByParty(String party) {
+        Flux<SmartTrade> trades = reactiveMongoTemplate.find(Query.query(partyCriteria(party)).with(KEYSET_SORT), SmartTrade.class);
+        // Blocks are large, so they are fetched a few at a time, and the archive is only queried once the trades are consumed
+        Flux<SmartTrade> archivedTrades = reactiveMongoTemplate
+            .find(Query.query(Criteria.where("parties").is(party)).cursorBatchSize(10), SmartTradeArchive.class)
+            .concatMapIterable(block -> SmartTradeArchiveRepositoryCustomImpl.decompress(reactiveMongoTemplate.getConverter(), block), 1)
+            .filter(smartTrade -> SmartTradeArchiveRepositoryCustomImpl.isParty(smartTrade, party));
+        return trades.concatWith(archivedTrades);
+    }
+
+    /**
+     * Find the wallets of a customer, ordered by id.
+     *
+     * @param customerId the id of the customer.
+     * @return the wallets.
+     */
+    public Flux<Wallet> findAllWalletsByCustomer(String customerId) {
+        return reactiveMongoTemplate.find(
+            Query.query(Criteria.where("customer.id").is(customerId)).with(Sort.by(Sort.Direction.ASC, "id")),
+            Wallet.class
+        );
+    }
+}
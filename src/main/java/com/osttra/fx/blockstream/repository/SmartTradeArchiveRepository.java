@@ -0,0 +1,11 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data MongoDB repository for the SmartTradeArchive entity.
+ */
+@Repository
+public interface SmartTradeArchiveRepository extends MongoRepository<SmartTradeArchive, String>, SmartTradeArchiveRepositoryCustom {}
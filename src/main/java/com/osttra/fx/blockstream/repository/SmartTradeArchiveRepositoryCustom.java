@@ -0,0 +1,57 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Custom queries of the {@link SmartTradeArchiveRepository}, which compress and decompress the archived trades.
+ */
+public interface SmartTradeArchiveRepositoryCustom {
+    /**
+     * Store trades as a new archive block. The trades are not removed from the {@code smart_trade} collection.
+     *
+     * @param smartTrades the trades, with a trade date.
+     * @return the archive block.
+     */
+    SmartTradeArchive insertBlock(List<SmartTrade> smartTrades);
+
+    /**
+     * Stream the archive blocks of a party overlapping a range of dates, without their trades, ordered by last trade
+     * date (newest first), from the {@code parties/to_date} index. The stream must be closed to release the cursor.
+     *
+     * @param party the legal entity of the customer.
+     * @param from the first trade date, {@code null} for no lower bound.
+     * @param to the last trade date, {@code null} for no upper bound.
+     * @return the stream of blocks.
+     */
+    Stream<SmartTradeArchive> streamBlocksByParty(String party, LocalDate from, LocalDate to);
+
+    /**
+     * Get the archived trades of a party in a block.
+     *
+     * @param party the legal entity of the customer.
+     * @param blockId the id of the block.
+     * @return the trades, in the order of the block.
+     */
+    List<SmartTrade> findAllByPartyInBlock(String party, String blockId);
+
+    /**
+     * Stream the archived trades of a party from a MongoDB cursor, one block at a time, ordered by block.
+     * The stream must be closed to release the cursor.
+     *
+     * @param party the legal entity of the customer.
+     * @return the stream of trades.
+     */
+    Stream<SmartTrade> streamAllByParty(String party);
+
+    /**
+     * Stream all the archived trades from a MongoDB cursor, one block at a time.
+     * The stream must be closed to release the cursor.
+     *
+     * @return the stream of trades.
+     */
+    Stream<SmartTrade> streamAll();
+}
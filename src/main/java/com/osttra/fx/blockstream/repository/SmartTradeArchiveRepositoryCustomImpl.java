@@ -0,0 +1,161 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.mongodb.MongoClientSettings;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
+
+/**
+ * Implementation of {@link SmartTradeArchiveRepositoryCustom} on top of the {@link MongoTemplate}.
+ * <p>
+ * The trades of a block are mapped as they would be stored in the {@code smart_trade} collection, gathered in a BSON
+ * document and deflated.
+ */
+public class SmartTradeArchiveRepositoryCustomImpl implements SmartTradeArchiveRepositoryCustom {
+
+    /**
+     * The order of the keyset pagination of the trades: trade date (newest first, missing last) then id.
+     */
+    static final Comparator<SmartTrade> KEYSET_ORDER = Comparator
+        .comparing(SmartTrade::getTradeDate, Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder()))
+        .thenComparing(SmartTrade::getId)
+        .reversed();
+
+    private static final String TRADES = "trades";
+
+    private static final Codec<Document> DOCUMENT_CODEC = MongoClientSettings.getDefaultCodecRegistry().get(Document.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public SmartTradeArchiveRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public SmartTradeArchive insertBlock(List<SmartTrade> smartTrades) {
+        SmartTradeArchive block = new SmartTradeArchive().id(new ObjectId().toHexString()).tradeCount(smartTrades.size());
+        List<Document> documents = new ArrayList<>(smartTrades.size());
+        for (SmartTrade smartTrade : smartTrades) {
+            block.getParties().add(smartTrade.getTradingParty());
+            block.getParties().add(smartTrade.getCounterParty());
+            if (block.getFromDate() == null || smartTrade.getTradeDate().isBefore(block.getFromDate())) {
+                block.setFromDate(smartTrade.getTradeDate());
+            }
+            if (block.getToDate() == null || smartTrade.getTradeDate().isAfter(block.getToDate())) {
+                block.setToDate(smartTrade.getTradeDate());
+            }
+            Document document = new Document();
+            mongoTemplate.getConverter().write(smartTrade, document);
+            documents.add(document);
+        }
+        block.getParties().remove(null);
+        block.setTrades(compress(new Document(TRADES, documents)));
+        return mongoTemplate.insert(block);
+    }
+
+    @Override
+    public Stream<SmartTradeArchive> streamBlocksByParty(String party, LocalDate from, LocalDate to) {
+        Criteria criteria = Criteria.where("parties").is(party);
+        if (from != null) {
+            criteria = criteria.and("toDate").gte(from);
+        }
+        if (to != null) {
+            criteria = criteria.and("fromDate").lte(to);
+        }
+        Query query = Query.query(criteria).with(Sort.by(Sort.Direction.DESC, "toDate")).cursorBatchSize(100);
+        query.fields().exclude("trades");
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, SmartTradeArchive.class));
+    }
+
+    @Override
+    public List<SmartTrade> findAllByPartyInBlock(String party, String blockId) {
+        SmartTradeArchive block = mongoTemplate.findById(blockId, SmartTradeArchive.class);
+        if (block == null) {
+            return Collections.emptyList();
+        }
+        return decompress(mongoTemplate.getConverter(), block)
+            .stream()
+            .filter(smartTrade -> isParty(smartTrade, party))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<SmartTrade> streamAllByParty(String party) {
+        return stream(Query.query(Criteria.where("parties").is(party))).filter(smartTrade -> isParty(smartTrade, party));
+    }
+
+    @Override
+    public Stream<SmartTrade> streamAll() {
+        return stream(new Query());
+    }
+
+    private Stream<SmartTrade> stream(Query query) {
+        // Blocks are large, so they are fetched a few at a time
+        query.cursorBatchSize(10);
+        return StreamUtils
+            .createStreamFromIterator(mongoTemplate.stream(query, SmartTradeArchive.class))
+            .flatMap(block -> decompress(mongoTemplate.getConverter(), block).stream());
+    }
+
+    static boolean isParty(SmartTrade smartTrade, String party) {
+        return party.equals(smartTrade.getTradingParty()) || party.equals(smartTrade.getCounterParty());
+    }
+
+    private static byte[] compress(Document document) {
+        ByteBuffer buffer = new RawBsonDocument(document, DOCUMENT_CODEC).getByteBuffer().asNIO();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream output = new DeflaterOutputStream(compressed, deflater)) {
+            output.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+
+    static List<SmartTrade> decompress(MongoConverter converter, SmartTradeArchive block) {
+        byte[] bytes;
+        try (InputStream input = new InflaterInputStream(new ByteArrayInputStream(block.getTrades()))) {
+            bytes = input.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted archive block " + block.getId(), e);
+        }
+        List<Document> documents = new RawBsonDocument(bytes).decode(DOCUMENT_CODEC).getList(TRADES, Document.class);
+        return documents
+            .stream()
+            .map(document -> converter.read(SmartTrade.class, document))
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+}
@@ -1,6 +1,7 @@
 package com.osttra.fx.blockstream.repository;
 
 import com.osttra.fx.blockstream.domain.SmartTrade;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.domain.Page;
@@ -13,7 +14,7 @@ import org.springframework.stereotype.Repository;
  * Spring Data MongoDB repository for the SmartTrade entity.
  */
 @Repository
-public interface SmartTradeRepository extends MongoRepository<SmartTrade, String> {
+public interface SmartTradeRepository extends MongoRepository<SmartTrade, String>, SmartTradeRepositoryCustom {
     @Query("{}")
     Page<SmartTrade> findAllWithEagerRelationships(Pageable pageable);
 
@@ -22,4 +23,36 @@ public interface SmartTradeRepository extends MongoRepository<SmartTrade, String
 
     @Query("{'id': ?0}")
     Optional<SmartTrade> findOneWithEagerRelationships(String id);
+
+    /**
+     * Get a trade with its version only, to check whether a client has it already without reading all of it.
+     *
+     * @param id the id of the trade.
+     * @return the trade with only its id and version set, if any.
+     */
+    @Query(value = "{'id': ?0}", fields = "{'version': 1}")
+    Optional<SmartTrade> findVersionById(String id);
+
+    /**
+     * Get a page of the trades where the given legal entity is either the trading party or the counter party.
+     * Backed by the {@code trading_party/trade_date} and {@code counter_party/trade_date} compound indexes.
+     *
+     * @param party the legal entity of the customer.
+     * @param pageable the pagination information.
+     * @return the page of trades.
+     */
+    @Query("{'$or': [{'trading_party': ?0}, {'counter_party': ?0}]}")
+    Page<SmartTrade> findAllByParty(String party, Pageable pageable);
+
+    List<SmartTrade> findAllByStatusIn(Collection<String> statuses, Pageable pageable);
+
+    /**
+     * Get the trade captured with a transaction id, backed by the unique {@code transaction_id} index.
+     *
+     * @param transactionId the transaction id.
+     * @return the trade, if any.
+     */
+    Optional<SmartTrade> findOneByTransactionId(String transactionId);
+
+    long countByTransactionIdNotNull();
 }
@@ -0,0 +1,158 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Custom queries of the {@link SmartTradeRepository} which cannot be expressed as derived or annotated queries.
+ */
+public interface SmartTradeRepositoryCustom {
+    /**
+     * Name of the field set on the trades about to be removed for being archived, so that the readers of the changes of
+     * the trades tell their removal from a deletion.
+     */
+    String ARCHIVED_FIELD = "archived";
+
+    /**
+     * Name of the field the parties of a trade are set in before it is deleted, so that the readers of the changes of
+     * the trades know whom its deletion concerns.
+     */
+    String DELETED_PARTIES_FIELD = "deleted_parties";
+
+    /**
+     * Get the trades of a party following a given position, ordered by trade date (newest first) then id.
+     * The position is sought with a range predicate on the party indexes instead of skipping documents.
+     *
+     * @param party the legal entity of the customer.
+     * @param tradeDate the trade date of the last trade of the previous slice.
+     * @param id the id of the last trade of the previous slice, {@code null} for the first slice.
+     * @param size the size of the slice.
+     * @return the slice of trades.
+     */
+    Slice<SmartTrade> findAllByPartyAfter(String party, LocalDate tradeDate, String id, int size);
+
+    /**
+     * Get the trades of a party traded in a range of dates following a given position, ordered by trade date (newest
+     * first) then id, the archived ones included, see {@link SmartTradeArchiveRepository}.
+     * <p>
+     * The archive blocks are only read when the trades of the {@code smart_trade} collection do not fill the slice up
+     * to their last trade date, newest first, and at most {@code maxBlocks} of them are decompressed: the slice is then
+     * cut before the trades of the blocks left, and has a next slice. More blocks are only read while none of the trades
+     * read is newer than the last trade date of the next block, as the slice would be empty otherwise.
+     *
+     * @param party the legal entity of the customer.
+     * @param from the first trade date, {@code null} for no lower bound.
+     * @param to the last trade date, {@code null} for no upper bound.
+     * @param tradeDate the trade date of the last trade of the previous slice.
+     * @param id the id of the last trade of the previous slice, {@code null} for the first slice.
+     * @param size the maximum size of the slice.
+     * @param maxBlocks the number of archive blocks decompressed for the slice.
+     * @return the slice of trades.
+     */
+    Slice<SmartTrade> findAllByPartyAndTradeDateBetweenAfter(
+        String party,
+        LocalDate from,
+        LocalDate to,
+        LocalDate tradeDate,
+        String id,
+        int size,
+        int maxBlocks
+    );
+
+    /**
+     * Stream the trades of a party from a MongoDB cursor, ordered by trade date (newest first) then id, followed by its
+     * archived trades. Only one batch of documents is held in memory at a time; the stream must be closed to release
+     * the cursors.
+     *
+     * @param party the legal entity of the customer.
+     * @param fetchSize the number of documents fetched per cursor batch.
+     * @return the stream of trades.
+     */
+    Stream<SmartTrade> streamAllByParty(String party, int fetchSize);
+
+    /**
+     * Insert trades with a single unordered bulk write: a failing trade does not prevent the others from being inserted.
+     *
+     * Ids are assigned to the trades before the write, so that they are known even if the write fails.
+     *
+     * @param smartTrades the trades to insert.
+     * @return the write errors of the trades which could not be inserted, by index in {@code smartTrades}.
+     */
+    Map<Integer, BulkWriteError> insertAllUnordered(List<SmartTrade> smartTrades);
+
+    /**
+     * Move a trade to another lifecycle status, only if it is still in the expected one.
+     *
+     * @param id the id of the trade.
+     * @param expectedStatus the status the trade must be in.
+     * @param status the new status.
+     * @param fields other fields to set along with the status, by property name.
+     * @return whether the trade was updated.
+     */
+    boolean updateStatus(String id, String expectedStatus, String status, Map<String, Object> fields);
+
+    /**
+     * Write the match status of trades with a single unordered bulk write.
+     *
+     * @param matches the trades, with their id, match status and matched trade id.
+     */
+    void updateMatches(List<SmartTrade> matches);
+
+    /**
+     * Stream the booked or settled trades which are not matched yet from a MongoDB cursor, with only the fields used
+     * for matching. The stream must be closed to release the cursor.
+     *
+     * @param fetchSize the number of documents fetched per cursor batch.
+     * @return the stream of trades.
+     */
+    Stream<SmartTrade> streamAllUnmatched(int fetchSize);
+
+    /**
+     * Stream the settled or failed trades traded before a date from a MongoDB cursor, ordered by trading party then
+     * trade date (newest first), to be archived. The stream must be closed to release the cursor.
+     *
+     * @param tradeDate the date before which the trades were traded.
+     * @param fetchSize the number of documents fetched per cursor batch.
+     * @return the stream of trades.
+     */
+    Stream<SmartTrade> streamAllArchivable(LocalDate tradeDate, int fetchSize);
+
+    /**
+     * Mark trades as archived, before they are removed, see {@link #ARCHIVED_FIELD}.
+     *
+     * @param ids the ids of the trades.
+     */
+    void markArchived(List<String> ids);
+
+    /**
+     * Record the parties of a trade on it before it is deleted, see {@link #DELETED_PARTIES_FIELD}, only if it is still
+     * in the version read. The version of the trade is incremented.
+     *
+     * @param smartTrade the trade.
+     * @return whether the trade was marked, {@code false} if it was changed meanwhile.
+     */
+    boolean markDeleted(SmartTrade smartTrade);
+
+    /**
+     * Replace the reference to a customer embedded in its trades, once the customer is updated. The version of the
+     * trades is incremented.
+     *
+     * @param customer the reference to the updated customer.
+     */
+    void updateCustomer(CustomerRef customer);
+
+    /**
+     * Stream the transaction ids of all the trades from a MongoDB cursor, read from the {@code transaction_id} index.
+     * The stream must be closed to release the cursor.
+     *
+     * @param fetchSize the number of documents fetched per cursor batch.
+     * @return the stream of transaction ids.
+     */
+    Stream<String> streamAllTransactionIds(int fetchSize);
+}
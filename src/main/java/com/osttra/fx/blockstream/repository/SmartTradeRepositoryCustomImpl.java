@@ -0,0 +1,305 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import com.osttra.fx.blockstream.domain.enumeration.MatchStatus;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.StreamUtils;
+
+/**
+ * Implementation of {@link SmartTradeRepositoryCustom} on top of the {@link MongoTemplate}.
+ */
+public class SmartTradeRepositoryCustomImpl implements SmartTradeRepositoryCustom {
+
+    static final Sort KEYSET_SORT = Sort.by(Sort.Direction.DESC, "tradeDate").and(Sort.by(Sort.Direction.DESC, "id"));
+
+    private final MongoTemplate mongoTemplate;
+
+    private final SmartTradeArchiveRepositoryCustom archive;
+
+    public SmartTradeRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        this.archive = new SmartTradeArchiveRepositoryCustomImpl(mongoTemplate);
+    }
+
+    @Override
+    public Slice<SmartTrade> findAllByPartyAfter(String party, LocalDate tradeDate, String id, int size) {
+        Criteria criteria = partyCriteria(party);
+        if (id != null) {
+            criteria = new Criteria().andOperator(criteria, afterCriteria(tradeDate, id));
+        }
+        // Fetch one more trade than requested to know if there is a next slice without counting
+        Query query = Query.query(criteria).with(KEYSET_SORT).limit(size + 1);
+        List<SmartTrade> trades = mongoTemplate.find(query, SmartTrade.class);
+        boolean hasNext = trades.size() > size;
+        return new SliceImpl<>(hasNext ? trades.subList(0, size) : trades, PageRequest.of(0, size, KEYSET_SORT), hasNext);
+    }
+
+    @Override
+    public Slice<SmartTrade> findAllByPartyAndTradeDateBetweenAfter(
+        String party,
+        LocalDate from,
+        LocalDate to,
+        LocalDate tradeDate,
+        String id,
+        int size,
+        int maxBlocks
+    ) {
+        List<Criteria> criteria = new ArrayList<>(List.of(partyCriteria(party)));
+        if (from != null || to != null) {
+            Criteria dateCriteria = Criteria.where("tradeDate");
+            if (from != null) {
+                dateCriteria = dateCriteria.gte(from);
+            }
+            if (to != null) {
+                dateCriteria = dateCriteria.lte(to);
+            }
+            criteria.add(dateCriteria);
+        }
+        if (id != null) {
+            criteria.add(afterCriteria(tradeDate, id));
+        }
+        Query query = Query.query(new Criteria().andOperator(criteria.toArray(new Criteria[0]))).with(KEYSET_SORT).limit(size + 1);
+        List<SmartTrade> candidates = new ArrayList<>(mongoTemplate.find(query, SmartTrade.class));
+        Set<String> ids = candidates.stream().map(SmartTrade::getId).collect(Collectors.toCollection(HashSet::new));
+
+        // The trades of the blocks left are not newer than their last trade date, which the slice is cut at
+        LocalDate unreadDate = null;
+        // Archived trades have a trade date, so they all come before a position without one
+        if (id == null || tradeDate != null) {
+            SmartTrade position = id == null ? null : new SmartTrade().tradeDate(tradeDate).id(id);
+            LocalDate upTo = to == null || (tradeDate != null && tradeDate.isBefore(to)) ? tradeDate : to;
+            int blocksRead = 0;
+            try (Stream<SmartTradeArchive> blocks = archive.streamBlocksByParty(party, from, upTo)) {
+                for (Iterator<SmartTradeArchive> iterator = blocks.iterator(); iterator.hasNext();) {
+                    SmartTradeArchive block = iterator.next();
+                    long newer = countNewerThan(candidates, block.getToDate());
+                    if (newer > size || (blocksRead >= maxBlocks && newer > 0)) {
+                        unreadDate = block.getToDate();
+                        break;
+                    }
+                    for (SmartTrade smartTrade : archive.findAllByPartyInBlock(party, block.getId())) {
+                        if (
+                            (from == null || !smartTrade.getTradeDate().isBefore(from)) &&
+                            (to == null || !smartTrade.getTradeDate().isAfter(to)) &&
+                            (position == null || SmartTradeArchiveRepositoryCustomImpl.KEYSET_ORDER.compare(smartTrade, position) > 0) &&
+                            // A trade is in both when its archiving was interrupted before it was removed
+                            ids.add(smartTrade.getId())
+                        ) {
+                            candidates.add(smartTrade);
+                        }
+                    }
+                    blocksRead++;
+                }
+            }
+        }
+        candidates.sort(SmartTradeArchiveRepositoryCustomImpl.KEYSET_ORDER);
+        int ready = unreadDate == null ? candidates.size() : (int) countNewerThan(candidates, unreadDate);
+        int sliceSize = Math.min(size, ready);
+        boolean hasNext = candidates.size() > sliceSize || unreadDate != null;
+        return new SliceImpl<>(new ArrayList<>(candidates.subList(0, sliceSize)), PageRequest.of(0, size, KEYSET_SORT), hasNext);
+    }
+
+    private static long countNewerThan(List<SmartTrade> smartTrades, LocalDate tradeDate) {
+        return smartTrades
+            .stream()
+            .filter(smartTrade -> smartTrade.getTradeDate() != null && smartTrade.getTradeDate().isAfter(tradeDate))
+            .count();
+    }
+
+    @Override
+    public Stream<SmartTrade> streamAllByParty(String party, int fetchSize) {
+        Query query = Query.query(partyCriteria(party)).with(KEYSET_SORT).cursorBatchSize(fetchSize);
+        Stream<SmartTrade> trades = StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, SmartTrade.class));
+        // The archive is only queried once the trades are consumed
+        return Stream.concat(trades, Stream.of(party).flatMap(archive::streamAllByParty));
+    }
+
+    @Override
+    public Map<Integer, BulkWriteError> insertAllUnordered(List<SmartTrade> smartTrades) {
+        for (SmartTrade smartTrade : smartTrades) {
+            if (smartTrade.getId() == null) {
+                smartTrade.setId(new ObjectId().toHexString());
+            }
+            // Bulk inserts don't initialize the version as saves do
+            if (smartTrade.getVersion() == null) {
+                smartTrade.setVersion(0L);
+            }
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SmartTrade.class).insert(smartTrades).execute();
+            return Collections.emptyMap();
+        } catch (BulkOperationException e) {
+            return e.getErrors().stream().collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+        }
+    }
+
+    @Override
+    public boolean updateStatus(String id, String expectedStatus, String status, Map<String, Object> fields) {
+        Query query = Query.query(Criteria.where("id").is(id).and("status").is(expectedStatus));
+        Update update = Update.update("status", status).inc("version", 1);
+        fields.forEach(update::set);
+        return mongoTemplate.updateFirst(query, update, SmartTrade.class).getModifiedCount() > 0;
+    }
+
+    @Override
+    public void updateMatches(List<SmartTrade> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, SmartTrade.class);
+        for (SmartTrade match : matches) {
+            bulkOperations.updateOne(
+                Query.query(Criteria.where("id").is(match.getId())),
+                Update
+                    .update("matchStatus", match.getMatchStatus())
+                    .set("matchedTradeId", match.getMatchedTradeId())
+                    .inc("version", 1)
+            );
+        }
+        bulkOperations.execute();
+    }
+
+    @Override
+    public Stream<SmartTrade> streamAllUnmatched(int fetchSize) {
+        Query query = Query
+            .query(
+                Criteria
+                    .where("status")
+                    .in(TradeStatus.BOOKED.name(), TradeStatus.SETTLED.name())
+                    .and("matchStatus")
+                    .ne(MatchStatus.MATCHED.name())
+            )
+            .with(Sort.by("id"))
+            .cursorBatchSize(fetchSize);
+        query
+            .fields()
+            .include(
+                "tradingParty",
+                "counterParty",
+                "currencyBuy",
+                "currencySell",
+                "amount",
+                "contraAmount",
+                "valueDate",
+                "status",
+                "matchStatus"
+            );
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, SmartTrade.class));
+    }
+
+    @Override
+    public Stream<SmartTrade> streamAllArchivable(LocalDate tradeDate, int fetchSize) {
+        Query query = Query
+            .query(
+                Criteria
+                    .where("tradeDate")
+                    .lt(tradeDate)
+                    .and("status")
+                    .in(TradeStatus.SETTLED.name(), TradeStatus.FAILED.name())
+            )
+            .with(Sort.by(Sort.Direction.ASC, "tradingParty").and(KEYSET_SORT))
+            .cursorBatchSize(fetchSize);
+        return StreamUtils.createStreamFromIterator(mongoTemplate.stream(query, SmartTrade.class));
+    }
+
+    @Override
+    public void markArchived(List<String> ids) {
+        mongoTemplate.updateMulti(
+            Query.query(Criteria.where("id").in(ids)),
+            Update.update(ARCHIVED_FIELD, true).inc("version", 1),
+            SmartTrade.class
+        );
+    }
+
+    @Override
+    public boolean markDeleted(SmartTrade smartTrade) {
+        List<String> parties = Stream
+            .of(smartTrade.getTradingParty(), smartTrade.getCounterParty())
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+        Query query = Query.query(Criteria.where("id").is(smartTrade.getId()).and("version").is(smartTrade.getVersion()));
+        Update update = Update.update(DELETED_PARTIES_FIELD, parties).inc("version", 1);
+        if (mongoTemplate.updateFirst(query, update, SmartTrade.class).getModifiedCount() == 0) {
+            return false;
+        }
+        if (smartTrade.getVersion() != null) {
+            smartTrade.setVersion(smartTrade.getVersion() + 1);
+        }
+        return true;
+    }
+
+    @Override
+    public void updateCustomer(CustomerRef customer) {
+        mongoTemplate.updateMulti(
+            Query.query(Criteria.where("customer.id").is(customer.getId())),
+            Update.update("customer", customer).inc("version", 1),
+            SmartTrade.class
+        );
+    }
+
+    @Override
+    public Stream<String> streamAllTransactionIds(int fetchSize) {
+        // The sparse index has all the documents with the field and only the indexed field is projected, so the query
+        // is covered by the index, which the hint makes the planner use whatever it estimates
+        Query query = Query
+            .query(Criteria.where("transactionId").exists(true))
+            .withHint(new Document("transaction_id", 1))
+            .cursorBatchSize(fetchSize);
+        query.fields().include("transactionId").exclude("id");
+        return StreamUtils
+            .createStreamFromIterator(mongoTemplate.stream(query, SmartTrade.class))
+            .map(SmartTrade::getTransactionId)
+            .filter(Objects::nonNull);
+    }
+
+    static Criteria partyCriteria(String party) {
+        return new Criteria().orOperator(Criteria.where("tradingParty").is(party), Criteria.where("counterParty").is(party));
+    }
+
+    private static Criteria afterCriteria(LocalDate tradeDate, String id) {
+        if (tradeDate == null) {
+            // Trades without trade date come last in descending order
+            return new Criteria().andOperator(Criteria.where("tradeDate").is(null), Criteria.where("id").lt(storedId(id)));
+        }
+        return new Criteria()
+            .orOperator(
+                Criteria.where("tradeDate").lt(tradeDate),
+                new Criteria().andOperator(Criteria.where("tradeDate").is(tradeDate), Criteria.where("id").lt(storedId(id))),
+                Criteria.where("tradeDate").is(null)
+            );
+    }
+
+    /**
+     * String ids are stored as {@link ObjectId} when they are valid ones, which range operators don't convert.
+     */
+    private static Object storedId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+}
@@ -4,6 +4,8 @@ import com.osttra.fx.blockstream.domain.User;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.*;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
@@ -13,11 +15,30 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface UserRepository extends MongoRepository<User, String> {
+    String USERS_BY_LOGIN_CACHE = "usersByLogin";
+
+    String USERS_BY_EMAIL_CACHE = "usersByEmail";
+
     Optional<User> findOneByActivationKey(String activationKey);
     List<User> findAllByActivatedIsFalseAndActivationKeyIsNotNullAndCreatedDateBefore(Instant dateTime);
     Optional<User> findOneByResetKey(String resetKey);
+
+    // Emails are stored in lower case, so lookups differing by case share an entry
+    @Cacheable(cacheNames = USERS_BY_EMAIL_CACHE, key = "#p0.toLowerCase()", condition = "#p0 != null", unless = "#result == null")
     Optional<User> findOneByEmailIgnoreCase(String email);
+
+    @Cacheable(cacheNames = USERS_BY_LOGIN_CACHE, unless = "#result == null")
     Optional<User> findOneByLogin(String login);
 
+    // Authentication reads the users uncached, so that a changed password or a deactivation applies at once, whatever
+    // the instance it was made on
+    Optional<User> findOneForAuthenticationByEmailIgnoreCase(String email);
+
+    Optional<User> findOneForAuthenticationByLogin(String login);
+
     Page<User> findAllByIdNotNullAndActivatedIsTrue(Pageable pageable);
+
+    @Override
+    @CacheEvict(cacheNames = { USERS_BY_LOGIN_CACHE, USERS_BY_EMAIL_CACHE }, allEntries = true)
+    void deleteAll();
 }
@@ -0,0 +1,11 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.WalletBalance;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Spring Data MongoDB repository for the WalletBalance entity.
+ */
+@Repository
+public interface WalletBalanceRepository extends MongoRepository<WalletBalance, String>, WalletBalanceRepositoryCustom {}
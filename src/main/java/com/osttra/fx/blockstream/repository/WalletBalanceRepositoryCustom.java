@@ -0,0 +1,39 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.Wallet;
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Custom updates of the {@link WalletBalanceRepository}, which keep the amounts as {@code Decimal128} so that they can be
+ * incremented in place.
+ */
+public interface WalletBalanceRepositoryCustom {
+    /**
+     * Record that a change of the wallets of a customer starts, before the wallets are written.
+     *
+     * @param customerId the id of the customer.
+     */
+    void startChange(String customerId);
+
+    /**
+     * Atomically apply a change started with {@link #startChange(String)}, adding an amount to the balance of a customer in
+     * a currency and creating the balance if needed.
+     *
+     * @param customerId the id of the customer.
+     * @param currencyCode the currency of the amount, {@code null} if the change did not write any wallet.
+     * @param amount the amount to add, negative to subtract it, {@code null} if the change did not write any wallet.
+     * @throws IllegalArgumentException if the currency code cannot be the name of a balance field.
+     */
+    void applyChange(String customerId, String currencyCode, BigDecimal amount);
+
+    /**
+     * Replace all the balances of a customer, unless they changed since their revision was read.
+     *
+     * @param customerId the id of the customer.
+     * @param revision the revision read before the balances were computed, {@code null} if there was no balance yet.
+     * @param balances the balances, as wallets holding a currency code and an amount.
+     * @return {@code true} if the balances were replaced, {@code false} if they changed meanwhile.
+     */
+    boolean replaceBalances(String customerId, Long revision, List<Wallet> balances);
+}
@@ -0,0 +1,76 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.mongodb.client.result.UpdateResult;
+import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.domain.WalletBalance;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Implementation of {@link WalletBalanceRepositoryCustom} on top of the {@link MongoTemplate}.
+ */
+public class WalletBalanceRepositoryCustomImpl implements WalletBalanceRepositoryCustom {
+
+    private static final String BALANCES = "balances";
+
+    private static final String REVISION = "revision";
+
+    private static final String PENDING = "pending";
+
+    private static final String CHANGED_DATE = "changedDate";
+
+    private final MongoTemplate mongoTemplate;
+
+    public WalletBalanceRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void startChange(String customerId) {
+        Update update = new Update().inc(REVISION, 1).inc(PENDING, 1).set(CHANGED_DATE, Instant.now());
+        mongoTemplate.upsert(Query.query(Criteria.where("id").is(customerId)), update, WalletBalance.class);
+    }
+
+    @Override
+    public void applyChange(String customerId, String currencyCode, BigDecimal amount) {
+        Update update = new Update().inc(REVISION, 1).inc(PENDING, -1).set(CHANGED_DATE, Instant.now());
+        if (currencyCode != null && amount != null) {
+            update.inc(balanceField(currencyCode), new Decimal128(amount));
+        }
+        mongoTemplate.upsert(Query.query(Criteria.where("id").is(customerId)), update, WalletBalance.class);
+    }
+
+    @Override
+    public boolean replaceBalances(String customerId, Long revision, List<Wallet> balances) {
+        Document amounts = new Document();
+        balances
+            .stream()
+            .filter(balance -> WalletBalance.isValidCurrencyCode(balance.getCurrencyCode()))
+            .forEach(balance -> amounts.put(balance.getCurrencyCode(), new Decimal128(balance.getAmount())));
+        // A missing revision matches a balance written before revisions were kept, or the balance upserted here
+        Query query = Query.query(Criteria.where("id").is(customerId).and(REVISION).is(revision));
+        Update update = Update.update(BALANCES, amounts).set(PENDING, 0L).set(CHANGED_DATE, Instant.now()).inc(REVISION, 1);
+        try {
+            UpdateResult result = mongoTemplate.upsert(query, update, WalletBalance.class);
+            return result.getMatchedCount() > 0 || result.getUpsertedId() != null;
+        } catch (DuplicateKeyException e) {
+            // The balance was created or changed meanwhile, so the upsert tried to insert it again
+            return false;
+        }
+    }
+
+    private static String balanceField(String currencyCode) {
+        if (!WalletBalance.isValidCurrencyCode(currencyCode)) {
+            throw new IllegalArgumentException("Invalid currency code: " + currencyCode);
+        }
+        return BALANCES + "." + currencyCode;
+    }
+}
@@ -13,7 +13,7 @@ import org.springframework.stereotype.Repository;
  * Spring Data MongoDB repository for the Wallet entity.
  */
 @Repository
-public interface WalletRepository extends MongoRepository<Wallet, String> {
+public interface WalletRepository extends MongoRepository<Wallet, String>, WalletRepositoryCustom {
     @Query("{}")
     Page<Wallet> findAllWithEagerRelationships(Pageable pageable);
 
@@ -0,0 +1,37 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.Wallet;
+import java.util.List;
+import org.springframework.data.domain.Slice;
+
+/**
+ * Custom queries of the {@link WalletRepository} which cannot be expressed as derived or annotated queries.
+ */
+public interface WalletRepositoryCustom {
+    /**
+     * Get the wallets of a customer following a given wallet, ordered by id.
+     *
+     * @param customerId the id of the owner of the wallets.
+     * @param id the id of the last wallet of the previous slice, {@code null} for the first slice.
+     * @param size the size of the slice.
+     * @return the slice of wallets.
+     */
+    Slice<Wallet> findAllByCustomerAfter(String customerId, String id, int size);
+
+    /**
+     * Get the balances of a customer, as one wallet without id per currency holding the sum of the amounts of that currency.
+     *
+     * @param customerId the id of the owner of the wallets.
+     * @return the balances, ordered by currency code.
+     */
+    List<Wallet> findBalancesByCustomer(String customerId);
+
+    /**
+     * Replace the reference to a customer embedded in its wallets, once the customer is updated. The version of the
+     * wallets is incremented.
+     *
+     * @param customer the reference to the updated customer.
+     */
+    void updateCustomer(CustomerRef customer);
+}
@@ -0,0 +1,72 @@
+package com.osttra.fx.blockstream.repository;
+
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.Wallet;
+import java.util.List;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Implementation of {@link WalletRepositoryCustom} on top of the {@link MongoTemplate}.
+ */
+public class WalletRepositoryCustomImpl implements WalletRepositoryCustom {
+
+    private static final Sort KEYSET_SORT = Sort.by(Sort.Direction.ASC, "id");
+
+    private final MongoTemplate mongoTemplate;
+
+    public WalletRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Slice<Wallet> findAllByCustomerAfter(String customerId, String id, int size) {
+        Criteria criteria = Criteria.where("customer.id").is(customerId);
+        if (id != null) {
+            criteria = criteria.and("id").gt(storedId(id));
+        }
+        // Fetch one more wallet than requested to know if there is a next slice without counting
+        Query query = Query.query(criteria).with(KEYSET_SORT).limit(size + 1);
+        List<Wallet> wallets = mongoTemplate.find(query, Wallet.class);
+        boolean hasNext = wallets.size() > size;
+        return new SliceImpl<>(hasNext ? wallets.subList(0, size) : wallets, PageRequest.of(0, size, KEYSET_SORT), hasNext);
+    }
+
+    @Override
+    public List<Wallet> findBalancesByCustomer(String customerId) {
+        // Amounts are stored as Decimal128, so $sum is exact. The results are read as wallets, hence the stored field names.
+        TypedAggregation<Wallet> aggregation = Aggregation.newAggregation(
+            Wallet.class,
+            Aggregation.match(Criteria.where("customer.id").is(customerId)),
+            Aggregation.group("currencyCode").sum("amount").as("amount"),
+            Aggregation.project("amount").and("currency_code").previousOperation(),
+            Aggregation.sort(Sort.Direction.ASC, "currency_code")
+        );
+        return mongoTemplate.aggregate(aggregation, Wallet.class).getMappedResults();
+    }
+
+    /**
+     * String ids are stored as {@link ObjectId} when they are valid ones, which range operators don't convert.
+     */
+    private static Object storedId(String id) {
+        return ObjectId.isValid(id) ? new ObjectId(id) : id;
+    }
+
+    @Override
+    public void updateCustomer(CustomerRef customer) {
+        mongoTemplate.updateMulti(
+            Query.query(Criteria.where("customer.id").is(customer.getId())),
+            Update.update("customer", customer).inc("version", 1),
+            Wallet.class
+        );
+    }
+}
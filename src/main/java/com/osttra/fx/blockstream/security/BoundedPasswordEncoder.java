@@ -0,0 +1,131 @@
+package com.osttra.fx.blockstream.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PreDestroy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * A {@link PasswordEncoder} hashing and matching the passwords on its own, bounded, pool of threads.
+ * <p>
+ * Password hashing is deliberately slow and CPU-bound, so a burst of logins would otherwise take the CPU from the other
+ * requests. The calling thread waits for the result, at most for the given timeout; when the queue of waiting
+ * passwords is full, or the result is not ready in time, the call fails with a {@link PasswordHashingSaturatedException}
+ * instead.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    public static final String QUEUE_METER_NAME = "security.password.queue";
+    public static final String HASHING_METER_NAME = "security.password.hashing";
+    public static final String REJECTED_METER_NAME = "security.password.rejected";
+
+    private final PasswordEncoder delegate;
+
+    private final ThreadPoolExecutor executor;
+
+    private final long timeout;
+
+    private final Timer encodeTimer;
+
+    private final Timer matchesTimer;
+
+    private final Counter rejectedCounter;
+
+    /**
+     * @param delegate the encoder hashing and matching the passwords.
+     * @param threads the number of threads hashing and matching the passwords.
+     * @param queueCapacity the number of passwords waiting to be hashed or matched, beyond which the calls are rejected.
+     * @param timeout the time the calling thread waits for the result, in milliseconds.
+     * @param meterRegistry the registry of the meters.
+     */
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, long timeout, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timeout = timeout;
+        this.executor =
+            new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hashing-")
+            );
+        Gauge
+            .builder(QUEUE_METER_NAME, executor.getQueue(), Queue::size)
+            .description("Number of passwords waiting to be hashed or matched.")
+            .register(meterRegistry);
+        this.encodeTimer = hashingTimer("encode", meterRegistry);
+        this.matchesTimer = hashingTimer("matches", meterRegistry);
+        this.rejectedCounter = Counter
+            .builder(REJECTED_METER_NAME)
+            .description("Number of passwords rejected because too many were waiting to be hashed or matched, or not in time.")
+            .register(meterRegistry);
+    }
+
+    private static Timer hashingTimer(String operation, MeterRegistry meterRegistry) {
+        return Timer
+            .builder(HASHING_METER_NAME)
+            .description("Time taken to hash or match a password, waiting excluded.")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingSaturatedException();
+        }
+        try {
+            return future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The cancelled task is skipped if it is still waiting, or interrupted if it is running
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new PasswordHashingSaturatedException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted while waiting for a password to be hashed", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,43 @@
+package com.osttra.fx.blockstream.security;
+
+import com.osttra.fx.blockstream.management.SecurityMetersService;
+import java.util.Locale;
+
+/**
+ * Limits the login attempts per login and per client IP address, before their password is checked.
+ * <p>
+ * Each attempt takes a token from the bucket of its login and from the bucket of its address, both kept in a
+ * {@link TokenBucketTable} whose memory does not grow with the number of logins or addresses tried.
+ */
+public class LoginThrottle {
+
+    private final TokenBucketTable byLogin;
+
+    private final TokenBucketTable byIp;
+
+    private final SecurityMetersService securityMetersService;
+
+    public LoginThrottle(TokenBucketTable byLogin, TokenBucketTable byIp, SecurityMetersService securityMetersService) {
+        this.byLogin = byLogin;
+        this.byIp = byIp;
+        this.securityMetersService = securityMetersService;
+    }
+
+    /**
+     * Check a login attempt.
+     *
+     * @param login the login tried.
+     * @param ip the IP address of the client.
+     * @throws LoginThrottledException if the login or the address made too many attempts.
+     */
+    public void checkAttempt(String login, String ip) {
+        if (login != null && !byLogin.tryAcquire(login.toLowerCase(Locale.ENGLISH))) {
+            securityMetersService.trackLoginThrottledByLogin();
+            throw new LoginThrottledException();
+        }
+        if (ip != null && !byIp.tryAcquire(ip)) {
+            securityMetersService.trackLoginThrottledByIp();
+            throw new LoginThrottledException();
+        }
+    }
+}
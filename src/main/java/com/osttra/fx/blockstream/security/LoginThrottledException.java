@@ -0,0 +1,13 @@
+package com.osttra.fx.blockstream.security;
+
+/**
+ * This exception is thrown when a login or a client made too many login attempts to try another one yet.
+ */
+public class LoginThrottledException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LoginThrottledException() {
+        super("Too many login attempts");
+    }
+}
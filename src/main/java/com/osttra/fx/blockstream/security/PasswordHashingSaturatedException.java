@@ -0,0 +1,13 @@
+package com.osttra.fx.blockstream.security;
+
+/**
+ * This exception is thrown when too many passwords are waiting to be hashed or matched to accept another one.
+ */
+public class PasswordHashingSaturatedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public PasswordHashingSaturatedException() {
+        super("Too many passwords waiting to be hashed");
+    }
+}
@@ -1,5 +1,6 @@
 package com.osttra.fx.blockstream.security;
 
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.stream.Stream;
@@ -51,6 +52,19 @@ public final class SecurityUtils {
             .map(authentication -> (String) authentication.getCredentials());
     }
 
+    /**
+     * Get the customer of the current user, as carried by its JWT.
+     *
+     * @return the reference to the customer of the current user, empty if its JWT does not carry it.
+     */
+    public static Optional<CustomerRef> getCurrentCustomer() {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        return Optional
+            .ofNullable(securityContext.getAuthentication())
+            .filter(authentication -> authentication.getDetails() instanceof CustomerRef)
+            .map(authentication -> (CustomerRef) authentication.getDetails());
+    }
+
     /**
      * Check if a user is authenticated.
      *
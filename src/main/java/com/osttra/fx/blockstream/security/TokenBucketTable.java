@@ -0,0 +1,123 @@
+package com.osttra.fx.blockstream.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets of a fixed number of slots, whatever the number of keys, shared by the keys hashing to them.
+ * <p>
+ * As in a count-min sketch, each key hashes to one slot in each of two rows, with a random seed per row so that the
+ * colliding keys cannot be chosen. A request is allowed while one of the buckets of its key holds a token, and takes a
+ * token from each: a key has its own requests refused, but another key is only refused when it collides with busy keys
+ * in both rows. The slots are guarded by a fixed number of locks, each one shared by the slots of the same stripe.
+ */
+public class TokenBucketTable {
+
+    private static final int ROWS = 2;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final int mask;
+
+    private final long[] seeds = new long[ROWS];
+
+    private final double[] tokens;
+
+    private final long[] refilledAt;
+
+    private final Object[] locks;
+
+    private final double capacity;
+
+    private final double tokensPerNano;
+
+    private final LongSupplier clock;
+
+    /**
+     * @param slots the number of slots per row, rounded up to a power of two.
+     * @param stripes the number of locks, rounded up to a power of two.
+     * @param capacity the number of requests allowed in a burst.
+     * @param refillPerMinute the number of tokens given back to each bucket per minute.
+     */
+    public TokenBucketTable(int slots, int stripes, int capacity, int refillPerMinute) {
+        this(slots, stripes, capacity, refillPerMinute, System::nanoTime);
+    }
+
+    TokenBucketTable(int slots, int stripes, int capacity, int refillPerMinute, LongSupplier clock) {
+        int size = powerOfTwo(slots);
+        this.mask = size - 1;
+        this.tokens = new double[ROWS * size];
+        this.refilledAt = new long[ROWS * size];
+        this.locks = new Object[Math.min(powerOfTwo(stripes), ROWS * size)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        SecureRandom random = new SecureRandom();
+        for (int row = 0; row < ROWS; row++) {
+            seeds[row] = random.nextLong();
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = (double) refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        this.clock = clock;
+        Arrays.fill(tokens, capacity);
+        Arrays.fill(refilledAt, clock.getAsLong());
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * Take a token for the given key.
+     *
+     * @param key the key.
+     * @return {@code true} if the request is allowed, {@code false} if it has to be refused.
+     */
+    public boolean tryAcquire(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int first = slot(bytes, 0);
+        int second = slot(bytes, 1);
+        // The two locks are always taken in the same order, so that two keys cannot wait for each other
+        int firstStripe = first & (locks.length - 1);
+        int secondStripe = second & (locks.length - 1);
+        synchronized (locks[Math.min(firstStripe, secondStripe)]) {
+            synchronized (locks[Math.max(firstStripe, secondStripe)]) {
+                long now = clock.getAsLong();
+                refill(first, now);
+                refill(second, now);
+                if (tokens[first] < 1 && tokens[second] < 1) {
+                    return false;
+                }
+                take(first);
+                take(second);
+                return true;
+            }
+        }
+    }
+
+    private int slot(byte[] key, int row) {
+        // FNV-1a, starting from the seed of the row, then the finalizer of MurmurHash3 to spread the bits
+        long hash = seeds[row];
+        for (byte b : key) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return row * (mask + 1) + ((int) hash & mask);
+    }
+
+    private void refill(int slot, long now) {
+        tokens[slot] = Math.min(capacity, tokens[slot] + (now - refilledAt[slot]) * tokensPerNano);
+        refilledAt[slot] = now;
+    }
+
+    private void take(int slot) {
+        if (tokens[slot] >= 1) {
+            tokens[slot] -= 1;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.osttra.fx.blockstream.security;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.security.web.util.matcher.IpAddressMatcher;
+import org.springframework.web.filter.ForwardedHeaderFilter;
+
+/**
+ * Applies the {@code Forwarded} and {@code X-Forwarded-*} headers of the requests sent by the trusted proxies, and
+ * removes them from the requests of any other peer.
+ * <p>
+ * The client address read from {@code X-Forwarded-For} is the one the login throttling is keyed on, so a client
+ * reaching the application directly must not be able to choose it.
+ */
+public class TrustedProxyForwardedHeaderFilter extends ForwardedHeaderFilter {
+
+    private final List<IpAddressMatcher> trustedProxies;
+
+    private final ForwardedHeaderFilter headerRemover = new ForwardedHeaderFilter();
+
+    /**
+     * @param trustedProxies the addresses or CIDR ranges of the proxies whose forwarded headers are applied.
+     */
+    public TrustedProxyForwardedHeaderFilter(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies.stream().map(IpAddressMatcher::new).collect(Collectors.toList());
+        this.headerRemover.setRemoveOnly(true);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (isTrustedProxy(request.getRemoteAddr())) {
+            super.doFilterInternal(request, response, filterChain);
+        } else {
+            headerRemover.doFilter(request, response, filterChain);
+        }
+    }
+
+    private boolean isTrustedProxy(String remoteAddr) {
+        return remoteAddr != null && trustedProxies.stream().anyMatch(matcher -> matcher.matches(remoteAddr));
+    }
+}
@@ -1,5 +1,10 @@
 package com.osttra.fx.blockstream.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.management.SecurityMetersService;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
@@ -7,7 +12,10 @@ import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,8 +35,19 @@ public class TokenProvider {
 
     private static final String AUTHORITIES_KEY = "auth";
 
+    private static final String CUSTOMER_ID_KEY = "customer_id";
+
+    private static final String CUSTOMER_LEGAL_ENTITY_KEY = "customer_legal_entity";
+
+    private static final String CUSTOMER_HASH_CODE_KEY = "customer_hash_code";
+
     private static final String INVALID_JWT_TOKEN = "Invalid JWT token.";
 
+    /**
+     * Maximum number of authentications kept for the tokens already verified.
+     */
+    static final int AUTHENTICATION_CACHE_SIZE = 10_000;
+
     private final Key key;
 
     private final JwtParser jwtParser;
@@ -39,7 +58,23 @@ public class TokenProvider {
 
     private final SecurityMetersService securityMetersService;
 
-    public TokenProvider(JHipsterProperties jHipsterProperties, SecurityMetersService securityMetersService) {
+    private final ApplicationProperties applicationProperties;
+
+    /**
+     * The authentications of the tokens already verified, by token digest. Each expires with its token, so a request
+     * repeating a token skips the signature verification and the claims parsing.
+     */
+    private final Cache<String, VerifiedToken> authenticationCache = Caffeine
+        .newBuilder()
+        .maximumSize(AUTHENTICATION_CACHE_SIZE)
+        .expireAfter(new VerifiedTokenExpiry())
+        .build();
+
+    public TokenProvider(
+        JHipsterProperties jHipsterProperties,
+        SecurityMetersService securityMetersService,
+        ApplicationProperties applicationProperties
+    ) {
         byte[] keyBytes;
         String secret = jHipsterProperties.getSecurity().getAuthentication().getJwt().getBase64Secret();
         if (!ObjectUtils.isEmpty(secret)) {
@@ -60,9 +95,23 @@ public class TokenProvider {
             1000 * jHipsterProperties.getSecurity().getAuthentication().getJwt().getTokenValidityInSecondsForRememberMe();
 
         this.securityMetersService = securityMetersService;
+        this.applicationProperties = applicationProperties;
     }
 
     public String createToken(Authentication authentication, boolean rememberMe) {
+        return createToken(authentication, rememberMe, null);
+    }
+
+    /**
+     * Create a token carrying the customer of the user, so that the requests made with it do not have to look it up
+     * until the customer claims validity is over.
+     *
+     * @param authentication the authentication of the user.
+     * @param rememberMe whether the token has the validity of the remember-me tokens.
+     * @param customer the reference to the customer of the user, may be {@code null}.
+     * @return the token.
+     */
+    public String createToken(Authentication authentication, boolean rememberMe, CustomerRef customer) {
         String authorities = authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.joining(","));
 
         long now = (new Date()).getTime();
@@ -73,18 +122,54 @@ public class TokenProvider {
             validity = new Date(now + this.tokenValidityInMilliseconds);
         }
 
-        return Jwts
+        JwtBuilder builder = Jwts
             .builder()
             .setSubject(authentication.getName())
             .claim(AUTHORITIES_KEY, authorities)
-            .signWith(key, SignatureAlgorithm.HS512)
-            .setExpiration(validity)
-            .compact();
+            .setIssuedAt(new Date(now));
+        if (customer != null && customer.getId() != null) {
+            builder
+                .claim(CUSTOMER_ID_KEY, customer.getId())
+                .claim(CUSTOMER_LEGAL_ENTITY_KEY, customer.getCustomerLegalEntity())
+                .claim(CUSTOMER_HASH_CODE_KEY, customer.getCustomerHashCode());
+        }
+        return builder.signWith(key, SignatureAlgorithm.HS512).setExpiration(validity).compact();
+    }
+
+    /**
+     * Resolve the authentication of a token, verifying it only the first time it is seen. The authentication carrying
+     * the customer of the token is kept only until the customer claims validity is over, the token being resolved again
+     * without it afterwards.
+     *
+     * @param authToken the token.
+     * @return the authentication, or {@code null} if the token is not valid.
+     */
+    public Authentication resolveAuthentication(String authToken) {
+        String digest = digest(authToken);
+        VerifiedToken verifiedToken = authenticationCache.getIfPresent(digest);
+        if (verifiedToken != null) {
+            return verifiedToken.authentication;
+        }
+        Claims claims = parseToken(authToken);
+        if (claims == null) {
+            return null;
+        }
+        Authentication authentication = getAuthentication(claims, authToken);
+        if (claims.getExpiration() != null) {
+            long expiration = claims.getExpiration().getTime();
+            if (authentication.getDetails() instanceof CustomerRef) {
+                expiration = Math.min(expiration, customerClaimsExpiration(claims));
+            }
+            authenticationCache.put(digest, new VerifiedToken(authentication, expiration));
+        }
+        return authentication;
     }
 
     public Authentication getAuthentication(String token) {
-        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        return getAuthentication(jwtParser.parseClaimsJws(token).getBody(), token);
+    }
 
+    private Authentication getAuthentication(Claims claims, String token) {
         Collection<? extends GrantedAuthority> authorities = Arrays
             .stream(claims.get(AUTHORITIES_KEY).toString().split(","))
             .filter(auth -> !auth.trim().isEmpty())
@@ -93,14 +178,45 @@ public class TokenProvider {
 
         User principal = new User(claims.getSubject(), "", authorities);
 
-        return new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, token, authorities);
+        // The tokens issued before the customer claims have none, their customer being looked up instead, as it is once
+        // the claims are too old to reflect the updates of the customer
+        String customerId = claims.get(CUSTOMER_ID_KEY, String.class);
+        if (customerId != null && System.currentTimeMillis() < customerClaimsExpiration(claims)) {
+            authentication.setDetails(
+                new CustomerRef()
+                    .id(customerId)
+                    .customerLegalEntity(claims.get(CUSTOMER_LEGAL_ENTITY_KEY, String.class))
+                    .customerHashCode(claims.get(CUSTOMER_HASH_CODE_KEY, String.class))
+            );
+        }
+        return authentication;
+    }
+
+    /**
+     * The time after which the customer claims of a token are no longer trusted, the tokens without issue time having
+     * none to trust.
+     */
+    private long customerClaimsExpiration(Claims claims) {
+        if (claims.getIssuedAt() == null) {
+            return Long.MIN_VALUE;
+        }
+        return claims.getIssuedAt().getTime() + applicationProperties.getJwt().getCustomerClaimsValidity();
     }
 
     public boolean validateToken(String authToken) {
-        try {
-            jwtParser.parseClaimsJws(authToken);
+        return parseToken(authToken) != null;
+    }
 
-            return true;
+    /**
+     * Verify a token and parse its claims, in a single pass, tracking the cause of the failure if it is not valid.
+     *
+     * @param authToken the token.
+     * @return the claims of the token, or {@code null} if it is not valid.
+     */
+    public Claims parseToken(String authToken) {
+        try {
+            return jwtParser.parseClaimsJws(authToken).getBody();
         } catch (ExpiredJwtException e) {
             this.securityMetersService.trackTokenExpired();
 
@@ -121,6 +237,48 @@ public class TokenProvider {
             log.error("Token validation error {}", e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    private static String digest(String authToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(authToken.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class VerifiedToken {
+
+        private final Authentication authentication;
+
+        private final long expiration;
+
+        private VerifiedToken(Authentication authentication, long expiration) {
+            this.authentication = authentication;
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * Expires the verified tokens at their own expiration time.
+     */
+    private static final class VerifiedTokenExpiry implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String digest, VerifiedToken verifiedToken, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, verifiedToken.expiration - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String digest, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+            return expireAfterCreate(digest, verifiedToken, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String digest, VerifiedToken verifiedToken, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,90 @@
+package com.osttra.fx.blockstream.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe Bloom filter of strings: {@link #mightContain(String)} never misses a string which was put, and only
+ * answers {@code true} for a string which was not with the probability the filter is sized for.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    private final long capacity;
+
+    private final AtomicLong insertions = new AtomicLong();
+
+    /**
+     * @param capacity the number of strings the filter is sized for.
+     * @param falsePositiveProbability the probability of a false positive once {@code capacity} strings are put.
+     */
+    BloomFilter(long capacity, double falsePositiveProbability) {
+        this.capacity = Math.max(capacity, 1);
+        long optimalBitCount = (long) Math.ceil(-this.capacity * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray(Math.toIntExact(Math.max((optimalBitCount + Long.SIZE - 1) / Long.SIZE, 1)));
+        this.bitCount = (long) bits.length() * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / this.capacity * Math.log(2)));
+    }
+
+    void put(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = bits.get(index);
+            } while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask));
+        }
+        insertions.incrementAndGet();
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(hash1 + (long) i * hash2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether more strings were put than the filter is sized for, making false positives more likely.
+     */
+    boolean isSaturated() {
+        return insertions.get() > capacity;
+    }
+
+    long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 64-bit FNV-1a of the characters, finished with the MurmurHash3 mix to spread the bits of short strings.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,205 @@
+package com.osttra.fx.blockstream.service;
+
+import com.osttra.fx.blockstream.domain.Currencies;
+import com.osttra.fx.blockstream.repository.CurrenciesRepository;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class keeping the currencies in memory, as they are read on every trade capture and hardly ever change.
+ * <p>
+ * Readers get an immutable {@link Snapshot} without locking. Writers copy the current snapshot, apply their change and
+ * publish the copy, so a reader sees either all of a change or none of it. The currencies are also reloaded from
+ * MongoDB every 5 minutes, to pick up the changes made by other instances: a reload publishes a snapshot only when the
+ * currencies changed.
+ */
+@Service
+public class CurrencyRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(CurrencyRegistry.class);
+
+    private final CurrenciesRepository currenciesRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(new Currencies[0], 0);
+
+    public CurrencyRegistry(CurrenciesRepository currenciesRepository) {
+        this.currenciesRepository = currenciesRepository;
+    }
+
+    /**
+     * Replace the snapshot by the currencies stored in MongoDB, unless they are the same ones at the same versions.
+     */
+    @PostConstruct
+    @Scheduled(initialDelay = 300000, fixedDelay = 300000)
+    public synchronized void reload() {
+        Snapshot loaded = new Snapshot(currenciesRepository.findAll().toArray(new Currencies[0]), snapshot.generation + 1);
+        if (loaded.digest.equals(snapshot.digest)) {
+            log.debug("Currency registry unchanged with {} currencies", loaded.currencies.length);
+            return;
+        }
+        snapshot = loaded;
+        log.debug("Currency registry loaded with {} currencies", loaded.currencies.length);
+    }
+
+    /**
+     * Add a saved currency to the snapshot, or replace the one with the same id.
+     *
+     * @param currency the saved currency.
+     */
+    public synchronized void put(Currencies currency) {
+        Currencies[] current = snapshot.currencies;
+        for (int index = 0; index < current.length; index++) {
+            if (current[index].getId().equals(currency.getId())) {
+                Currencies[] currencies = current.clone();
+                currencies[index] = currency;
+                publish(currencies);
+                return;
+            }
+        }
+        Currencies[] currencies = Arrays.copyOf(current, current.length + 1);
+        currencies[current.length] = currency;
+        publish(currencies);
+    }
+
+    /**
+     * Remove a deleted currency from the snapshot.
+     *
+     * @param id the id of the deleted currency.
+     */
+    public synchronized void remove(String id) {
+        Currencies[] current = snapshot.currencies;
+        Currencies[] currencies = Arrays.stream(current).filter(currency -> !currency.getId().equals(id)).toArray(Currencies[]::new);
+        if (currencies.length != current.length) {
+            publish(currencies);
+        }
+    }
+
+    private void publish(Currencies[] currencies) {
+        snapshot = new Snapshot(currencies, snapshot.generation + 1);
+    }
+
+    /**
+     * @return the current snapshot of the currencies.
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Tell whether a currency code is one of the currencies, in constant time.
+     *
+     * @param currencyCode the currency code.
+     * @return whether a currency has this code.
+     */
+    public boolean isKnown(String currencyCode) {
+        return snapshot.indexOf(currencyCode) >= 0;
+    }
+
+    /**
+     * An immutable set of currencies. Its currencies must not be modified.
+     */
+    public static final class Snapshot {
+
+        private final Currencies[] currencies;
+
+        private final Map<String, Integer> indexesByCode;
+
+        private final long generation;
+
+        private final List<Currencies> currencyList;
+
+        private final String digest;
+
+        private Snapshot(Currencies[] currencies, long generation) {
+            this.currencies = currencies;
+            this.generation = generation;
+            this.digest = digest(currencies);
+            Map<String, Integer> indexes = new HashMap<>(currencies.length * 2);
+            for (int index = 0; index < currencies.length; index++) {
+                String currencyCode = currencies[index].getCurrencyCode();
+                if (currencyCode != null) {
+                    indexes.putIfAbsent(currencyCode, index);
+                }
+            }
+            this.indexesByCode = indexes;
+            this.currencyList = Collections.unmodifiableList(Arrays.asList(currencies));
+        }
+
+        /**
+         * @return the currencies, in the order they were loaded then added.
+         */
+        public List<Currencies> getCurrencies() {
+            return currencyList;
+        }
+
+        /**
+         * @return the number of snapshots published before this one, which only grows.
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * @return a SHA-256 digest of the ids and versions of the currencies, in order, which is the same for all the
+         * snapshots of the same currencies, whatever the instance that loaded them.
+         */
+        public String getDigest() {
+            return digest;
+        }
+
+        private static String digest(Currencies[] currencies) {
+            MessageDigest messageDigest;
+            try {
+                messageDigest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+            for (Currencies currency : currencies) {
+                // The id is prefixed with its length, so that it cannot run into the version
+                String id = String.valueOf(currency.getId());
+                messageDigest.update((id.length() + ":" + id + ":" + currency.getVersion() + ";").getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(messageDigest.digest());
+        }
+
+        /**
+         * Get the index of a currency code in {@link #getCurrencies()}.
+         *
+         * @param currencyCode the currency code.
+         * @return the index of the first currency with this code, or {@code -1} if there is none.
+         */
+        public int indexOf(String currencyCode) {
+            Integer index = currencyCode == null ? null : indexesByCode.get(currencyCode);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * Get the currency with a code.
+         *
+         * @param currencyCode the currency code.
+         * @return the first currency with this code, if any.
+         */
+        public Optional<Currencies> findByCode(String currencyCode) {
+            int index = indexOf(currencyCode);
+            return index < 0 ? Optional.empty() : Optional.of(currencies[index]);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{generation=" + generation + ", currencies=" + currencies.length + "}";
+        }
+    }
+}
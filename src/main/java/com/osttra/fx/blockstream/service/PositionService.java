@@ -0,0 +1,500 @@
+package com.osttra.fx.blockstream.service;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Position;
+import com.osttra.fx.blockstream.domain.Rate;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.PositionRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class maintaining the net {@link Position}s of the legal entities from the creations, updates and deletions
+ * of the trades, so that reading them does not sum the trades.
+ * <p>
+ * The positions are stored in MongoDB and shared by all the instances. Each instance adds the changes of the trades it
+ * writes to {@link LongAdder} cells holding minor units, so that concurrent trades of the same position do not contend,
+ * and adds the cells to the stored positions with {@code $inc} every second and on shutdown. The positions read are
+ * the stored ones plus the cells of this instance, so the trades written by another instance are seen within a second.
+ * The cells of a position are flushed one after the other: a position read while a trade is flushed may have one leg
+ * of the trade only. Failed trades are not part of the positions.
+ * <p>
+ * The positions are rebuilt from the trades nightly, and when none are stored, to repair the drift left by an instance
+ * which did not shut down cleanly. The changes of the trades made by all the instances while rebuilding are read from a
+ * change stream opened before the trades, and replace the contributions the rebuild read unless it read a later
+ * version already. The changes flushed by the other instances while the rebuilt positions are stored may be counted
+ * twice or not at all, until the next rebuild.
+ */
+@Service
+public class PositionService {
+
+    public static final String FLUSH_METER_NAME = "positions.flush";
+
+    /**
+     * The version recorded for a deleted trade, whose contribution no longer changes, so that it replaces any version
+     * read by a rebuild.
+     */
+    private static final long FINAL = Long.MAX_VALUE;
+
+    private static final Comparator<Position> POSITION_ORDER = Comparator
+        .comparing(Position::getValueDate)
+        .thenComparing(Position::getBaseCurrency)
+        .thenComparing(Position::getQuoteCurrency);
+
+    private final Logger log = LoggerFactory.getLogger(PositionService.class);
+
+    private final PositionRepository positionRepository;
+
+    private final SmartTradeArchiveRepository smartTradeArchiveRepository;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Timer flushTimer;
+
+    /**
+     * The changes of the positions made by this instance and not added to the stored positions yet, by legal entity.
+     */
+    private volatile Map<String, Map<PositionKey, Cells>> unflushed = new ConcurrentHashMap<>();
+
+    public PositionService(
+        PositionRepository positionRepository,
+        SmartTradeArchiveRepository smartTradeArchiveRepository,
+        MongoTemplate mongoTemplate,
+        MeterRegistry meterRegistry
+    ) {
+        this.positionRepository = positionRepository;
+        this.smartTradeArchiveRepository = smartTradeArchiveRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.flushTimer = Timer
+            .builder(FLUSH_METER_NAME)
+            .description("Time taken to add the changes of the positions to the stored ones.")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Rebuild the positions if none are stored yet.
+     */
+    @PostConstruct
+    public void load() {
+        if (positionRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Recompute the positions from the trades, archived ones included, and replace the stored ones, to repair their
+     * drift. A trade found both in the hot collection and in the archive, after an interrupted archival, counts once.
+     * <p>
+     * The contributions of the hot trades are kept while rebuilding, as the changes of the trades made meanwhile replace
+     * them; the archived trades are not changed.
+     * <p>
+     * This is scheduled to get fired everyday, at 01:45 (am).
+     */
+    @Scheduled(cron = "0 45 1 * * ?")
+    public synchronized void rebuild() {
+        log.debug("Rebuilding the positions");
+        Map<String, Counted> counted = new HashMap<>();
+        Map<String, Map<PositionKey, Cells>> rebuilt = new HashMap<>();
+        // Opened first, so that it returns the changes made while the trades are read
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes = watchSmartTrades()) {
+            try (
+                Stream<SmartTrade> smartTrades = StreamUtils.createStreamFromIterator(mongoTemplate.stream(new Query(), SmartTrade.class))
+            ) {
+                smartTrades.forEach(smartTrade -> replace(counted, smartTrade.getId(), Counted.of(smartTrade)));
+            }
+            ChangeStreamDocument<Document> change;
+            while ((change = changes.tryNext()) != null) {
+                replace(counted, idOf(change), countedOf(change));
+            }
+        }
+        Set<String> archived = new HashSet<>();
+        try (Stream<SmartTrade> smartTrades = smartTradeArchiveRepository.streamAll()) {
+            smartTrades
+                .filter(smartTrade -> !counted.containsKey(smartTrade.getId()) && archived.add(smartTrade.getId()))
+                .forEach(smartTrade -> apply(rebuilt, contributionOf(smartTrade), 1));
+        }
+        counted.values().forEach(trade -> apply(rebuilt, trade.contribution, 1));
+
+        // The changes made by this instance so far were read from the change stream
+        unflushed = new ConcurrentHashMap<>();
+        List<Position> positions = new ArrayList<>();
+        rebuilt.forEach((legalEntity, cellsByKey) -> cellsByKey.forEach((key, cells) -> addPosition(positions, legalEntity, key, cells)));
+        positionRepository.replaceAll(positions, Instant.now());
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> watchSmartTrades() {
+        return mongoTemplate
+            .getCollection(mongoTemplate.getCollectionName(SmartTrade.class))
+            .watch(List.of(Aggregates.match(Filters.in("operationType", "insert", "update", "replace", "delete"))))
+            .fullDocument(FullDocument.UPDATE_LOOKUP)
+            .maxAwaitTime(1, TimeUnit.SECONDS)
+            .cursor();
+    }
+
+    private static String idOf(ChangeStreamDocument<Document> change) {
+        BsonValue id = change.getDocumentKey().get("_id");
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+    }
+
+    private Counted countedOf(ChangeStreamDocument<Document> change) {
+        if (change.getFullDocument() == null) {
+            // Deleted, or deleted before the update could be looked up
+            return new Counted(FINAL, null);
+        }
+        return Counted.of(mongoTemplate.getConverter().read(SmartTrade.class, change.getFullDocument()));
+    }
+
+    /**
+     * Replace the contribution counted for a trade, unless a later version of the trade was counted already.
+     */
+    private static void replace(Map<String, Counted> counted, String id, Counted trade) {
+        counted.merge(id, trade, (previous, current) -> previous.version >= current.version ? previous : current);
+    }
+
+    /**
+     * Add the changes of the positions made by this instance to the stored positions. The changes whose write fails
+     * are kept, to be written with the next flush.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public synchronized void flush() {
+        List<Position> deltas = new ArrayList<>();
+        unflushed.forEach((legalEntity, cellsByKey) ->
+            cellsByKey.forEach((key, cells) -> {
+                Position delta = cells.takeDelta(legalEntity, key);
+                if (delta != null) {
+                    deltas.add(delta);
+                }
+            })
+        );
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> positionRepository.incrementAll(deltas, Instant.now()));
+        } catch (RuntimeException e) {
+            log.warn("Cannot store the changes of {} positions, retrying: {}", deltas.size(), e.getMessage());
+            deltas.forEach(delta -> apply(unflushed, Contribution.of(delta), 1));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Cannot store the changes of the positions on shutdown: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Add a created trade to the positions.
+     *
+     * @param smartTrade the saved trade.
+     */
+    public void add(SmartTrade smartTrade) {
+        apply(unflushed, contributionOf(smartTrade), 1);
+    }
+
+    /**
+     * Remove a deleted or failed trade from the positions.
+     *
+     * @param smartTrade the trade, as it was added.
+     */
+    public void remove(SmartTrade smartTrade) {
+        apply(unflushed, contributionOf(smartTrade), -1);
+    }
+
+    /**
+     * Replace the contribution of an updated trade to the positions.
+     *
+     * @param previous the contribution of the trade before the update, see {@link #contributionOf(SmartTrade)}.
+     * @param smartTrade the updated trade.
+     */
+    public void update(Contribution previous, SmartTrade smartTrade) {
+        Contribution current = contributionOf(smartTrade);
+        if (!Objects.equals(previous, current)) {
+            Map<String, Map<PositionKey, Cells>> positions = unflushed;
+            apply(positions, previous, -1);
+            apply(positions, current, 1);
+        }
+    }
+
+    /**
+     * Get the positions of a legal entity: the stored ones, plus the changes made by this instance since the last flush.
+     *
+     * @param legalEntity the legal entity.
+     * @return the positions with trades, ordered by value date and currency pair.
+     */
+    public List<Position> getPositions(String legalEntity) {
+        Map<PositionKey, Cells> cellsByKey = new HashMap<>();
+        for (Position position : positionRepository.findAllByLegalEntity(legalEntity)) {
+            apply(cellsByKey, Contribution.of(position));
+        }
+        Map<PositionKey, Cells> changes = unflushed.get(legalEntity);
+        if (changes != null) {
+            changes.forEach((key, cells) -> cellsByKey.computeIfAbsent(key, k -> new Cells()).add(cells));
+        }
+        List<Position> result = new ArrayList<>(cellsByKey.size());
+        cellsByKey.forEach((key, cells) -> addPosition(result, legalEntity, key, cells));
+        result.sort(POSITION_ORDER);
+        return result;
+    }
+
+    private static void addPosition(List<Position> result, String legalEntity, PositionKey key, Cells cells) {
+        long tradeCount = cells.trades.sum();
+        if (tradeCount == 0) {
+            return;
+        }
+        result.add(positionOf(legalEntity, key, cells.base.sum(), cells.quote.sum(), tradeCount));
+    }
+
+    private static Position positionOf(String legalEntity, PositionKey key, long base, long quote, long tradeCount) {
+        return new Position()
+            .id(legalEntity + "/" + key.baseCurrency + "/" + key.quoteCurrency + "/" + key.valueDate)
+            .legalEntity(legalEntity)
+            .baseCurrency(key.baseCurrency)
+            .quoteCurrency(key.quoteCurrency)
+            .valueDate(key.valueDate)
+            .baseAmount(Money.ofMinorUnits(base, Money.scaleOf(key.baseCurrency)))
+            .quoteAmount(Money.ofMinorUnits(quote, Money.scaleOf(key.quoteCurrency)))
+            .tradeCount(tradeCount);
+    }
+
+    private static void apply(Map<String, Map<PositionKey, Cells>> positions, Contribution contribution, int sign) {
+        if (contribution == null) {
+            return;
+        }
+        Cells cells = positions
+            .computeIfAbsent(contribution.legalEntity, legalEntity -> new ConcurrentHashMap<>())
+            .computeIfAbsent(contribution.key, key -> new Cells());
+        cells.base.add(sign * contribution.baseMinorUnits);
+        cells.quote.add(sign * contribution.quoteMinorUnits);
+        cells.trades.add(sign * contribution.tradeCount);
+    }
+
+    private static void apply(Map<PositionKey, Cells> cellsByKey, Contribution contribution) {
+        Cells cells = cellsByKey.computeIfAbsent(contribution.key, key -> new Cells());
+        cells.base.add(contribution.baseMinorUnits);
+        cells.quote.add(contribution.quoteMinorUnits);
+        cells.trades.add(contribution.tradeCount);
+    }
+
+    /**
+     * Get what a trade adds to the positions: the amount bought and the contra amount sold by its trading party, in the
+     * minor units of their currencies. The contra amount of a trade not booked yet is computed as the lifecycle books it.
+     *
+     * @param smartTrade the trade.
+     * @return the contribution of the trade, or {@code null} if it has none as it failed or is incomplete.
+     */
+    public static Contribution contributionOf(SmartTrade smartTrade) {
+        if (
+            smartTrade.getTradingParty() == null ||
+            smartTrade.getCurrencyBuy() == null ||
+            smartTrade.getCurrencySell() == null ||
+            smartTrade.getCurrencyBuy().equals(smartTrade.getCurrencySell()) ||
+            smartTrade.getAmount() == null ||
+            smartTrade.getValueDate() == null ||
+            TradeStatus.FAILED.name().equals(smartTrade.getStatus())
+        ) {
+            return null;
+        }
+        int buyScale = Money.scaleOf(smartTrade.getCurrencyBuy());
+        int sellScale = Money.scaleOf(smartTrade.getCurrencySell());
+        long bought;
+        long sold;
+        try {
+            Money amount = Money.of(smartTrade.getAmount(), smartTrade.getCurrencyBuy());
+            bought = amount.withScale(buyScale).getMinorUnits();
+            if (smartTrade.getContraAmount() != null) {
+                sold = Money.of(smartTrade.getContraAmount(), smartTrade.getCurrencySell()).withScale(sellScale).getMinorUnits();
+            } else if (smartTrade.getRate() != null && smartTrade.getRate() > 0) {
+                sold = Money.convert(amount.getMinorUnits(), amount.getScale(), Rate.of(smartTrade.getRate()), sellScale);
+            } else {
+                return null;
+            }
+        } catch (ArithmeticException e) {
+            // Not booked by the lifecycle either
+            return null;
+        }
+        boolean buyIsBase = smartTrade.getCurrencyBuy().compareTo(smartTrade.getCurrencySell()) < 0;
+        PositionKey key = buyIsBase
+            ? new PositionKey(smartTrade.getCurrencyBuy(), smartTrade.getCurrencySell(), smartTrade.getValueDate())
+            : new PositionKey(smartTrade.getCurrencySell(), smartTrade.getCurrencyBuy(), smartTrade.getValueDate());
+        return buyIsBase
+            ? new Contribution(smartTrade.getTradingParty(), key, bought, -sold, 1)
+            : new Contribution(smartTrade.getTradingParty(), key, -sold, bought, 1);
+    }
+
+    /**
+     * What a trade, or a stored position, adds to a position.
+     */
+    public static final class Contribution {
+
+        private final String legalEntity;
+
+        private final PositionKey key;
+
+        private final long baseMinorUnits;
+
+        private final long quoteMinorUnits;
+
+        private final long tradeCount;
+
+        private Contribution(String legalEntity, PositionKey key, long baseMinorUnits, long quoteMinorUnits, long tradeCount) {
+            this.legalEntity = legalEntity;
+            this.key = key;
+            this.baseMinorUnits = baseMinorUnits;
+            this.quoteMinorUnits = quoteMinorUnits;
+            this.tradeCount = tradeCount;
+        }
+
+        private static Contribution of(Position position) {
+            PositionKey key = new PositionKey(position.getBaseCurrency(), position.getQuoteCurrency(), position.getValueDate());
+            return new Contribution(
+                position.getLegalEntity(),
+                key,
+                position.getBaseAmount().withScale(Money.scaleOf(key.baseCurrency)).getMinorUnits(),
+                position.getQuoteAmount().withScale(Money.scaleOf(key.quoteCurrency)).getMinorUnits(),
+                position.getTradeCount()
+            );
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Contribution)) {
+                return false;
+            }
+            Contribution other = (Contribution) o;
+            return (
+                legalEntity.equals(other.legalEntity) &&
+                key.equals(other.key) &&
+                baseMinorUnits == other.baseMinorUnits &&
+                quoteMinorUnits == other.quoteMinorUnits &&
+                tradeCount == other.tradeCount
+            );
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(legalEntity, key, baseMinorUnits, quoteMinorUnits, tradeCount);
+        }
+    }
+
+    /**
+     * The contribution of a version of a trade.
+     */
+    private static final class Counted {
+
+        private final long version;
+
+        private final Contribution contribution;
+
+        private Counted(long version, Contribution contribution) {
+            this.version = version;
+            this.contribution = contribution;
+        }
+
+        private static Counted of(SmartTrade smartTrade) {
+            return new Counted(smartTrade.getVersion() == null ? 0 : smartTrade.getVersion(), contributionOf(smartTrade));
+        }
+    }
+
+    private static final class PositionKey {
+
+        private final String baseCurrency;
+
+        private final String quoteCurrency;
+
+        private final LocalDate valueDate;
+
+        private PositionKey(String baseCurrency, String quoteCurrency, LocalDate valueDate) {
+            this.baseCurrency = baseCurrency;
+            this.quoteCurrency = quoteCurrency;
+            this.valueDate = valueDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PositionKey)) {
+                return false;
+            }
+            PositionKey other = (PositionKey) o;
+            return (
+                baseCurrency.equals(other.baseCurrency) && quoteCurrency.equals(other.quoteCurrency) && valueDate.equals(other.valueDate)
+            );
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(baseCurrency, quoteCurrency, valueDate);
+        }
+    }
+
+    private static final class Cells {
+
+        private final LongAdder base = new LongAdder();
+
+        private final LongAdder quote = new LongAdder();
+
+        private final LongAdder trades = new LongAdder();
+
+        private void add(Cells other) {
+            base.add(other.base.sum());
+            quote.add(other.quote.sum());
+            trades.add(other.trades.sum());
+        }
+
+        /**
+         * Take the changes of the cells, which are reset: a change made meanwhile is either taken or kept.
+         *
+         * @return the changes as a position, or {@code null} if there are none.
+         */
+        private Position takeDelta(String legalEntity, PositionKey key) {
+            long baseDelta = base.sumThenReset();
+            long quoteDelta = quote.sumThenReset();
+            long tradesDelta = trades.sumThenReset();
+            if (baseDelta == 0 && quoteDelta == 0 && tradesDelta == 0) {
+                return null;
+            }
+            return positionOf(legalEntity, key, baseDelta, quoteDelta, tradesDelta);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.osttra.fx.blockstream.service;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class moving the aged trades out of the {@code smart_trade} collection, to keep its indexes and working set
+ * small.
+ * <p>
+ * The settled and failed trades traded more than {@code application.archive.horizon} days ago are compressed into
+ * blocks of {@code application.archive.block-size} trades, ordered by trading party so that the blocks of a party are
+ * few. Each block is stored before its trades are marked archived and removed: an interrupted run leaves trades in both
+ * collections, which the queries spanning both skip. The runs are throttled, pausing between blocks and stopping after
+ * {@code application.archive.max-blocks-per-run} blocks.
+ */
+@Service
+public class SmartTradeArchiveService {
+
+    public static final String ARCHIVED_METER_NAME = "smart_trade.archived";
+
+    private final Logger log = LoggerFactory.getLogger(SmartTradeArchiveService.class);
+
+    private final SmartTradeRepository smartTradeRepository;
+
+    private final SmartTradeArchiveRepository smartTradeArchiveRepository;
+
+    private final ApplicationProperties.Archive properties;
+
+    private final Counter archivedCounter;
+
+    public SmartTradeArchiveService(
+        SmartTradeRepository smartTradeRepository,
+        SmartTradeArchiveRepository smartTradeArchiveRepository,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.smartTradeRepository = smartTradeRepository;
+        this.smartTradeArchiveRepository = smartTradeArchiveRepository;
+        this.properties = applicationProperties.getArchive();
+        this.archivedCounter = Counter.builder(ARCHIVED_METER_NAME).description("Number of trades archived.").register(meterRegistry);
+    }
+
+    /**
+     * Archive the aged trades.
+     * <p>
+     * This is scheduled to get fired everyday, at 03:00 (am).
+     *
+     * @return the number of trades archived.
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    public int archive() {
+        LocalDate horizon = LocalDate.now().minusDays(properties.getHorizon());
+        log.debug("Archiving the trades traded before {}", horizon);
+        int blockSize = properties.getBlockSize();
+        int blocks = 0;
+        int archived = 0;
+        List<SmartTrade> block = new ArrayList<>(blockSize);
+        try (Stream<SmartTrade> smartTrades = smartTradeRepository.streamAllArchivable(horizon, blockSize)) {
+            for (Iterator<SmartTrade> iterator = smartTrades.iterator(); iterator.hasNext() && blocks < properties.getMaxBlocksPerRun();) {
+                block.add(iterator.next());
+                if (block.size() == blockSize || !iterator.hasNext()) {
+                    archived += archive(block);
+                    block.clear();
+                    if (++blocks < properties.getMaxBlocksPerRun() && iterator.hasNext()) {
+                        pause();
+                    }
+                }
+            }
+        }
+        log.debug("Archived {} trades in {} blocks", archived, blocks);
+        return archived;
+    }
+
+    private int archive(List<SmartTrade> block) {
+        smartTradeArchiveRepository.insertBlock(block);
+        List<String> ids = block.stream().map(SmartTrade::getId).collect(Collectors.toList());
+        // Marked first, for the subscribers to the changes of the trades not to take their removal for a deletion
+        smartTradeRepository.markArchived(ids);
+        smartTradeRepository.deleteAllById(ids);
+        archivedCounter.increment(block.size());
+        return block.size();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(properties.getPause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
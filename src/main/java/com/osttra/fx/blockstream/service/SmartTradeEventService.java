@@ -0,0 +1,570 @@
+package com.osttra.fx.blockstream.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.repository.SmartTradeRepositoryCustom;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Service class pushing the changes of the trades to the clients as Server-Sent Events.
+ * <p>
+ * A single MongoDB change stream on the trades is shared by all the clients, each one receiving the changes of the
+ * trades of its legal entity. Deletions only carry the trade id, as the deleted trade is not known anymore: they are sent
+ * to the parties recorded on the trade just before its deletion, or else last seen on the trade by the change streams,
+ * kept for the last {@code application.events.owners-capacity} trades. A deletion whose parties are not known, as one
+ * made outside the application, sends a {@code reset} event to all the clients instead. The parties a trade is taken
+ * away from by a change, which are stored with it or last seen on it, receive its deletion. The trades removed for being
+ * archived are not deleted from the point of view of the clients, which still read them: the change marking them
+ * archived and their removal are not sent. Each client has a bounded
+ * buffer of events: a client too slow to consume them is disconnected, and reconnects from the id of the last event
+ * received, which is the resume token of the change.
+ * <p>
+ * The change stream is read by a thread of its own, and the events are sent by a bounded pool of threads. A client
+ * which cannot get a sender thread, or blocks one for longer than {@code application.events.send-timeout}, is
+ * disconnected as well.
+ */
+@Service
+public class SmartTradeEventService {
+
+    public static final String SUBSCRIBERS_METER_NAME = "smart_trade.events.subscribers";
+    public static final String EVICTED_METER_NAME = "smart_trade.events.evicted";
+
+    /**
+     * Name of the event sent when the changes since the last event received cannot be replayed: the client has to
+     * reload the trades.
+     */
+    public static final String RESET_EVENT = "reset";
+
+    private static final List<String> OPERATION_TYPES = List.of("insert", "update", "replace", "delete");
+
+    private static final Event HEARTBEAT = new Event(null, null, null, null, null, null);
+
+    private final Logger log = LoggerFactory.getLogger(SmartTradeEventService.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final int bufferSize;
+
+    private final long timeout;
+
+    private final long sendTimeout;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The parties of the trades seen by the change streams, by trade id, to route their deletions.
+     */
+    private final Cache<String, List<String>> owners;
+
+    /**
+     * The ids of the trades seen marked archived by the change streams, whose removal is not a deletion.
+     */
+    private final Cache<String, Boolean> archived;
+
+    private final ExecutorService watcher = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("smart-trade-events-watch-"));
+
+    private final ThreadPoolExecutor senders;
+
+    private final AtomicBoolean watching = new AtomicBoolean();
+
+    private volatile boolean running = true;
+
+    private final Counter evictedCounter;
+
+    public SmartTradeEventService(MongoTemplate mongoTemplate, ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.bufferSize = applicationProperties.getEvents().getBufferSize();
+        this.timeout = applicationProperties.getEvents().getTimeout();
+        this.sendTimeout = applicationProperties.getEvents().getSendTimeout();
+        this.owners = Caffeine.newBuilder().maximumSize(applicationProperties.getEvents().getOwnersCapacity()).build();
+        this.archived = Caffeine.newBuilder().maximumSize(applicationProperties.getEvents().getOwnersCapacity()).build();
+        this.senders =
+            new ThreadPoolExecutor(
+                applicationProperties.getEvents().getSenderThreads(),
+                applicationProperties.getEvents().getSenderThreads(),
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(applicationProperties.getEvents().getQueueCapacity()),
+                new CustomizableThreadFactory("smart-trade-events-")
+            );
+        Gauge
+            .builder(SUBSCRIBERS_METER_NAME, subscribers, Set::size)
+            .description("Number of clients receiving the changes of the trades.")
+            .register(meterRegistry);
+        this.evictedCounter = Counter
+            .builder(EVICTED_METER_NAME)
+            .description("Number of clients disconnected for consuming the trade changes too slowly, or for lack of a sender thread.")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Subscribe to the changes of the trades of a legal entity.
+     *
+     * @param legalEntity the legal entity of the customer.
+     * @param lastEventId the id of the last event received before reconnecting, {@code null} for a new subscription.
+     * @return the emitter of the events.
+     */
+    public SseEmitter subscribe(String legalEntity, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout);
+        subscribe(emitter, legalEntity, lastEventId);
+        startWatching();
+        return emitter;
+    }
+
+    void subscribe(SseEmitter emitter, String legalEntity, String lastEventId) {
+        Subscriber subscriber = new Subscriber(emitter, legalEntity, lastEventId);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // Live events are buffered from now on, while the missed ones are replayed
+        subscribers.add(subscriber);
+        if (subscriber.replaying) {
+            execute(subscriber, () -> replay(subscriber));
+        }
+    }
+
+    /**
+     * Keep the connections open, and detect the clients which are gone or stuck in a send.
+     */
+    @Scheduled(fixedDelay = 15000)
+    public void sendHeartbeats() {
+        disconnectStuckSubscribers(System.currentTimeMillis());
+        subscribers.forEach(subscriber -> offer(subscriber, HEARTBEAT));
+    }
+
+    /**
+     * Disconnect the subscribers blocking a sender thread for longer than the send timeout, which releases the thread
+     * once the write fails.
+     */
+    void disconnectStuckSubscribers(long now) {
+        for (Subscriber subscriber : subscribers) {
+            long sendingSince = subscriber.sendingSince;
+            if (sendingSince != 0 && now - sendingSince > sendTimeout) {
+                evict(subscriber, "stuck");
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        watcher.shutdown();
+        senders.shutdown();
+    }
+
+    private void startWatching() {
+        if (watching.compareAndSet(false, true)) {
+            watcher.execute(this::watch);
+        }
+    }
+
+    /**
+     * Read the shared change stream, resuming after the last change read when it is interrupted.
+     */
+    private void watch() {
+        BsonDocument resumeToken = null;
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream(resumeToken).cursor()) {
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change != null) {
+                        resumeToken = change.getResumeToken();
+                        Event event = toEvent(change);
+                        if (event != null) {
+                            publish(event);
+                        }
+                    }
+                }
+            } catch (MongoException e) {
+                log.warn("SmartTrade change stream interrupted, resuming: {}", e.getMessage());
+                sleep(1000);
+            } catch (RuntimeException e) {
+                log.error("SmartTrade change stream failed", e);
+                sleep(1000);
+            }
+        }
+    }
+
+    /**
+     * Send the events missed by a reconnecting client from a change stream of its own, then the live events.
+     */
+    private void replay(Subscriber subscriber) {
+        try {
+            sendMissedEvents(subscriber);
+        } catch (IOException e) {
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        }
+        subscriber.replaying = false;
+        if (subscriber.draining.compareAndSet(false, true)) {
+            drain(subscriber);
+        }
+    }
+
+    private void sendMissedEvents(Subscriber subscriber) throws IOException {
+        BsonDocument resumeToken = new BsonDocument("_data", new BsonString(subscriber.lastEventId));
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStream(resumeToken).cursor()) {
+            ChangeStreamDocument<Document> change;
+            // Stop once caught up with the changes made so far, the next ones are buffered from the shared stream
+            while ((change = cursor.tryNext()) != null) {
+                Event event = toEvent(change);
+                if (event != null && subscriber.accepts(event)) {
+                    send(subscriber, event);
+                }
+            }
+        } catch (MongoException e) {
+            log.debug("Cannot replay the SmartTrade events after {}: {}", subscriber.lastEventId, e.getMessage());
+            send(subscriber, Event.reset(null));
+        }
+    }
+
+    private ChangeStreamIterable<Document> changeStream(BsonDocument resumeToken) {
+        List<Bson> pipeline = Collections.singletonList(Aggregates.match(Filters.in("operationType", OPERATION_TYPES)));
+        ChangeStreamIterable<Document> changeStream = mongoTemplate
+            .getCollection(mongoTemplate.getCollectionName(SmartTrade.class))
+            .watch(pipeline)
+            .fullDocument(FullDocument.UPDATE_LOOKUP)
+            .maxAwaitTime(1, TimeUnit.SECONDS);
+        return resumeToken != null ? changeStream.resumeAfter(resumeToken) : changeStream;
+    }
+
+    /**
+     * The event of a change, {@code null} for the changes not sent.
+     */
+    private Event toEvent(ChangeStreamDocument<Document> change) {
+        String id = change.getResumeToken().getString("_data").getValue();
+        String type = change.getOperationType().getValue();
+        BsonValue documentKey = change.getDocumentKey().get("_id");
+        String smartTradeId = documentKey.isObjectId()
+            ? documentKey.asObjectId().getValue().toHexString()
+            : documentKey.asString().getValue();
+        BsonDocument updatedFields = change.getUpdateDescription() != null ? change.getUpdateDescription().getUpdatedFields() : null;
+        if (updatedFields != null && updatedFields.containsKey(SmartTradeRepositoryCustom.ARCHIVED_FIELD)) {
+            markArchived(smartTradeId);
+            return null;
+        }
+        if (updatedFields != null && updatedFields.containsKey(SmartTradeRepositoryCustom.DELETED_PARTIES_FIELD)) {
+            markDeleted(
+                smartTradeId,
+                updatedFields
+                    .getArray(SmartTradeRepositoryCustom.DELETED_PARTIES_FIELD)
+                    .stream()
+                    .map(party -> party.asString().getValue())
+                    .collect(Collectors.toList())
+            );
+            return null;
+        }
+        if (change.getFullDocument() == null) {
+            // Deleted, or deleted before the update could be looked up
+            return deleteEvent(id, smartTradeId);
+        }
+        return changeEvent(id, type, mongoTemplate.getConverter().read(SmartTrade.class, change.getFullDocument()));
+    }
+
+    /**
+     * Record that a trade is about to be removed for being archived.
+     */
+    void markArchived(String smartTradeId) {
+        archived.put(smartTradeId, Boolean.TRUE);
+    }
+
+    /**
+     * Record the parties of a trade about to be deleted.
+     */
+    void markDeleted(String smartTradeId, List<String> parties) {
+        owners.put(smartTradeId, parties);
+    }
+
+    /**
+     * The change of a trade, for its parties, and as a deletion for the parties it was taken away from: those stored
+     * with it by the replacement of the trade, and those last seen on it.
+     */
+    Event changeEvent(String id, String type, SmartTrade smartTrade) {
+        List<String> parties = Arrays.asList(smartTrade.getTradingParty(), smartTrade.getCounterParty());
+        Set<String> formerParties = new HashSet<>();
+        if (smartTrade.getId() != null) {
+            List<String> previousParties = owners.getIfPresent(smartTrade.getId());
+            if (previousParties != null) {
+                formerParties.addAll(previousParties);
+            }
+            owners.put(smartTrade.getId(), parties);
+        }
+        // Only a replacement sets them, the other updates leave those of the last replacement
+        if ("replace".equals(type) && smartTrade.getFormerParties() != null) {
+            formerParties.addAll(smartTrade.getFormerParties());
+        }
+        formerParties.removeAll(parties);
+        formerParties.remove(null);
+        return new Event(id, type, smartTrade, smartTrade.getId(), parties, formerParties.isEmpty() ? null : List.copyOf(formerParties));
+    }
+
+    /**
+     * The deletion of a trade, for the parties recorded or last seen on it, or a reset for all the clients when they are
+     * not known. The removal of a trade marked archived is not a deletion, and has no event.
+     */
+    Event deleteEvent(String id, String smartTradeId) {
+        if (archived.getIfPresent(smartTradeId) != null) {
+            archived.invalidate(smartTradeId);
+            owners.invalidate(smartTradeId);
+            return null;
+        }
+        List<String> parties = owners.getIfPresent(smartTradeId);
+        if (parties == null) {
+            log.debug("Resetting the clients on the deletion of SmartTrade {}, whose parties are not known", smartTradeId);
+            return Event.reset(id);
+        }
+        owners.invalidate(smartTradeId);
+        return new Event(id, "delete", null, smartTradeId, parties, null);
+    }
+
+    /**
+     * Fan an event out to the subscribers it concerns.
+     */
+    void publish(Event event) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.accepts(event)) {
+                offer(subscriber, event);
+            }
+        }
+    }
+
+    private void offer(Subscriber subscriber, Event event) {
+        if (!subscriber.buffer.offer(event)) {
+            evict(subscriber, "slow");
+            return;
+        }
+        if (!subscriber.replaying && subscriber.draining.compareAndSet(false, true)) {
+            execute(subscriber, () -> drain(subscriber));
+        }
+    }
+
+    /**
+     * Run a task sending the events of a subscriber, disconnecting it when no sender thread is available.
+     */
+    private void execute(Subscriber subscriber, Runnable task) {
+        try {
+            senders.execute(task);
+        } catch (RejectedExecutionException e) {
+            subscriber.draining.set(false);
+            evict(subscriber, "unserved");
+        }
+    }
+
+    private void evict(Subscriber subscriber, String reason) {
+        if (subscribers.remove(subscriber)) {
+            evictedCounter.increment();
+            log.debug("Disconnecting {} SmartTrade events subscriber of {}", reason, subscriber.legalEntity);
+            subscriber.emitter.complete();
+        }
+    }
+
+    /**
+     * Send the buffered events of a subscriber, by the only thread which set its draining flag.
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            do {
+                Event event;
+                while ((event = subscriber.buffer.poll()) != null) {
+                    if (subscriber.isNew(event)) {
+                        send(subscriber, event);
+                    }
+                }
+                subscriber.draining.set(false);
+                // An event may have been buffered after the last poll, without starting a new drain
+            } while (!subscriber.buffer.isEmpty() && subscriber.draining.compareAndSet(false, true));
+        } catch (IOException e) {
+            subscriber.draining.set(false);
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(e);
+        }
+    }
+
+    private static void send(Subscriber subscriber, Event event) throws IOException {
+        subscriber.sendingSince = System.currentTimeMillis();
+        try {
+            doSend(subscriber, event);
+        } finally {
+            subscriber.sendingSince = 0;
+        }
+    }
+
+    private static void doSend(Subscriber subscriber, Event event) throws IOException {
+        if (event == HEARTBEAT) {
+            subscriber.emitter.send(SseEmitter.event().comment(""));
+            return;
+        }
+        // The parties a trade was taken away from get its deletion
+        boolean deleted = !event.broadcast && !event.parties.contains(subscriber.legalEntity);
+        SseEmitter.SseEventBuilder builder = SseEmitter.event().name(deleted ? "delete" : event.type);
+        if (event.id != null) {
+            builder.id(event.id);
+            subscriber.lastSentId = event.id;
+        }
+        if (deleted) {
+            builder.data(Map.of("id", event.smartTradeId), MediaType.APPLICATION_JSON);
+        } else if (event.smartTrade != null) {
+            builder.data(event.smartTrade, MediaType.APPLICATION_JSON);
+        } else if (event.smartTradeId != null) {
+            builder.data(Map.of("id", event.smartTradeId), MediaType.APPLICATION_JSON);
+        }
+        subscriber.emitter.send(builder);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A change of a trade, identified by its resume token.
+     */
+    static final class Event {
+
+        private final String id;
+
+        private final String type;
+
+        private final SmartTrade smartTrade;
+
+        private final String smartTradeId;
+
+        /**
+         * The legal entities the change is sent to, {@code null} for none.
+         */
+        private final List<String> parties;
+
+        /**
+         * The legal entities the trade was taken away from by the change, which are sent its deletion, {@code null} for
+         * none.
+         */
+        private final List<String> formerParties;
+
+        /**
+         * Whether the event is sent to all the clients.
+         */
+        private final boolean broadcast;
+
+        Event(String id, String type, SmartTrade smartTrade, String smartTradeId, List<String> parties, List<String> formerParties) {
+            this(id, type, smartTrade, smartTradeId, parties, formerParties, false);
+        }
+
+        private Event(
+            String id,
+            String type,
+            SmartTrade smartTrade,
+            String smartTradeId,
+            List<String> parties,
+            List<String> formerParties,
+            boolean broadcast
+        ) {
+            this.id = id;
+            this.type = type;
+            this.smartTrade = smartTrade;
+            this.smartTradeId = smartTradeId;
+            this.parties = parties;
+            this.formerParties = formerParties;
+            this.broadcast = broadcast;
+        }
+
+        /**
+         * The event telling all the clients to reload the trades.
+         */
+        static Event reset(String id) {
+            return new Event(id, RESET_EVENT, null, null, null, null, true);
+        }
+    }
+
+    private final class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private final String legalEntity;
+
+        private final String lastEventId;
+
+        private final Queue<Event> buffer;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private volatile boolean replaying;
+
+        /**
+         * The id of the last event sent, to skip the live events already sent while replaying.
+         */
+        private volatile String lastSentId;
+
+        /**
+         * The time the send in progress started, {@code 0} when none is.
+         */
+        private volatile long sendingSince;
+
+        private Subscriber(SseEmitter emitter, String legalEntity, String lastEventId) {
+            this.emitter = emitter;
+            this.legalEntity = legalEntity;
+            this.lastEventId = lastEventId;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+            this.replaying = lastEventId != null;
+        }
+
+        private boolean accepts(Event event) {
+            return (
+                event.broadcast ||
+                (event.parties != null && event.parties.contains(legalEntity)) ||
+                (event.formerParties != null && event.formerParties.contains(legalEntity))
+            );
+        }
+
+        private boolean isNew(Event event) {
+            // Resume tokens are ordered as their changes
+            return event.id == null || lastSentId == null || event.id.compareTo(lastSentId) > 0;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.osttra.fx.blockstream.service;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class finding the trade already captured with a transaction id, so that capturing a trade again returns the
+ * stored one instead of writing a new one.
+ * <p>
+ * Most transaction ids are new, so they are first looked up in a Bloom filter of all the stored transaction ids, which
+ * answers without querying MongoDB when the transaction id was never stored. Recently stored transaction ids are
+ * cached with the id of their trade, for the retries which come shortly after a capture. Neither is authoritative:
+ * the unique {@code transaction_id} index still rejects a duplicate the filter would miss, e.g. one inserted by another
+ * instance.
+ */
+@Service
+public class SmartTradeIdempotencyService {
+
+    public static final String TRADE_IDS_BY_TRANSACTION_ID_CACHE = "smartTradeIdsByTransactionId";
+
+    public static final String CHECKS_METER_NAME = "smart_trade.idempotency.checks";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final Logger log = LoggerFactory.getLogger(SmartTradeIdempotencyService.class);
+
+    private final SmartTradeRepository smartTradeRepository;
+
+    private final CacheManager cacheManager;
+
+    private final ApplicationProperties.Idempotency idempotency;
+
+    private final Counter skippedCounter;
+
+    private final Counter cachedCounter;
+
+    private final Counter queriedCounter;
+
+    private volatile BloomFilter filter;
+
+    /**
+     * The filter being rebuilt, which must also get the transaction ids stored meanwhile.
+     */
+    private volatile BloomFilter nextFilter;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    public SmartTradeIdempotencyService(
+        SmartTradeRepository smartTradeRepository,
+        CacheManager cacheManager,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.smartTradeRepository = smartTradeRepository;
+        this.cacheManager = cacheManager;
+        this.idempotency = applicationProperties.getIdempotency();
+        this.skippedCounter = checksCounter(meterRegistry, "skipped");
+        this.cachedCounter = checksCounter(meterRegistry, "cached");
+        this.queriedCounter = checksCounter(meterRegistry, "queried");
+    }
+
+    private static Counter checksCounter(MeterRegistry meterRegistry, String lookup) {
+        return Counter
+            .builder(CHECKS_METER_NAME)
+            .description("Number of transaction ids checked for an existing trade, by where the answer came from.")
+            .tag("lookup", lookup)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Build the Bloom filter from the transaction ids stored in MongoDB, sized for twice as many of them.
+     */
+    @PostConstruct
+    public void rebuildFilter() {
+        long count = smartTradeRepository.countByTransactionIdNotNull();
+        BloomFilter building = new BloomFilter(
+            Math.max(2 * count, idempotency.getMinCapacity()),
+            idempotency.getFalsePositiveProbability()
+        );
+        nextFilter = building;
+        try (Stream<String> transactionIds = smartTradeRepository.streamAllTransactionIds(FETCH_SIZE)) {
+            transactionIds.forEach(building::put);
+        }
+        filter = building;
+        nextFilter = null;
+        log.info("Transaction id filter built from {} trades, sized for {}", count, building.getCapacity());
+    }
+
+    /**
+     * Get the trade already captured with a transaction id.
+     *
+     * @param transactionId the transaction id.
+     * @return the stored trade, if any.
+     */
+    public Optional<SmartTrade> findOriginal(String transactionId) {
+        Cache cache = cache();
+        String id = cache.get(transactionId, String.class);
+        if (id != null) {
+            Optional<SmartTrade> original = smartTradeRepository.findById(id);
+            if (original.isPresent() && transactionId.equals(original.get().getTransactionId())) {
+                cachedCounter.increment();
+                return original;
+            }
+            cache.evict(transactionId);
+        }
+        if (!filter.mightContain(transactionId)) {
+            skippedCounter.increment();
+            return Optional.empty();
+        }
+        queriedCounter.increment();
+        Optional<SmartTrade> original = smartTradeRepository.findOneByTransactionId(transactionId);
+        original.ifPresent(smartTrade -> cache.put(transactionId, smartTrade.getId()));
+        return original;
+    }
+
+    /**
+     * Record the transaction id of a stored trade. The filter is rebuilt in the background when it gets more
+     * transaction ids than it is sized for.
+     *
+     * @param smartTrade the stored trade.
+     */
+    public void register(SmartTrade smartTrade) {
+        String transactionId = smartTrade.getTransactionId();
+        if (transactionId == null) {
+            return;
+        }
+        BloomFilter current = filter;
+        current.put(transactionId);
+        BloomFilter next = nextFilter;
+        if (next != null) {
+            next.put(transactionId);
+        }
+        cache().put(transactionId, smartTrade.getId());
+        if (current.isSaturated() && rebuilding.compareAndSet(false, true)) {
+            CompletableFuture
+                .runAsync(this::rebuildFilter)
+                .whenComplete((result, e) -> {
+                    rebuilding.set(false);
+                    if (e != null) {
+                        log.error("Failed to rebuild the transaction id filter", e);
+                    }
+                });
+        }
+    }
+
+    private Cache cache() {
+        return Objects.requireNonNull(cacheManager.getCache(TRADE_IDS_BY_TRANSACTION_ID_CACHE));
+    }
+}
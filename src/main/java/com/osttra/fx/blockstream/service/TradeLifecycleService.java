@@ -0,0 +1,325 @@
+package com.osttra.fx.blockstream.service;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Rate;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class driving the lifecycle of the trades: {@code NEW -> VALIDATED -> BOOKED -> SETTLED}, or {@code FAILED}.
+ * <p>
+ * Trades are processed asynchronously by single threaded workers, each one owning the customers whose hash code maps
+ * to it, so that the trades of a customer are processed in order while different customers are processed in parallel.
+ * The queues of the workers are bounded: submitting to a full queue does not wait for room, so that the request saving
+ * the trade is not held, and leaves the trade to the periodic sweep of the unfinished trades.
+ * <p>
+ * Booked trades are handed to the {@link TradeMatchingService}, to be paired with the trades of the other parties, and
+ * failed trades are removed from the {@link PositionService}.
+ */
+@Service
+public class TradeLifecycleService {
+
+    public static final String STAGE_METER_NAME = "trade.lifecycle.stage";
+    public static final String QUEUE_METER_NAME = "trade.lifecycle.queue";
+    public static final String REJECTED_METER_NAME = "trade.lifecycle.rejected";
+    public static final String COMPLETED_METER_NAME = "trade.lifecycle.completed";
+
+    private static final List<String> PENDING_STATUSES = Arrays
+        .stream(TradeStatus.values())
+        .filter(status -> !status.isTerminal())
+        .map(TradeStatus::name)
+        .collect(Collectors.toList());
+
+    private final Logger log = LoggerFactory.getLogger(TradeLifecycleService.class);
+
+    private final SmartTradeRepository smartTradeRepository;
+
+    private final TradeMatchingService tradeMatchingService;
+
+    private final PositionService positionService;
+
+    private final MeterRegistry meterRegistry;
+
+    private final List<ThreadPoolExecutor> workers;
+
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final int queueCapacity;
+
+    private final Timer validationTimer;
+
+    private final Timer enrichmentTimer;
+
+    private final Timer settlementTimer;
+
+    private final Counter rejectedCounter;
+
+    public TradeLifecycleService(
+        SmartTradeRepository smartTradeRepository,
+        TradeMatchingService tradeMatchingService,
+        PositionService positionService,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.smartTradeRepository = smartTradeRepository;
+        this.tradeMatchingService = tradeMatchingService;
+        this.positionService = positionService;
+        this.meterRegistry = meterRegistry;
+        ApplicationProperties.Lifecycle lifecycle = applicationProperties.getLifecycle();
+        this.queueCapacity = lifecycle.getQueueCapacity();
+
+        List<ThreadPoolExecutor> partitions = new ArrayList<>(lifecycle.getPartitions());
+        for (int partition = 0; partition < lifecycle.getPartitions(); partition++) {
+            ThreadPoolExecutor worker = new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("trade-lifecycle-" + partition + "-")
+            );
+            // Trades are offered to the queue directly, to be left to the sweep instead of raising a rejection
+            worker.prestartCoreThread();
+            Gauge
+                .builder(QUEUE_METER_NAME, worker.getQueue(), Queue::size)
+                .description("Number of trades waiting to be processed by a lifecycle worker.")
+                .baseUnit("trades")
+                .tag("partition", String.valueOf(partition))
+                .register(meterRegistry);
+            partitions.add(worker);
+        }
+        this.workers = Collections.unmodifiableList(partitions);
+
+        this.validationTimer = stageTimer("validation");
+        this.enrichmentTimer = stageTimer("enrichment");
+        this.settlementTimer = stageTimer("settlement");
+        this.rejectedCounter = Counter
+            .builder(REJECTED_METER_NAME)
+            .description("Number of trades which could not be queued and were left to the sweep.")
+            .baseUnit("trades")
+            .register(meterRegistry);
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer
+            .builder(STAGE_METER_NAME)
+            .description("Time spent by a trade in a lifecycle stage.")
+            .tag("stage", stage)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Queue a trade for processing by the worker of its customer, without waiting for room if the queue is full.
+     *
+     * @param smartTrade the saved trade.
+     * @return whether the trade was queued, otherwise it will be picked up by the next sweep.
+     */
+    public boolean submit(SmartTrade smartTrade) {
+        String id = smartTrade.getId();
+        if (!inFlight.add(id)) {
+            return true;
+        }
+        ThreadPoolExecutor worker = workers.get(Math.floorMod(partitionKey(smartTrade).hashCode(), workers.size()));
+        if (worker.getQueue().offer(() -> process(id))) {
+            return true;
+        }
+        inFlight.remove(id);
+        rejectedCounter.increment();
+        log.warn("Lifecycle queue full, leaving SmartTrade {} to the sweep", id);
+        return false;
+    }
+
+    /**
+     * Queue the trades whose lifecycle is not finished, after a restart or when their queue was full.
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
+    public void resubmitPendingTrades() {
+        smartTradeRepository
+            .findAllByStatusIn(PENDING_STATUSES, PageRequest.of(0, queueCapacity, Sort.by("id")))
+            .forEach(this::submit);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    private static String partitionKey(SmartTrade smartTrade) {
+        if (smartTrade.getCustomer() != null && smartTrade.getCustomer().getCustomerHashCode() != null) {
+            return smartTrade.getCustomer().getCustomerHashCode();
+        }
+        if (smartTrade.getCustomer() != null && smartTrade.getCustomer().getCustomerLegalEntity() != null) {
+            return smartTrade.getCustomer().getCustomerLegalEntity();
+        }
+        return smartTrade.getId();
+    }
+
+    private void process(String id) {
+        try {
+            SmartTrade smartTrade = smartTradeRepository.findById(id).orElse(null);
+            while (smartTrade != null) {
+                smartTrade = advance(smartTrade);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to process the lifecycle of SmartTrade {}", id, e);
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    /**
+     * Run the stage of the current status of a trade.
+     *
+     * @return the trade in its new status, or {@code null} if it is finished or was changed concurrently.
+     */
+    private SmartTrade advance(SmartTrade smartTrade) {
+        TradeStatus status = TradeStatus.fromName(smartTrade.getStatus());
+        if (status == TradeStatus.NEW) {
+            return validationTimer.record(() -> validate(smartTrade));
+        }
+        if (status == TradeStatus.VALIDATED) {
+            return enrichmentTimer.record(() -> book(smartTrade));
+        }
+        if (status == TradeStatus.BOOKED) {
+            return settlementTimer.record(() -> settle(smartTrade));
+        }
+        return null;
+    }
+
+    private SmartTrade validate(SmartTrade smartTrade) {
+        String failureReason = validationFailure(smartTrade);
+        if (failureReason != null) {
+            return fail(smartTrade, failureReason);
+        }
+        return updateStatus(smartTrade, TradeStatus.VALIDATED, Collections.emptyMap());
+    }
+
+    private SmartTrade fail(SmartTrade smartTrade, String failureReason) {
+        PositionService.Contribution contribution = PositionService.contributionOf(smartTrade);
+        smartTrade.setFailureReason(failureReason);
+        SmartTrade failed = updateStatus(smartTrade, TradeStatus.FAILED, Map.of("failureReason", failureReason));
+        if (TradeStatus.FAILED.name().equals(smartTrade.getStatus())) {
+            positionService.update(contribution, smartTrade);
+        }
+        return failed;
+    }
+
+    private static String validationFailure(SmartTrade smartTrade) {
+        if (smartTrade.getCurrencyBuy() == null || smartTrade.getCurrencySell() == null) {
+            return "The currencies are required";
+        }
+        if (smartTrade.getCurrencyBuy().equals(smartTrade.getCurrencySell())) {
+            return "The bought and sold currencies must differ";
+        }
+        if (smartTrade.getAmount() == null || smartTrade.getAmount().signum() <= 0) {
+            return "The amount must be positive";
+        }
+        if (smartTrade.getAmount().stripTrailingZeros().scale() > Money.MAX_SCALE) {
+            return "The amount has more than " + Money.MAX_SCALE + " decimals";
+        }
+        if (smartTrade.getRate() == null ? smartTrade.getContraAmount() == null : smartTrade.getRate() <= 0) {
+            return "A positive rate or a contra amount is required";
+        }
+        if (!fitsMoney(smartTrade)) {
+            return "The amounts are too large";
+        }
+        if (smartTrade.getValueDate() == null) {
+            return "The value date is required";
+        }
+        LocalDate tradeDate = smartTrade.getTradeDate() != null ? smartTrade.getTradeDate() : LocalDate.now();
+        if (smartTrade.getValueDate().isBefore(tradeDate)) {
+            return "The value date is before the trade date";
+        }
+        return null;
+    }
+
+    /**
+     * Tell whether the amount and the contra amount, given or at the rate, fit a {@link Money} in their currencies, as
+     * booking and the positions need.
+     */
+    private static boolean fitsMoney(SmartTrade smartTrade) {
+        try {
+            Money amount = Money.of(smartTrade.getAmount(), smartTrade.getCurrencyBuy());
+            if (smartTrade.getContraAmount() != null) {
+                Money.of(smartTrade.getContraAmount(), smartTrade.getCurrencySell());
+            } else {
+                amount.times(Rate.of(smartTrade.getRate()), Money.scaleOf(smartTrade.getCurrencySell()));
+            }
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    private SmartTrade book(SmartTrade smartTrade) {
+        Map<String, Object> fields = new HashMap<>();
+        if (smartTrade.getTradeDate() == null) {
+            smartTrade.setTradeDate(LocalDate.now());
+            fields.put("tradeDate", smartTrade.getTradeDate());
+        }
+        if (smartTrade.getContraAmount() == null) {
+            // In the minor units of the sell currency, without BigDecimal intermediates
+            Money contraAmount;
+            try {
+                Money amount = Money.of(smartTrade.getAmount(), smartTrade.getCurrencyBuy());
+                contraAmount = amount.times(Rate.of(smartTrade.getRate()), Money.scaleOf(smartTrade.getCurrencySell()));
+            } catch (ArithmeticException e) {
+                // Validated before the amounts were checked, it would otherwise be retried by every sweep
+                return fail(smartTrade, "The amounts are too large");
+            }
+            smartTrade.setContraAmount(contraAmount.toBigDecimal());
+            fields.put("contraAmount", smartTrade.getContraAmount());
+        }
+        SmartTrade booked = updateStatus(smartTrade, TradeStatus.BOOKED, fields);
+        if (booked != null) {
+            tradeMatchingService.match(booked);
+        }
+        return booked;
+    }
+
+    private SmartTrade settle(SmartTrade smartTrade) {
+        return updateStatus(smartTrade, TradeStatus.SETTLED, Collections.emptyMap());
+    }
+
+    private SmartTrade updateStatus(SmartTrade smartTrade, TradeStatus status, Map<String, Object> fields) {
+        if (!smartTradeRepository.updateStatus(smartTrade.getId(), smartTrade.getStatus(), status.name(), fields)) {
+            log.debug("SmartTrade {} changed while in status {}, leaving it", smartTrade.getId(), smartTrade.getStatus());
+            return null;
+        }
+        smartTrade.setStatus(status.name());
+        if (status.isTerminal()) {
+            meterRegistry.counter(COMPLETED_METER_NAME, "status", status.name()).increment();
+            return null;
+        }
+        return smartTrade;
+    }
+}
@@ -0,0 +1,419 @@
+package com.osttra.fx.blockstream.service;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.MatchStatus;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class pairing the two sides of a deal, each one captured as its own trade by one of the parties.
+ * <p>
+ * The mirror of a trade has the parties and the currencies swapped, so the amount it buys is the amount the trade
+ * sells, computed when the trade is enriched, and the other way round, and it has the same value date. Booked trades
+ * which are not matched yet are indexed in memory by those fields, so that the mirror of an incoming trade is found
+ * with a single lookup. The index is split in stripes by currency pair, each one guarded by its own lock, and is
+ * rebuilt from MongoDB at startup. The match statuses are written back to MongoDB in batches.
+ */
+@Service
+public class TradeMatchingService {
+
+    public static final String MATCHED_METER_NAME = "trade.matching.matched";
+    public static final String UNMATCHED_METER_NAME = "trade.matching.unmatched";
+
+    private final Logger log = LoggerFactory.getLogger(TradeMatchingService.class);
+
+    private final SmartTradeRepository smartTradeRepository;
+
+    private final Stripe[] stripes;
+
+    private final int batchSize;
+
+    /**
+     * Keys of the indexed trades, by trade id.
+     */
+    private final Map<String, MatchKey> indexedKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Ids of the trades matched in memory whose match status is not written yet.
+     */
+    private final Set<String> matchedIds = ConcurrentHashMap.newKeySet();
+
+    private final Queue<SmartTrade> pendingMatches = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The match statuses whose write failed, written again before the ones queued since, by trade id.
+     */
+    private final Map<String, SmartTrade> failedMatches = new LinkedHashMap<>();
+
+    private final Counter matchedCounter;
+
+    public TradeMatchingService(
+        SmartTradeRepository smartTradeRepository,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.smartTradeRepository = smartTradeRepository;
+        ApplicationProperties.Matching matching = applicationProperties.getMatching();
+        this.batchSize = matching.getBatchSize();
+        this.stripes = new Stripe[matching.getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        Gauge
+            .builder(UNMATCHED_METER_NAME, indexedKeys, Map::size)
+            .description("Number of booked trades waiting for the trade of the other party.")
+            .baseUnit("trades")
+            .register(meterRegistry);
+        this.matchedCounter = Counter
+            .builder(MATCHED_METER_NAME)
+            .description("Number of pairs of trades matched.")
+            .baseUnit("pairs")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Index the booked trades which are not matched yet, matching the pairs found on the way.
+     */
+    @PostConstruct
+    public void rebuildIndex() {
+        try (Stream<SmartTrade> smartTrades = smartTradeRepository.streamAllUnmatched(batchSize)) {
+            smartTrades.forEach(this::match);
+        }
+        flush();
+        log.info("Matching index rebuilt with {} unmatched trades", indexedKeys.size());
+    }
+
+    /**
+     * Pair a booked trade with the unmatched mirror trade, or index it until the mirror trade comes.
+     *
+     * @param smartTrade the trade.
+     * @return the id of the mirror trade, or {@code null} if the trade is left unmatched or cannot be matched.
+     */
+    public String match(SmartTrade smartTrade) {
+        if (!isMatchable(smartTrade)) {
+            return null;
+        }
+        String id = smartTrade.getId();
+        MatchKey key = new MatchKey(smartTrade);
+        MatchKey mirrorKey = key.mirror();
+        String mirrorId;
+        // The mirror key has the same currency pair, so both keys are guarded by the same lock
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            if (indexedKeys.containsKey(id) || matchedIds.contains(id)) {
+                return null;
+            }
+            mirrorId = stripe.poll(mirrorKey);
+            if (mirrorId != null) {
+                indexedKeys.remove(mirrorId);
+                matchedIds.add(id);
+                matchedIds.add(mirrorId);
+            } else {
+                stripe.add(key, id);
+                indexedKeys.put(id, key);
+            }
+        }
+
+        if (mirrorId != null) {
+            smartTrade.matchStatus(MatchStatus.MATCHED.name()).matchedTradeId(mirrorId);
+            pendingMatches.add(new SmartTrade().id(id).matchStatus(MatchStatus.MATCHED.name()).matchedTradeId(mirrorId));
+            pendingMatches.add(new SmartTrade().id(mirrorId).matchStatus(MatchStatus.MATCHED.name()).matchedTradeId(id));
+            matchedCounter.increment();
+        } else if (!MatchStatus.UNMATCHED.name().equals(smartTrade.getMatchStatus())) {
+            smartTrade.matchStatus(MatchStatus.UNMATCHED.name()).matchedTradeId(null);
+            pendingMatches.add(new SmartTrade().id(id).matchStatus(MatchStatus.UNMATCHED.name()));
+        }
+        return mirrorId;
+    }
+
+    /**
+     * Match an updated trade again, as its matching fields may have changed. A matched trade is left matched while it
+     * is still the mirror of its matched trade, otherwise both trades are unmatched and matched again.
+     *
+     * @param smartTrade the saved trade.
+     */
+    public void rematch(SmartTrade smartTrade) {
+        unindex(smartTrade.getId());
+        if (!isMatched(smartTrade)) {
+            match(smartTrade);
+            return;
+        }
+        SmartTrade mirror = smartTradeRepository.findById(smartTrade.getMatchedTradeId()).orElse(null);
+        if (mirror != null && isMirror(smartTrade, mirror)) {
+            return;
+        }
+        rematchUnmatched(smartTrade);
+        if (mirror != null) {
+            rematchUnmatched(mirror);
+        }
+    }
+
+    /**
+     * Remove a deleted trade: if it was matched, its mirror trade is unmatched and matched again.
+     *
+     * @param smartTrade the deleted trade.
+     */
+    public void remove(SmartTrade smartTrade) {
+        unindex(smartTrade.getId());
+        if (isMatched(smartTrade)) {
+            smartTradeRepository.findById(smartTrade.getMatchedTradeId()).ifPresent(this::rematchUnmatched);
+        }
+    }
+
+    /**
+     * Unmatch a trade whose mirror trade was changed or removed, then match it again.
+     */
+    private void rematchUnmatched(SmartTrade smartTrade) {
+        String id = smartTrade.getId();
+        matchedIds.remove(id);
+        smartTrade.matchStatus(MatchStatus.UNMATCHED.name()).matchedTradeId(null);
+        pendingMatches.add(new SmartTrade().id(id).matchStatus(MatchStatus.UNMATCHED.name()));
+        match(smartTrade);
+    }
+
+    private static boolean isMatched(SmartTrade smartTrade) {
+        return MatchStatus.MATCHED.name().equals(smartTrade.getMatchStatus()) && smartTrade.getMatchedTradeId() != null;
+    }
+
+    private static boolean isMirror(SmartTrade smartTrade, SmartTrade mirror) {
+        return (
+            hasMatchingFields(smartTrade) &&
+            hasMatchingFields(mirror) &&
+            isBookedOrSettled(smartTrade) &&
+            isBookedOrSettled(mirror) &&
+            new MatchKey(smartTrade).mirror().equals(new MatchKey(mirror))
+        );
+    }
+
+    /**
+     * Write the pending match statuses to MongoDB, the ones whose write failed first.
+     */
+    @Scheduled(fixedDelay = 1000)
+    @PreDestroy
+    public synchronized void flush() {
+        // The last status of a trade wins, as an unordered bulk write may apply its updates in any order
+        Map<String, SmartTrade> matches = new LinkedHashMap<>(failedMatches);
+        failedMatches.clear();
+        SmartTrade match;
+        while ((match = pendingMatches.poll()) != null) {
+            matches.put(match.getId(), match);
+        }
+        List<SmartTrade> batch = new ArrayList<>(Math.min(matches.size(), batchSize));
+        for (SmartTrade pending : matches.values()) {
+            batch.add(pending);
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        write(batch);
+    }
+
+    private void write(List<SmartTrade> matches) {
+        if (matches.isEmpty()) {
+            return;
+        }
+        try {
+            smartTradeRepository.updateMatches(matches);
+        } catch (RuntimeException e) {
+            // Written again with the next flush, unless a newer status of the same trade is queued meanwhile
+            log.error("Failed to write the match status of {} SmartTrades, retrying", matches.size(), e);
+            matches.forEach(failed -> failedMatches.put(failed.getId(), failed));
+            return;
+        }
+        matches.forEach(written -> matchedIds.remove(written.getId()));
+    }
+
+    private void unindex(String id) {
+        MatchKey key = indexedKeys.get(id);
+        if (key == null) {
+            return;
+        }
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            if (indexedKeys.remove(id, key)) {
+                stripe.remove(key, id);
+            }
+        }
+    }
+
+    private Stripe stripe(MatchKey key) {
+        return stripes[Math.floorMod(key.currencyPairHashCode(), stripes.length)];
+    }
+
+    private static boolean isMatchable(SmartTrade smartTrade) {
+        return (
+            isBookedOrSettled(smartTrade) &&
+            !MatchStatus.MATCHED.name().equals(smartTrade.getMatchStatus()) &&
+            hasMatchingFields(smartTrade)
+        );
+    }
+
+    private static boolean isBookedOrSettled(SmartTrade smartTrade) {
+        TradeStatus status = TradeStatus.fromName(smartTrade.getStatus());
+        return status == TradeStatus.BOOKED || status == TradeStatus.SETTLED;
+    }
+
+    /**
+     * The amount sold is computed when the trade is enriched, so before it is booked.
+     */
+    private static boolean hasMatchingFields(SmartTrade smartTrade) {
+        return (
+            smartTrade.getTradingParty() != null &&
+            smartTrade.getCounterParty() != null &&
+            smartTrade.getCurrencyBuy() != null &&
+            smartTrade.getCurrencySell() != null &&
+            smartTrade.getAmount() != null &&
+            smartTrade.getContraAmount() != null &&
+            smartTrade.getValueDate() != null
+        );
+    }
+
+    /**
+     * A part of the index, holding the ids of the unmatched trades by key, in capture order.
+     */
+    private static final class Stripe {
+
+        private final Map<MatchKey, Deque<String>> unmatched = new HashMap<>();
+
+        private void add(MatchKey key, String id) {
+            unmatched.computeIfAbsent(key, k -> new ArrayDeque<>(1)).addLast(id);
+        }
+
+        private String poll(MatchKey key) {
+            Deque<String> ids = unmatched.get(key);
+            if (ids == null) {
+                return null;
+            }
+            String id = ids.pollFirst();
+            if (ids.isEmpty()) {
+                unmatched.remove(key);
+            }
+            return id;
+        }
+
+        private void remove(MatchKey key, String id) {
+            Deque<String> ids = unmatched.get(key);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                unmatched.remove(key);
+            }
+        }
+    }
+
+    /**
+     * The fields a trade and its mirror trade have in common, the parties, the currencies and the amounts being
+     * swapped: the amount bought is in the currency bought, and the amount sold in the currency sold.
+     */
+    private static final class MatchKey {
+
+        private final String tradingParty;
+
+        private final String counterParty;
+
+        private final String currencyBuy;
+
+        private final String currencySell;
+
+        private final BigDecimal buyAmount;
+
+        private final BigDecimal sellAmount;
+
+        private final LocalDate valueDate;
+
+        private final int hashCode;
+
+        private MatchKey(SmartTrade smartTrade) {
+            this(
+                smartTrade.getTradingParty(),
+                smartTrade.getCounterParty(),
+                smartTrade.getCurrencyBuy(),
+                smartTrade.getCurrencySell(),
+                // Amounts equal whatever their scale
+                smartTrade.getAmount().stripTrailingZeros(),
+                smartTrade.getContraAmount().stripTrailingZeros(),
+                smartTrade.getValueDate()
+            );
+        }
+
+        private MatchKey(
+            String tradingParty,
+            String counterParty,
+            String currencyBuy,
+            String currencySell,
+            BigDecimal buyAmount,
+            BigDecimal sellAmount,
+            LocalDate valueDate
+        ) {
+            this.tradingParty = tradingParty;
+            this.counterParty = counterParty;
+            this.currencyBuy = currencyBuy;
+            this.currencySell = currencySell;
+            this.buyAmount = buyAmount;
+            this.sellAmount = sellAmount;
+            this.valueDate = valueDate;
+            this.hashCode = Objects.hash(tradingParty, counterParty, currencyBuy, currencySell, buyAmount, sellAmount, valueDate);
+        }
+
+        private MatchKey mirror() {
+            return new MatchKey(counterParty, tradingParty, currencySell, currencyBuy, sellAmount, buyAmount, valueDate);
+        }
+
+        /**
+         * A hash code of the currency pair, regardless of which currency is bought.
+         */
+        private int currencyPairHashCode() {
+            return currencyBuy.hashCode() ^ currencySell.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof MatchKey)) {
+                return false;
+            }
+            MatchKey other = (MatchKey) o;
+            return (
+                hashCode == other.hashCode &&
+                tradingParty.equals(other.tradingParty) &&
+                counterParty.equals(other.counterParty) &&
+                currencyBuy.equals(other.currencyBuy) &&
+                currencySell.equals(other.currencySell) &&
+                buyAmount.equals(other.buyAmount) &&
+                sellAmount.equals(other.sellAmount) &&
+                valueDate.equals(other.valueDate)
+            );
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
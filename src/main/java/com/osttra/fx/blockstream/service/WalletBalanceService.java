@@ -0,0 +1,210 @@
+package com.osttra.fx.blockstream.service;
+
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.domain.WalletBalance;
+import com.osttra.fx.blockstream.repository.WalletBalanceRepository;
+import com.osttra.fx.blockstream.repository.WalletRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.StreamUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Service class maintaining the {@link WalletBalance} projection of the wallets, so that reading the balances of a
+ * customer is a single lookup.
+ */
+@Service
+public class WalletBalanceService {
+
+    private static final Duration INTERRUPTED_CHANGE_DELAY = Duration.ofMinutes(1);
+
+    private static final int REBUILD_ATTEMPTS = 3;
+
+    private final Logger log = LoggerFactory.getLogger(WalletBalanceService.class);
+
+    private final WalletBalanceRepository walletBalanceRepository;
+
+    private final WalletRepository walletRepository;
+
+    private final MongoTemplate mongoTemplate;
+
+    public WalletBalanceService(
+        WalletBalanceRepository walletBalanceRepository,
+        WalletRepository walletRepository,
+        MongoTemplate mongoTemplate
+    ) {
+        this.walletBalanceRepository = walletBalanceRepository;
+        this.walletRepository = walletRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Get the balances of a customer.
+     *
+     * @param customer the reference to the customer, may be {@code null}.
+     * @return the non zero balances, as wallets without id ordered by currency code.
+     */
+    public List<Wallet> getBalances(CustomerRef customer) {
+        if (customer == null) {
+            return Collections.emptyList();
+        }
+        return toWallets(walletBalanceRepository.findById(customer.getId()).map(WalletBalance::getBalances).orElse(Collections.emptyMap()));
+    }
+
+    /**
+     * Convert balances by currency code to wallets, skipping the zero balances.
+     *
+     * @param balances the balances by currency code.
+     * @return the wallets, sorted by currency code.
+     */
+    public static List<Wallet> toWallets(Map<String, Money> balances) {
+        return balances
+            .entrySet()
+            .stream()
+            .filter(balance -> !balance.getValue().isZero())
+            .sorted(Map.Entry.comparingByKey())
+            .map(balance -> new Wallet().currencyCode(balance.getKey()).amount(balance.getValue().toBigDecimal()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Tell whether the amount of a new wallet can be added to the balances of its customer, which are read as
+     * {@link Money}.
+     *
+     * @param wallet the new wallet, with its customer.
+     * @return {@code true} if the amount, and the balance of its currency with it, fit a {@link Money}.
+     */
+    public boolean isValidAmount(Wallet wallet) {
+        if (wallet.getAmount() == null) {
+            return true;
+        }
+        if (!WalletBalance.isValidAmount(wallet.getAmount())) {
+            return false;
+        }
+        if (wallet.getCustomer() == null) {
+            return true;
+        }
+        Money balance = walletBalanceRepository
+            .findById(wallet.getCustomer().getId())
+            .map(WalletBalance::getBalances)
+            .map(balances -> balances.get(wallet.getCurrencyCode()))
+            .orElse(Money.ZERO);
+        return WalletBalance.isValidAmount(balance.toBigDecimal().add(wallet.getAmount()));
+    }
+
+    /**
+     * Save a new wallet, and add it to the balances of its customer.
+     *
+     * @param wallet the wallet to save.
+     * @return the saved wallet.
+     */
+    public Wallet saveWallet(Wallet wallet) {
+        if (wallet.getCustomer() == null) {
+            return walletRepository.save(wallet);
+        }
+        String customerId = wallet.getCustomer().getId();
+        walletBalanceRepository.startChange(customerId);
+        Wallet result = null;
+        try {
+            result = walletRepository.save(wallet);
+        } finally {
+            if (result == null) {
+                walletBalanceRepository.applyChange(customerId, null, null);
+            } else {
+                walletBalanceRepository.applyChange(customerId, result.getCurrencyCode(), result.getAmount());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Delete a wallet, and remove it from the balances of its customer.
+     * <p>
+     * The wallet is removed by a single find and remove, so that when it is deleted concurrently only one of the deletes
+     * subtracts it from the balances.
+     *
+     * @param id the id of the wallet.
+     */
+    public void deleteWallet(String id) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        CustomerRef customer = walletRepository.findById(id).map(Wallet::getCustomer).orElse(null);
+        if (customer == null) {
+            mongoTemplate.remove(query, Wallet.class);
+            return;
+        }
+        walletBalanceRepository.startChange(customer.getId());
+        Wallet deleted = null;
+        try {
+            deleted = mongoTemplate.findAndRemove(query, Wallet.class);
+        } finally {
+            if (deleted == null || deleted.getAmount() == null) {
+                walletBalanceRepository.applyChange(customer.getId(), null, null);
+            } else {
+                walletBalanceRepository.applyChange(customer.getId(), deleted.getCurrencyCode(), deleted.getAmount().negate());
+            }
+        }
+    }
+
+    /**
+     * Recompute the balances of every customer from their wallets, to repair any drift of the projection.
+     * <p>
+     * This is scheduled to get fired everyday, at 01:30 (am).
+     */
+    @Scheduled(cron = "0 30 1 * * ?")
+    public void rebuildBalances() {
+        log.debug("Rebuilding the wallet balances");
+        try (Stream<Customer> customers = StreamUtils.createStreamFromIterator(mongoTemplate.stream(new Query(), Customer.class))) {
+            customers.forEach(this::rebuildBalances);
+        }
+    }
+
+    /**
+     * Recompute the balances of a customer from its wallets.
+     * <p>
+     * The balances are only replaced if no change of the wallets was pending when they were read, and none started
+     * until they are replaced, otherwise a change could be counted twice or lost. A change pending for longer than
+     * {@link #INTERRUPTED_CHANGE_DELAY} is taken as interrupted, and is repaired by the rebuild.
+     *
+     * @param customer the customer.
+     * @return {@code true} if the balances were rebuilt, {@code false} if they are being changed.
+     */
+    public boolean rebuildBalances(Customer customer) {
+        for (int attempt = 0; attempt < REBUILD_ATTEMPTS; attempt++) {
+            Optional<WalletBalance> balance = walletBalanceRepository.findById(customer.getId());
+            if (balance.isPresent() && isChanging(balance.get())) {
+                break;
+            }
+            Long revision = balance.map(WalletBalance::getRevision).orElse(null);
+            List<Wallet> balances = walletRepository.findBalancesByCustomer(customer.getId());
+            if (walletBalanceRepository.replaceBalances(customer.getId(), revision, balances)) {
+                return true;
+            }
+        }
+        log.debug("The wallet balances of customer {} are being changed, they are not rebuilt", customer.getId());
+        return false;
+    }
+
+    private static boolean isChanging(WalletBalance balance) {
+        return (
+            balance.getPending() != null &&
+            balance.getPending() != 0 &&
+            balance.getChangedDate() != null &&
+            balance.getChangedDate().isAfter(Instant.now().minus(INTERRUPTED_CHANGE_DELAY))
+        );
+    }
+}
@@ -2,7 +2,10 @@ package com.osttra.fx.blockstream.web.rest;
 
 import com.osttra.fx.blockstream.domain.Currencies;
 import com.osttra.fx.blockstream.repository.CurrenciesRepository;
+import com.osttra.fx.blockstream.service.CurrencyRegistry;
 import com.osttra.fx.blockstream.web.rest.errors.BadRequestAlertException;
+import com.osttra.fx.blockstream.web.rest.util.ETagUtil;
+import com.osttra.fx.blockstream.web.rest.util.MediaTypeUtil;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
@@ -11,8 +14,11 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
@@ -32,8 +38,11 @@ public class CurrenciesResource {
 
     private final CurrenciesRepository currenciesRepository;
 
-    public CurrenciesResource(CurrenciesRepository currenciesRepository) {
+    private final CurrencyRegistry currencyRegistry;
+
+    public CurrenciesResource(CurrenciesRepository currenciesRepository, CurrencyRegistry currencyRegistry) {
         this.currenciesRepository = currenciesRepository;
+        this.currencyRegistry = currencyRegistry;
     }
 
     /**
@@ -49,7 +58,9 @@ public class CurrenciesResource {
         if (currencies.getId() != null) {
             throw new BadRequestAlertException("A new currencies cannot already have an ID", ENTITY_NAME, "idexists");
         }
+        currencies.setVersion(null);
         Currencies result = currenciesRepository.save(currencies);
+        currencyRegistry.put(result);
         return ResponseEntity
             .created(new URI("/api/currencies/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId()))
@@ -58,11 +69,13 @@ public class CurrenciesResource {
 
     /**
      * {@code PUT  /currencies/:id} : Updates an existing currencies.
+     * When the currencies has a version, it must be the stored one.
      *
      * @param id the id of the currencies to save.
      * @param currencies the currencies to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated currencies,
      * or with status {@code 400 (Bad Request)} if the currencies is not valid,
+     * or with status {@code 409 (Conflict)} if the currencies was updated meanwhile,
      * or with status {@code 500 (Internal Server Error)} if the currencies couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -79,11 +92,15 @@ public class CurrenciesResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!currenciesRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        Currencies existingCurrencies = currenciesRepository
+            .findById(id)
+            .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        if (currencies.getVersion() == null) {
+            currencies.setVersion(existingCurrencies.getVersion());
         }
 
         Currencies result = currenciesRepository.save(currencies);
+        currencyRegistry.put(result);
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, currencies.getId()))
@@ -101,7 +118,10 @@ public class CurrenciesResource {
      * or with status {@code 500 (Internal Server Error)} if the currencies couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
-    @PatchMapping(value = "/currencies/{id}", consumes = { "application/json", "application/merge-patch+json" })
+    @PatchMapping(
+        value = "/currencies/{id}",
+        consumes = { "application/json", "application/merge-patch+json", MediaTypeUtil.APPLICATION_SMILE_VALUE, "application/cbor" }
+    )
     public ResponseEntity<Currencies> partialUpdateCurrencies(
         @PathVariable(value = "id", required = false) final String id,
         @RequestBody Currencies currencies
@@ -131,6 +151,7 @@ public class CurrenciesResource {
                 return existingCurrencies;
             })
             .map(currenciesRepository::save);
+        result.ifPresent(currencyRegistry::put);
 
         return ResponseUtil.wrapOrNotFound(
             result,
@@ -139,27 +160,55 @@ public class CurrenciesResource {
     }
 
     /**
-     * {@code GET  /currencies} : get all the currencies.
+     * {@code GET  /currencies} : get all the currencies, from the {@link CurrencyRegistry} rather than MongoDB.
+     * <p>
+     * The response has a weak ETag derived from the ids and versions of the currencies, so that all the instances with
+     * the same currencies give the same ETag, across restarts too.
      *
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of currencies in body.
+     * @param ifNoneMatch the ETag of the currencies the client has, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of currencies in body,
+     * or with status {@code 304 (Not Modified)} if the client has them already.
      */
     @GetMapping("/currencies")
-    public List<Currencies> getAllCurrencies() {
+    public ResponseEntity<List<Currencies>> getAllCurrencies(
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         log.debug("REST request to get all Currencies");
-        return currenciesRepository.findAll();
+        CurrencyRegistry.Snapshot snapshot = currencyRegistry.getSnapshot();
+        String eTag = ETagUtil.weakETag(snapshot.getDigest());
+        if (ETagUtil.matches(ifNoneMatch, eTag)) {
+            return ETagUtil.notModified(eTag);
+        }
+        return ResponseEntity.ok().eTag(eTag).body(snapshot.getCurrencies());
     }
 
     /**
      * {@code GET  /currencies/:id} : get the "id" currencies.
+     * <p>
+     * The response has the version of the currencies as ETag: when the client sends it back with {@code If-None-Match}
+     * and the currencies is still at this version, only the version is read.
      *
      * @param id the id of the currencies to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the currencies, or with status {@code 404 (Not Found)}.
+     * @param ifNoneMatch the ETag of the currencies the client has, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the currencies,
+     * or with status {@code 304 (Not Modified)} if the client has it already, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/currencies/{id}")
-    public ResponseEntity<Currencies> getCurrencies(@PathVariable String id) {
+    public ResponseEntity<Currencies> getCurrencies(
+        @PathVariable String id,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         log.debug("REST request to get Currencies : {}", id);
+        if (ifNoneMatch != null) {
+            Optional<String> eTag = currenciesRepository.findVersionById(id).map(stored -> ETagUtil.strongETag(stored.getVersion()));
+            if (eTag.isPresent() && ETagUtil.matches(ifNoneMatch, eTag.get())) {
+                return ETagUtil.notModified(eTag.get());
+            }
+        }
         Optional<Currencies> currencies = currenciesRepository.findById(id);
-        return ResponseUtil.wrapOrNotFound(currencies);
+        return currencies
+            .map(found -> ResponseEntity.ok().eTag(ETagUtil.strongETag(found.getVersion())).body(found))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     /**
@@ -172,6 +221,7 @@ public class CurrenciesResource {
     public ResponseEntity<Void> deleteCurrencies(@PathVariable String id) {
         log.debug("REST request to delete Currencies : {}", id);
         currenciesRepository.deleteById(id);
+        currencyRegistry.remove(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id)).build();
     }
 }
@@ -1,9 +1,13 @@
 package com.osttra.fx.blockstream.web.rest;
 
 import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.domain.User;
 import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
 import com.osttra.fx.blockstream.repository.UserRepository;
+import com.osttra.fx.blockstream.repository.WalletRepository;
+import com.osttra.fx.blockstream.security.SecurityUtils;
 import com.osttra.fx.blockstream.service.UserService;
 import com.osttra.fx.blockstream.service.dto.AdminUserDTO;
 import com.osttra.fx.blockstream.web.rest.errors.BadRequestAlertException;
@@ -16,6 +20,7 @@ import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -44,9 +49,24 @@ public class CustomerResource {
 
     private final UserService userService;
 
-    public CustomerResource(UserService userService, CustomerRepository customerRepository) {
+    private final CacheManager cacheManager;
+
+    private final SmartTradeRepository smartTradeRepository;
+
+    private final WalletRepository walletRepository;
+
+    public CustomerResource(
+        UserService userService,
+        CustomerRepository customerRepository,
+        CacheManager cacheManager,
+        SmartTradeRepository smartTradeRepository,
+        WalletRepository walletRepository
+    ) {
         this.customerRepository = customerRepository;
         this.userService = userService;
+        this.cacheManager = cacheManager;
+        this.smartTradeRepository = smartTradeRepository;
+        this.walletRepository = walletRepository;
     }
 
     /**
@@ -62,7 +82,15 @@ public class CustomerResource {
         if (customer.getId() != null) {
             throw new BadRequestAlertException("A new customer cannot already have an ID", ENTITY_NAME, "idexists");
         }
+        if (
+            customer.getCustomerLegalEntity() != null &&
+            customerRepository.findOneByCustomerLegalEntity(customer.getCustomerLegalEntity()).isPresent()
+        ) {
+            throw new BadRequestAlertException("Legal entity already in use", ENTITY_NAME, "legalentityexists");
+        }
+        customer.setVersion(null);
         Customer result = customerRepository.save(customer);
+        clearCustomerCaches(result);
         return ResponseEntity
             .created(new URI("/api/customers/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId()))
@@ -70,7 +98,8 @@ public class CustomerResource {
     }
 
     /**
-     * {@code PUT  /customers/:id} : Updates an existing customer.
+     * {@code PUT  /customers/:id} : Updates an existing customer. The references to the customer embedded in its
+     * smartTrades and wallets are updated as well.
      *
      * @param id the id of the customer to save.
      * @param customer the customer to update.
@@ -92,11 +121,17 @@ public class CustomerResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!customerRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
+        Customer existingCustomer = customerRepository
+            .findById(id)
+            .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
+        if (customer.getVersion() == null) {
+            customer.setVersion(existingCustomer.getVersion());
         }
 
         Customer result = customerRepository.save(customer);
+        clearCustomerCaches(existingCustomer);
+        clearCustomerCaches(result);
+        updateCustomerRefs(CustomerRef.of(existingCustomer), result);
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, customer.getId()))
@@ -104,7 +139,8 @@ public class CustomerResource {
     }
 
     /**
-     * {@code PATCH  /customers/:id} : Partial updates given fields of an existing customer, field will ignore if it is null
+     * {@code PATCH  /customers/:id} : Partial updates given fields of an existing customer, field will ignore if it is null.
+     * The references to the customer embedded in its smartTrades and wallets are updated as well.
      *
      * @param id the id of the customer to save.
      * @param customer the customer to update.
@@ -131,9 +167,11 @@ public class CustomerResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Optional<Customer> result = customerRepository
-            .findById(customer.getId())
+        Optional<Customer> existing = customerRepository.findById(customer.getId());
+        CustomerRef previousRef = existing.map(CustomerRef::of).orElse(null);
+        Optional<Customer> result = existing
             .map(existingCustomer -> {
+                clearCustomerCaches(existingCustomer);
                 if (customer.getCustomerName() != null) {
                     existingCustomer.setCustomerName(customer.getCustomerName());
                 }
@@ -149,7 +187,12 @@ public class CustomerResource {
 
                 return existingCustomer;
             })
-            .map(customerRepository::save);
+            .map(customerRepository::save)
+            .map(updatedCustomer -> {
+                clearCustomerCaches(updatedCustomer);
+                updateCustomerRefs(previousRef, updatedCustomer);
+                return updatedCustomer;
+            });
 
         return ResponseUtil.wrapOrNotFound(
             result,
@@ -216,21 +259,60 @@ public class CustomerResource {
     @DeleteMapping("/customers/{id}")
     public ResponseEntity<Void> deleteCustomer(@PathVariable String id) {
         log.debug("REST request to delete Customer : {}", id);
+        Optional<Customer> customer = customerRepository.findById(id);
         customerRepository.deleteById(id);
+        // Evicted once deleted, so that a lookup made meanwhile does not cache the customer again
+        customer.ifPresent(this::clearCustomerCaches);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id)).build();
     }
 
+    /**
+     * Resolves the customer whose legal entity matches the given login, or the current user's login when {@code userId} is {@code null}.
+     * Lookups go through the indexed, cached {@link CustomerRepository#findOneByCustomerLegalEntity(String)}.
+     *
+     * @param userId the login to resolve, or {@code null} for the current user.
+     * @return the customer, or {@code null} if there is none.
+     */
     public Customer getCurrentCustomer(String userId) {
-        Optional<User> currentUser = userService.getUserWithAuthorities();
-        String loggedInUser = Objects.isNull(userId) ? currentUser.get().getLogin() : userId;
-        List<Customer> customers = customerRepository
-            .findAll()
-            .stream()
-            .filter(cust -> cust.getCustomerLegalEntity().equals(loggedInUser))
-            .collect(Collectors.toList());
-        if (!customers.isEmpty()) {
-            return customers.get(0);
+        String loggedInUser = Objects.isNull(userId) ? SecurityUtils.getCurrentUserLogin().orElse(null) : userId;
+        if (loggedInUser == null) {
+            return null;
+        }
+        return customerRepository.findOneByCustomerLegalEntity(loggedInUser).orElse(null);
+    }
+
+    /**
+     * Resolves the reference to the current user's customer from the claims of its JWT, without any lookup. The tokens
+     * issued before they carried the customer, and those whose customer claims validity is over, fall back to
+     * {@link #getCurrentCustomer(String)}, so that the updates of the customer reach them.
+     *
+     * @return the reference to the customer, or {@code null} if there is none.
+     */
+    public CustomerRef getCurrentCustomerRef() {
+        return SecurityUtils.getCurrentCustomer().orElseGet(() -> CustomerRef.of(getCurrentCustomer(null)));
+    }
+
+    /**
+     * Update the references to a customer embedded in the documents it owns, when the fields they carry changed.
+     */
+    private void updateCustomerRefs(CustomerRef previousRef, Customer customer) {
+        CustomerRef ref = CustomerRef.of(customer);
+        if (
+            previousRef != null &&
+            Objects.equals(previousRef.getCustomerLegalEntity(), ref.getCustomerLegalEntity()) &&
+            Objects.equals(previousRef.getCustomerHashCode(), ref.getCustomerHashCode())
+        ) {
+            return;
+        }
+        smartTradeRepository.updateCustomer(ref);
+        walletRepository.updateCustomer(ref);
+    }
+
+    private void clearCustomerCaches(Customer customer) {
+        if (customer.getCustomerLegalEntity() != null) {
+            Objects
+                .requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE))
+                .evict(customer.getCustomerLegalEntity());
         }
-        return null;
     }
 }
@@ -0,0 +1,49 @@
+package com.osttra.fx.blockstream.web.rest;
+
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.Position;
+import com.osttra.fx.blockstream.service.PositionService;
+import java.util.Collections;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for reading the {@link com.osttra.fx.blockstream.domain.Position}s.
+ */
+@RestController
+@RequestMapping("/api")
+public class PositionResource {
+
+    private final Logger log = LoggerFactory.getLogger(PositionResource.class);
+
+    private final CustomerResource customerResource;
+
+    private final PositionService positionService;
+
+    public PositionResource(CustomerResource customerResource, PositionService positionService) {
+        this.customerResource = customerResource;
+        this.positionService = positionService;
+    }
+
+    /**
+     * {@code GET  /positions} : get the net positions of the current customer, by currency pair and value date.
+     * <p>
+     * The positions are maintained as the trades are created, updated and deleted by any instance, so they are read
+     * without reading the trades.
+     *
+     * @return the positions, ordered by value date and currency pair.
+     */
+    @GetMapping("/positions")
+    public List<Position> getAllPositions() {
+        log.debug("REST request to get all Positions");
+        CustomerRef customer = customerResource.getCurrentCustomerRef();
+        if (customer == null) {
+            return Collections.emptyList();
+        }
+        return positionService.getPositions(customer.getCustomerLegalEntity());
+    }
+}
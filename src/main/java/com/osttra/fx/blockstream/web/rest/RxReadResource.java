@@ -0,0 +1,142 @@
+package com.osttra.fx.blockstream.web.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.repository.RxReadRepository;
+import com.osttra.fx.blockstream.web.rest.errors.StreamingSaturatedException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * REST controller streaming the smartTrades and wallets of the current customer as newline-delimited JSON, read
+ * without blocking.
+ * <p>
+ * The customer is resolved on the request thread, with the same scoping as {@link SmartTradeResource} and
+ * {@link WalletResource}. The documents are then requested from MongoDB without blocking, and written to the client
+ * {@code application.export.flush-size} at a time by the {@code rxWriterScheduler}, apart from the threads writing the
+ * exports. A slow client holds one of its threads while a write blocks, and no more documents are requested from
+ * MongoDB meanwhile; the reads beyond its threads and queue are rejected with a {@code 503 (Service Unavailable)}.
+ */
+@RestController
+@RequestMapping("/api/rx")
+public class RxReadResource {
+
+    private final Logger log = LoggerFactory.getLogger(RxReadResource.class);
+
+    private final CustomerResource customerResource;
+
+    private final RxReadRepository rxReadRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final Scheduler rxWriterScheduler;
+
+    private final ApplicationProperties applicationProperties;
+
+    public RxReadResource(
+        CustomerResource customerResource,
+        RxReadRepository rxReadRepository,
+        ObjectMapper objectMapper,
+        @Qualifier("rxWriterScheduler") Scheduler rxWriterScheduler,
+        ApplicationProperties applicationProperties
+    ) {
+        this.customerResource = customerResource;
+        this.rxReadRepository = rxReadRepository;
+        this.objectMapper = objectMapper;
+        this.rxWriterScheduler = rxWriterScheduler;
+        this.applicationProperties = applicationProperties;
+    }
+
+    /**
+     * {@code GET  /rx/smart-trades} : stream the smartTrades of the current customer, ordered by trade date (newest
+     * first), followed by the archived ones.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the stream of smartTrades in body.
+     */
+    @GetMapping(value = "/smart-trades", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> getAllSmartTrades() {
+        log.debug("REST request to stream SmartTrades");
+        CustomerRef customer = customerResource.getCurrentCustomerRef();
+        if (customer == null) {
+            return stream(Flux.empty(), SmartTrade.class);
+        }
+        return stream(rxReadRepository.findAllSmartTradesByParty(customer.getCustomerLegalEntity()), SmartTrade.class);
+    }
+
+    /**
+     * {@code GET  /rx/wallets} : stream the wallets of the current customer.
+     *
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the stream of wallets in body.
+     */
+    @GetMapping(value = "/wallets", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> getAllWallets() {
+        log.debug("REST request to stream Wallets");
+        CustomerRef customer = customerResource.getCurrentCustomerRef();
+        if (customer == null) {
+            return stream(Flux.empty(), Wallet.class);
+        }
+        return stream(rxReadRepository.findAllWalletsByCustomer(customer.getId()), Wallet.class);
+    }
+
+    private <T> ResponseEntity<ResponseBodyEmitter> stream(Flux<T> documents, Class<T> type) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        ObjectWriter writer = objectMapper.writerFor(type).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        // One chunk is written while the next one is read, so the reads of a slow client wait for it
+        Disposable subscription = documents
+            .buffer(applicationProperties.getExport().getFlushSize())
+            .publishOn(rxWriterScheduler, 1)
+            .subscribe(
+                chunk -> send(emitter, writer, chunk),
+                error -> emitter.completeWithError(saturatedIfRejected(error)),
+                emitter::complete
+            );
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
+    /**
+     * The {@code rxWriterScheduler} rejects the chunks beyond its threads and queue, which fails the read with a
+     * {@link StreamingSaturatedException} rather than the rejection of any other executor.
+     */
+    private static Throwable saturatedIfRejected(Throwable error) {
+        return error instanceof RejectedExecutionException ? new StreamingSaturatedException(error) : error;
+    }
+
+    private <T> void send(ResponseBodyEmitter emitter, ObjectWriter writer, List<T> chunk) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                for (T document : chunk) {
+                    writer.writeValue(generator, document);
+                    generator.writeRaw('\n');
+                }
+            }
+            emitter.send(outputStream.toByteArray(), MediaType.APPLICATION_NDJSON);
+        } catch (IOException e) {
+            // The client is gone, the subscription is cancelled
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,24 +1,73 @@
 package com.osttra.fx.blockstream.web.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.CollectionChangeCounter;
 import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
 import com.osttra.fx.blockstream.domain.User;
+import com.osttra.fx.blockstream.repository.CollectionChangeCounters;
 import com.osttra.fx.blockstream.repository.CustomerRepository;
 import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import com.osttra.fx.blockstream.service.CurrencyRegistry;
+import com.osttra.fx.blockstream.service.PositionService;
+import com.osttra.fx.blockstream.service.SmartTradeEventService;
+import com.osttra.fx.blockstream.service.SmartTradeIdempotencyService;
+import com.osttra.fx.blockstream.service.TradeLifecycleService;
+import com.osttra.fx.blockstream.service.TradeMatchingService;
 import com.osttra.fx.blockstream.service.UserService;
 import com.osttra.fx.blockstream.web.rest.errors.BadRequestAlertException;
+import com.osttra.fx.blockstream.web.rest.util.ETagUtil;
+import com.osttra.fx.blockstream.web.rest.util.KeysetPaginationUtil;
+import com.osttra.fx.blockstream.web.rest.util.MediaTypeUtil;
+import com.osttra.fx.blockstream.web.rest.vm.BatchItemResultVM;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
+import tech.jhipster.web.util.PaginationUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
 /**
@@ -32,6 +81,8 @@ public class SmartTradeResource {
 
     private static final String ENTITY_NAME = "smartTrade";
 
+    private static final Sort DEFAULT_SORT = Sort.by(Sort.Direction.DESC, "tradeDate");
+
     @Value("${jhipster.clientApp.name}")
     private String applicationName;
 
@@ -40,17 +91,68 @@ public class SmartTradeResource {
     private final CustomerResource customerResource;
     private final UserService userService;
 
-    public SmartTradeResource(SmartTradeRepository smartTradeRepository, UserService userService, CustomerResource customerResource) {
+    private final ObjectMapper objectMapper;
+
+    private final ObjectMapper cborObjectMapper;
+
+    private final ApplicationProperties applicationProperties;
+
+    private final TradeLifecycleService tradeLifecycleService;
+
+    private final TradeMatchingService tradeMatchingService;
+
+    private final SmartTradeEventService smartTradeEventService;
+
+    private final SmartTradeIdempotencyService smartTradeIdempotencyService;
+
+    private final CollectionChangeCounters collectionChangeCounters;
+
+    private final CurrencyRegistry currencyRegistry;
+
+    private final PositionService positionService;
+
+    public SmartTradeResource(
+        SmartTradeRepository smartTradeRepository,
+        UserService userService,
+        CustomerResource customerResource,
+        ObjectMapper objectMapper,
+        MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+        ApplicationProperties applicationProperties,
+        TradeLifecycleService tradeLifecycleService,
+        TradeMatchingService tradeMatchingService,
+        SmartTradeEventService smartTradeEventService,
+        SmartTradeIdempotencyService smartTradeIdempotencyService,
+        CollectionChangeCounters collectionChangeCounters,
+        CurrencyRegistry currencyRegistry,
+        PositionService positionService
+    ) {
         this.smartTradeRepository = smartTradeRepository;
         this.userService = userService;
         this.customerResource = customerResource;
+        this.objectMapper = objectMapper;
+        this.cborObjectMapper = cborHttpMessageConverter.getObjectMapper();
+        this.applicationProperties = applicationProperties;
+        this.tradeLifecycleService = tradeLifecycleService;
+        this.tradeMatchingService = tradeMatchingService;
+        this.smartTradeEventService = smartTradeEventService;
+        this.smartTradeIdempotencyService = smartTradeIdempotencyService;
+        this.collectionChangeCounters = collectionChangeCounters;
+        this.currencyRegistry = currencyRegistry;
+        this.positionService = positionService;
     }
 
     /**
      * {@code POST  /smart-trades} : Create a new smartTrade.
+     * <p>
+     * The smartTrade is created with the {@code NEW} status, then validated, booked and settled asynchronously.
+     * Creating a smartTrade is idempotent on its transaction id: the smartTrade already created with the same
+     * transaction id is returned instead of creating a new one.
      *
      * @param smartTrade the smartTrade to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new smartTrade, or with status {@code 400 (Bad Request)} if the smartTrade has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new smartTrade,
+     * or with status {@code 200 (OK)} and with body the smartTrade already created with the same transaction id,
+     * or with status {@code 400 (Bad Request)} if the smartTrade has already an ID, has an unknown currency or the transaction id
+     * is used by another customer.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/smart-trades")
@@ -59,9 +161,36 @@ public class SmartTradeResource {
         if (smartTrade.getId() != null) {
             throw new BadRequestAlertException("A new smartTrade cannot already have an ID", ENTITY_NAME, "idexists");
         }
+        if (!isKnownOrNull(smartTrade.getCurrencyBuy()) || !isKnownOrNull(smartTrade.getCurrencySell())) {
+            throw new BadRequestAlertException("Unknown currency", ENTITY_NAME, "currencyunknown");
+        }
 
-        smartTrade.setCustomer(customerResource.getCurrentCustomer(null));
-        SmartTrade result = smartTradeRepository.save(smartTrade);
+        CustomerRef customer = customerResource.getCurrentCustomerRef();
+        String transactionId = smartTrade.getTransactionId();
+        if (transactionId != null) {
+            Optional<SmartTrade> original = smartTradeIdempotencyService.findOriginal(transactionId);
+            if (original.isPresent()) {
+                return ResponseEntity.ok(checkOwnedBy(original.get(), customer));
+            }
+        }
+
+        smartTrade.setVersion(null);
+        smartTrade.setCustomer(customer);
+        smartTrade.setStatus(TradeStatus.NEW.name());
+        smartTrade.setFailureReason(null);
+        smartTrade.setMatchStatus(null);
+        smartTrade.setMatchedTradeId(null);
+        SmartTrade result;
+        try {
+            result = smartTradeRepository.save(smartTrade);
+        } catch (DuplicateKeyException e) {
+            // The same transaction id was created concurrently
+            SmartTrade original = smartTradeRepository.findOneByTransactionId(transactionId).orElseThrow(() -> e);
+            return ResponseEntity.ok(checkOwnedBy(original, customer));
+        }
+        smartTradeIdempotencyService.register(result);
+        positionService.add(result);
+        tradeLifecycleService.submit(result);
 
         return ResponseEntity
             .created(new URI("/api/smart-trades/" + result.getId()))
@@ -69,13 +198,225 @@ public class SmartTradeResource {
             .body(result);
     }
 
+    /**
+     * {@code POST  /smart-trades/batch} : Create a batch of smartTrades for the current customer, given as a JSON, Smile
+     * or CBOR array.
+     * <p>
+     * All the smartTrades are validated first, then the valid ones are inserted with unordered bulk writes of
+     * {@code application.batch.chunk-size} smartTrades. An invalid or failing smartTrade does not abort the batch.
+     * A smartTrade with the transaction id of one already created, or of one earlier in the batch, is not created
+     * again and is reported as a duplicate with the id of the existing smartTrade. A batch of more than
+     * {@code application.batch.max-size} smartTrades is rejected.
+     *
+     * @param smartTrades the smartTrades to create.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome of each smartTrade, in order,
+     * or with status {@code 400 (Bad Request)} if the batch is too large.
+     */
+    @PostMapping(
+        value = "/smart-trades/batch",
+        consumes = { MediaType.APPLICATION_JSON_VALUE, MediaTypeUtil.APPLICATION_SMILE_VALUE, MediaType.APPLICATION_CBOR_VALUE }
+    )
+    public ResponseEntity<List<BatchItemResultVM>> createSmartTrades(@RequestBody List<SmartTrade> smartTrades) {
+        log.debug("REST request to save a batch of {} SmartTrades", smartTrades.size());
+        return ResponseEntity.ok(createAll(smartTrades));
+    }
+
+    /**
+     * {@code POST  /smart-trades/batch} : Create a batch of smartTrades, given as newline-delimited JSON, for the current customer.
+     *
+     * @param body the smartTrades to create, one per line.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome of each smartTrade, in order,
+     * or with status {@code 400 (Bad Request)} if the body cannot be parsed or the batch is too large.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/smart-trades/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchItemResultVM>> createSmartTradesFromNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(createAll(readSequence(objectMapper, body, "Invalid NDJSON body", "ndjsoninvalid")));
+    }
+
+    /**
+     * {@code POST  /smart-trades/batch} : Create a batch of smartTrades, given as a sequence of CBOR data items, for the current customer.
+     *
+     * @param body the smartTrades to create, one per data item.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the outcome of each smartTrade, in order,
+     * or with status {@code 400 (Bad Request)} if the body cannot be parsed or the batch is too large.
+     * @throws IOException if the body cannot be read.
+     */
+    @PostMapping(value = "/smart-trades/batch", consumes = MediaTypeUtil.APPLICATION_CBOR_SEQ_VALUE)
+    public ResponseEntity<List<BatchItemResultVM>> createSmartTradesFromCborSequence(InputStream body) throws IOException {
+        return ResponseEntity.ok(createAll(readSequence(cborObjectMapper, body, "Invalid CBOR sequence body", "cborseqinvalid")));
+    }
+
+    private List<SmartTrade> readSequence(ObjectMapper mapper, InputStream body, String message, String errorKey) throws IOException {
+        int maxSize = applicationProperties.getBatch().getMaxSize();
+        List<SmartTrade> smartTrades = new ArrayList<>();
+        try (MappingIterator<SmartTrade> iterator = mapper.readerFor(SmartTrade.class).readValues(body)) {
+            // The sequence is read no further than needed to reject it
+            while (iterator.hasNextValue()) {
+                if (smartTrades.size() == maxSize) {
+                    throw batchTooLarge(maxSize);
+                }
+                smartTrades.add(iterator.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            throw new BadRequestAlertException(message, ENTITY_NAME, errorKey);
+        }
+        log.debug("REST request to save a batch of {} SmartTrades", smartTrades.size());
+        return smartTrades;
+    }
+
+    private static BadRequestAlertException batchTooLarge(int maxSize) {
+        return new BadRequestAlertException("A batch cannot have more than " + maxSize + " smartTrades", ENTITY_NAME, "batchtoolarge");
+    }
+
+    private List<BatchItemResultVM> createAll(List<SmartTrade> smartTrades) {
+        if (smartTrades.size() > applicationProperties.getBatch().getMaxSize()) {
+            throw batchTooLarge(applicationProperties.getBatch().getMaxSize());
+        }
+        CustomerRef customer = customerResource.getCurrentCustomerRef();
+        List<BatchItemResultVM> results = new ArrayList<>(smartTrades.size());
+        List<SmartTrade> validSmartTrades = new ArrayList<>(smartTrades.size());
+        // Index of the first smartTrade of the batch with each transaction id, and of the first one of each duplicate
+        Map<String, Integer> firstIndexes = new HashMap<>();
+        Map<Integer, Integer> duplicateIndexes = new HashMap<>();
+        for (int index = 0; index < smartTrades.size(); index++) {
+            SmartTrade smartTrade = smartTrades.get(index);
+            String error = validate(smartTrade);
+            String transactionId = smartTrade.getTransactionId();
+            if (error == null && transactionId != null) {
+                Integer firstIndex = firstIndexes.putIfAbsent(transactionId, index);
+                if (firstIndex != null) {
+                    duplicateIndexes.put(index, firstIndex);
+                    results.add(new BatchItemResultVM(index, null, BatchItemResultVM.Status.DUPLICATE, null));
+                    continue;
+                }
+                Optional<SmartTrade> original = smartTradeIdempotencyService.findOriginal(transactionId);
+                if (original.isPresent() && isOwnedBy(original.get(), customer)) {
+                    results.add(new BatchItemResultVM(index, original.get().getId(), BatchItemResultVM.Status.DUPLICATE, null));
+                    continue;
+                }
+                if (original.isPresent()) {
+                    error = "The transaction id is used by another customer";
+                }
+            }
+            if (error == null) {
+                smartTrade.setVersion(null);
+                smartTrade.setCustomer(customer);
+                smartTrade.setStatus(TradeStatus.NEW.name());
+                smartTrade.setFailureReason(null);
+                smartTrade.setMatchStatus(null);
+                smartTrade.setMatchedTradeId(null);
+                validSmartTrades.add(smartTrade);
+                results.add(new BatchItemResultVM(index, null, BatchItemResultVM.Status.CREATED, null));
+            } else {
+                results.add(new BatchItemResultVM(index, null, BatchItemResultVM.Status.INVALID, error));
+            }
+        }
+
+        List<BatchItemResultVM> validResults = new ArrayList<>(validSmartTrades.size());
+        results.stream().filter(result -> result.getStatus() == BatchItemResultVM.Status.CREATED).forEach(validResults::add);
+        int chunkSize = applicationProperties.getBatch().getChunkSize();
+        for (int from = 0; from < validSmartTrades.size(); from += chunkSize) {
+            List<SmartTrade> chunk = validSmartTrades.subList(from, Math.min(from + chunkSize, validSmartTrades.size()));
+            Map<Integer, BulkWriteError> failures = smartTradeRepository.insertAllUnordered(chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                BatchItemResultVM result = validResults.get(from + i);
+                BulkWriteError failure = failures.get(i);
+                if (failure == null) {
+                    result.setId(chunk.get(i).getId());
+                    smartTradeIdempotencyService.register(chunk.get(i));
+                    positionService.add(chunk.get(i));
+                    tradeLifecycleService.submit(chunk.get(i));
+                } else if (ErrorCategory.fromErrorCode(failure.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                    // The same transaction id was created concurrently
+                    setOriginal(result, chunk.get(i).getTransactionId(), customer, failure.getMessage());
+                } else {
+                    result.setStatus(BatchItemResultVM.Status.FAILED);
+                    result.setError(failure.getMessage());
+                }
+            }
+        }
+
+        duplicateIndexes.forEach((index, firstIndex) -> {
+            BatchItemResultVM first = results.get(firstIndex);
+            BatchItemResultVM result = results.get(index);
+            if (first.getStatus() == BatchItemResultVM.Status.CREATED || first.getStatus() == BatchItemResultVM.Status.DUPLICATE) {
+                result.setId(first.getId());
+            } else {
+                result.setStatus(first.getStatus());
+                result.setError(first.getError());
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Give the batch item whose insert hit the transaction id of a stored smartTrade the result of a duplicate of it.
+     */
+    private void setOriginal(BatchItemResultVM result, String transactionId, CustomerRef customer, String failure) {
+        Optional<SmartTrade> original = Optional.ofNullable(transactionId).flatMap(smartTradeRepository::findOneByTransactionId);
+        if (original.isEmpty()) {
+            result.setStatus(BatchItemResultVM.Status.FAILED);
+            result.setError(failure);
+        } else if (isOwnedBy(original.get(), customer)) {
+            result.setStatus(BatchItemResultVM.Status.DUPLICATE);
+            result.setId(original.get().getId());
+        } else {
+            result.setStatus(BatchItemResultVM.Status.INVALID);
+            result.setError("The transaction id is used by another customer");
+        }
+    }
+
+    /**
+     * A user without customer owns no smartTrade, so its transaction ids are rejected as used by another customer.
+     */
+    private static boolean isOwnedBy(SmartTrade smartTrade, CustomerRef customer) {
+        return customer != null && smartTrade.getCustomer() != null && Objects.equals(smartTrade.getCustomer().getId(), customer.getId());
+    }
+
+    private static SmartTrade checkOwnedBy(SmartTrade smartTrade, CustomerRef customer) {
+        if (!isOwnedBy(smartTrade, customer)) {
+            throw new BadRequestAlertException("The transaction id is used by another customer", ENTITY_NAME, "transactionidexists");
+        }
+        return smartTrade;
+    }
+
+    private String validate(SmartTrade smartTrade) {
+        if (smartTrade.getId() != null) {
+            return "A new smartTrade cannot already have an ID";
+        }
+        if (smartTrade.getCurrencyBuy() == null || smartTrade.getCurrencySell() == null) {
+            return "The currencies are required";
+        }
+        if (!currencyRegistry.isKnown(smartTrade.getCurrencyBuy()) || !currencyRegistry.isKnown(smartTrade.getCurrencySell())) {
+            return "Unknown currency";
+        }
+        if (smartTrade.getAmount() == null || smartTrade.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            return "The amount must be positive";
+        }
+        return null;
+    }
+
+    /**
+     * Missing currencies are left to the validation of the lifecycle, which fails the smartTrade.
+     */
+    private boolean isKnownOrNull(String currencyCode) {
+        return currencyCode == null || currencyRegistry.isKnown(currencyCode);
+    }
+
     /**
      * {@code PUT  /smart-trades/:id} : Updates an existing smartTrade.
+     * <p>
+     * The status and failure reason are kept, as they are owned by the lifecycle of the smartTrade, as well as the match
+     * status: an unmatched smartTrade is matched again with its new fields. The customer is kept too, as it is set when
+     * the smartTrade is created. When the smartTrade has a version, it must be
+     * the stored one, so that an update made meanwhile is not overwritten.
      *
      * @param id the id of the smartTrade to save.
      * @param smartTrade the smartTrade to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated smartTrade,
      * or with status {@code 400 (Bad Request)} if the smartTrade is not valid,
+     * or with status {@code 409 (Conflict)} if the smartTrade was updated meanwhile,
      * or with status {@code 500 (Internal Server Error)} if the smartTrade couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
@@ -92,11 +433,24 @@ public class SmartTradeResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        if (!smartTradeRepository.existsById(id)) {
-            throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
-        }
+        SmartTrade existingSmartTrade = smartTradeRepository
+            .findById(id)
+            .orElseThrow(() -> new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
 
+        if (smartTrade.getVersion() == null) {
+            smartTrade.setVersion(existingSmartTrade.getVersion());
+        }
+        smartTrade.setCustomer(existingSmartTrade.getCustomer());
+        smartTrade.setStatus(existingSmartTrade.getStatus());
+        smartTrade.setFailureReason(existingSmartTrade.getFailureReason());
+        smartTrade.setMatchStatus(existingSmartTrade.getMatchStatus());
+        smartTrade.setMatchedTradeId(existingSmartTrade.getMatchedTradeId());
+        smartTrade.setFormerParties(formerParties(existingSmartTrade, smartTrade));
+        PositionService.Contribution previousContribution = PositionService.contributionOf(existingSmartTrade);
         SmartTrade result = smartTradeRepository.save(smartTrade);
+        smartTradeIdempotencyService.register(result);
+        positionService.update(previousContribution, result);
+        tradeMatchingService.rematch(result);
         return ResponseEntity
             .ok()
             .headers(HeaderUtil.createEntityUpdateAlert(applicationName, false, ENTITY_NAME, smartTrade.getId()))
@@ -104,7 +458,20 @@ public class SmartTradeResource {
     }
 
     /**
-     * {@code PATCH  /smart-trades/:id} : Partial updates given fields of an existing smartTrade, field will ignore if it is null
+     * The parties of a smartTrade which are not parties of its update anymore, to be told by the events of the change.
+     */
+    private static List<String> formerParties(SmartTrade existingSmartTrade, SmartTrade smartTrade) {
+        List<String> formerParties = Stream
+            .of(existingSmartTrade.getTradingParty(), existingSmartTrade.getCounterParty())
+            .filter(party -> party != null && !party.equals(smartTrade.getTradingParty()) && !party.equals(smartTrade.getCounterParty()))
+            .distinct()
+            .collect(Collectors.toList());
+        return formerParties.isEmpty() ? null : formerParties;
+    }
+
+    /**
+     * {@code PATCH  /smart-trades/:id} : Partial updates given fields of an existing smartTrade, field will ignore if it is null.
+     * The status, failure reason and match status are owned by the lifecycle of the smartTrade and cannot be updated.
      *
      * @param id the id of the smartTrade to save.
      * @param smartTrade the smartTrade to update.
@@ -114,7 +481,10 @@ public class SmartTradeResource {
      * or with status {@code 500 (Internal Server Error)} if the smartTrade couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
-    @PatchMapping(value = "/smart-trades/{id}", consumes = { "application/json", "application/merge-patch+json" })
+    @PatchMapping(
+        value = "/smart-trades/{id}",
+        consumes = { "application/json", "application/merge-patch+json", MediaTypeUtil.APPLICATION_SMILE_VALUE, "application/cbor" }
+    )
     public ResponseEntity<SmartTrade> partialUpdateSmartTrade(
         @PathVariable(value = "id", required = false) final String id,
         @RequestBody SmartTrade smartTrade
@@ -131,9 +501,13 @@ public class SmartTradeResource {
             throw new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound");
         }
 
-        Optional<SmartTrade> result = smartTradeRepository
-            .findById(smartTrade.getId())
+        Optional<SmartTrade> existing = smartTradeRepository.findById(smartTrade.getId());
+        PositionService.Contribution previousContribution = existing.map(PositionService::contributionOf).orElse(null);
+        Optional<SmartTrade> result = existing
             .map(existingSmartTrade -> {
+                SmartTrade previousParties = new SmartTrade()
+                    .tradingParty(existingSmartTrade.getTradingParty())
+                    .counterParty(existingSmartTrade.getCounterParty());
                 if (smartTrade.getCounterParty() != null) {
                     existingSmartTrade.setCounterParty(smartTrade.getCounterParty());
                 }
@@ -167,16 +541,14 @@ public class SmartTradeResource {
                 if (smartTrade.getTradeDate() != null) {
                     existingSmartTrade.setTradeDate(smartTrade.getTradeDate());
                 }
-                if (smartTrade.getStatus() != null) {
-                    existingSmartTrade.setStatus(smartTrade.getStatus());
-                }
-                if (smartTrade.getFailureReason() != null) {
-                    existingSmartTrade.setFailureReason(smartTrade.getFailureReason());
-                }
+                existingSmartTrade.setFormerParties(formerParties(previousParties, existingSmartTrade));
 
                 return existingSmartTrade;
             })
             .map(smartTradeRepository::save);
+        result.ifPresent(smartTradeIdempotencyService::register);
+        result.ifPresent(updated -> positionService.update(previousContribution, updated));
+        result.ifPresent(tradeMatchingService::rematch);
 
         return ResponseUtil.wrapOrNotFound(
             result,
@@ -185,50 +557,228 @@ public class SmartTradeResource {
     }
 
     /**
-     * {@code GET  /smart-trades} : get all the smartTrades.
+     * {@code GET  /smart-trades} : get the smartTrades of the current customer.
+     *
+     * When a {@code cursor} is given (empty for the first page), the trades are paginated by keyset instead of offset:
+     * they are ordered by trade date (newest first) and the cursor of the next page is returned in the
+     * {@code X-Next-Cursor} and {@code Link} headers.
+     * <p>
+     * When a trade date range is given, the archived trades of the range are returned too, and the trades are paginated
+     * by keyset whether a {@code cursor} is given or not. A page may be cut short when it needs too many archive blocks:
+     * the {@code X-Next-Cursor} header tells whether there are more trades.
+     * <p>
+     * The response has a weak ETag which changes whenever smartTrades are written, so that a client sending it back
+     * with {@code If-None-Match} gets a {@code 304 (Not Modified)} without the smartTrades being read. The ETag depends
+     * on the query parameters and on the {@code Accept} header as well, which the response varies by.
      *
-     * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of smartTrades in body.
+     * @param pageable the pagination information, sorted by trade date (newest first) unless specified.
+     * @param cursor the cursor returned with the previous page, to use keyset pagination.
+     * @param tradeDateFrom the first trade date of the range, if any.
+     * @param tradeDateTo the last trade date of the range, if any.
+     * @param ifNoneMatch the ETag of the page the client has, if any.
+     * @param accept the media types accepted by the client.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of smartTrades in body,
+     * or with status {@code 304 (Not Modified)} if the client has them already.
      */
     @GetMapping("/smart-trades")
-    public List<SmartTrade> getAllSmartTrades(@RequestParam(required = false, defaultValue = "false") boolean eagerload) {
-        log.debug("REST request to get all SmartTrades");
-        List<SmartTrade> trades;
-        if (eagerload) {
-            trades = smartTradeRepository.findAllWithEagerRelationships();
-        } else {
-            trades = smartTradeRepository.findAll();
+    public ResponseEntity<List<SmartTrade>> getAllSmartTrades(
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tradeDateFrom,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate tradeDateTo,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        log.debug("REST request to get a page of SmartTrades");
+        String currentCustomerLegals = customerResource.getCurrentCustomerRef().getCustomerLegalEntity();
+        // The count is read before the smartTrades, so that a write made meanwhile changes the next ETag
+        CollectionChangeCounter changeCounter = collectionChangeCounters.getCounter(SmartTrade.class);
+        String eTag = ETagUtil.weakETag(
+            changeCounter,
+            currentCustomerLegals,
+            pageable.getPageNumber(),
+            pageable.getPageSize(),
+            pageable.getSort(),
+            cursor,
+            tradeDateFrom,
+            tradeDateTo,
+            accept
+        );
+        if (ETagUtil.matches(ifNoneMatch, eTag)) {
+            return ETagUtil.notModified(eTag, HttpHeaders.ACCEPT);
         }
-        String currentCustomerLegals = customerResource.getCurrentCustomer(null).getCustomerLegalEntity();
-        return trades
-            .stream()
-            .filter(trade -> trade.getTradingParty().equals(currentCustomerLegals) || trade.getCounterParty().equals(currentCustomerLegals))
-            .collect(Collectors.toList());
+        if (tradeDateFrom != null || tradeDateTo != null) {
+            return getSmartTradesBetween(currentCustomerLegals, tradeDateFrom, tradeDateTo, cursor, pageable.getPageSize(), eTag);
+        }
+        if (cursor != null) {
+            return getSmartTradesAfter(currentCustomerLegals, cursor, pageable.getPageSize(), eTag);
+        }
+        if (pageable.getSort().isUnsorted()) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), DEFAULT_SORT);
+        }
+        Page<SmartTrade> page = smartTradeRepository.findAllByParty(currentCustomerLegals, pageable);
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), page);
+        return ResponseEntity.ok().headers(headers).eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(page.getContent());
+    }
+
+    private ResponseEntity<List<SmartTrade>> getSmartTradesBetween(
+        String party,
+        LocalDate from,
+        LocalDate to,
+        String cursor,
+        int size,
+        String eTag
+    ) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new BadRequestAlertException("The trade date range is empty", ENTITY_NAME, "invalidtradedaterange");
+        }
+        KeysetPaginationUtil.Cursor after = KeysetPaginationUtil.decodeCursor(cursor, ENTITY_NAME);
+        Slice<SmartTrade> slice = smartTradeRepository.findAllByPartyAndTradeDateBetweenAfter(
+            party,
+            from,
+            to,
+            after.getSortKey(),
+            after.getId(),
+            size,
+            applicationProperties.getArchive().getMaxBlocksPerPage()
+        );
+        return keysetResponse(slice, eTag);
+    }
+
+    private ResponseEntity<List<SmartTrade>> getSmartTradesAfter(String party, String cursor, int size, String eTag) {
+        KeysetPaginationUtil.Cursor after = KeysetPaginationUtil.decodeCursor(cursor, ENTITY_NAME);
+        return keysetResponse(smartTradeRepository.findAllByPartyAfter(party, after.getSortKey(), after.getId(), size), eTag);
+    }
+
+    private static ResponseEntity<List<SmartTrade>> keysetResponse(Slice<SmartTrade> slice, String eTag) {
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            SmartTrade last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = KeysetPaginationUtil.encodeCursor(last.getTradeDate(), last.getId());
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), nextCursor);
+        return ResponseEntity.ok().headers(headers).eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(slice.getContent());
+    }
+
+    /**
+     * {@code GET  /smart-trades/export} : export all the smartTrades of the current customer as newline-delimited JSON,
+     * or as a sequence of CBOR data items when the {@code Accept} header prefers it.
+     * <p>
+     * The trades are read from a MongoDB cursor, followed by the archived ones, and written as they come, so the memory
+     * used does not depend on the number of trades. Writes block while the client is not consuming the response, which
+     * in turn stops fetching from the cursor.
+     *
+     * @param accept the media types accepted by the client.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the stream of smartTrades in body.
+     */
+    @GetMapping(
+        value = "/smart-trades/export",
+        produces = { MediaType.APPLICATION_NDJSON_VALUE, MediaTypeUtil.APPLICATION_CBOR_SEQ_VALUE }
+    )
+    public ResponseEntity<StreamingResponseBody> exportSmartTrades(
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        log.debug("REST request to export SmartTrades");
+        boolean cbor = MediaTypeUtil.prefers(accept, MediaTypeUtil.APPLICATION_CBOR_SEQ, MediaType.APPLICATION_NDJSON);
+        ObjectMapper mapper = cbor ? cborObjectMapper : objectMapper;
+        String currentCustomerLegals = customerResource.getCurrentCustomerRef().getCustomerLegalEntity();
+        int fetchSize = applicationProperties.getExport().getFetchSize();
+        int flushSize = applicationProperties.getExport().getFlushSize();
+        ObjectWriter writer = mapper.writerFor(SmartTrade.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (
+                Stream<SmartTrade> trades = smartTradeRepository.streamAllByParty(currentCustomerLegals, fetchSize);
+                JsonGenerator generator = mapper.getFactory().createGenerator(outputStream).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            ) {
+                int unflushed = 0;
+                for (Iterator<SmartTrade> iterator = trades.iterator(); iterator.hasNext();) {
+                    writer.writeValue(generator, iterator.next());
+                    // CBOR data items are self-delimiting
+                    if (!cbor) {
+                        generator.writeRaw('\n');
+                    }
+                    if (++unflushed == flushSize) {
+                        generator.flush();
+                        unflushed = 0;
+                    }
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(cbor ? MediaTypeUtil.APPLICATION_CBOR_SEQ : MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * {@code GET  /smart-trades/events} : stream the changes of the smartTrades of the current customer as Server-Sent
+     * Events, instead of polling them.
+     * <p>
+     * The events are named after the change ({@code insert}, {@code update}, {@code replace} or {@code delete}) and
+     * carry the smartTrade, or only its id for a deletion. A smartTrade another party takes over is a deletion for the
+     * customer it is taken from. The smartTrades moved to the archive are still read, and have no event for it. A client
+     * reconnecting with the {@code Last-Event-ID} header receives the events it missed, and any client receives a
+     * {@code reset} event when its smartTrades have to be reloaded.
+     *
+     * @param lastEventId the id of the last event received before reconnecting.
+     * @return the emitter of the events.
+     */
+    @GetMapping(value = "/smart-trades/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSmartTradeEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.debug("REST request to stream SmartTrade events after : {}", lastEventId);
+        String currentCustomerLegals = customerResource.getCurrentCustomerRef().getCustomerLegalEntity();
+        return smartTradeEventService.subscribe(currentCustomerLegals, lastEventId);
     }
 
     /**
      * {@code GET  /smart-trades/:id} : get the "id" smartTrade.
+     * <p>
+     * The response has the version of the smartTrade as ETag: when the client sends it back with {@code If-None-Match}
+     * and the smartTrade is still at this version, only the version is read.
      *
      * @param id the id of the smartTrade to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the smartTrade, or with status {@code 404 (Not Found)}.
+     * @param ifNoneMatch the ETag of the smartTrade the client has, if any.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the smartTrade,
+     * or with status {@code 304 (Not Modified)} if the client has it already, or with status {@code 404 (Not Found)}.
      */
     @GetMapping("/smart-trades/{id}")
-    public ResponseEntity<SmartTrade> getSmartTrade(@PathVariable String id) {
+    public ResponseEntity<SmartTrade> getSmartTrade(
+        @PathVariable String id,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         log.debug("REST request to get SmartTrade : {}", id);
+        if (ifNoneMatch != null) {
+            Optional<String> eTag = smartTradeRepository.findVersionById(id).map(stored -> ETagUtil.strongETag(stored.getVersion()));
+            if (eTag.isPresent() && ETagUtil.matches(ifNoneMatch, eTag.get())) {
+                return ETagUtil.notModified(eTag.get());
+            }
+        }
         Optional<SmartTrade> smartTrade = smartTradeRepository.findOneWithEagerRelationships(id);
-        return ResponseUtil.wrapOrNotFound(smartTrade);
+        return smartTrade
+            .map(found -> ResponseEntity.ok().eTag(ETagUtil.strongETag(found.getVersion())).body(found))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
     /**
      * {@code DELETE  /smart-trades/:id} : delete the "id" smartTrade.
+     * <p>
+     * If the smartTrade was matched, the smartTrade of the other party is unmatched and matched again. The parties of
+     * the smartTrade are recorded on it first, for its deletion to be sent to them as an event.
      *
      * @param id the id of the smartTrade to delete.
-     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)}.
+     * @return the {@link ResponseEntity} with status {@code 204 (NO_CONTENT)},
+     * or with status {@code 409 (Conflict)} if the smartTrade was updated meanwhile.
      */
     @DeleteMapping("/smart-trades/{id}")
     public ResponseEntity<Void> deleteSmartTrade(@PathVariable String id) {
         log.debug("REST request to delete SmartTrade : {}", id);
-        smartTradeRepository.deleteById(id);
+        smartTradeRepository
+            .findById(id)
+            .ifPresent(smartTrade -> {
+                if (!smartTradeRepository.markDeleted(smartTrade)) {
+                    throw new OptimisticLockingFailureException("SmartTrade " + id + " was updated meanwhile");
+                }
+                smartTradeRepository.delete(smartTrade);
+                positionService.remove(smartTrade);
+                tradeMatchingService.remove(smartTrade);
+            });
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id)).build();
     }
 }
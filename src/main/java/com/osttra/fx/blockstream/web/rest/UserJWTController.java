@@ -1,9 +1,13 @@
 package com.osttra.fx.blockstream.web.rest;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.security.LoginThrottle;
 import com.osttra.fx.blockstream.security.jwt.JWTFilter;
 import com.osttra.fx.blockstream.security.jwt.TokenProvider;
 import com.osttra.fx.blockstream.web.rest.vm.LoginVM;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -25,13 +29,37 @@ public class UserJWTController {
 
     private final AuthenticationManagerBuilder authenticationManagerBuilder;
 
-    public UserJWTController(TokenProvider tokenProvider, AuthenticationManagerBuilder authenticationManagerBuilder) {
+    private final LoginThrottle loginThrottle;
+
+    private final CustomerRepository customerRepository;
+
+    public UserJWTController(
+        TokenProvider tokenProvider,
+        AuthenticationManagerBuilder authenticationManagerBuilder,
+        LoginThrottle loginThrottle,
+        CustomerRepository customerRepository
+    ) {
         this.tokenProvider = tokenProvider;
         this.authenticationManagerBuilder = authenticationManagerBuilder;
+        this.loginThrottle = loginThrottle;
+        this.customerRepository = customerRepository;
     }
 
+    /**
+     * {@code POST  /authenticate} : authenticate a user.
+     * <p>
+     * The attempts are throttled per login and per client address before the user is loaded and its password checked.
+     * Behind the load balancer, the client address is the one it forwards, see {@code server.forward-headers-strategy}.
+     * The JWT carries the customer of the user, if any.
+     *
+     * @param loginVM the login and password of the user.
+     * @param request the HTTP request.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the JWT in body, or with status
+     * {@code 429 (Too Many Requests)} if the login or the client made too many attempts.
+     */
     @PostMapping("/authenticate")
-    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM) {
+    public ResponseEntity<JWTToken> authorize(@Valid @RequestBody LoginVM loginVM, HttpServletRequest request) {
+        loginThrottle.checkAttempt(loginVM.getUsername(), request.getRemoteAddr());
         UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(
             loginVM.getUsername(),
             loginVM.getPassword()
@@ -39,7 +67,8 @@ public class UserJWTController {
 
         Authentication authentication = authenticationManagerBuilder.getObject().authenticate(authenticationToken);
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.createToken(authentication, loginVM.isRememberMe());
+        CustomerRef customer = customerRepository.findOneByCustomerLegalEntity(authentication.getName()).map(CustomerRef::of).orElse(null);
+        String jwt = tokenProvider.createToken(authentication, loginVM.isRememberMe(), customer);
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.add(JWTFilter.AUTHORIZATION_HEADER, "Bearer " + jwt);
         return new ResponseEntity<>(new JWTToken(jwt), httpHeaders, HttpStatus.OK);
@@ -1,26 +1,33 @@
 package com.osttra.fx.blockstream.web.rest;
 
-import com.google.common.collect.Lists;
-import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CollectionChangeCounter;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.domain.User;
 import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.domain.WalletBalance;
+import com.osttra.fx.blockstream.repository.CollectionChangeCounters;
 import com.osttra.fx.blockstream.repository.CustomerRepository;
 import com.osttra.fx.blockstream.repository.WalletRepository;
 import com.osttra.fx.blockstream.service.UserService;
+import com.osttra.fx.blockstream.service.WalletBalanceService;
 import com.osttra.fx.blockstream.web.rest.errors.BadRequestAlertException;
-import java.math.BigDecimal;
+import com.osttra.fx.blockstream.web.rest.util.ETagUtil;
+import com.osttra.fx.blockstream.web.rest.util.KeysetPaginationUtil;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.ResponseUtil;
 
@@ -44,17 +51,29 @@ public class WalletResource {
 
     private final CustomerResource customerResource;
 
-    public WalletResource(WalletRepository walletRepository, UserService userService, CustomerResource customerResource) {
+    private final WalletBalanceService walletBalanceService;
+
+    private final CollectionChangeCounters collectionChangeCounters;
+
+    public WalletResource(
+        WalletRepository walletRepository,
+        UserService userService,
+        CustomerResource customerResource,
+        WalletBalanceService walletBalanceService,
+        CollectionChangeCounters collectionChangeCounters
+    ) {
         this.walletRepository = walletRepository;
         this.userService = userService;
         this.customerResource = customerResource;
+        this.walletBalanceService = walletBalanceService;
+        this.collectionChangeCounters = collectionChangeCounters;
     }
 
     /**
      * {@code POST  /wallets} : Create a new wallet.
      *
      * @param wallet the wallet to create.
-     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new wallet, or with status {@code 400 (Bad Request)} if the wallet has already an ID.
+     * @return the {@link ResponseEntity} with status {@code 201 (Created)} and with body the new wallet, or with status {@code 400 (Bad Request)} if the wallet has already an ID, an invalid currency code or an invalid amount.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PostMapping("/wallets/{loginId}")
@@ -63,69 +82,112 @@ public class WalletResource {
         if (wallet.getId() != null) {
             throw new BadRequestAlertException("A new wallet cannot already have an ID", ENTITY_NAME, "idexists");
         }
-        wallet.setCustomer(customerResource.getCurrentCustomer(loginId));
-        Wallet result = walletRepository.save(wallet);
+        if (!WalletBalance.isValidCurrencyCode(wallet.getCurrencyCode())) {
+            throw new BadRequestAlertException("Invalid currency code", ENTITY_NAME, "invalidcurrency");
+        }
+        CustomerRef customer = CustomerRef.of(customerResource.getCurrentCustomer(loginId));
+        wallet.setVersion(null);
+        wallet.setCustomer(customer);
+        if (!walletBalanceService.isValidAmount(wallet)) {
+            throw new BadRequestAlertException("Invalid amount", ENTITY_NAME, "invalidamount");
+        }
+        Wallet result = walletBalanceService.saveWallet(wallet);
 
         return ResponseEntity
             .created(new URI("/api/wallets/" + result.getId()))
             .headers(HeaderUtil.createEntityCreationAlert(applicationName, false, ENTITY_NAME, result.getId()))
-            .body(getWallet(loginId));
+            .body(walletBalanceService.getBalances(customer));
     }
 
     /**
      * {@code GET  /wallets} : get all the wallets.
      *
      * @param eagerload flag to eager load entities from relationships (This is applicable for many-to-many).
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of wallets in body.
+     * @param pageable the pagination information, only the page size is used with keyset pagination.
+     * @param cursor the cursor returned with the previous page, to get the wallets of the current customer one page at a time
+     * instead of their balances.
+     * @param ifNoneMatch the ETag of the wallets the client has, if any.
+     * @param accept the media types accepted by the client, which the ETag depends on.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of wallets in body,
+     * or with status {@code 304 (Not Modified)} if the client has them already.
      */
     @GetMapping("/wallets")
-    public List<Wallet> getAllWallets(@RequestParam(required = false, defaultValue = "false") boolean eagerload) {
+    public ResponseEntity<List<Wallet>> getAllWallets(
+        @RequestParam(required = false, defaultValue = "false") boolean eagerload,
+        @org.springdoc.api.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = KeysetPaginationUtil.CURSOR_PARAMETER, required = false) String cursor,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        CustomerRef customer = customerResource.getCurrentCustomerRef();
+        if (cursor != null) {
+            return getWalletsAfter(customer, cursor, pageable.getPageSize(), ifNoneMatch, accept);
+        }
         log.debug("REST request to get all Wallets");
-        List<Wallet> wallets = Lists.newArrayList();
-        if (eagerload) {
-            wallets = walletRepository.findAllWithEagerRelationships();
-        } else {
-            wallets = walletRepository.findAll();
+        return getBalances(customer, ifNoneMatch, accept);
+    }
+
+    /**
+     * Get the balances of a customer, with a weak ETag which changes whenever balances are written.
+     */
+    private ResponseEntity<List<Wallet>> getBalances(CustomerRef customer, String ifNoneMatch, String accept) {
+        String eTag = walletsETag(WalletBalance.class, customer == null ? null : customer.getId(), accept);
+        if (ETagUtil.matches(ifNoneMatch, eTag)) {
+            return ETagUtil.notModified(eTag, HttpHeaders.ACCEPT);
         }
+        return ResponseEntity.ok().eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(walletBalanceService.getBalances(customer));
+    }
 
-        if (!wallets.isEmpty()) {
-            String currentCustomerLegals = customerResource.getCurrentCustomer(null).getCustomerLegalEntity();
-            wallets = getWallets(currentCustomerLegals, wallets);
+    private ResponseEntity<List<Wallet>> getWalletsAfter(
+        CustomerRef customer,
+        String cursor,
+        int size,
+        String ifNoneMatch,
+        String accept
+    ) {
+        log.debug("REST request to get a page of Wallets");
+        KeysetPaginationUtil.Cursor after = KeysetPaginationUtil.decodeCursor(cursor, ENTITY_NAME);
+        if (customer == null) {
+            return ResponseEntity.ok(Collections.emptyList());
         }
-        return wallets;
+        String eTag = walletsETag(Wallet.class, customer.getId(), cursor, size, accept);
+        if (ETagUtil.matches(ifNoneMatch, eTag)) {
+            return ETagUtil.notModified(eTag, HttpHeaders.ACCEPT);
+        }
+        Slice<Wallet> slice = walletRepository.findAllByCustomerAfter(customer.getId(), after.getId(), size);
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            nextCursor = KeysetPaginationUtil.encodeCursor(null, slice.getContent().get(slice.getNumberOfElements() - 1).getId());
+        }
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders(ServletUriComponentsBuilder.fromCurrentRequest(), nextCursor);
+        return ResponseEntity.ok().headers(headers).eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(slice.getContent());
+    }
+
+    /**
+     * Get the weak ETag of wallets, scoped by the customer, the query parameters and the {@code Accept} header.
+     */
+    private String walletsETag(Class<?> documentClass, Object... scope) {
+        CollectionChangeCounter changeCounter = collectionChangeCounters.getCounter(documentClass);
+        return ETagUtil.weakETag(changeCounter, scope);
     }
 
     /**
      * {@code GET  /wallets/:id} : get the "id" wallet.
      *
      * @param id the id of the wallet to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the wallet, or with status {@code 404 (Not Found)}.
+     * @param ifNoneMatch the ETag of the wallets the client has, if any.
+     * @param accept the media types accepted by the client, which the ETag depends on.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the wallet, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if the client has it already.
      */
     @GetMapping("/wallets/{loginId}")
-    public List<Wallet> getWallet(@PathVariable String loginId) {
+    public ResponseEntity<List<Wallet>> getWallet(
+        @PathVariable String loginId,
+        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
         log.debug("REST request to get Wallet : {}", loginId);
-        List<Wallet> wallets = walletRepository.findAll();
-        if (!wallets.isEmpty()) {
-            wallets = getWallets(loginId, wallets);
-        }
-        return wallets;
-    }
-
-    private List<Wallet> getWallets(String loginId, List<Wallet> wallets) {
-        Map<String, Integer> conWallets = wallets
-            .stream()
-            .filter(w -> w.getCustomer().getCustomerLegalEntity().equals(loginId))
-            .collect(
-                Collectors.groupingBy(wallet -> wallet.getCurrencyCode(), Collectors.summingInt(wallet -> wallet.getAmount().intValue()))
-            );
-
-        wallets =
-            conWallets
-                .entrySet()
-                .stream()
-                .map(wle -> new Wallet().currencyCode(wle.getKey()).amount(new BigDecimal(wle.getValue())))
-                .collect(Collectors.toList());
-        return wallets;
+        return getBalances(CustomerRef.of(customerResource.getCurrentCustomer(loginId)), ifNoneMatch, accept);
     }
 
     /**
@@ -137,7 +199,7 @@ public class WalletResource {
     @DeleteMapping("/wallets/{id}")
     public ResponseEntity<Void> deleteWallet(@PathVariable String id) {
         log.debug("REST request to delete Wallet : {}", id);
-        walletRepository.deleteById(id);
+        walletBalanceService.deleteWallet(id);
         return ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, false, ENTITY_NAME, id)).build();
     }
 }
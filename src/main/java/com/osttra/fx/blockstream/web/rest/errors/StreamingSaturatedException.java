@@ -0,0 +1,17 @@
+package com.osttra.fx.blockstream.web.rest.errors;
+
+import org.springframework.core.task.TaskRejectedException;
+
+/**
+ * This exception is thrown when too many exports or reactive reads are waiting to be written to accept another one.
+ * <p>
+ * Only the executors writing them throw it, the rejections of the other executors are left to fail the request.
+ */
+public class StreamingSaturatedException extends TaskRejectedException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StreamingSaturatedException(Throwable cause) {
+        super("Too many responses waiting to be written", cause);
+    }
+}
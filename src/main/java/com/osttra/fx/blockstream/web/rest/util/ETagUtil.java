@@ -0,0 +1,128 @@
+package com.osttra.fx.blockstream.web.rest.util;
+
+import com.osttra.fx.blockstream.domain.CollectionChangeCounter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Utility class for entity tags and conditional {@code GET} requests.
+ * <p>
+ * A single entity is tagged with its version, which changes with every write of the document: the tag is strong. A
+ * list kept in memory is tagged with a digest of its content. Any other list is tagged with the count of writes to its
+ * collection, which tells that nothing changed but not the reverse: the tag is weak. The tag of such a list also has a
+ * SHA-256 digest of what the list depends on besides its collection, so that two scopes do not share a tag: the
+ * customer, the query parameters and the requested media type.
+ */
+public final class ETagUtil {
+
+    private static final String WEAK_PREFIX = "W/";
+
+    private ETagUtil() {}
+
+    /**
+     * Get the strong entity tag of a versioned entity.
+     *
+     * @param version the version of the entity.
+     * @return the entity tag.
+     */
+    public static String strongETag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Get the weak entity tag of a list from a digest of its content.
+     *
+     * @param contentDigest the digest of the listed entities, e.g. of their ids and versions.
+     * @return the entity tag.
+     */
+    public static String weakETag(String contentDigest) {
+        return WEAK_PREFIX + "\"" + contentDigest + "\"";
+    }
+
+    /**
+     * Get the weak entity tag of a list.
+     *
+     * @param epoch the time the change count started from.
+     * @param changeCount the count of writes to the listed collection, read before the list.
+     * @param scope what the list depends on besides the collection, e.g. the current customer.
+     * @return the entity tag.
+     */
+    public static String weakETag(long epoch, long changeCount, Object... scope) {
+        return weakETag(new CollectionChangeCounter().epoch(epoch).count(changeCount), scope);
+    }
+
+    /**
+     * Get the weak entity tag of a list of a collection.
+     *
+     * @param changeCounter the counter of the writes to the listed collection, read before the list.
+     * @param scope what the list depends on besides the collection, e.g. the current customer and the query parameters.
+     * @return the entity tag.
+     */
+    public static String weakETag(CollectionChangeCounter changeCounter, Object... scope) {
+        String changeCount = Long.toString(changeCounter.getCount());
+        if (changeCounter.getUnstoredWrites() != null) {
+            changeCount += "." + changeCounter.getUnstoredWrites();
+        }
+        return WEAK_PREFIX + "\"" + Long.toString(changeCounter.getEpoch(), 36) + "-" + changeCount + "-" + digest(scope) + "\"";
+    }
+
+    private static String digest(Object... scope) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (Object part : scope) {
+            // Each part is prefixed with its length, so that the parts cannot run into each other
+            String value = part == null ? "" : part.toString();
+            messageDigest.update(((part == null ? "-" : Integer.toString(value.length())) + ":" + value).getBytes(StandardCharsets.UTF_8));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(messageDigest.digest());
+    }
+
+    /**
+     * Tell whether an {@code If-None-Match} header matches an entity tag, using the weak comparison.
+     *
+     * @param ifNoneMatch the {@code If-None-Match} header, {@code null} if absent.
+     * @param eTag the current entity tag.
+     * @return whether the client has the current representation already.
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = opaqueTag(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if ("*".equals(trimmed) || opaqueTag.equals(opaqueTag(trimmed))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create a {@code 304 (Not Modified)} response, without body.
+     *
+     * @param eTag the current entity tag.
+     * @param varyBy the request headers the entity tag depends on, which the full response varies by too.
+     * @param <T> the type of the body the response would have had.
+     * @return the response.
+     */
+    public static <T> ResponseEntity<T> notModified(String eTag, String... varyBy) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag);
+        if (varyBy.length > 0) {
+            builder.varyBy(varyBy);
+        }
+        return builder.build();
+    }
+
+    private static String opaqueTag(String eTag) {
+        return eTag.startsWith(WEAK_PREFIX) ? eTag.substring(WEAK_PREFIX.length()) : eTag;
+    }
+}
@@ -0,0 +1,108 @@
+package com.osttra.fx.blockstream.web.rest.util;
+
+import com.osttra.fx.blockstream.web.rest.errors.BadRequestAlertException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.Base64;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Utility class for handling keyset (seek) pagination.
+ * <p>
+ * The client receives an opaque cursor encoding the sort key and the id of the last element of the page, and sends
+ * it back with the {@code cursor} request parameter to get the next page. An empty cursor requests the first page.
+ */
+public final class KeysetPaginationUtil {
+
+    public static final String CURSOR_PARAMETER = "cursor";
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final String SEPARATOR = ":";
+
+    private KeysetPaginationUtil() {}
+
+    /**
+     * Encode the position of the last element of a page.
+     *
+     * @param sortKey the sort key of the last element, may be {@code null}.
+     * @param id the id of the last element.
+     * @return the opaque cursor.
+     */
+    public static String encodeCursor(LocalDate sortKey, String id) {
+        String raw = (sortKey == null ? "" : Long.toString(sortKey.toEpochDay())) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor sent back by a client.
+     *
+     * @param cursor the opaque cursor, empty for the first page.
+     * @param entityName the name of the paginated entity, used for the error alert.
+     * @return the decoded position.
+     * @throws BadRequestAlertException if the cursor is not one we issued.
+     */
+    public static Cursor decodeCursor(String cursor, String entityName) {
+        if (cursor == null || cursor.isEmpty()) {
+            return Cursor.FIRST;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0 || separator == raw.length() - 1) {
+                throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+            }
+            String sortKey = raw.substring(0, separator);
+            return new Cursor(sortKey.isEmpty() ? null : LocalDate.ofEpochDay(Long.parseLong(sortKey)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new BadRequestAlertException("Invalid cursor", entityName, "cursorinvalid");
+        }
+    }
+
+    /**
+     * Generate keyset pagination headers, following the {@code Link} header format of {@link tech.jhipster.web.util.PaginationUtil}.
+     *
+     * @param uriBuilder the builder of the current request URI.
+     * @param nextCursor the cursor of the next page, or {@code null} on the last page.
+     * @return the {@link HttpHeaders}.
+     */
+    public static HttpHeaders generateKeysetHttpHeaders(UriComponentsBuilder uriBuilder, String nextCursor) {
+        HttpHeaders headers = new HttpHeaders();
+        if (nextCursor != null) {
+            headers.add(NEXT_CURSOR_HEADER, nextCursor);
+            String link = uriBuilder.replaceQueryParam(CURSOR_PARAMETER, nextCursor).replaceQueryParam("page").toUriString();
+            headers.add(HttpHeaders.LINK, "<" + link + ">; rel=\"next\"");
+        }
+        return headers;
+    }
+
+    /**
+     * Position of the last element of the previous page.
+     */
+    public static final class Cursor {
+
+        static final Cursor FIRST = new Cursor(null, null);
+
+        private final LocalDate sortKey;
+
+        private final String id;
+
+        Cursor(LocalDate sortKey, String id) {
+            this.sortKey = sortKey;
+            this.id = id;
+        }
+
+        public LocalDate getSortKey() {
+            return sortKey;
+        }
+
+        /**
+         * @return the id of the last element of the previous page, {@code null} for the first page.
+         */
+        public String getId() {
+            return id;
+        }
+    }
+}
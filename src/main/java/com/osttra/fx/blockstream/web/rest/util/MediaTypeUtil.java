@@ -0,0 +1,45 @@
+package com.osttra.fx.blockstream.web.rest.util;
+
+import java.util.List;
+import org.springframework.http.MediaType;
+
+/**
+ * Utility class for the binary media types served alongside JSON.
+ */
+public final class MediaTypeUtil {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    /**
+     * A sequence of concatenated CBOR data items (RFC 8742), the binary counterpart of newline-delimited JSON.
+     */
+    public static final String APPLICATION_CBOR_SEQ_VALUE = "application/cbor-seq";
+
+    public static final MediaType APPLICATION_CBOR_SEQ = MediaType.parseMediaType(APPLICATION_CBOR_SEQ_VALUE);
+
+    private MediaTypeUtil() {}
+
+    /**
+     * Tell whether an {@code Accept} header prefers a media type over another one, both being produced by an endpoint.
+     *
+     * @param accept the {@code Accept} header, {@code null} if absent.
+     * @param mediaType the media type.
+     * @param other the other media type, used when both are accepted equally or the header is absent.
+     * @return whether {@code mediaType} is preferred.
+     */
+    public static boolean prefers(String accept, MediaType mediaType, MediaType other) {
+        if (accept == null) {
+            return false;
+        }
+        List<MediaType> acceptedTypes = MediaType.parseMediaTypes(accept);
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        return acceptedTypes
+            .stream()
+            .filter(acceptedType -> acceptedType.isCompatibleWith(mediaType) || acceptedType.isCompatibleWith(other))
+            .findFirst()
+            .map(acceptedType -> !acceptedType.isCompatibleWith(other))
+            .orElse(false);
+    }
+}
@@ -0,0 +1,79 @@
+package com.osttra.fx.blockstream.web.rest.vm;
+
+/**
+ * View Model object for storing the outcome of one item of a batch.
+ */
+public class BatchItemResultVM {
+
+    public enum Status {
+        CREATED,
+        INVALID,
+        FAILED,
+        /**
+         * Already created with the same transaction id, whose smartTrade id is given.
+         */
+        DUPLICATE,
+    }
+
+    private int index;
+
+    private String id;
+
+    private Status status;
+
+    private String error;
+
+    public BatchItemResultVM() {
+        // Empty constructor needed for Jackson.
+    }
+
+    public BatchItemResultVM(int index, String id, Status status, String error) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.error = error;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "BatchItemResultVM{" +
+            "index=" + index +
+            ", id='" + id + "'" +
+            ", status=" + status +
+            ", error='" + error + "'" +
+            "}";
+    }
+}
@@ -1,5 +1,6 @@
 package com.osttra.fx.blockstream.config;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -11,10 +12,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import java.util.*;
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpHeaders;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockServletContext;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -43,7 +48,7 @@ class WebConfigurerTest {
         env = new MockEnvironment();
         props = new JHipsterProperties();
 
-        webConfigurer = new WebConfigurer(env, props);
+        webConfigurer = new WebConfigurer(env, props, new ApplicationProperties());
     }
 
     @Test
@@ -114,4 +119,28 @@ class WebConfigurerTest {
             .andExpect(status().isOk())
             .andExpect(header().doesNotExist(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
     }
+
+    @Test
+    void shouldApplyForwardedHeadersOfTrustedProxy() throws Exception {
+        HttpServletRequest request = forwardedRequest("127.0.0.1");
+
+        assertThat(request.getRemoteAddr()).isEqualTo("198.51.100.1");
+    }
+
+    @Test
+    void shouldRemoveForwardedHeadersOfUntrustedPeer() throws Exception {
+        HttpServletRequest request = forwardedRequest("203.0.113.7");
+
+        assertThat(request.getRemoteAddr()).isEqualTo("203.0.113.7");
+        assertThat(request.getHeader("X-Forwarded-For")).isNull();
+    }
+
+    private HttpServletRequest forwardedRequest(String remoteAddr) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Forwarded-For", "198.51.100.1");
+        MockFilterChain filterChain = new MockFilterChain();
+        webConfigurer.trustedProxyForwardedHeaderFilter().getFilter().doFilter(request, new MockHttpServletResponse(), filterChain);
+        return (HttpServletRequest) filterChain.getRequest();
+    }
 }
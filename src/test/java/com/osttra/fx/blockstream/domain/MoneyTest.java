@@ -0,0 +1,80 @@
+package com.osttra.fx.blockstream.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MoneyTest {
+
+    @Test
+    void usesTheMinorUnitsOfTheCurrency() {
+        assertThat(Money.of(new BigDecimal("10"), "EUR")).extracting(Money::getMinorUnits, Money::getScale).containsExactly(1000L, 2);
+        assertThat(Money.of(new BigDecimal("10"), "JPY")).extracting(Money::getMinorUnits, Money::getScale).containsExactly(10L, 0);
+        assertThat(Money.of(new BigDecimal("1.5"), "JPY")).extracting(Money::getMinorUnits, Money::getScale).containsExactly(15L, 1);
+        assertThat(Money.scaleOf("KWD")).isEqualTo(3);
+        assertThat(Money.scaleOf("AAAAAAAAAA")).isEqualTo(Money.DEFAULT_SCALE);
+        assertThat(Money.of(new BigDecimal("1.500000000000"))).extracting(Money::getMinorUnits, Money::getScale).containsExactly(15L, 1);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("0.0000000001"))).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("1e20"))).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void convertsRoundingHalfEven() {
+        assertThat(Money.of(new BigDecimal("10"), "EUR").times(Rate.of(1.1), 2).toBigDecimal()).isEqualTo(new BigDecimal("11.00"));
+        assertThat(Money.ofMinorUnits(1, 2).times(Rate.of(0.5), 2).getMinorUnits()).isZero();
+        assertThat(Money.ofMinorUnits(3, 2).times(Rate.of(0.5), 2).getMinorUnits()).isEqualTo(2);
+        assertThat(Money.ofMinorUnits(-3, 2).times(Rate.of(0.5), 2).getMinorUnits()).isEqualTo(-2);
+        assertThat(Money.ofMinorUnits(1250, 3).withScale(2).getMinorUnits()).isEqualTo(125);
+        assertThat(Money.ofMinorUnits(1255, 3).withScale(2).getMinorUnits()).isEqualTo(126);
+        assertThat(Money.ofMinorUnits(-1245, 3).withScale(1).getMinorUnits()).isEqualTo(-12);
+        assertThat(Money.ofMinorUnits(125, 2).withScale(4).getMinorUnits()).isEqualTo(12500);
+        assertThat(Money.ofMinorUnits(12345, 2).times(Rate.of(new BigDecimal("150.123")), 0).getMinorUnits()).isEqualTo(18533);
+    }
+
+    @Test
+    void convertsAsBigDecimal() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long minorUnits = random.nextLong() >> random.nextInt(64);
+            int scale = random.nextInt(Money.MAX_SCALE + 1);
+            int targetScale = random.nextInt(Money.MAX_SCALE + 1);
+            Rate rate = Rate.ofScaled(random.nextLong() >> random.nextInt(64));
+            BigDecimal expected = BigDecimal
+                .valueOf(minorUnits, scale)
+                .multiply(BigDecimal.valueOf(rate.getScaled(), Rate.SCALE))
+                .setScale(targetScale, RoundingMode.HALF_EVEN);
+            if (expected.unscaledValue().bitLength() < 64) {
+                assertThat(Money.convert(minorUnits, scale, rate, targetScale)).isEqualTo(expected.unscaledValue().longValueExact());
+            } else {
+                assertThatThrownBy(() -> Money.convert(minorUnits, scale, rate, targetScale)).isInstanceOf(ArithmeticException.class);
+            }
+        }
+    }
+
+    @Test
+    void multipliesAndDividesWithoutOverflow() {
+        long product = Money.multiplyDivide(Long.MAX_VALUE, 1_000_000_000L, 1_000_000_000L);
+        assertThat(product).isEqualTo(Long.MAX_VALUE);
+        BigInteger expected = BigInteger.valueOf(Long.MAX_VALUE).multiply(BigInteger.valueOf(3)).divide(BigInteger.valueOf(7));
+        assertThat(Money.multiplyDivide(Long.MAX_VALUE, 3, 7)).isEqualTo(expected.longValueExact());
+        assertThatThrownBy(() -> Money.multiplyDivide(Long.MAX_VALUE, 2, 1)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.multiplyDivide(Long.MIN_VALUE, 1, 1)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void addsAndComparesWhateverTheScales() {
+        Money sum = Money.ofMinorUnits(150, 2).plus(Money.ofMinorUnits(25, 3));
+        assertThat(sum).extracting(Money::getMinorUnits, Money::getScale).containsExactly(1525L, 3);
+        assertThat(Money.of(new BigDecimal("1.5"))).isEqualTo(Money.of(new BigDecimal("1.50")));
+        assertThat(Money.of(new BigDecimal("1.5"))).hasSameHashCodeAs(Money.of(new BigDecimal("1.50")));
+        assertThat(Money.of(new BigDecimal("1.5"))).isGreaterThan(Money.of(new BigDecimal("1.49")));
+        assertThat(Money.of(new BigDecimal("2.10")).negate()).hasToString("-2.10");
+        assertThatThrownBy(() -> Money.ofMinorUnits(Long.MAX_VALUE, 0).plus(Money.ofMinorUnits(1, 0)))
+            .isInstanceOf(ArithmeticException.class);
+    }
+}
@@ -0,0 +1,23 @@
+package com.osttra.fx.blockstream.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.osttra.fx.blockstream.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class PositionTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(Position.class);
+        Position position1 = new Position();
+        position1.setId("id1");
+        Position position2 = new Position();
+        position2.setId(position1.getId());
+        assertThat(position1).isEqualTo(position2);
+        position2.setId("id2");
+        assertThat(position1).isNotEqualTo(position2);
+        position1.setId(null);
+        assertThat(position1).isNotEqualTo(position2);
+    }
+}
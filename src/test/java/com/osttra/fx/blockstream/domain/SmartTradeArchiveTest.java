@@ -0,0 +1,23 @@
+package com.osttra.fx.blockstream.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.osttra.fx.blockstream.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class SmartTradeArchiveTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(SmartTradeArchive.class);
+        SmartTradeArchive smartTradeArchive1 = new SmartTradeArchive();
+        smartTradeArchive1.setId("id1");
+        SmartTradeArchive smartTradeArchive2 = new SmartTradeArchive();
+        smartTradeArchive2.setId(smartTradeArchive1.getId());
+        assertThat(smartTradeArchive1).isEqualTo(smartTradeArchive2);
+        smartTradeArchive2.setId("id2");
+        assertThat(smartTradeArchive1).isNotEqualTo(smartTradeArchive2);
+        smartTradeArchive1.setId(null);
+        assertThat(smartTradeArchive1).isNotEqualTo(smartTradeArchive2);
+    }
+}
@@ -0,0 +1,23 @@
+package com.osttra.fx.blockstream.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.osttra.fx.blockstream.web.rest.TestUtil;
+import org.junit.jupiter.api.Test;
+
+class WalletBalanceTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(WalletBalance.class);
+        WalletBalance walletBalance1 = new WalletBalance();
+        walletBalance1.setId("id1");
+        WalletBalance walletBalance2 = new WalletBalance();
+        walletBalance2.setId(walletBalance1.getId());
+        assertThat(walletBalance1).isEqualTo(walletBalance2);
+        walletBalance2.setId("id2");
+        assertThat(walletBalance1).isNotEqualTo(walletBalance2);
+        walletBalance1.setId(null);
+        assertThat(walletBalance1).isNotEqualTo(walletBalance2);
+    }
+}
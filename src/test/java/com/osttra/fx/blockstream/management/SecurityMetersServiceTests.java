@@ -13,6 +13,8 @@ class SecurityMetersServiceTests {
 
     private static final String INVALID_TOKENS_METER_EXPECTED_NAME = "security.authentication.invalid-tokens";
 
+    private static final String THROTTLED_LOGINS_METER_EXPECTED_NAME = "security.authentication.throttled-logins";
+
     private MeterRegistry meterRegistry;
 
     private SecurityMetersService securityMetersService;
@@ -67,4 +69,18 @@ class SecurityMetersServiceTests {
 
         assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "malformed").counter().count()).isEqualTo(1);
     }
+
+    @Test
+    void testThrottledLoginsCountersByKeyAreBound() {
+        assertThat(meterRegistry.find(THROTTLED_LOGINS_METER_EXPECTED_NAME).counters()).hasSize(2);
+
+        securityMetersService.trackLoginThrottledByLogin();
+
+        assertThat(meterRegistry.get(THROTTLED_LOGINS_METER_EXPECTED_NAME).tag("key", "login").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(THROTTLED_LOGINS_METER_EXPECTED_NAME).tag("key", "ip").counter().count()).isZero();
+
+        securityMetersService.trackLoginThrottledByIp();
+
+        assertThat(meterRegistry.get(THROTTLED_LOGINS_METER_EXPECTED_NAME).tag("key", "ip").counter().count()).isEqualTo(1);
+    }
 }
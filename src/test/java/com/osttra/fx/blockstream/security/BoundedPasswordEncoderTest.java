@@ -0,0 +1,108 @@
+package com.osttra.fx.blockstream.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Test class for the {@link BoundedPasswordEncoder}.
+ */
+class BoundedPasswordEncoderTest {
+
+    private static final long TIMEOUT = 10_000;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @AfterEach
+    public void shutdown() {
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    void testEncodesAndMatchesWithTheDelegate() {
+        passwordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 1, 1, TIMEOUT, meterRegistry);
+
+        String encodedPassword = passwordEncoder.encode("password");
+
+        assertThat(passwordEncoder.matches("password", encodedPassword)).isTrue();
+        assertThat(passwordEncoder.matches("other", encodedPassword)).isFalse();
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.HASHING_METER_NAME).tag("operation", "encode").timer().count())
+            .isEqualTo(1);
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.HASHING_METER_NAME).tag("operation", "matches").timer().count())
+            .isEqualTo(2);
+    }
+
+    @Test
+    void testRejectsAtOnceWhenTheQueueIsFull() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        passwordEncoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(hashing, release), 1, 1, TIMEOUT, meterRegistry);
+
+        // One password is being hashed, another one is waiting
+        CompletableFuture<String> first = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("first"));
+        assertThat(hashing.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> passwordEncoder.encode("second"));
+        while (meterRegistry.get(BoundedPasswordEncoder.QUEUE_METER_NAME).gauge().value() < 1) {
+            Thread.sleep(10);
+        }
+
+        assertThatThrownBy(() -> passwordEncoder.encode("third")).isInstanceOf(PasswordHashingSaturatedException.class);
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.REJECTED_METER_NAME).counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(second.get(10, TimeUnit.SECONDS)).isEqualTo("second");
+    }
+
+    @Test
+    void testRejectsWhenTheResultIsNotReadyInTime() throws Exception {
+        CountDownLatch hashing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        passwordEncoder = new BoundedPasswordEncoder(new BlockingPasswordEncoder(hashing, release), 1, 1, 50, meterRegistry);
+
+        assertThatThrownBy(() -> passwordEncoder.encode("first")).isInstanceOf(PasswordHashingSaturatedException.class);
+        assertThat(hashing.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get(BoundedPasswordEncoder.REJECTED_METER_NAME).counter().count()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(passwordEncoder.encode("second")).isEqualTo("second");
+    }
+
+    private static class BlockingPasswordEncoder implements PasswordEncoder {
+
+        private final CountDownLatch hashing;
+
+        private final CountDownLatch release;
+
+        BlockingPasswordEncoder(CountDownLatch hashing, CountDownLatch release) {
+            this.hashing = hashing;
+            this.release = release;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            hashing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    }
+}
@@ -110,4 +110,19 @@ class DomainUserDetailsServiceIT {
         assertThatExceptionOfType(UserNotActivatedException.class)
             .isThrownBy(() -> domainUserDetailsService.loadUserByUsername(USER_THREE_LOGIN));
     }
+
+    @Test
+    void assertThatCachedUsersAreNotUsedForAuthentication() {
+        User userOne = userRepository.findOneByLogin(USER_ONE_LOGIN).orElseThrow();
+        assertThat(userRepository.findOneByEmailIgnoreCase(USER_ONE_EMAIL)).isPresent();
+
+        // Changed in the database without evicting the cached user, as by another instance
+        userOne.setActivated(false);
+        userRepository.save(userOne);
+
+        assertThatExceptionOfType(UserNotActivatedException.class)
+            .isThrownBy(() -> domainUserDetailsService.loadUserByUsername(USER_ONE_LOGIN));
+        assertThatExceptionOfType(UserNotActivatedException.class)
+            .isThrownBy(() -> domainUserDetailsService.loadUserByUsername(USER_ONE_EMAIL));
+    }
 }
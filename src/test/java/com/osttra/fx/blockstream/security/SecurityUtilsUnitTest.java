@@ -2,6 +2,7 @@ package com.osttra.fx.blockstream.security;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
@@ -43,6 +44,19 @@ class SecurityUtilsUnitTest {
         assertThat(jwt).contains("token");
     }
 
+    @Test
+    void testGetCurrentCustomer() {
+        SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken("admin", "token");
+        securityContext.setAuthentication(authentication);
+        SecurityContextHolder.setContext(securityContext);
+        assertThat(SecurityUtils.getCurrentCustomer()).isEmpty();
+
+        CustomerRef customer = new CustomerRef().id("customer-id").customerLegalEntity("admin");
+        authentication.setDetails(customer);
+        assertThat(SecurityUtils.getCurrentCustomer()).contains(customer);
+    }
+
     @Test
     void testIsAuthenticated() {
         SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
@@ -0,0 +1,44 @@
+package com.osttra.fx.blockstream.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link TokenBucketTable}.
+ */
+class TokenBucketTableTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void testRefusesAKeyOnceItsBucketsAreEmptyUntilTheyAreRefilled() {
+        TokenBucketTable table = new TokenBucketTable(1024, 4, 3, 60, clock::get);
+
+        assertThat(table.tryAcquire("admin")).isTrue();
+        assertThat(table.tryAcquire("admin")).isTrue();
+        assertThat(table.tryAcquire("admin")).isTrue();
+        assertThat(table.tryAcquire("admin")).isFalse();
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertThat(table.tryAcquire("admin")).isTrue();
+        assertThat(table.tryAcquire("admin")).isFalse();
+
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        for (int i = 0; i < 3; i++) {
+            assertThat(table.tryAcquire("admin")).isTrue();
+        }
+        assertThat(table.tryAcquire("admin")).isFalse();
+    }
+
+    @Test
+    void testKeysShareTheBucketsTheyHashTo() {
+        TokenBucketTable table = new TokenBucketTable(1, 1, 2, 60, clock::get);
+
+        assertThat(table.tryAcquire("admin")).isTrue();
+        assertThat(table.tryAcquire("user")).isTrue();
+        assertThat(table.tryAcquire("anonymous")).isFalse();
+    }
+}
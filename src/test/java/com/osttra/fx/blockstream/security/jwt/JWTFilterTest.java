@@ -2,6 +2,7 @@ package com.osttra.fx.blockstream.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.osttra.fx.blockstream.config.ApplicationProperties;
 import com.osttra.fx.blockstream.management.SecurityMetersService;
 import com.osttra.fx.blockstream.security.AuthoritiesConstants;
 import io.jsonwebtoken.io.Decoders;
@@ -34,7 +35,7 @@ class JWTFilterTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService, new ApplicationProperties());
         ReflectionTestUtils.setField(tokenProvider, "key", Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret)));
 
         ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", 60000);
@@ -2,6 +2,7 @@ package com.osttra.fx.blockstream.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.osttra.fx.blockstream.config.ApplicationProperties;
 import com.osttra.fx.blockstream.management.SecurityMetersService;
 import com.osttra.fx.blockstream.security.AuthoritiesConstants;
 import io.jsonwebtoken.Jwts;
@@ -43,7 +44,7 @@ class TokenProviderSecurityMetersTests {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(meterRegistry);
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService, new ApplicationProperties());
         Key key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
 
         ReflectionTestUtils.setField(tokenProvider, "key", key);
@@ -74,6 +75,16 @@ class TokenProviderSecurityMetersTests {
         assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "expired").counter().count()).isEqualTo(1);
     }
 
+    @Test
+    void testTokenExpiredIsCountedOnEachResolution() {
+        String expiredToken = createExpiredToken();
+
+        tokenProvider.resolveAuthentication(expiredToken);
+        tokenProvider.resolveAuthentication(expiredToken);
+
+        assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "expired").counter().count()).isEqualTo(2);
+    }
+
     @Test
     void testTokenUnsupportedCount() {
         assertThat(meterRegistry.get(INVALID_TOKENS_METER_EXPECTED_NAME).tag("cause", "unsupported").counter().count()).isZero();
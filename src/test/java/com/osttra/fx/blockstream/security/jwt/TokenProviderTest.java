@@ -2,6 +2,8 @@ package com.osttra.fx.blockstream.security.jwt;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.management.SecurityMetersService;
 import com.osttra.fx.blockstream.security.AuthoritiesConstants;
 import io.jsonwebtoken.Jwts;
@@ -26,6 +28,7 @@ class TokenProviderTest {
     private static final long ONE_MINUTE = 60000;
 
     private Key key;
+    private ApplicationProperties applicationProperties;
     private TokenProvider tokenProvider;
 
     @BeforeEach
@@ -36,7 +39,8 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        applicationProperties = new ApplicationProperties();
+        tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService, applicationProperties);
         key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret));
 
         ReflectionTestUtils.setField(tokenProvider, "key", key);
@@ -88,6 +92,82 @@ class TokenProviderTest {
         assertThat(isTokenValid).isFalse();
     }
 
+    @Test
+    void testResolveAuthenticationVerifiesTheTokenOnce() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        Authentication authentication = tokenProvider.resolveAuthentication(token);
+
+        assertThat(authentication).isNotNull();
+        assertThat(authentication.getName()).isEqualTo("anonymous");
+        assertThat(authentication.getAuthorities())
+            .extracting(GrantedAuthority::getAuthority)
+            .containsExactly(AuthoritiesConstants.ANONYMOUS);
+        // A token seen already is neither verified nor parsed again
+        assertThat(tokenProvider.resolveAuthentication(token)).isSameAs(authentication);
+    }
+
+    @Test
+    void testResolveAuthenticationReturnsNullWhenJWTisInvalid() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+        tokenProvider.resolveAuthentication(token);
+
+        assertThat(tokenProvider.resolveAuthentication(token.substring(1))).isNull();
+        assertThat(tokenProvider.resolveAuthentication(createTokenWithDifferentSignature())).isNull();
+    }
+
+    @Test
+    void testResolveAuthenticationReturnsNullWhenJWTisExpired() {
+        ReflectionTestUtils.setField(tokenProvider, "tokenValidityInMilliseconds", -ONE_MINUTE);
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.resolveAuthentication(token)).isNull();
+        assertThat(tokenProvider.resolveAuthentication(token)).isNull();
+    }
+
+    @Test
+    void testAuthenticationCarriesTheCustomerOfTheToken() {
+        CustomerRef customer = new CustomerRef().id("customer-id").customerLegalEntity("anonymous").customerHashCode("hash-code");
+        String token = tokenProvider.createToken(createAuthentication(), false, customer);
+
+        Authentication authentication = tokenProvider.getAuthentication(token);
+
+        assertThat(authentication.getDetails()).isInstanceOf(CustomerRef.class);
+        CustomerRef details = (CustomerRef) authentication.getDetails();
+        assertThat(details.getId()).isEqualTo("customer-id");
+        assertThat(details.getCustomerLegalEntity()).isEqualTo("anonymous");
+        assertThat(details.getCustomerHashCode()).isEqualTo("hash-code");
+    }
+
+    @Test
+    void testAuthenticationHasNoCustomerWhenTheTokenHasNone() {
+        String token = tokenProvider.createToken(createAuthentication(), false);
+
+        assertThat(tokenProvider.getAuthentication(token).getDetails()).isNull();
+    }
+
+    @Test
+    void testAuthenticationHasNoCustomerOnceTheCustomerClaimsAreTooOld() {
+        CustomerRef customer = new CustomerRef().id("customer-id").customerLegalEntity("anonymous").customerHashCode("hash-code");
+        String token = tokenProvider.createToken(createAuthentication(), false, customer);
+        applicationProperties.getJwt().setCustomerClaimsValidity(-ONE_MINUTE);
+
+        assertThat(tokenProvider.getAuthentication(token).getDetails()).isNull();
+    }
+
+    @Test
+    void testResolveAuthenticationDropsTheCustomerOnceTheCustomerClaimsAreTooOld() throws InterruptedException {
+        applicationProperties.getJwt().setCustomerClaimsValidity(2000);
+        CustomerRef customer = new CustomerRef().id("customer-id").customerLegalEntity("anonymous").customerHashCode("hash-code");
+        String token = tokenProvider.createToken(createAuthentication(), false, customer);
+
+        assertThat(tokenProvider.resolveAuthentication(token).getDetails()).isInstanceOf(CustomerRef.class);
+        // The issue time of the token being in seconds, its customer claims expire between one and two seconds after
+        Thread.sleep(2100);
+
+        assertThat(tokenProvider.resolveAuthentication(token).getDetails()).isNull();
+    }
+
     @Test
     void testKeyIsSetFromSecretWhenSecretIsNotEmpty() {
         final String secret = "NwskoUmKHZtzGRKJKVjsJF7BtQMMxNWi";
@@ -96,7 +176,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService, new ApplicationProperties());
 
         Key key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
         assertThat(key).isNotNull().isEqualTo(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)));
@@ -110,7 +190,7 @@ class TokenProviderTest {
 
         SecurityMetersService securityMetersService = new SecurityMetersService(new SimpleMeterRegistry());
 
-        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService);
+        TokenProvider tokenProvider = new TokenProvider(jHipsterProperties, securityMetersService, new ApplicationProperties());
 
         Key key = (Key) ReflectionTestUtils.getField(tokenProvider, "key");
         assertThat(key).isNotNull().isEqualTo(Keys.hmacShaKeyFor(Decoders.BASE64.decode(base64Secret)));
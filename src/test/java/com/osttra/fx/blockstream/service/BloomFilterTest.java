@@ -0,0 +1,42 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    @Test
+    void containsEveryPutValue() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        String[] values = new String[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UUID.randomUUID().toString();
+            filter.put(values[i]);
+        }
+
+        for (String value : values) {
+            assertThat(filter.mightContain(value)).isTrue();
+        }
+        assertThat(filter.isSaturated()).isFalse();
+        filter.put("one more");
+        assertThat(filter.isSaturated()).isTrue();
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheExpectedProbability() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("TX-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) {
+            if (filter.mightContain("TX-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(2000);
+    }
+}
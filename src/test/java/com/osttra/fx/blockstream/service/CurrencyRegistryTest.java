@@ -0,0 +1,78 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+import com.osttra.fx.blockstream.domain.Currencies;
+import com.osttra.fx.blockstream.repository.CurrenciesRepository;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CurrencyRegistryTest {
+
+    private CurrenciesRepository currenciesRepository;
+
+    private CurrencyRegistry currencyRegistry;
+
+    @BeforeEach
+    void setup() {
+        currenciesRepository = mock(CurrenciesRepository.class);
+        when(currenciesRepository.findAll()).thenReturn(List.of(currency("1", "EUR"), currency("2", "USD")));
+        currencyRegistry = new CurrencyRegistry(currenciesRepository);
+        currencyRegistry.reload();
+    }
+
+    private static Currencies currency(String id, String currencyCode) {
+        return new Currencies().id(id).currencyName(currencyCode).currencyCode(currencyCode);
+    }
+
+    @Test
+    void knowsTheLoadedCurrencies() {
+        assertThat(currencyRegistry.isKnown("EUR")).isTrue();
+        assertThat(currencyRegistry.isKnown("USD")).isTrue();
+        assertThat(currencyRegistry.isKnown("GBP")).isFalse();
+        assertThat(currencyRegistry.isKnown(null)).isFalse();
+        assertThat(currencyRegistry.getSnapshot().findByCode("USD")).map(Currencies::getId).contains("2");
+    }
+
+    @Test
+    void publishesChangesWithoutAlteringPreviousSnapshots() {
+        CurrencyRegistry.Snapshot previous = currencyRegistry.getSnapshot();
+
+        currencyRegistry.put(currency("3", "GBP"));
+        currencyRegistry.put(currency("1", "CHF"));
+        currencyRegistry.remove("2");
+
+        CurrencyRegistry.Snapshot current = currencyRegistry.getSnapshot();
+        assertThat(current.getCurrencies()).extracting(Currencies::getCurrencyCode).containsExactly("CHF", "GBP");
+        assertThat(current.indexOf("GBP")).isEqualTo(1);
+        assertThat(current.getGeneration()).isEqualTo(previous.getGeneration() + 3);
+        assertThat(previous.getCurrencies()).extracting(Currencies::getCurrencyCode).containsExactly("EUR", "USD");
+        assertThat(previous.indexOf("EUR")).isZero();
+        verify(currenciesRepository, times(1)).findAll();
+    }
+
+    @Test
+    void reloadPublishesOnlyChangedCurrencies() {
+        CurrencyRegistry.Snapshot loaded = currencyRegistry.getSnapshot();
+
+        currencyRegistry.reload();
+        assertThat(currencyRegistry.getSnapshot()).isSameAs(loaded);
+
+        when(currenciesRepository.findAll()).thenReturn(List.of(currency("1", "EUR").version(1L), currency("2", "USD")));
+        currencyRegistry.reload();
+        assertThat(currencyRegistry.getSnapshot().getGeneration()).isEqualTo(loaded.getGeneration() + 1);
+        assertThat(currencyRegistry.getSnapshot().getDigest()).isNotEqualTo(loaded.getDigest());
+    }
+
+    @Test
+    void snapshotsOfTheSameCurrenciesHaveTheSameDigest() {
+        CurrencyRegistry otherInstance = new CurrencyRegistry(currenciesRepository);
+        otherInstance.put(currency("1", "EUR"));
+        otherInstance.put(currency("2", "USD"));
+
+        assertThat(otherInstance.getSnapshot().getDigest()).isEqualTo(currencyRegistry.getSnapshot().getDigest());
+        assertThat(otherInstance.getSnapshot().getGeneration()).isNotEqualTo(currencyRegistry.getSnapshot().getGeneration());
+    }
+}
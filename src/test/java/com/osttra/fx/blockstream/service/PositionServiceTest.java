@@ -0,0 +1,261 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Position;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.repository.PositionRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Stream;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+
+class PositionServiceTest {
+
+    private static final String PARTY = "PARTY";
+
+    private static final LocalDate VALUE_DATE = LocalDate.of(2022, 1, 3);
+
+    private PositionRepository positionRepository;
+
+    private MongoTemplate mongoTemplate;
+
+    private MongoConverter converter;
+
+    private final Queue<ChangeStreamDocument<Document>> changes = new ArrayDeque<>();
+
+    private PositionService positionService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        positionRepository = mock(PositionRepository.class);
+        SmartTradeArchiveRepository smartTradeArchiveRepository = mock(SmartTradeArchiveRepository.class);
+        when(smartTradeArchiveRepository.streamAll()).thenReturn(Stream.empty());
+        mongoTemplate = mock(MongoTemplate.class);
+        converter = mock(MongoConverter.class);
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        when(mongoTemplate.getCollectionName(SmartTrade.class)).thenReturn("smart_trade");
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        ChangeStreamIterable<Document> changeStream = mock(ChangeStreamIterable.class);
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = mock(MongoChangeStreamCursor.class);
+        when(mongoTemplate.getCollection("smart_trade")).thenReturn(collection);
+        when(collection.watch(anyList())).thenReturn(changeStream);
+        when(changeStream.fullDocument(any())).thenReturn(changeStream);
+        when(changeStream.maxAwaitTime(anyLong(), any())).thenReturn(changeStream);
+        when(changeStream.cursor()).thenReturn(cursor);
+        when(cursor.tryNext()).thenAnswer(invocation -> changes.poll());
+        streamHotTrades(List.of());
+        positionService = new PositionService(positionRepository, smartTradeArchiveRepository, mongoTemplate, new SimpleMeterRegistry());
+    }
+
+    private static SmartTrade trade(String id, long version, String amount) {
+        return new SmartTrade()
+            .id(id)
+            .version(version)
+            .tradingParty(PARTY)
+            .currencyBuy("EUR")
+            .currencySell("USD")
+            .amount(new BigDecimal(amount))
+            .rate(1.0)
+            .valueDate(VALUE_DATE);
+    }
+
+    private static Position stored(String baseAmount, long tradeCount) {
+        return new Position()
+            .id(PARTY + "/EUR/USD/" + VALUE_DATE)
+            .legalEntity(PARTY)
+            .baseCurrency("EUR")
+            .quoteCurrency("USD")
+            .valueDate(VALUE_DATE)
+            .baseAmount(Money.of(new BigDecimal(baseAmount)))
+            .quoteAmount(Money.of(new BigDecimal(baseAmount).negate()))
+            .tradeCount(tradeCount);
+    }
+
+    private void streamHotTrades(List<SmartTrade> smartTrades) {
+        Iterator<SmartTrade> iterator = smartTrades.iterator();
+        when(mongoTemplate.stream(any(Query.class), eq(SmartTrade.class)))
+            .thenReturn(
+                new CloseableIterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public SmartTrade next() {
+                        return iterator.next();
+                    }
+
+                    @Override
+                    public void close() {}
+                }
+            );
+    }
+
+    /**
+     * A change read from the change stream opened by a rebuild, {@code null} standing for a deletion.
+     */
+    private void changed(String id, SmartTrade smartTrade) {
+        Document document = null;
+        if (smartTrade != null) {
+            document = new Document("_id", id);
+            when(converter.read(eq(SmartTrade.class), same(document))).thenReturn(smartTrade);
+        }
+        changes.add(
+            new ChangeStreamDocument<>(
+                smartTrade != null ? OperationType.REPLACE : OperationType.DELETE,
+                new BsonDocument(),
+                null,
+                null,
+                document,
+                new BsonDocument("_id", new BsonString(id)),
+                null,
+                null,
+                null,
+                null
+            )
+        );
+    }
+
+    private BigDecimal baseAmount() {
+        List<Position> positions = positionService.getPositions(PARTY);
+        return positions.isEmpty() ? BigDecimal.ZERO : positions.get(0).getBaseAmount().toBigDecimal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Position> rebuilt() {
+        ArgumentCaptor<List<Position>> captor = ArgumentCaptor.forClass(List.class);
+        verify(positionRepository).replaceAll(captor.capture(), any(Instant.class));
+        return captor.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Position> flushed(int times) {
+        ArgumentCaptor<List<Position>> captor = ArgumentCaptor.forClass(List.class);
+        verify(positionRepository, times(times)).incrementAll(captor.capture(), any(Instant.class));
+        return captor.getValue();
+    }
+
+    @Test
+    void storedPositionsIncludeTheChangesOfThisInstanceNotFlushedYet() {
+        when(positionRepository.findAllByLegalEntity(PARTY)).thenReturn(List.of(stored("50", 1)));
+        SmartTrade created = trade("1", 0, "100");
+        positionService.add(created);
+        positionService.update(PositionService.contributionOf(created), trade("1", 1, "150"));
+
+        List<Position> positions = positionService.getPositions(PARTY);
+
+        assertThat(positions).hasSize(1);
+        assertThat(positions.get(0).getBaseAmount().toBigDecimal()).isEqualByComparingTo("200");
+        assertThat(positions.get(0).getQuoteAmount().toBigDecimal()).isEqualByComparingTo("-200");
+        assertThat(positions.get(0).getTradeCount()).isEqualTo(2);
+    }
+
+    @Test
+    void flushAddsTheChangesToTheStoredPositionsOnce() {
+        positionService.add(trade("1", 0, "100"));
+        positionService.remove(trade("2", 0, "30"));
+
+        positionService.flush();
+        positionService.flush();
+
+        List<Position> deltas = flushed(1);
+        assertThat(deltas).hasSize(1);
+        assertThat(deltas.get(0).getId()).isEqualTo(PARTY + "/EUR/USD/" + VALUE_DATE);
+        assertThat(deltas.get(0).getBaseAmount().toBigDecimal()).isEqualByComparingTo("70");
+        assertThat(deltas.get(0).getTradeCount()).isZero();
+        assertThat(baseAmount()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        doThrow(new IllegalStateException("write failed")).doNothing().when(positionRepository).incrementAll(anyList(), any(Instant.class));
+        positionService.add(trade("1", 0, "100"));
+
+        positionService.flush();
+        positionService.add(trade("2", 0, "10"));
+        positionService.flush();
+
+        List<Position> deltas = flushed(2);
+        assertThat(deltas.get(0).getBaseAmount().toBigDecimal()).isEqualByComparingTo("110");
+        assertThat(deltas.get(0).getTradeCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildAppliesTheChangesMadeWhileReadingTheTrades() {
+        streamHotTrades(List.of(trade("1", 0, "100"), trade("3", 0, "1000")));
+        // Made by any instance while the trades were read
+        changed("1", trade("1", 1, "150"));
+        changed("2", trade("2", 0, "10"));
+        changed("3", null);
+
+        positionService.rebuild();
+
+        List<Position> positions = rebuilt();
+        assertThat(positions).hasSize(1);
+        assertThat(positions.get(0).getBaseAmount().toBigDecimal()).isEqualByComparingTo("160");
+        assertThat(positions.get(0).getTradeCount()).isEqualTo(2);
+    }
+
+    @Test
+    void rebuildIgnoresTheChangesItReadAlready() {
+        streamHotTrades(List.of(trade("1", 2, "200")));
+        changed("1", trade("1", 1, "150"));
+
+        positionService.rebuild();
+
+        assertThat(rebuilt().get(0).getBaseAmount().toBigDecimal()).isEqualByComparingTo("200");
+    }
+
+    @Test
+    void rebuildDropsTheChangesOfThisInstanceNotFlushedYet() {
+        positionService.add(trade("1", 0, "100"));
+        streamHotTrades(List.of(trade("1", 0, "100")));
+
+        positionService.rebuild();
+        positionService.flush();
+
+        assertThat(rebuilt().get(0).getBaseAmount().toBigDecimal()).isEqualByComparingTo("100");
+        verify(positionRepository, never()).incrementAll(anyList(), any(Instant.class));
+    }
+
+    @Test
+    void rebuildFailureKeepsTheStoredPositions() {
+        when(mongoTemplate.stream(any(Query.class), eq(SmartTrade.class))).thenThrow(new IllegalStateException("read failed"));
+
+        assertThatThrownBy(() -> positionService.rebuild()).isInstanceOf(IllegalStateException.class);
+
+        verify(positionRepository, never()).replaceAll(anyList(), any(Instant.class));
+    }
+}
@@ -0,0 +1,208 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.SmartTradeArchive;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import com.jayway.jsonpath.JsonPath;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Integration tests for {@link SmartTradeArchiveService}.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class SmartTradeArchiveServiceIT {
+
+    private static final String CURRENT_PARTY = "user";
+    private static final String OTHER_PARTY = "other";
+
+    private static final LocalDate AGED_TRADE_DATE = LocalDate.now().minusYears(2);
+    private static final LocalDate RECENT_TRADE_DATE = LocalDate.now().minusDays(1);
+
+    private static final String ENTITY_API_URL = "/api/smart-trades";
+
+    @Autowired
+    private SmartTradeRepository smartTradeRepository;
+
+    @Autowired
+    private SmartTradeArchiveRepository smartTradeArchiveRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SmartTradeArchiveService smartTradeArchiveService;
+
+    @Autowired
+    private MockMvc restSmartTradeMockMvc;
+
+    @BeforeEach
+    public void initTest() {
+        smartTradeRepository.deleteAll();
+        smartTradeArchiveRepository.deleteAll();
+        customerRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE)).clear();
+        customerRepository.save(new Customer().customerName(CURRENT_PARTY).customerLegalEntity(CURRENT_PARTY));
+    }
+
+    private static SmartTrade createTrade(String tradingParty, LocalDate tradeDate, TradeStatus status) {
+        return new SmartTrade()
+            .tradingParty(tradingParty)
+            .counterParty("bank")
+            .currencyBuy("EUR")
+            .currencySell("USD")
+            .amount(new BigDecimal("100.25"))
+            .rate(1.1)
+            .tradeDate(tradeDate)
+            .valueDate(tradeDate.plusDays(2))
+            .status(status.name());
+    }
+
+    @Test
+    void archiveMovesTheAgedSettledAndFailedTrades() {
+        SmartTrade settled = createTrade(CURRENT_PARTY, AGED_TRADE_DATE, TradeStatus.SETTLED);
+        SmartTrade failed = createTrade(OTHER_PARTY, AGED_TRADE_DATE.minusDays(1), TradeStatus.FAILED);
+        SmartTrade booked = createTrade(CURRENT_PARTY, AGED_TRADE_DATE, TradeStatus.BOOKED);
+        SmartTrade recent = createTrade(CURRENT_PARTY, RECENT_TRADE_DATE, TradeStatus.SETTLED);
+        smartTradeRepository.saveAll(List.of(settled, failed, booked, recent));
+
+        assertThat(smartTradeArchiveService.archive()).isEqualTo(2);
+
+        assertThat(smartTradeRepository.findAll()).extracting(SmartTrade::getId).containsExactlyInAnyOrder(booked.getId(), recent.getId());
+        List<SmartTradeArchive> blocks = smartTradeArchiveRepository.findAll();
+        assertThat(blocks).hasSize(1);
+        assertThat(blocks.get(0).getParties()).containsExactlyInAnyOrder(CURRENT_PARTY, OTHER_PARTY, "bank");
+        assertThat(blocks.get(0).getFromDate()).isEqualTo(failed.getTradeDate());
+        assertThat(blocks.get(0).getToDate()).isEqualTo(settled.getTradeDate());
+        assertThat(blocks.get(0).getTradeCount()).isEqualTo(2);
+
+        List<SmartTrade> archived = new ArrayList<>();
+        smartTradeArchiveRepository.streamAllByParty(CURRENT_PARTY).forEach(archived::add);
+        assertThat(archived).hasSize(1);
+        assertThat(archived.get(0).getId()).isEqualTo(settled.getId());
+        assertThat(archived.get(0).getAmount()).isEqualByComparingTo(settled.getAmount());
+        assertThat(archived.get(0).getStatus()).isEqualTo(TradeStatus.SETTLED.name());
+
+        // Nothing is left to archive
+        assertThat(smartTradeArchiveService.archive()).isZero();
+    }
+
+    @Test
+    void archivedTradesAreReadWithTheTradeDateRangeAndExported() throws Exception {
+        SmartTrade archived = createTrade(CURRENT_PARTY, AGED_TRADE_DATE, TradeStatus.SETTLED);
+        SmartTrade recent = createTrade(CURRENT_PARTY, RECENT_TRADE_DATE, TradeStatus.SETTLED);
+        smartTradeRepository.saveAll(List.of(archived, recent, createTrade(OTHER_PARTY, AGED_TRADE_DATE, TradeStatus.SETTLED)));
+        smartTradeArchiveService.archive();
+
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?tradeDateFrom={from}", AGED_TRADE_DATE.minusDays(1)))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Next-Cursor"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(recent.getId()))
+            .andExpect(jsonPath("$.[1].id").value(archived.getId()));
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?tradeDateTo={to}&size=1", AGED_TRADE_DATE))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Next-Cursor"))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(archived.getId()));
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?tradeDateFrom={from}&tradeDateTo={to}", RECENT_TRADE_DATE, AGED_TRADE_DATE))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.invalidtradedaterange"));
+
+        MvcResult mvcResult = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = restSmartTradeMockMvc
+            .perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"id\":\"" + recent.getId() + "\"");
+        assertThat(lines[1]).contains("\"id\":\"" + archived.getId() + "\"");
+    }
+
+    @Test
+    void archivalIsNotSentAsDeletionToTheSubscribers() throws Exception {
+        SmartTrade aged = smartTradeRepository.save(createTrade(CURRENT_PARTY, AGED_TRADE_DATE, TradeStatus.SETTLED));
+        MvcResult events = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "/events"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        // Changed until its event is received, once the change stream is open, so that its parties are known
+        awaitEvent(events, aged.getId(), () -> smartTradeRepository.save(smartTradeRepository.findById(aged.getId()).get()));
+
+        assertThat(smartTradeArchiveService.archive()).isEqualTo(1);
+        SmartTrade recent = smartTradeRepository.save(createTrade(CURRENT_PARTY, RECENT_TRADE_DATE, TradeStatus.BOOKED));
+        awaitEvent(events, recent.getId(), () -> {});
+
+        assertThat(events.getResponse().getContentAsString()).doesNotContain("event:delete");
+    }
+
+    private static void awaitEvent(MvcResult events, String smartTradeId, Runnable change) throws Exception {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            change.run();
+            Thread.sleep(200);
+            if (events.getResponse().getContentAsString().contains("\"id\":\"" + smartTradeId + "\"")) {
+                return;
+            }
+        }
+        throw new AssertionError("No event received for SmartTrade " + smartTradeId);
+    }
+
+    @Test
+    void tradeDateRangeIsPaginatedAcrossTheArchive() throws Exception {
+        SmartTrade recent = createTrade(CURRENT_PARTY, RECENT_TRADE_DATE, TradeStatus.SETTLED);
+        SmartTrade aged = createTrade(CURRENT_PARTY, AGED_TRADE_DATE, TradeStatus.SETTLED);
+        SmartTrade older = createTrade(CURRENT_PARTY, AGED_TRADE_DATE.minusDays(1), TradeStatus.SETTLED);
+        SmartTrade booked = createTrade(CURRENT_PARTY, AGED_TRADE_DATE.minusDays(2), TradeStatus.BOOKED);
+        SmartTrade oldest = createTrade(CURRENT_PARTY, AGED_TRADE_DATE.minusDays(3), TradeStatus.FAILED);
+        smartTradeRepository.saveAll(List.of(recent, aged, older, booked, oldest));
+        smartTradeArchiveService.archive();
+
+        List<String> ids = new ArrayList<>();
+        String cursor = "";
+        do {
+            MvcResult result = restSmartTradeMockMvc
+                .perform(get(ENTITY_API_URL + "?tradeDateFrom={from}&size=2&cursor={cursor}", AGED_TRADE_DATE.minusYears(1), cursor))
+                .andExpect(status().isOk())
+                .andReturn();
+            List<String> page = JsonPath.read(result.getResponse().getContentAsString(), "$[*].id");
+            ids.addAll(page);
+            cursor = result.getResponse().getHeader("X-Next-Cursor");
+        } while (cursor != null);
+
+        assertThat(ids).containsExactly(recent.getId(), aged.getId(), older.getId(), booked.getId(), oldest.getId());
+    }
+}
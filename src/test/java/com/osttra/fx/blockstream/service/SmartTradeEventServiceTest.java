@@ -0,0 +1,255 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+class SmartTradeEventServiceTest {
+
+    private MeterRegistry meterRegistry;
+
+    private SmartTradeEventService smartTradeEventService;
+
+    @BeforeEach
+    void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getEvents().setBufferSize(3);
+        meterRegistry = new SimpleMeterRegistry();
+        smartTradeEventService = new SmartTradeEventService(mock(MongoTemplate.class), applicationProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        smartTradeEventService.shutdown();
+    }
+
+    private SmartTradeEventService.Event insert(String id, String tradingParty, String counterParty) {
+        SmartTrade smartTrade = new SmartTrade().id(id).tradingParty(tradingParty).counterParty(counterParty);
+        return smartTradeEventService.changeEvent(id, "insert", smartTrade);
+    }
+
+    @Test
+    void sendsEventsOfTheLegalEntity() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        smartTradeEventService.subscribe(emitter, "A", null);
+
+        smartTradeEventService.publish(insert("1", "A", "B"));
+        smartTradeEventService.publish(insert("2", "C", "D"));
+        smartTradeEventService.publish(insert("3", "C", "A"));
+        smartTradeEventService.publish(smartTradeEventService.deleteEvent("4", "1"));
+
+        assertThat(emitter.next()).contains("event:insert\n", "id:1\n");
+        assertThat(emitter.next()).contains("id:3\n");
+        assertThat(emitter.next()).contains("event:delete\n", "id:4\n");
+        assertThat(emitter.sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void sendsDeletionsToTheirPartiesOnly() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        smartTradeEventService.subscribe(emitter, "A", null);
+
+        insert("1", "C", "D");
+        smartTradeEventService.publish(smartTradeEventService.deleteEvent("2", "1"));
+        insert("4", "B", "A");
+        smartTradeEventService.publish(smartTradeEventService.deleteEvent("5", "4"));
+        smartTradeEventService.markDeleted("6", List.of("A", "C"));
+        smartTradeEventService.publish(smartTradeEventService.deleteEvent("7", "6"));
+
+        assertThat(emitter.next()).contains("event:delete\n", "id:5\n");
+        assertThat(emitter.next()).contains("event:delete\n", "id:7\n");
+        assertThat(emitter.sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void resetsAllSubscribersOnDeletionWhosePartiesAreNotKnown() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        smartTradeEventService.subscribe(emitter, "A", null);
+
+        // Parties not known, as when the trade was deleted outside the application
+        smartTradeEventService.publish(smartTradeEventService.deleteEvent("1", "9"));
+
+        assertThat(emitter.next()).contains("event:reset\n", "id:1\n");
+    }
+
+    @Test
+    void sendsDeletionToThePartiesTheTradeIsTakenAwayFrom() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        smartTradeEventService.subscribe(emitter, "A", null);
+
+        smartTradeEventService.publish(insert("1", "A", "B"));
+        smartTradeEventService.publish(
+            smartTradeEventService.changeEvent("2", "update", new SmartTrade().id("1").tradingParty("C").counterParty("B"))
+        );
+        // Parties last seen not known, those stored with the trade are
+        smartTradeEventService.publish(
+            smartTradeEventService.changeEvent(
+                "3",
+                "replace",
+                new SmartTrade().id("4").tradingParty("C").counterParty("D").formerParties(List.of("A"))
+            )
+        );
+
+        assertThat(emitter.next()).contains("event:insert\n", "id:1\n");
+        assertThat(emitter.next()).contains("event:delete\n", "id:2\n", "{id=1}");
+        assertThat(emitter.next()).contains("event:delete\n", "id:3\n", "{id=4}");
+        assertThat(emitter.sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void doesNotSendTheRemovalOfArchivedTrades() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        smartTradeEventService.subscribe(emitter, "A", null);
+
+        insert("1", "A", "B");
+        smartTradeEventService.markArchived("1");
+        assertThat(smartTradeEventService.deleteEvent("2", "1")).isNull();
+        insert("3", "A", "B");
+        smartTradeEventService.publish(smartTradeEventService.deleteEvent("4", "3"));
+
+        assertThat(emitter.next()).contains("event:delete\n", "id:4\n");
+        assertThat(emitter.sent.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void evictsSlowSubscriber() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(builder);
+            }
+        };
+        RecordingEmitter fast = new RecordingEmitter();
+        smartTradeEventService.subscribe(slow, "A", null);
+        smartTradeEventService.subscribe(fast, "A", null);
+
+        // The first event is being sent, the next three fill the buffer of the slow subscriber
+        for (int i = 1; i <= 5; i++) {
+            smartTradeEventService.publish(insert(String.valueOf(i), "A", "B"));
+            Thread.sleep(50);
+        }
+        blocked.countDown();
+
+        for (int i = 1; i <= 5; i++) {
+            assertThat(fast.next()).contains("id:" + i + "\n");
+        }
+        assertThat(slow.completed.await(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.get(SmartTradeEventService.EVICTED_METER_NAME).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(SmartTradeEventService.SUBSCRIBERS_METER_NAME).gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsSubscriberWithoutSenderThread() throws Exception {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getEvents().setSenderThreads(1);
+        applicationProperties.getEvents().setQueueCapacity(1);
+        smartTradeEventService.shutdown();
+        meterRegistry = new SimpleMeterRegistry();
+        smartTradeEventService = new SmartTradeEventService(mock(MongoTemplate.class), applicationProperties, meterRegistry);
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingEmitter slow = new BlockedEmitter(blocked);
+        RecordingEmitter waiting = new RecordingEmitter();
+        RecordingEmitter unserved = new RecordingEmitter();
+        smartTradeEventService.subscribe(slow, "A", null);
+        smartTradeEventService.subscribe(waiting, "B", null);
+        smartTradeEventService.subscribe(unserved, "C", null);
+
+        // The slow subscriber holds the only thread, the next one waits in the queue, the last one is rejected
+        smartTradeEventService.publish(insert("1", "A", "X"));
+        Thread.sleep(50);
+        smartTradeEventService.publish(insert("2", "B", "X"));
+        smartTradeEventService.publish(insert("3", "C", "X"));
+
+        assertThat(unserved.completed.await(1, TimeUnit.SECONDS)).isTrue();
+        blocked.countDown();
+        assertThat(waiting.next()).contains("id:2\n");
+        assertThat(meterRegistry.get(SmartTradeEventService.EVICTED_METER_NAME).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(SmartTradeEventService.SUBSCRIBERS_METER_NAME).gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void disconnectsSubscriberStuckInSend() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        RecordingEmitter stuck = new BlockedEmitter(blocked);
+        RecordingEmitter fast = new RecordingEmitter();
+        smartTradeEventService.subscribe(stuck, "A", null);
+        smartTradeEventService.subscribe(fast, "A", null);
+
+        smartTradeEventService.publish(insert("1", "A", "B"));
+        assertThat(fast.next()).contains("id:1\n");
+        Thread.sleep(50);
+
+        smartTradeEventService.disconnectStuckSubscribers(System.currentTimeMillis());
+        assertThat(stuck.completed.getCount()).isEqualTo(1);
+        smartTradeEventService.disconnectStuckSubscribers(System.currentTimeMillis() + 60000);
+        assertThat(stuck.completed.await(1, TimeUnit.SECONDS)).isTrue();
+        blocked.countDown();
+        assertThat(meterRegistry.get(SmartTradeEventService.EVICTED_METER_NAME).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(SmartTradeEventService.SUBSCRIBERS_METER_NAME).gauge().value()).isEqualTo(1);
+    }
+
+    private static class BlockedEmitter extends RecordingEmitter {
+
+        private final CountDownLatch blocked;
+
+        private BlockedEmitter(CountDownLatch blocked) {
+            this.blocked = blocked;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.send(builder);
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sent.add(builder.build().stream().map(data -> String.valueOf(data.getData())).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+            super.complete();
+        }
+
+        private String next() throws InterruptedException {
+            String event = sent.poll(1, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            return event;
+        }
+    }
+}
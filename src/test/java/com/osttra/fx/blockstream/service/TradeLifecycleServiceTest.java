@@ -0,0 +1,183 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TradeLifecycleServiceTest {
+
+    private SmartTradeRepository smartTradeRepository;
+
+    private TradeMatchingService tradeMatchingService;
+
+    private PositionService positionService;
+
+    private MeterRegistry meterRegistry;
+
+    private TradeLifecycleService tradeLifecycleService;
+
+    @BeforeEach
+    void setup() {
+        smartTradeRepository = mock(SmartTradeRepository.class);
+        when(smartTradeRepository.updateStatus(anyString(), anyString(), anyString(), anyMap())).thenReturn(true);
+        tradeMatchingService = mock(TradeMatchingService.class);
+        positionService = mock(PositionService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        tradeLifecycleService =
+            new TradeLifecycleService(
+                smartTradeRepository,
+                tradeMatchingService,
+                positionService,
+                new ApplicationProperties(),
+                meterRegistry
+            );
+    }
+
+    @AfterEach
+    void tearDown() {
+        tradeLifecycleService.shutdown();
+    }
+
+    private SmartTrade submit(SmartTrade smartTrade) {
+        smartTrade.id("id").status(TradeStatus.NEW.name());
+        when(smartTradeRepository.findById("id")).thenReturn(Optional.of(smartTrade));
+        assertThat(tradeLifecycleService.submit(smartTrade)).isTrue();
+        return smartTrade;
+    }
+
+    @Test
+    void settlesValidTrade() {
+        submit(
+            new SmartTrade().currencyBuy("EUR").currencySell("USD").amount(new BigDecimal("10")).rate(1.1).valueDate(LocalDate.now())
+        );
+
+        verify(smartTradeRepository, timeout(1000)).updateStatus("id", "BOOKED", "SETTLED", Collections.emptyMap());
+        verify(smartTradeRepository).updateStatus("id", "NEW", "VALIDATED", Collections.emptyMap());
+        verify(smartTradeRepository)
+            .updateStatus("id", "VALIDATED", "BOOKED", Map.of("tradeDate", LocalDate.now(), "contraAmount", new BigDecimal("11.00")));
+        verify(tradeMatchingService).match(any(SmartTrade.class));
+        assertThat(meterRegistry.get(TradeLifecycleService.STAGE_METER_NAME).tag("stage", "settlement").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(TradeLifecycleService.COMPLETED_METER_NAME).tag("status", "SETTLED").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failsInvalidTrade() {
+        submit(new SmartTrade().currencyBuy("EUR").currencySell("EUR").amount(BigDecimal.ONE).rate(1.0).valueDate(LocalDate.now()));
+
+        verify(smartTradeRepository, timeout(1000))
+            .updateStatus("id", "NEW", "FAILED", Map.of("failureReason", "The bought and sold currencies must differ"));
+        verify(smartTradeRepository, after(100).never()).updateStatus(anyString(), eq("NEW"), eq("VALIDATED"), any());
+        verifyNoInteractions(tradeMatchingService);
+        verify(positionService).update(isNull(), any(SmartTrade.class));
+    }
+
+    @Test
+    void failsTradeTooLargeForMoney() {
+        submit(
+            new SmartTrade()
+                .currencyBuy("EUR")
+                .currencySell("USD")
+                .amount(new BigDecimal("90000000000000000"))
+                .rate(1000.0)
+                .valueDate(LocalDate.now())
+        );
+
+        verify(smartTradeRepository, timeout(1000))
+            .updateStatus("id", "NEW", "FAILED", Map.of("failureReason", "The amounts are too large"));
+        verifyNoInteractions(tradeMatchingService);
+    }
+
+    @Test
+    void failsValidatedTradeTooLargeToBook() {
+        SmartTrade smartTrade = new SmartTrade()
+            .id("id")
+            .status(TradeStatus.VALIDATED.name())
+            .currencyBuy("EUR")
+            .currencySell("USD")
+            .amount(new BigDecimal("90000000000000000"))
+            .rate(1000.0)
+            .valueDate(LocalDate.now());
+        when(smartTradeRepository.findById("id")).thenReturn(Optional.of(smartTrade));
+
+        tradeLifecycleService.submit(smartTrade);
+
+        verify(smartTradeRepository, timeout(1000))
+            .updateStatus("id", "VALIDATED", "FAILED", Map.of("failureReason", "The amounts are too large"));
+        verify(smartTradeRepository, after(100).never()).updateStatus(anyString(), eq("VALIDATED"), eq("BOOKED"), any());
+        verifyNoInteractions(tradeMatchingService);
+    }
+
+    @Test
+    void stopsWhenTradeChangedConcurrently() {
+        when(smartTradeRepository.updateStatus("id", "NEW", "VALIDATED", Collections.emptyMap())).thenReturn(false);
+
+        submit(new SmartTrade().currencyBuy("EUR").currencySell("USD").amount(BigDecimal.ONE).rate(1.0).valueDate(LocalDate.now()));
+
+        verify(smartTradeRepository, timeout(1000)).updateStatus("id", "NEW", "VALIDATED", Collections.emptyMap());
+        verify(smartTradeRepository, after(100).never()).updateStatus(anyString(), eq("VALIDATED"), anyString(), any());
+    }
+
+    @Test
+    void ignoresTradeWithoutLifecycleStatus() {
+        SmartTrade smartTrade = new SmartTrade().id("id").status("IMPORTED");
+        when(smartTradeRepository.findById("id")).thenReturn(Optional.of(smartTrade));
+
+        tradeLifecycleService.submit(smartTrade);
+
+        verify(smartTradeRepository, timeout(1000)).findById("id");
+        verify(smartTradeRepository, after(100).never()).updateStatus(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void leavesTradeToTheSweepWithoutWaitingWhenQueueIsFull() throws InterruptedException {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getLifecycle().setPartitions(1);
+        applicationProperties.getLifecycle().setQueueCapacity(1);
+        TradeLifecycleService fullLifecycleService = new TradeLifecycleService(
+            smartTradeRepository,
+            tradeMatchingService,
+            positionService,
+            applicationProperties,
+            meterRegistry
+        );
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(smartTradeRepository.findById("processed"))
+            .thenAnswer(invocation -> {
+                started.countDown();
+                release.await();
+                return Optional.empty();
+            });
+        try {
+            assertThat(fullLifecycleService.submit(new SmartTrade().id("processed"))).isTrue();
+            started.await();
+            assertThat(fullLifecycleService.submit(new SmartTrade().id("queued"))).isTrue();
+
+            assertThat(fullLifecycleService.submit(new SmartTrade().id("rejected"))).isFalse();
+            assertThat(meterRegistry.get(TradeLifecycleService.REJECTED_METER_NAME).counter().count()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            fullLifecycleService.shutdown();
+        }
+    }
+}
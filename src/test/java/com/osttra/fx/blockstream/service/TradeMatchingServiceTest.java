@@ -0,0 +1,225 @@
+package com.osttra.fx.blockstream.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.MatchStatus;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class TradeMatchingServiceTest {
+
+    private static final LocalDate VALUE_DATE = LocalDate.of(2022, 10, 3);
+
+    private SmartTradeRepository smartTradeRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private TradeMatchingService tradeMatchingService;
+
+    @BeforeEach
+    void setup() {
+        smartTradeRepository = mock(SmartTradeRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        tradeMatchingService = new TradeMatchingService(smartTradeRepository, new ApplicationProperties(), meterRegistry);
+    }
+
+    /**
+     * A trade at a rate of 1, so that it sells as much as it buys.
+     */
+    private static SmartTrade trade(String id, String tradingParty, String counterParty, String currencyBuy, String amount) {
+        return trade(id, tradingParty, counterParty, currencyBuy, amount, amount);
+    }
+
+    private static SmartTrade trade(
+        String id,
+        String tradingParty,
+        String counterParty,
+        String currencyBuy,
+        String amount,
+        String contraAmount
+    ) {
+        return new SmartTrade()
+            .id(id)
+            .tradingParty(tradingParty)
+            .counterParty(counterParty)
+            .currencyBuy(currencyBuy)
+            .currencySell("EUR".equals(currencyBuy) ? "USD" : "EUR")
+            .amount(new BigDecimal(amount))
+            .contraAmount(new BigDecimal(contraAmount))
+            .valueDate(VALUE_DATE)
+            .status(TradeStatus.BOOKED.name());
+    }
+
+    private Map<String, SmartTrade> flushedMatches() {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SmartTrade>> captor = ArgumentCaptor.forClass(List.class);
+        tradeMatchingService.flush();
+        verify(smartTradeRepository, atLeast(0)).updateMatches(captor.capture());
+        List<SmartTrade> matches = new ArrayList<>();
+        captor.getAllValues().forEach(matches::addAll);
+        return matches.stream().collect(Collectors.toMap(SmartTrade::getId, Function.identity(), (first, last) -> last));
+    }
+
+    @Test
+    void matchesMirrorTrade() {
+        assertThat(tradeMatchingService.match(trade("1", "A", "B", "EUR", "1000000"))).isNull();
+        assertThat(tradeMatchingService.match(trade("2", "B", "A", "USD", "1000000.00"))).isEqualTo("1");
+
+        Map<String, SmartTrade> matches = flushedMatches();
+        assertThat(matches.get("1").getMatchStatus()).isEqualTo(MatchStatus.MATCHED.name());
+        assertThat(matches.get("1").getMatchedTradeId()).isEqualTo("2");
+        assertThat(matches.get("2").getMatchStatus()).isEqualTo(MatchStatus.MATCHED.name());
+        assertThat(matches.get("2").getMatchedTradeId()).isEqualTo("1");
+        assertThat(meterRegistry.get(TradeMatchingService.MATCHED_METER_NAME).counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(TradeMatchingService.UNMATCHED_METER_NAME).gauge().value()).isZero();
+    }
+
+    @Test
+    void matchesMirrorTradeBuyingTheAmountSold() {
+        // A buys 1,000,000 EUR for 1,050,000 USD, B sells them to A
+        assertThat(tradeMatchingService.match(trade("1", "A", "B", "EUR", "1000000", "1050000"))).isNull();
+        assertThat(tradeMatchingService.match(trade("2", "B", "A", "USD", "1000000", "952380.95"))).isNull();
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "1050000.00", "1000000"))).isEqualTo("1");
+    }
+
+    @Test
+    void leavesTradesWithoutMirrorUnmatched() {
+        tradeMatchingService.match(trade("1", "A", "B", "EUR", "1000000"));
+        // Same side, other amount, other parties
+        assertThat(tradeMatchingService.match(trade("2", "A", "B", "EUR", "1000000"))).isNull();
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "999999"))).isNull();
+        assertThat(tradeMatchingService.match(trade("4", "B", "C", "USD", "1000000"))).isNull();
+
+        Map<String, SmartTrade> matches = flushedMatches();
+        assertThat(matches.values()).extracting(SmartTrade::getMatchStatus).containsOnly(MatchStatus.UNMATCHED.name());
+        assertThat(meterRegistry.get(TradeMatchingService.UNMATCHED_METER_NAME).gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    void matchesOldestTradeFirstAndOnlyOnce() {
+        tradeMatchingService.match(trade("1", "A", "B", "EUR", "10"));
+        tradeMatchingService.match(trade("2", "A", "B", "EUR", "10"));
+
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "10"))).isEqualTo("1");
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "10"))).isNull();
+        assertThat(tradeMatchingService.match(trade("4", "B", "A", "USD", "10"))).isEqualTo("2");
+        assertThat(tradeMatchingService.match(trade("5", "B", "A", "USD", "10"))).isNull();
+    }
+
+    @Test
+    void ignoresTradesNotBookedOrMatched() {
+        assertThat(tradeMatchingService.match(trade("1", "A", "B", "EUR", "10").status(TradeStatus.NEW.name()))).isNull();
+        assertThat(tradeMatchingService.match(trade("2", "A", "B", "EUR", "10").matchStatus(MatchStatus.MATCHED.name()))).isNull();
+
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "10"))).isNull();
+    }
+
+    @Test
+    void rematchesUpdatedTrade() {
+        SmartTrade smartTrade = trade("1", "A", "B", "EUR", "10");
+        tradeMatchingService.match(smartTrade);
+
+        tradeMatchingService.rematch(smartTrade.amount(new BigDecimal("20")).contraAmount(new BigDecimal("20")));
+
+        assertThat(tradeMatchingService.match(trade("2", "B", "A", "USD", "10"))).isNull();
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "20"))).isEqualTo("1");
+    }
+
+    @Test
+    void keepsMatchedTradeUpdatedWithoutChangingItsMatchingFields() {
+        tradeMatchingService.match(trade("1", "A", "B", "EUR", "10"));
+        tradeMatchingService.match(trade("2", "B", "A", "USD", "10"));
+        tradeMatchingService.flush();
+        when(smartTradeRepository.findById("1"))
+            .thenReturn(Optional.of(trade("1", "A", "B", "EUR", "10").matchStatus(MatchStatus.MATCHED.name()).matchedTradeId("2")));
+
+        SmartTrade updated = trade("2", "B", "A", "USD", "10").matchStatus(MatchStatus.MATCHED.name()).matchedTradeId("1");
+        tradeMatchingService.rematch(updated);
+
+        assertThat(updated.getMatchedTradeId()).isEqualTo("1");
+        assertThat(flushedMatches()).hasSize(2);
+    }
+
+    @Test
+    void unmatchesBothSidesOfMatchedTradeUpdatedToAnotherAmount() {
+        tradeMatchingService.match(trade("1", "A", "B", "EUR", "10"));
+        tradeMatchingService.match(trade("2", "B", "A", "USD", "10"));
+        tradeMatchingService.flush();
+        when(smartTradeRepository.findById("1"))
+            .thenReturn(Optional.of(trade("1", "A", "B", "EUR", "10").matchStatus(MatchStatus.MATCHED.name()).matchedTradeId("2")));
+
+        SmartTrade updated = trade("2", "B", "A", "USD", "20").matchStatus(MatchStatus.MATCHED.name()).matchedTradeId("1");
+        tradeMatchingService.rematch(updated);
+
+        assertThat(updated.getMatchStatus()).isEqualTo(MatchStatus.UNMATCHED.name());
+        assertThat(updated.getMatchedTradeId()).isNull();
+        Map<String, SmartTrade> matches = flushedMatches();
+        assertThat(matches.get("1").getMatchStatus()).isEqualTo(MatchStatus.UNMATCHED.name());
+        assertThat(matches.get("2").getMatchStatus()).isEqualTo(MatchStatus.UNMATCHED.name());
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "10"))).isEqualTo("1");
+        assertThat(tradeMatchingService.match(trade("4", "A", "B", "EUR", "20"))).isEqualTo("2");
+    }
+
+    @Test
+    void writesFailedMatchStatusesAgain() {
+        doThrow(new IllegalStateException("write failed")).doNothing().when(smartTradeRepository).updateMatches(anyList());
+        tradeMatchingService.match(trade("1", "A", "B", "EUR", "10"));
+        tradeMatchingService.match(trade("2", "B", "A", "USD", "10"));
+        tradeMatchingService.flush();
+
+        Map<String, SmartTrade> matches = flushedMatches();
+
+        verify(smartTradeRepository, times(2)).updateMatches(anyList());
+        assertThat(matches.get("1").getMatchStatus()).isEqualTo(MatchStatus.MATCHED.name());
+        assertThat(matches.get("2").getMatchedTradeId()).isEqualTo("1");
+    }
+
+    @Test
+    void unmatchesMirrorOfRemovedTrade() {
+        tradeMatchingService.match(trade("1", "A", "B", "EUR", "10"));
+        tradeMatchingService.match(trade("2", "B", "A", "USD", "10"));
+        tradeMatchingService.flush();
+        SmartTrade mirror = trade("1", "A", "B", "EUR", "10").matchStatus(MatchStatus.MATCHED.name()).matchedTradeId("2");
+        when(smartTradeRepository.findById("1")).thenReturn(Optional.of(mirror));
+
+        tradeMatchingService.remove(trade("2", "B", "A", "USD", "10").matchStatus(MatchStatus.MATCHED.name()).matchedTradeId("1"));
+
+        assertThat(flushedMatches().get("1").getMatchStatus()).isEqualTo(MatchStatus.UNMATCHED.name());
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "10"))).isEqualTo("1");
+    }
+
+    @Test
+    void rebuildsIndexFromUnmatchedTrades() {
+        when(smartTradeRepository.streamAllUnmatched(anyInt()))
+            .thenReturn(
+                Stream.of(trade("1", "A", "B", "EUR", "10").matchStatus(MatchStatus.UNMATCHED.name()), trade("2", "C", "D", "EUR", "10"))
+            );
+
+        tradeMatchingService.rebuildIndex();
+
+        // Only the trade not marked as unmatched yet is written
+        verify(smartTradeRepository).updateMatches(anyList());
+        assertThat(flushedMatches().keySet()).containsExactly("2");
+        assertThat(tradeMatchingService.match(trade("3", "B", "A", "USD", "10"))).isEqualTo("1");
+        assertThat(tradeMatchingService.match(trade("4", "D", "C", "USD", "10"))).isEqualTo("2");
+    }
+}
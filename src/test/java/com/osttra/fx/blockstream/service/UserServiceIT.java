@@ -3,18 +3,24 @@ package com.osttra.fx.blockstream.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
 import com.osttra.fx.blockstream.config.Constants;
 import com.osttra.fx.blockstream.domain.User;
 import com.osttra.fx.blockstream.repository.UserRepository;
 import com.osttra.fx.blockstream.service.dto.AdminUserDTO;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import tech.jhipster.security.RandomUtil;
@@ -43,6 +49,15 @@ class UserServiceIT {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private User user;
 
     @BeforeEach
@@ -59,6 +74,54 @@ class UserServiceIT {
         user.setLangKey(DEFAULT_LANGKEY);
     }
 
+    @Test
+    void assertThatUsersAreCachedUntilChanged() {
+        userRepository.save(user);
+        Cache usersByLogin = Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE));
+        Cache usersByEmail = Objects.requireNonNull(cacheManager.getCache(UserRepository.USERS_BY_EMAIL_CACHE));
+        double hits = loginCacheHits();
+
+        assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).isPresent();
+        assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).isPresent();
+        assertThat(userRepository.findOneByEmailIgnoreCase(DEFAULT_EMAIL.toUpperCase())).isPresent();
+        assertThat(usersByLogin.get(DEFAULT_LOGIN)).isNotNull();
+        assertThat(usersByEmail.get(DEFAULT_EMAIL)).isNotNull();
+        assertThat(loginCacheHits()).isGreaterThan(hits);
+
+        // Missing users are not cached, so they are found once created
+        assertThat(userService.getUserWithAuthoritiesByLogin("unknown")).isNotPresent();
+        assertThat(usersByLogin.get("unknown")).isNull();
+
+        userService.deleteUser(DEFAULT_LOGIN);
+        assertThat(usersByLogin.get(DEFAULT_LOGIN)).isNull();
+        assertThat(usersByEmail.get(DEFAULT_EMAIL)).isNull();
+        assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).isNotPresent();
+    }
+
+    @Test
+    void assertThatUsersChangedOnAnotherInstanceAreSeenAfterTheCacheTimeToLive() throws InterruptedException {
+        user.setActivated(true);
+        userRepository.save(user);
+        assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).map(User::isActivated).contains(true);
+
+        // Deactivated by another instance, which only evicts its own caches
+        user.setActivated(false);
+        userRepository.save(user);
+        assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).map(User::isActivated).contains(true);
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(applicationProperties.getUserCache().getTimeToLiveSeconds()) + 100);
+        assertThat(userService.getUserWithAuthoritiesByLogin(DEFAULT_LOGIN)).map(User::isActivated).contains(false);
+    }
+
+    private double loginCacheHits() {
+        return meterRegistry
+            .get("cache.gets")
+            .tag("cache", UserRepository.USERS_BY_LOGIN_CACHE)
+            .tag("result", "hit")
+            .functionCounter()
+            .count();
+    }
+
     @Test
     void assertThatUserMustExistToResetPassword() {
         userRepository.save(user);
@@ -2,18 +2,21 @@ package com.osttra.fx.blockstream.web.rest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.osttra.fx.blockstream.IntegrationTest;
 import com.osttra.fx.blockstream.domain.Currencies;
 import com.osttra.fx.blockstream.repository.CurrenciesRepository;
+import com.osttra.fx.blockstream.service.CurrencyRegistry;
 import java.util.List;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -38,6 +41,9 @@ class CurrenciesResourceIT {
     @Autowired
     private CurrenciesRepository currenciesRepository;
 
+    @Autowired
+    private CurrencyRegistry currencyRegistry;
+
     @Autowired
     private MockMvc restCurrenciesMockMvc;
 
@@ -68,6 +74,7 @@ class CurrenciesResourceIT {
     @BeforeEach
     public void initTest() {
         currenciesRepository.deleteAll();
+        currencyRegistry.reload();
         currencies = createEntity();
     }
 
@@ -85,6 +92,7 @@ class CurrenciesResourceIT {
         Currencies testCurrencies = currenciesList.get(currenciesList.size() - 1);
         assertThat(testCurrencies.getCurrencyName()).isEqualTo(DEFAULT_CURRENCY_NAME);
         assertThat(testCurrencies.getCurrencyCode()).isEqualTo(DEFAULT_CURRENCY_CODE);
+        assertThat(currencyRegistry.isKnown(DEFAULT_CURRENCY_CODE)).isTrue();
     }
 
     @Test
@@ -108,6 +116,7 @@ class CurrenciesResourceIT {
     void getAllCurrencies() throws Exception {
         // Initialize the database
         currenciesRepository.save(currencies);
+        currencyRegistry.reload();
 
         // Get all the currenciesList
         restCurrenciesMockMvc
@@ -134,6 +143,64 @@ class CurrenciesResourceIT {
             .andExpect(jsonPath("$.currencyCode").value(DEFAULT_CURRENCY_CODE));
     }
 
+    @Test
+    void getCurrenciesNotModified() throws Exception {
+        // Initialize the database
+        currenciesRepository.save(currencies);
+
+        restCurrenciesMockMvc
+            .perform(get(ENTITY_API_URL_ID, currencies.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+            .andExpect(content().string(""));
+
+        // A new version of the currencies is sent in full
+        currenciesRepository.save(currencies.currencyName(UPDATED_CURRENCY_NAME));
+        restCurrenciesMockMvc
+            .perform(get(ENTITY_API_URL_ID, currencies.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+            .andExpect(jsonPath("$.currencyName").value(UPDATED_CURRENCY_NAME));
+    }
+
+    @Test
+    void getAllCurrenciesNotModified() throws Exception {
+        // Initialize the database
+        currenciesRepository.save(currencies);
+        currencyRegistry.reload();
+
+        String eTag = restCurrenciesMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).startsWith("W/");
+
+        restCurrenciesMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        // Reloading the same currencies keeps the ETag
+        currencyRegistry.reload();
+        restCurrenciesMockMvc.perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag)).andExpect(status().isNotModified());
+
+        // Any write to the currencies changes the ETag
+        restCurrenciesMockMvc
+            .perform(
+                post(ENTITY_API_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(createUpdatedEntity()))
+            )
+            .andExpect(status().isCreated());
+        restCurrenciesMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andExpect(jsonPath("$.[*].currencyName").value(hasItem(UPDATED_CURRENCY_NAME)));
+    }
+
     @Test
     void getNonExistingCurrencies() throws Exception {
         // Get the currencies
@@ -165,6 +232,28 @@ class CurrenciesResourceIT {
         Currencies testCurrencies = currenciesList.get(currenciesList.size() - 1);
         assertThat(testCurrencies.getCurrencyName()).isEqualTo(UPDATED_CURRENCY_NAME);
         assertThat(testCurrencies.getCurrencyCode()).isEqualTo(UPDATED_CURRENCY_CODE);
+        assertThat(currencyRegistry.isKnown(UPDATED_CURRENCY_CODE)).isTrue();
+    }
+
+    @Test
+    void putCurrenciesWithStaleVersion() throws Exception {
+        // Initialize the database
+        currenciesRepository.save(currencies);
+        Currencies staleCurrencies = currenciesRepository.findById(currencies.getId()).get();
+        currenciesRepository.save(currencies.currencyName(UPDATED_CURRENCY_NAME));
+
+        restCurrenciesMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, staleCurrencies.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(staleCurrencies.currencyCode(UPDATED_CURRENCY_CODE)))
+            )
+            .andExpect(status().isConflict());
+
+        // Validate the update made meanwhile is kept
+        Currencies testCurrencies = currenciesRepository.findById(currencies.getId()).get();
+        assertThat(testCurrencies.getCurrencyName()).isEqualTo(UPDATED_CURRENCY_NAME);
+        assertThat(testCurrencies.getCurrencyCode()).isEqualTo(DEFAULT_CURRENCY_CODE);
     }
 
     @Test
@@ -337,6 +426,7 @@ class CurrenciesResourceIT {
     void deleteCurrencies() throws Exception {
         // Initialize the database
         currenciesRepository.save(currencies);
+        currencyRegistry.reload();
 
         int databaseSizeBeforeDelete = currenciesRepository.findAll().size();
 
@@ -348,5 +438,6 @@ class CurrenciesResourceIT {
         // Validate the database contains one less item
         List<Currencies> currenciesList = currenciesRepository.findAll();
         assertThat(currenciesList).hasSize(databaseSizeBeforeDelete - 1);
+        assertThat(currencyRegistry.isKnown(DEFAULT_CURRENCY_CODE)).isFalse();
     }
 }
@@ -6,15 +6,33 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
 import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Position;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
 import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.PositionRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import com.osttra.fx.blockstream.repository.WalletRepository;
+import com.osttra.fx.blockstream.security.AuthoritiesConstants;
+import com.osttra.fx.blockstream.security.jwt.TokenProvider;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
@@ -44,6 +62,24 @@ class CustomerResourceIT {
     @Autowired
     private CustomerRepository customerRepository;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PositionRepository positionRepository;
+
+    @Autowired
+    private SmartTradeRepository smartTradeRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
     @Autowired
     private MockMvc restCustomerMockMvc;
 
@@ -82,6 +118,7 @@ class CustomerResourceIT {
     @BeforeEach
     public void initTest() {
         customerRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE)).clear();
         customer = createEntity();
     }
 
@@ -120,6 +157,19 @@ class CustomerResourceIT {
         assertThat(customerList).hasSize(databaseSizeBeforeCreate);
     }
 
+    @Test
+    void createCustomerWithExistingLegalEntity() throws Exception {
+        customerRepository.save(createEntity());
+
+        int databaseSizeBeforeCreate = customerRepository.findAll().size();
+
+        restCustomerMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(customer)))
+            .andExpect(status().isBadRequest());
+
+        assertThat(customerRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
     @Test
     void getAllCustomers() throws Exception {
         // Initialize the database
@@ -193,6 +243,122 @@ class CustomerResourceIT {
         assertThat(testCustomer.getCustomerHashCode()).isEqualTo(UPDATED_CUSTOMER_HASH_CODE);
     }
 
+    @Test
+    void putExistingCustomerEvictsLegalEntityCache() throws Exception {
+        customerRepository.save(customer);
+        assertThat(customerRepository.findOneByCustomerLegalEntity(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isPresent();
+        assertThat(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE).get(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isNotNull();
+
+        Customer updatedCustomer = customerRepository.findById(customer.getId()).get();
+        updatedCustomer.customerLegalEntity(UPDATED_CUSTOMER_LEGAL_ENTITY);
+
+        restCustomerMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedCustomer.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedCustomer))
+            )
+            .andExpect(status().isOk());
+
+        assertThat(customerRepository.findOneByCustomerLegalEntity(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isEmpty();
+        assertThat(customerRepository.findOneByCustomerLegalEntity(UPDATED_CUSTOMER_LEGAL_ENTITY)).isPresent();
+    }
+
+    @Test
+    void putExistingCustomerUpdatesTheReferencesToIt() throws Exception {
+        customerRepository.save(customer);
+        SmartTrade smartTrade = smartTradeRepository.save(
+            new SmartTrade().tradingParty(DEFAULT_CUSTOMER_LEGAL_ENTITY).customer(CustomerRef.of(customer))
+        );
+        Wallet wallet = walletRepository.save(new Wallet().currencyCode("EUR").amount(BigDecimal.ONE).customer(CustomerRef.of(customer)));
+        try {
+            Customer updatedCustomer = customerRepository.findById(customer.getId()).get();
+            updatedCustomer.customerHashCode(UPDATED_CUSTOMER_HASH_CODE);
+
+            restCustomerMockMvc
+                .perform(
+                    put(ENTITY_API_URL_ID, updatedCustomer.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(updatedCustomer))
+                )
+                .andExpect(status().isOk());
+
+            SmartTrade testSmartTrade = smartTradeRepository.findById(smartTrade.getId()).get();
+            assertThat(testSmartTrade.getCustomer().getId()).isEqualTo(customer.getId());
+            assertThat(testSmartTrade.getCustomer().getCustomerHashCode()).isEqualTo(UPDATED_CUSTOMER_HASH_CODE);
+            assertThat(testSmartTrade.getVersion()).isEqualTo(smartTrade.getVersion() + 1);
+            Wallet testWallet = walletRepository.findById(wallet.getId()).get();
+            assertThat(testWallet.getCustomer().getCustomerHashCode()).isEqualTo(UPDATED_CUSTOMER_HASH_CODE);
+            assertThat(testWallet.getVersion()).isEqualTo(wallet.getVersion() + 1);
+        } finally {
+            smartTradeRepository.deleteById(smartTrade.getId());
+            walletRepository.deleteById(wallet.getId());
+        }
+    }
+
+    @Test
+    void putExistingCustomerReachesTheTokensIssuedBefore() throws Exception {
+        customerRepository.save(customer);
+        Position position = positionRepository.save(
+            new Position()
+                .id(DEFAULT_CUSTOMER_LEGAL_ENTITY + "/EUR/USD/2022-01-03")
+                .legalEntity(DEFAULT_CUSTOMER_LEGAL_ENTITY)
+                .baseCurrency("EUR")
+                .quoteCurrency("USD")
+                .valueDate(LocalDate.of(2022, 1, 3))
+                .baseAmount(Money.of(new BigDecimal("5"), "EUR"))
+                .quoteAmount(Money.of(new BigDecimal("-5"), "USD"))
+                .tradeCount(1L)
+        );
+        long customerClaimsValidity = applicationProperties.getJwt().getCustomerClaimsValidity();
+        applicationProperties.getJwt().setCustomerClaimsValidity(2000);
+        try {
+            String token = tokenProvider.createToken(
+                new UsernamePasswordAuthenticationToken(
+                    DEFAULT_CUSTOMER_LEGAL_ENTITY,
+                    "",
+                    List.of(new SimpleGrantedAuthority(AuthoritiesConstants.USER))
+                ),
+                false,
+                CustomerRef.of(customer)
+            );
+            restCustomerMockMvc
+                .perform(get("/api/positions").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.[*].legalEntity").value(hasItem(DEFAULT_CUSTOMER_LEGAL_ENTITY)));
+
+            // The customer no longer has the legal entity of the user
+            Customer updatedCustomer = customerRepository.findById(customer.getId()).get();
+            updatedCustomer.customerLegalEntity(UPDATED_CUSTOMER_LEGAL_ENTITY);
+            restCustomerMockMvc
+                .perform(
+                    put(ENTITY_API_URL_ID, updatedCustomer.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(updatedCustomer))
+                )
+                .andExpect(status().isOk());
+            // The issue time of the token being in seconds, its customer claims expire between one and two seconds after
+            Thread.sleep(2100);
+
+            restCustomerMockMvc
+                .perform(get("/api/positions").header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        } finally {
+            applicationProperties.getJwt().setCustomerClaimsValidity(customerClaimsValidity);
+            positionRepository.delete(position);
+        }
+    }
+
+    @Test
+    void missingLegalEntityIsNotCached() {
+        assertThat(customerRepository.findOneByCustomerLegalEntity(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isEmpty();
+        assertThat(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE).get(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isNull();
+
+        customerRepository.save(customer);
+        assertThat(customerRepository.findOneByCustomerLegalEntity(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isPresent();
+    }
+
     @Test
     void putNonExistingCustomer() throws Exception {
         int databaseSizeBeforeUpdate = customerRepository.findAll().size();
@@ -380,5 +546,6 @@ class CustomerResourceIT {
         // Validate the database contains one less item
         List<Customer> customerList = customerRepository.findAll();
         assertThat(customerList).hasSize(databaseSizeBeforeDelete - 1);
+        assertThat(customerRepository.findOneByCustomerLegalEntity(DEFAULT_CUSTOMER_LEGAL_ENTITY)).isEmpty();
     }
 }
@@ -0,0 +1,218 @@
+package com.osttra.fx.blockstream.web.rest;
+
+import static com.osttra.fx.blockstream.web.rest.TestUtil.sameNumber;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.jayway.jsonpath.JsonPath;
+import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.domain.Currencies;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.Money;
+import com.osttra.fx.blockstream.domain.Position;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.repository.CurrenciesRepository;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.PositionRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import com.osttra.fx.blockstream.service.CurrencyRegistry;
+import com.osttra.fx.blockstream.service.PositionService;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Integration tests for the {@link PositionResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class PositionResourceIT {
+
+    private static final String CURRENT_PARTY = "user";
+    private static final String OTHER_PARTY = "other";
+
+    private static final LocalDate VALUE_DATE = LocalDate.now().plusDays(2);
+
+    private static final String ENTITY_API_URL = "/api/positions";
+    private static final String SMART_TRADE_API_URL = "/api/smart-trades";
+
+    @Autowired
+    private SmartTradeRepository smartTradeRepository;
+
+    @Autowired
+    private SmartTradeArchiveRepository smartTradeArchiveRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CurrenciesRepository currenciesRepository;
+
+    @Autowired
+    private PositionRepository positionRepository;
+
+    @Autowired
+    private CurrencyRegistry currencyRegistry;
+
+    @Autowired
+    private PositionService positionService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MockMvc restPositionMockMvc;
+
+    @BeforeEach
+    public void initTest() {
+        smartTradeRepository.deleteAll();
+        smartTradeArchiveRepository.deleteAll();
+        customerRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE)).clear();
+        customerRepository.save(new Customer().customerName(CURRENT_PARTY).customerLegalEntity(CURRENT_PARTY));
+        currenciesRepository.deleteAll();
+        for (String currencyCode : List.of("EUR", "USD")) {
+            currenciesRepository.save(new Currencies().currencyName(currencyCode).currencyCode(currencyCode));
+        }
+        currencyRegistry.reload();
+        positionRepository.deleteAll();
+        positionService.rebuild();
+    }
+
+    private static SmartTrade createTrade(String tradingParty, String currencyBuy, String currencySell, String amount) {
+        return new SmartTrade()
+            .tradingParty(tradingParty)
+            .counterParty("bank")
+            .currencyBuy(currencyBuy)
+            .currencySell(currencySell)
+            .amount(new BigDecimal(amount))
+            .valueDate(VALUE_DATE);
+    }
+
+    private String create(SmartTrade smartTrade) throws Exception {
+        String body = restPositionMockMvc
+            .perform(
+                post(SMART_TRADE_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(smartTrade))
+            )
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        return JsonPath.read(body, "$.id");
+    }
+
+    @Test
+    void getAllPositionsNetsTheTradesOfTheCurrentCustomer() throws Exception {
+        create(createTrade(CURRENT_PARTY, "EUR", "USD", "100").rate(1.1));
+        create(createTrade(CURRENT_PARTY, "USD", "EUR", "55").contraAmount(new BigDecimal("50")));
+        create(createTrade(CURRENT_PARTY, "EUR", "USD", "10").rate(1.1).valueDate(VALUE_DATE.plusDays(1)));
+        create(createTrade(OTHER_PARTY, "EUR", "USD", "1000").rate(1.1));
+
+        restPositionMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].baseCurrency").value("EUR"))
+            .andExpect(jsonPath("$.[0].quoteCurrency").value("USD"))
+            .andExpect(jsonPath("$.[0].valueDate").value(VALUE_DATE.toString()))
+            .andExpect(jsonPath("$.[0].baseAmount").value(sameNumber(new BigDecimal("50"))))
+            .andExpect(jsonPath("$.[0].quoteAmount").value(sameNumber(new BigDecimal("-55"))))
+            .andExpect(jsonPath("$.[0].tradeCount").value(2))
+            .andExpect(jsonPath("$.[1].valueDate").value(VALUE_DATE.plusDays(1).toString()))
+            .andExpect(jsonPath("$.[1].baseAmount").value(sameNumber(new BigDecimal("10"))))
+            .andExpect(jsonPath("$.[1].quoteAmount").value(sameNumber(new BigDecimal("-11"))));
+    }
+
+    @Test
+    void updatedAndDeletedTradesChangeThePositions() throws Exception {
+        String id = create(createTrade(CURRENT_PARTY, "EUR", "USD", "100").rate(1.1));
+
+        restPositionMockMvc
+            .perform(
+                put(SMART_TRADE_API_URL + "/{id}", id)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(createTrade(CURRENT_PARTY, "EUR", "USD", "200").rate(1.1).id(id)))
+            )
+            .andExpect(status().isOk());
+        restPositionMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].baseAmount").value(sameNumber(new BigDecimal("200"))))
+            .andExpect(jsonPath("$.[0].quoteAmount").value(sameNumber(new BigDecimal("-220"))))
+            .andExpect(jsonPath("$.[0].tradeCount").value(1));
+
+        restPositionMockMvc.perform(delete(SMART_TRADE_API_URL + "/{id}", id)).andExpect(status().isNoContent());
+        restPositionMockMvc.perform(get(ENTITY_API_URL)).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void positionsAreStoredForAllTheInstances() throws Exception {
+        create(createTrade(CURRENT_PARTY, "EUR", "USD", "100").rate(1.1));
+
+        positionService.flush();
+        List<Position> stored = positionRepository.findAll();
+        assertThat(stored).hasSize(1);
+        assertThat(stored.get(0).getLegalEntity()).isEqualTo(CURRENT_PARTY);
+        assertThat(stored.get(0).getQuoteAmount().toBigDecimal()).isEqualByComparingTo("-110");
+        assertThat(stored.get(0).getTradeCount()).isEqualTo(1);
+
+        // Flushing again does not add the trade twice
+        positionService.flush();
+        restPositionMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].baseAmount").value(sameNumber(new BigDecimal("100"))))
+            .andExpect(jsonPath("$.[0].quoteAmount").value(sameNumber(new BigDecimal("-110"))));
+    }
+
+    @Test
+    void changesOfOtherInstancesAreRead() throws Exception {
+        // Flushed by another instance
+        positionRepository.incrementAll(
+            List.of(
+                new Position()
+                    .id(CURRENT_PARTY + "/EUR/USD/" + VALUE_DATE)
+                    .legalEntity(CURRENT_PARTY)
+                    .baseCurrency("EUR")
+                    .quoteCurrency("USD")
+                    .valueDate(VALUE_DATE)
+                    .baseAmount(Money.of(new BigDecimal("5"), "EUR"))
+                    .quoteAmount(Money.of(new BigDecimal("-5"), "USD"))
+                    .tradeCount(1L)
+            ),
+            Instant.now()
+        );
+        create(createTrade(CURRENT_PARTY, "EUR", "USD", "100").rate(1.1));
+
+        restPositionMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].baseAmount").value(sameNumber(new BigDecimal("105"))))
+            .andExpect(jsonPath("$.[0].quoteAmount").value(sameNumber(new BigDecimal("-115"))))
+            .andExpect(jsonPath("$.[0].tradeCount").value(2));
+
+        // The rebuild replaces the stored positions with the ones of the trades
+        positionService.rebuild();
+        restPositionMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].baseAmount").value(sameNumber(new BigDecimal("100"))))
+            .andExpect(jsonPath("$.[0].tradeCount").value(1));
+    }
+}
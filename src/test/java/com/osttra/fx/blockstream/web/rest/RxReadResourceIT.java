@@ -0,0 +1,136 @@
+package com.osttra.fx.blockstream.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
+import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import com.osttra.fx.blockstream.repository.WalletRepository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+/**
+ * Integration tests for the {@link RxReadResource} REST controller.
+ */
+@IntegrationTest
+@AutoConfigureMockMvc
+@WithMockUser
+class RxReadResourceIT {
+
+    private static final String CURRENT_PARTY = "user";
+    private static final String OTHER_PARTY = "other";
+
+    private static final String ENTITY_API_URL = "/api/rx";
+
+    @Autowired
+    private SmartTradeRepository smartTradeRepository;
+
+    @Autowired
+    private SmartTradeArchiveRepository smartTradeArchiveRepository;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MockMvc restRxReadMockMvc;
+
+    private Customer currentCustomer;
+
+    @BeforeEach
+    public void initTest() {
+        smartTradeRepository.deleteAll();
+        smartTradeArchiveRepository.deleteAll();
+        walletRepository.deleteAll();
+        customerRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE)).clear();
+        currentCustomer = customerRepository.save(new Customer().customerName(CURRENT_PARTY).customerLegalEntity(CURRENT_PARTY));
+    }
+
+    private static SmartTrade createTrade(String tradingParty, LocalDate tradeDate) {
+        return new SmartTrade()
+            .tradingParty(tradingParty)
+            .counterParty("bank")
+            .currencyBuy("EUR")
+            .currencySell("USD")
+            .amount(new BigDecimal("100"))
+            .tradeDate(tradeDate);
+    }
+
+    private String[] stream(String url) throws Exception {
+        MvcResult mvcResult = restRxReadMockMvc.perform(get(url)).andExpect(request().asyncStarted()).andReturn();
+        String body = restRxReadMockMvc
+            .perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        return body.isEmpty() ? new String[0] : body.split("\n");
+    }
+
+    @Test
+    void getAllSmartTradesStreamsTheTradesOfTheCurrentCustomerThenTheArchivedOnes() throws Exception {
+        SmartTrade older = createTrade(CURRENT_PARTY, LocalDate.now().minusDays(2));
+        SmartTrade newer = createTrade(OTHER_PARTY, LocalDate.now()).counterParty(CURRENT_PARTY);
+        smartTradeRepository.saveAll(List.of(older, newer, createTrade(OTHER_PARTY, LocalDate.now())));
+        SmartTrade archived = createTrade(CURRENT_PARTY, LocalDate.now().minusYears(2)).id("archived");
+        smartTradeArchiveRepository.insertBlock(List.of(archived, createTrade(OTHER_PARTY, LocalDate.now().minusYears(2)).id("other")));
+
+        String[] lines = stream(ENTITY_API_URL + "/smart-trades");
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).contains("\"id\":\"" + newer.getId() + "\"");
+        assertThat(lines[1]).contains("\"id\":\"" + older.getId() + "\"");
+        assertThat(lines[2]).contains("\"id\":\"" + archived.getId() + "\"");
+    }
+
+    @Test
+    void getAllWalletsStreamsTheWalletsOfTheCurrentCustomer() throws Exception {
+        Customer otherCustomer = customerRepository.save(new Customer().customerName(OTHER_PARTY).customerLegalEntity(OTHER_PARTY));
+        List<Wallet> wallets = walletRepository.saveAll(
+            List.of(
+                new Wallet().currencyCode("USD").amount(new BigDecimal("1.25")).customer(CustomerRef.of(currentCustomer)),
+                new Wallet().currencyCode("EUR").amount(new BigDecimal("0.1")).customer(CustomerRef.of(otherCustomer)),
+                new Wallet().currencyCode("EUR").amount(new BigDecimal("2.5")).customer(CustomerRef.of(currentCustomer))
+            )
+        );
+
+        String[] lines = stream(ENTITY_API_URL + "/wallets");
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"id\":\"" + wallets.get(0).getId() + "\"");
+        assertThat(lines[1]).contains("\"id\":\"" + wallets.get(2).getId() + "\"");
+    }
+
+    @Test
+    @WithMockUser("unknown")
+    void getAllSmartTradesIsEmptyWithoutCustomer() throws Exception {
+        smartTradeRepository.save(createTrade("unknown", LocalDate.now()));
+
+        assertThat(stream(ENTITY_API_URL + "/smart-trades")).isEmpty();
+    }
+}
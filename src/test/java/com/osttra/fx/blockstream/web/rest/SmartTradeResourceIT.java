@@ -2,19 +2,45 @@ package com.osttra.fx.blockstream.web.rest;
 
 import static com.osttra.fx.blockstream.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.jayway.jsonpath.JsonPath;
 import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.config.ApplicationProperties;
+import com.osttra.fx.blockstream.domain.CollectionChangeCounter;
+import com.osttra.fx.blockstream.domain.Currencies;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.domain.SmartTrade;
+import com.osttra.fx.blockstream.domain.enumeration.MatchStatus;
+import com.osttra.fx.blockstream.domain.enumeration.TradeStatus;
+import com.osttra.fx.blockstream.repository.CollectionChangeCounters;
+import com.osttra.fx.blockstream.repository.CurrenciesRepository;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.SmartTradeArchiveRepository;
 import com.osttra.fx.blockstream.repository.SmartTradeRepository;
+import com.osttra.fx.blockstream.service.CurrencyRegistry;
+import com.osttra.fx.blockstream.service.SmartTradeIdempotencyService;
+import com.osttra.fx.blockstream.service.TradeMatchingService;
+import com.osttra.fx.blockstream.web.rest.util.KeysetPaginationUtil;
+import com.osttra.fx.blockstream.web.rest.util.MediaTypeUtil;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -23,12 +49,21 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 /**
  * Integration tests for the {@link SmartTradeResource} REST controller.
@@ -78,20 +113,58 @@ class SmartTradeResourceIT {
     private static final String DEFAULT_FAILURE_REASON = "AAAAAAAAAA";
     private static final String UPDATED_FAILURE_REASON = "BBBBBBBBBB";
 
+    private static final String CURRENT_PARTY = "user";
+    private static final String OTHER_PARTY = "CCCCCCCCCC";
+
     private static final String ENTITY_API_URL = "/api/smart-trades";
     private static final String ENTITY_API_URL_ID = ENTITY_API_URL + "/{id}";
 
     @Autowired
     private SmartTradeRepository smartTradeRepository;
 
+    @Autowired
+    private SmartTradeArchiveRepository smartTradeArchiveRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CurrenciesRepository currenciesRepository;
+
+    @Autowired
+    private CurrencyRegistry currencyRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private TradeMatchingService tradeMatchingService;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+
     @Mock
     private SmartTradeRepository smartTradeRepositoryMock;
 
+    @Autowired
+    private ApplicationProperties applicationProperties;
+
+    @Autowired
+    private CollectionChangeCounters collectionChangeCounters;
+
     @Autowired
     private MockMvc restSmartTradeMockMvc;
 
     private SmartTrade smartTrade;
 
+    private String currentCustomerId;
+
     /**
      * Create an entity for this test.
      *
@@ -140,9 +213,26 @@ class SmartTradeResourceIT {
         return smartTrade;
     }
 
+    /**
+     * Create an entity with its own transaction id, for the tests storing several entities.
+     */
+    public static SmartTrade createOtherEntity() {
+        return createEntity().transactionId(UUID.randomUUID().toString());
+    }
+
     @BeforeEach
     public void initTest() {
         smartTradeRepository.deleteAll();
+        smartTradeArchiveRepository.deleteAll();
+        customerRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE)).clear();
+        Objects.requireNonNull(cacheManager.getCache(SmartTradeIdempotencyService.TRADE_IDS_BY_TRANSACTION_ID_CACHE)).clear();
+        currentCustomerId = customerRepository.save(new Customer().customerName(CURRENT_PARTY).customerLegalEntity(CURRENT_PARTY)).getId();
+        currenciesRepository.deleteAll();
+        for (String currencyCode : List.of(DEFAULT_CURRENCY_BUY, UPDATED_CURRENCY_BUY, "EUR", "USD")) {
+            currenciesRepository.save(new Currencies().currencyName(currencyCode).currencyCode(currencyCode));
+        }
+        currencyRegistry.reload();
         smartTrade = createEntity();
     }
 
@@ -169,8 +259,126 @@ class SmartTradeResourceIT {
         assertThat(testSmartTrade.getTransactionId()).isEqualTo(DEFAULT_TRANSACTION_ID);
         assertThat(testSmartTrade.getDirection()).isEqualTo(DEFAULT_DIRECTION);
         assertThat(testSmartTrade.getTradeDate()).isEqualTo(DEFAULT_TRADE_DATE);
-        assertThat(testSmartTrade.getStatus()).isEqualTo(DEFAULT_STATUS);
-        assertThat(testSmartTrade.getFailureReason()).isEqualTo(DEFAULT_FAILURE_REASON);
+        // The default currencies are the same, so the lifecycle fails the trade
+        assertThat(testSmartTrade.getStatus()).isIn(TradeStatus.NEW.name(), TradeStatus.FAILED.name());
+    }
+
+    @Test
+    void createSmartTradeIsSettledByTheLifecycle() throws Exception {
+        smartTrade.currencyBuy("EUR").currencySell("USD").rate(1.5).contraAmount(null).tradeDate(null).valueDate(UPDATED_VALUE_DATE);
+
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(smartTrade)))
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.status").value(TradeStatus.NEW.name()));
+
+        SmartTrade testSmartTrade = smartTradeRepository.findAll().get(0);
+        for (int attempt = 0; attempt < 50 && !TradeStatus.SETTLED.name().equals(testSmartTrade.getStatus()); attempt++) {
+            Thread.sleep(100);
+            testSmartTrade = smartTradeRepository.findById(testSmartTrade.getId()).get();
+        }
+        assertThat(testSmartTrade.getStatus()).isEqualTo(TradeStatus.SETTLED.name());
+        assertThat(testSmartTrade.getContraAmount()).isEqualByComparingTo(new BigDecimal("1.5"));
+        assertThat(testSmartTrade.getTradeDate()).isNotNull();
+    }
+
+    @Test
+    void createMirrorSmartTradesAreMatched() throws Exception {
+        smartTrade
+            .tradingParty("MATCH_A")
+            .counterParty("MATCH_B")
+            .currencyBuy("EUR")
+            .currencySell("USD")
+            .amount(new BigDecimal("250"))
+            .rate(1.2)
+            .tradeDate(null)
+            .valueDate(UPDATED_VALUE_DATE);
+        SmartTrade mirror = new SmartTrade()
+            .tradingParty("MATCH_B")
+            .counterParty("MATCH_A")
+            .currencyBuy("USD")
+            .currencySell("EUR")
+            // The 300 USD A sells for 250 EUR at 1.2, given with the amount sold instead of the rate
+            .amount(new BigDecimal("300.00"))
+            .contraAmount(new BigDecimal("250"))
+            .rate(null)
+            .valueDate(UPDATED_VALUE_DATE);
+
+        for (SmartTrade side : List.of(smartTrade, mirror)) {
+            restSmartTradeMockMvc
+                .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(side)))
+                .andExpect(status().isCreated());
+        }
+
+        List<SmartTrade> smartTradeList = smartTradeRepository.findAll();
+        for (
+            int attempt = 0;
+            attempt < 50 && !smartTradeList.stream().allMatch(trade -> MatchStatus.MATCHED.name().equals(trade.getMatchStatus()));
+            attempt++
+        ) {
+            Thread.sleep(100);
+            // Scheduling is disabled in tests
+            tradeMatchingService.flush();
+            smartTradeList = smartTradeRepository.findAll();
+        }
+        assertThat(smartTradeList).hasSize(2);
+        assertThat(smartTradeList).extracting(SmartTrade::getMatchStatus).containsOnly(MatchStatus.MATCHED.name());
+        assertThat(smartTradeList.get(0).getMatchedTradeId()).isEqualTo(smartTradeList.get(1).getId());
+        assertThat(smartTradeList.get(1).getMatchedTradeId()).isEqualTo(smartTradeList.get(0).getId());
+    }
+
+    @Test
+    void createSmartTradeWithExistingTransactionId() throws Exception {
+        byte[] content = TestUtil.convertObjectToJsonBytes(smartTrade);
+        String id = JsonPath.read(
+            restSmartTradeMockMvc
+                .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(content))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString(),
+            "$.id"
+        );
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+
+        // Capturing the same transaction again returns the stored trade, also when it is no longer in the cache
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(content))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(id));
+        Objects.requireNonNull(cacheManager.getCache(SmartTradeIdempotencyService.TRADE_IDS_BY_TRANSACTION_ID_CACHE)).clear();
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(content))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(id));
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    void createSmartTradeWithTransactionIdOfAnotherCustomer() throws Exception {
+        // Stored without going through the resource, so the transaction id is only known by the unique index
+        smartTradeRepository.save(createEntity().customer(new CustomerRef().id("other_customer")));
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(smartTrade)))
+            .andExpect(status().isBadRequest());
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    @WithMockUser("user_without_customer")
+    void createSmartTradeWithTransactionIdWithoutCustomer() throws Exception {
+        smartTradeRepository.save(createEntity().customer(new CustomerRef().id(currentCustomerId)));
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(smartTrade)))
+            .andExpect(status().isBadRequest());
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate);
     }
 
     @Test
@@ -193,6 +401,7 @@ class SmartTradeResourceIT {
     @Test
     void getAllSmartTrades() throws Exception {
         // Initialize the database
+        smartTrade.setTradingParty(CURRENT_PARTY);
         smartTradeRepository.save(smartTrade);
 
         // Get all the smartTradeList
@@ -200,9 +409,10 @@ class SmartTradeResourceIT {
             .perform(get(ENTITY_API_URL + "?sort=id,desc"))
             .andExpect(status().isOk())
             .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+            .andExpect(header().string("X-Total-Count", "1"))
             .andExpect(jsonPath("$.[*].id").value(hasItem(smartTrade.getId())))
             .andExpect(jsonPath("$.[*].counterParty").value(hasItem(DEFAULT_COUNTER_PARTY)))
-            .andExpect(jsonPath("$.[*].tradingParty").value(hasItem(DEFAULT_TRADING_PARTY)))
+            .andExpect(jsonPath("$.[*].tradingParty").value(hasItem(CURRENT_PARTY)))
             .andExpect(jsonPath("$.[*].currencyBuy").value(hasItem(DEFAULT_CURRENCY_BUY)))
             .andExpect(jsonPath("$.[*].currencySell").value(hasItem(DEFAULT_CURRENCY_SELL)))
             .andExpect(jsonPath("$.[*].rate").value(hasItem(DEFAULT_RATE.doubleValue())))
@@ -216,6 +426,323 @@ class SmartTradeResourceIT {
             .andExpect(jsonPath("$.[*].failureReason").value(hasItem(DEFAULT_FAILURE_REASON)));
     }
 
+    @Test
+    void getAllSmartTradesAsSmile() throws Exception {
+        smartTradeRepository.save(smartTrade.tradingParty(CURRENT_PARTY));
+
+        byte[] body = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL).accept(MediaTypeUtil.APPLICATION_SMILE))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaTypeUtil.APPLICATION_SMILE))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+
+        List<SmartTrade> smartTrades = smileHttpMessageConverter.getObjectMapper().readerForListOf(SmartTrade.class).readValue(body);
+        assertThat(smartTrades).extracting(SmartTrade::getId).containsExactly(smartTrade.getId());
+        assertThat(smartTrades.get(0).getAmount()).isEqualByComparingTo(DEFAULT_AMOUNT);
+        assertThat(smartTrades.get(0).getValueDate()).isEqualTo(DEFAULT_VALUE_DATE);
+    }
+
+    @Test
+    void getAllSmartTradesIsScopedToCurrentCustomer() throws Exception {
+        // Initialize the database
+        SmartTrade asTradingParty = createOtherEntity().tradingParty(CURRENT_PARTY).counterParty(OTHER_PARTY).tradeDate(DEFAULT_TRADE_DATE);
+        SmartTrade asCounterParty = createOtherEntity().tradingParty(OTHER_PARTY).counterParty(CURRENT_PARTY).tradeDate(UPDATED_TRADE_DATE);
+        SmartTrade notInvolved = createOtherEntity().tradingParty(OTHER_PARTY).counterParty(OTHER_PARTY);
+        smartTradeRepository.saveAll(List.of(asTradingParty, asCounterParty, notInvolved));
+
+        // Only the trades of the current customer are returned, newest trade date first
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(asCounterParty.getId()))
+            .andExpect(jsonPath("$.[1].id").value(asTradingParty.getId()));
+
+        // Paging is applied after the party filter
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?page=1&size=1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(asTradingParty.getId()));
+    }
+
+    @Test
+    void getAllSmartTradesWithCursor() throws Exception {
+        // Initialize the database
+        SmartTrade newest = createOtherEntity().tradingParty(CURRENT_PARTY).tradeDate(UPDATED_TRADE_DATE);
+        SmartTrade sameDay1 = createOtherEntity().tradingParty(CURRENT_PARTY).tradeDate(DEFAULT_TRADE_DATE);
+        SmartTrade sameDay2 = createOtherEntity().counterParty(CURRENT_PARTY).tradeDate(DEFAULT_TRADE_DATE);
+        SmartTrade withoutTradeDate = createOtherEntity().counterParty(CURRENT_PARTY).tradeDate(null);
+        SmartTrade notInvolved = createOtherEntity().tradingParty(OTHER_PARTY).counterParty(OTHER_PARTY);
+        smartTradeRepository.saveAll(List.of(newest, sameDay1, sameDay2, withoutTradeDate, notInvolved));
+
+        // Walk through the trades of the current customer two at a time
+        String nextCursor = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(newest.getId()))
+            .andExpect(jsonPath("$.[1].id").value(sameDay2.getId()))
+            .andReturn()
+            .getResponse()
+            .getHeader(KeysetPaginationUtil.NEXT_CURSOR_HEADER);
+
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?size=2&cursor=" + nextCursor))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(KeysetPaginationUtil.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(sameDay1.getId()))
+            .andExpect(jsonPath("$.[1].id").value(withoutTradeDate.getId()));
+    }
+
+    @Test
+    void exportSmartTrades() throws Exception {
+        // Initialize the database
+        SmartTrade asTradingParty = createOtherEntity().tradingParty(CURRENT_PARTY).tradeDate(UPDATED_TRADE_DATE);
+        SmartTrade asCounterParty = createOtherEntity().counterParty(CURRENT_PARTY).tradeDate(DEFAULT_TRADE_DATE);
+        SmartTrade notInvolved = createOtherEntity().tradingParty(OTHER_PARTY).counterParty(OTHER_PARTY);
+        smartTradeRepository.saveAll(List.of(asTradingParty, asCounterParty, notInvolved));
+
+        // Export the trades of the current customer, one JSON document per line
+        MvcResult mvcResult = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "/export"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        String body = restSmartTradeMockMvc
+            .perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"id\":\"" + asTradingParty.getId() + "\"");
+        assertThat(lines[1]).contains("\"id\":\"" + asCounterParty.getId() + "\"");
+    }
+
+    @Test
+    void exportSmartTradesAsCborSequence() throws Exception {
+        SmartTrade asTradingParty = createOtherEntity().tradingParty(CURRENT_PARTY).tradeDate(UPDATED_TRADE_DATE);
+        SmartTrade asCounterParty = createOtherEntity().counterParty(CURRENT_PARTY).tradeDate(DEFAULT_TRADE_DATE);
+        smartTradeRepository.saveAll(List.of(asTradingParty, asCounterParty));
+
+        MvcResult mvcResult = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "/export").accept(MediaTypeUtil.APPLICATION_CBOR_SEQ))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        byte[] body = restSmartTradeMockMvc
+            .perform(asyncDispatch(mvcResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaTypeUtil.APPLICATION_CBOR_SEQ))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+
+        ObjectReader reader = cborHttpMessageConverter.getObjectMapper().readerFor(SmartTrade.class);
+        try (MappingIterator<SmartTrade> iterator = reader.readValues(body)) {
+            assertThat(iterator.readAll()).extracting(SmartTrade::getId).containsExactly(asTradingParty.getId(), asCounterParty.getId());
+        }
+    }
+
+    @Test
+    void createSmartTradesBatchFromCbor() throws Exception {
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        ObjectMapper cborObjectMapper = cborHttpMessageConverter.getObjectMapper();
+        byte[] body = cborObjectMapper.writeValueAsBytes(List.of(createOtherEntity(), createOtherEntity().amount(null)));
+
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL + "/batch").contentType(MediaType.APPLICATION_CBOR).content(body))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.[0].status").value("CREATED"))
+            .andExpect(jsonPath("$.[1].status").value("INVALID"));
+
+        // The same smartTrades as a sequence of CBOR data items
+        ByteArrayOutputStream sequence = new ByteArrayOutputStream();
+        for (SmartTrade other : List.of(createOtherEntity(), createOtherEntity())) {
+            sequence.write(cborObjectMapper.writeValueAsBytes(other));
+        }
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL + "/batch").contentType(MediaTypeUtil.APPLICATION_CBOR_SEQ).content(sequence.toByteArray()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[*].status").value(everyItem(is("CREATED"))));
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate + 3);
+    }
+
+    @Test
+    void createSmartTradesBatch() throws Exception {
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        List<SmartTrade> smartTrades = List.of(
+            createEntity(),
+            createEntity().amount(null),
+            createEntity().id("existing_id"),
+            createEntity().transactionId(UPDATED_TRANSACTION_ID),
+            createEntity()
+        );
+
+        restSmartTradeMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(smartTrades))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(5))
+            .andExpect(jsonPath("$.[0].index").value(0))
+            .andExpect(jsonPath("$.[0].status").value("CREATED"))
+            .andExpect(jsonPath("$.[0].id").isNotEmpty())
+            .andExpect(jsonPath("$.[1].status").value("INVALID"))
+            .andExpect(jsonPath("$.[1].id").isEmpty())
+            .andExpect(jsonPath("$.[1].error").isNotEmpty())
+            .andExpect(jsonPath("$.[2].status").value("INVALID"))
+            .andExpect(jsonPath("$.[3].index").value(3))
+            .andExpect(jsonPath("$.[3].status").value("CREATED"))
+            .andExpect(jsonPath("$.[4].status").value("DUPLICATE"));
+
+        // Validate the SmartTrades in the database
+        List<SmartTrade> smartTradeList = smartTradeRepository.findAll();
+        assertThat(smartTradeList).hasSize(databaseSizeBeforeCreate + 2);
+        assertThat(smartTradeList)
+            .allSatisfy(smartTrade -> assertThat(smartTrade.getCustomer().getCustomerLegalEntity()).isEqualTo(CURRENT_PARTY));
+    }
+
+    @Test
+    void createSmartTradeWithUnknownCurrency() throws Exception {
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        smartTrade.setCurrencySell("XXX");
+
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(smartTrade)))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.currencyunknown"));
+        restSmartTradeMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(List.of(createEntity().currencyBuy("XXX"))))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].status").value("INVALID"))
+            .andExpect(jsonPath("$.[0].error").value("Unknown currency"));
+
+        // A currency added meanwhile is known without reloading
+        Currencies currency = currenciesRepository.save(new Currencies().currencyName("XXX").currencyCode("XXX"));
+        currencyRegistry.put(currency);
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL).contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(smartTrade)))
+            .andExpect(status().isCreated());
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    @Test
+    void createSmartTradesBatchFromNdjson() throws Exception {
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        String line = new String(TestUtil.convertObjectToJsonBytes(createEntity()));
+
+        String otherLine = new String(TestUtil.convertObjectToJsonBytes(createEntity().transactionId(UPDATED_TRANSACTION_ID)));
+        String body = line + "\n" + otherLine + "\n";
+
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL + "/batch").contentType(MediaType.APPLICATION_NDJSON).content(body))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].status").value(hasItem("CREATED")))
+            .andExpect(jsonPath("$.length()").value(2));
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate + 2);
+    }
+
+    @Test
+    void createSmartTradesBatchWithExistingTransactionIds() throws Exception {
+        smartTradeRepository.save(smartTrade.customer(new CustomerRef().id(currentCustomerId)));
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        List<SmartTrade> smartTrades = List.of(
+            createEntity(),
+            createEntity().transactionId(UPDATED_TRANSACTION_ID),
+            createEntity().transactionId(UPDATED_TRANSACTION_ID)
+        );
+
+        restSmartTradeMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(smartTrades))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].status").value("DUPLICATE"))
+            .andExpect(jsonPath("$.[0].id").value(smartTrade.getId()))
+            .andExpect(jsonPath("$.[1].status").value("CREATED"))
+            .andExpect(jsonPath("$.[2].status").value("DUPLICATE"))
+            .andExpect(jsonPath("$.[2].id").isNotEmpty());
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate + 1);
+    }
+
+    @Test
+    void createSmartTradesBatchWithTransactionIdsStoredConcurrently() throws Exception {
+        // Stored without going through the idempotency checks, as by a concurrent request
+        mongoTemplate.insert(smartTrade.transactionId(UUID.randomUUID().toString()).customer(new CustomerRef().id(currentCustomerId)));
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        List<SmartTrade> smartTrades = List.of(createEntity().transactionId(smartTrade.getTransactionId()));
+
+        restSmartTradeMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/batch")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(smartTrades))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].status").value("DUPLICATE"))
+            .andExpect(jsonPath("$.[0].id").value(smartTrade.getId()));
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    void createSmartTradesBatchTooLarge() throws Exception {
+        int databaseSizeBeforeCreate = smartTradeRepository.findAll().size();
+        int maxSize = applicationProperties.getBatch().getMaxSize();
+        applicationProperties.getBatch().setMaxSize(1);
+        try {
+            restSmartTradeMockMvc
+                .perform(
+                    post(ENTITY_API_URL + "/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(List.of(createEntity(), createEntity())))
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("error.batchtoolarge"));
+            restSmartTradeMockMvc
+                .perform(
+                    post(ENTITY_API_URL + "/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"amount\": 1}\n{\"amount\": 2}\n{invalid")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("error.batchtoolarge"));
+        } finally {
+            applicationProperties.getBatch().setMaxSize(maxSize);
+        }
+
+        assertThat(smartTradeRepository.findAll()).hasSize(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    void createSmartTradesBatchWithInvalidNdjson() throws Exception {
+        restSmartTradeMockMvc
+            .perform(post(ENTITY_API_URL + "/batch").contentType(MediaType.APPLICATION_NDJSON).content("{\"amount\": 1}\n{invalid"))
+            .andExpect(status().isBadRequest());
+    }
+
     @SuppressWarnings({ "unchecked" })
     void getAllSmartTradesWithEagerRelationshipsIsEnabled() throws Exception {
         when(smartTradeRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
@@ -259,6 +786,89 @@ class SmartTradeResourceIT {
             .andExpect(jsonPath("$.failureReason").value(DEFAULT_FAILURE_REASON));
     }
 
+    @Test
+    void getSmartTradeNotModified() throws Exception {
+        // Initialize the database
+        smartTradeRepository.save(smartTrade);
+
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL_ID, smartTrade.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+            .andExpect(content().string(""));
+
+        // Lifecycle updates make a new version of the smartTrade
+        smartTradeRepository.updateStatus(smartTrade.getId(), DEFAULT_STATUS, TradeStatus.BOOKED.name(), Collections.emptyMap());
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL_ID, smartTrade.getId()).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+            .andExpect(jsonPath("$.status").value(TradeStatus.BOOKED.name()));
+    }
+
+    @Test
+    void getAllSmartTradesNotModified() throws Exception {
+        // Initialize the database
+        smartTrade.setTradingParty(CURRENT_PARTY);
+        smartTradeRepository.save(smartTrade);
+        // The writes are stored first, as the ETag changes again once they are
+        collectionChangeCounters.flushAll();
+
+        String eTag = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).startsWith("W/");
+
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+            .andExpect(content().string(""));
+
+        // Another page or media type has another ETag
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL + "?page=1").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL).accept(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT)))
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)));
+
+        // Any write to the smartTrades changes the ETag
+        smartTradeRepository.updateStatus(smartTrade.getId(), DEFAULT_STATUS, TradeStatus.BOOKED.name(), Collections.emptyMap());
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andExpect(jsonPath("$.[*].status").value(hasItem(TradeStatus.BOOKED.name())));
+
+        // So does a write counted by another instance
+        String bookedETag = restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        mongoTemplate.upsert(
+            Query.query(Criteria.where("id").is("smart_trade")),
+            new Update().inc("count", 1),
+            CollectionChangeCounter.class
+        );
+        restSmartTradeMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, bookedETag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(bookedETag)));
+    }
+
     @Test
     void getNonExistingSmartTrade() throws Exception {
         // Get the smartTrade
@@ -312,8 +922,56 @@ class SmartTradeResourceIT {
         assertThat(testSmartTrade.getTransactionId()).isEqualTo(UPDATED_TRANSACTION_ID);
         assertThat(testSmartTrade.getDirection()).isEqualTo(UPDATED_DIRECTION);
         assertThat(testSmartTrade.getTradeDate()).isEqualTo(UPDATED_TRADE_DATE);
-        assertThat(testSmartTrade.getStatus()).isEqualTo(UPDATED_STATUS);
-        assertThat(testSmartTrade.getFailureReason()).isEqualTo(UPDATED_FAILURE_REASON);
+        assertThat(testSmartTrade.getStatus()).isEqualTo(DEFAULT_STATUS);
+        assertThat(testSmartTrade.getFailureReason()).isEqualTo(DEFAULT_FAILURE_REASON);
+    }
+
+    @Test
+    void putExistingSmartTradeKeepsTheCustomer() throws Exception {
+        smartTradeRepository.save(smartTrade.customer(new CustomerRef().id(currentCustomerId)));
+
+        SmartTrade updatedSmartTrade = smartTradeRepository.findById(smartTrade.getId()).get();
+        updatedSmartTrade.amount(UPDATED_AMOUNT).customer(null);
+
+        restSmartTradeMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedSmartTrade.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedSmartTrade))
+            )
+            .andExpect(status().isOk());
+
+        SmartTrade testSmartTrade = smartTradeRepository.findById(smartTrade.getId()).get();
+        assertThat(testSmartTrade.getAmount()).isEqualByComparingTo(UPDATED_AMOUNT);
+        assertThat(testSmartTrade.getCustomer().getId()).isEqualTo(currentCustomerId);
+    }
+
+    @Test
+    void putExistingSmartTradeStoresThePartiesItIsTakenAwayFrom() throws Exception {
+        smartTradeRepository.save(smartTrade);
+
+        SmartTrade updatedSmartTrade = smartTradeRepository.findById(smartTrade.getId()).get();
+        updatedSmartTrade.tradingParty(UPDATED_TRADING_PARTY).counterParty(UPDATED_COUNTER_PARTY);
+        restSmartTradeMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedSmartTrade.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedSmartTrade))
+            )
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.formerParties").doesNotExist());
+        assertThat(smartTradeRepository.findById(smartTrade.getId()).get().getFormerParties()).containsExactly(DEFAULT_TRADING_PARTY);
+
+        updatedSmartTrade = smartTradeRepository.findById(smartTrade.getId()).get();
+        updatedSmartTrade.amount(UPDATED_AMOUNT);
+        restSmartTradeMockMvc
+            .perform(
+                put(ENTITY_API_URL_ID, updatedSmartTrade.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(updatedSmartTrade))
+            )
+            .andExpect(status().isOk());
+        assertThat(smartTradeRepository.findById(smartTrade.getId()).get().getFormerParties()).isNull();
     }
 
     @Test
@@ -411,7 +1069,7 @@ class SmartTradeResourceIT {
         assertThat(testSmartTrade.getDirection()).isEqualTo(UPDATED_DIRECTION);
         assertThat(testSmartTrade.getTradeDate()).isEqualTo(DEFAULT_TRADE_DATE);
         assertThat(testSmartTrade.getStatus()).isEqualTo(DEFAULT_STATUS);
-        assertThat(testSmartTrade.getFailureReason()).isEqualTo(UPDATED_FAILURE_REASON);
+        assertThat(testSmartTrade.getFailureReason()).isEqualTo(DEFAULT_FAILURE_REASON);
     }
 
     @Test
@@ -463,8 +1121,8 @@ class SmartTradeResourceIT {
         assertThat(testSmartTrade.getTransactionId()).isEqualTo(UPDATED_TRANSACTION_ID);
         assertThat(testSmartTrade.getDirection()).isEqualTo(UPDATED_DIRECTION);
         assertThat(testSmartTrade.getTradeDate()).isEqualTo(UPDATED_TRADE_DATE);
-        assertThat(testSmartTrade.getStatus()).isEqualTo(UPDATED_STATUS);
-        assertThat(testSmartTrade.getFailureReason()).isEqualTo(UPDATED_FAILURE_REASON);
+        assertThat(testSmartTrade.getStatus()).isEqualTo(DEFAULT_STATUS);
+        assertThat(testSmartTrade.getFailureReason()).isEqualTo(DEFAULT_FAILURE_REASON);
     }
 
     @Test
@@ -1,5 +1,6 @@
 package com.osttra.fx.blockstream.web.rest;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
@@ -10,15 +11,24 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.domain.User;
+import com.osttra.fx.blockstream.management.SecurityMetersService;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
 import com.osttra.fx.blockstream.repository.UserRepository;
+import com.osttra.fx.blockstream.security.jwt.TokenProvider;
 import com.osttra.fx.blockstream.web.rest.vm.LoginVM;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.http.MediaType;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 
 /**
  * Integration tests for the {@link UserJWTController} REST controller.
@@ -30,9 +40,18 @@ class UserJWTControllerIT {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private CustomerRepository customerRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private TokenProvider tokenProvider;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -81,6 +100,40 @@ class UserJWTControllerIT {
             .andExpect(header().string("Authorization", not(is(emptyString()))));
     }
 
+    @Test
+    void testAuthorizeCarriesTheCustomer() throws Exception {
+        User user = new User();
+        user.setLogin("user-jwt-controller-customer");
+        user.setEmail("user-jwt-controller-customer@example.com");
+        user.setActivated(true);
+        user.setPassword(passwordEncoder.encode("test"));
+        userRepository.save(user);
+        Customer customer = customerRepository.save(
+            new Customer()
+                .customerName("user-jwt-controller-customer")
+                .customerLegalEntity("user-jwt-controller-customer")
+                .customerHashCode("hash-code")
+        );
+
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-customer");
+        login.setPassword("test");
+        String response = mockMvc
+            .perform(post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        customerRepository.delete(customer);
+
+        String jwt = JsonPath.read(response, "$.id_token");
+        assertThat(tokenProvider.getAuthentication(jwt).getDetails()).isInstanceOf(CustomerRef.class);
+        CustomerRef details = (CustomerRef) tokenProvider.getAuthentication(jwt).getDetails();
+        assertThat(details.getId()).isEqualTo(customer.getId());
+        assertThat(details.getCustomerLegalEntity()).isEqualTo("user-jwt-controller-customer");
+        assertThat(details.getCustomerHashCode()).isEqualTo("hash-code");
+    }
+
     @Test
     void testAuthorizeFails() throws Exception {
         LoginVM login = new LoginVM();
@@ -92,4 +145,114 @@ class UserJWTControllerIT {
             .andExpect(jsonPath("$.id_token").doesNotExist())
             .andExpect(header().doesNotExist("Authorization"));
     }
+
+    @Test
+    void testAuthorizeIsThrottledPerLogin() throws Exception {
+        LoginVM login = new LoginVM();
+        login.setUsername("user-jwt-controller-throttled");
+        login.setPassword("wrong password");
+        double throttled = throttledLogins("login");
+        // The default capacity of a login
+        for (int i = 0; i < 10; i++) {
+            mockMvc
+                .perform(
+                    post("/api/authenticate")
+                        .with(remoteAddr("10.0.0." + i))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(TestUtil.convertObjectToJsonBytes(login))
+                )
+                .andExpect(status().isUnauthorized());
+        }
+
+        login.setUsername("USER-JWT-CONTROLLER-THROTTLED");
+        mockMvc
+            .perform(
+                post("/api/authenticate")
+                    .with(remoteAddr("10.0.1.0"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(TestUtil.convertObjectToJsonBytes(login))
+            )
+            .andExpect(status().isTooManyRequests())
+            .andExpect(jsonPath("$.message").value("error.loginThrottled"))
+            .andExpect(header().doesNotExist("Authorization"));
+        assertThat(throttledLogins("login")).isEqualTo(throttled + 1);
+    }
+
+    @Test
+    void testAuthorizeIgnoresForwardedForOfUntrustedPeer() throws Exception {
+        double throttled = throttledLogins("ip");
+        // The default capacity of an address, each attempt claiming another one and trying another login
+        for (int i = 0; i < 50; i++) {
+            mockMvc
+                .perform(
+                    authenticate("user-jwt-controller-spoofing-" + i)
+                        .with(remoteAddr("203.0.113.7"))
+                        .header("X-Forwarded-For", "198.51.100." + i)
+                )
+                .andExpect(status().isUnauthorized());
+        }
+
+        mockMvc
+            .perform(
+                authenticate("user-jwt-controller-spoofing")
+                    .with(remoteAddr("203.0.113.7"))
+                    .header("X-Forwarded-For", "198.51.100.99")
+            )
+            .andExpect(status().isTooManyRequests())
+            .andExpect(jsonPath("$.message").value("error.loginThrottled"));
+        assertThat(throttledLogins("ip")).isEqualTo(throttled + 1);
+    }
+
+    @Test
+    void testAuthorizeAppliesForwardedForOfTrustedProxy() throws Exception {
+        double throttled = throttledLogins("ip");
+        for (int i = 0; i < 50; i++) {
+            mockMvc
+                .perform(
+                    authenticate("user-jwt-controller-proxied-" + i)
+                        .with(remoteAddr("127.0.0.1"))
+                        .header("X-Forwarded-For", "198.51.100.200")
+                )
+                .andExpect(status().isUnauthorized());
+        }
+
+        // Another client behind the same proxy is not throttled
+        mockMvc
+            .perform(
+                authenticate("user-jwt-controller-proxied")
+                    .with(remoteAddr("127.0.0.1"))
+                    .header("X-Forwarded-For", "198.51.100.201")
+            )
+            .andExpect(status().isUnauthorized());
+        mockMvc
+            .perform(
+                authenticate("user-jwt-controller-proxied")
+                    .with(remoteAddr("127.0.0.1"))
+                    .header("X-Forwarded-For", "198.51.100.200")
+            )
+            .andExpect(status().isTooManyRequests());
+        assertThat(throttledLogins("ip")).isEqualTo(throttled + 1);
+    }
+
+    private static MockHttpServletRequestBuilder authenticate(String username) throws Exception {
+        LoginVM login = new LoginVM();
+        login.setUsername(username);
+        login.setPassword("wrong password");
+        return post("/api/authenticate").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(login));
+    }
+
+    private static RequestPostProcessor remoteAddr(String remoteAddr) {
+        return request -> {
+            request.setRemoteAddr(remoteAddr);
+            return request;
+        };
+    }
+
+    private double throttledLogins(String key) {
+        return meterRegistry
+            .get(SecurityMetersService.THROTTLED_LOGINS_METER_NAME)
+            .tag(SecurityMetersService.THROTTLED_LOGINS_METER_KEY_DIMENSION, key)
+            .counter()
+            .count();
+    }
 }
@@ -2,17 +2,30 @@ package com.osttra.fx.blockstream.web.rest;
 
 import static com.osttra.fx.blockstream.web.rest.TestUtil.sameNumber;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 import com.osttra.fx.blockstream.IntegrationTest;
+import com.osttra.fx.blockstream.domain.Customer;
+import com.osttra.fx.blockstream.domain.CustomerRef;
 import com.osttra.fx.blockstream.domain.Wallet;
+import com.osttra.fx.blockstream.domain.WalletBalance;
+import com.osttra.fx.blockstream.repository.CollectionChangeCounters;
+import com.osttra.fx.blockstream.repository.CustomerRepository;
+import com.osttra.fx.blockstream.repository.WalletBalanceRepository;
 import com.osttra.fx.blockstream.repository.WalletRepository;
+import com.osttra.fx.blockstream.service.WalletBalanceService;
+import com.osttra.fx.blockstream.web.rest.util.KeysetPaginationUtil;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,9 +34,11 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
@@ -49,6 +64,21 @@ class WalletResourceIT {
     @Autowired
     private WalletRepository walletRepository;
 
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private WalletBalanceRepository walletBalanceRepository;
+
+    @Autowired
+    private WalletBalanceService walletBalanceService;
+
+    @Autowired
+    private CollectionChangeCounters collectionChangeCounters;
+
     @Mock
     private WalletRepository walletRepositoryMock;
 
@@ -82,6 +112,8 @@ class WalletResourceIT {
     @BeforeEach
     public void initTest() {
         walletRepository.deleteAll();
+        walletBalanceRepository.deleteAll();
+        Objects.requireNonNull(cacheManager.getCache(CustomerRepository.CUSTOMERS_BY_LEGAL_ENTITY_CACHE)).clear();
         wallet = createEntity();
     }
 
@@ -133,6 +165,232 @@ class WalletResourceIT {
             .andExpect(jsonPath("$.[*].amount").value(hasItem(sameNumber(DEFAULT_AMOUNT))));
     }
 
+    @Test
+    void getAllWalletsWithCursor() throws Exception {
+        // Initialize the database
+        customerRepository.deleteAll();
+        Customer currentCustomer = customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        Customer otherCustomer = customerRepository.save(new Customer().customerName("other").customerLegalEntity("other"));
+        List<Wallet> wallets = walletRepository.saveAll(
+            List.of(
+                createEntity().customer(CustomerRef.of(currentCustomer)),
+                createEntity().customer(CustomerRef.of(otherCustomer)),
+                createEntity().customer(CustomerRef.of(currentCustomer)),
+                createEntity().customer(CustomerRef.of(currentCustomer))
+            )
+        );
+
+        // Get the first page of the wallets of the current customer
+        String nextCursor = restWalletMockMvc
+            .perform(get(ENTITY_API_URL + "?cursor=&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists(KeysetPaginationUtil.NEXT_CURSOR_HEADER))
+            .andExpect(header().string(HttpHeaders.LINK, containsString("rel=\"next\"")))
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].id").value(wallets.get(0).getId()))
+            .andExpect(jsonPath("$.[1].id").value(wallets.get(2).getId()))
+            .andReturn()
+            .getResponse()
+            .getHeader(KeysetPaginationUtil.NEXT_CURSOR_HEADER);
+
+        // Get the last page
+        restWalletMockMvc
+            .perform(get(ENTITY_API_URL + "?size=2&cursor=" + nextCursor))
+            .andExpect(status().isOk())
+            .andExpect(header().doesNotExist(KeysetPaginationUtil.NEXT_CURSOR_HEADER))
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].id").value(wallets.get(3).getId()));
+    }
+
+    @Test
+    void getWalletBalances() throws Exception {
+        // Initialize the database
+        customerRepository.deleteAll();
+        Customer currentCustomer = customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        Customer otherCustomer = customerRepository.save(new Customer().customerName("other").customerLegalEntity("other"));
+        walletRepository.saveAll(
+            List.of(
+                new Wallet().currencyCode("USD").amount(new BigDecimal("1.25")).customer(CustomerRef.of(currentCustomer)),
+                new Wallet().currencyCode("EUR").amount(new BigDecimal("0.1")).customer(CustomerRef.of(currentCustomer)),
+                new Wallet().currencyCode("USD").amount(new BigDecimal("2.50")).customer(CustomerRef.of(currentCustomer)),
+                new Wallet().currencyCode("EUR").amount(new BigDecimal("0.2")).customer(CustomerRef.of(currentCustomer)),
+                new Wallet().currencyCode("USD").amount(new BigDecimal("100")).customer(CustomerRef.of(otherCustomer))
+            )
+        );
+        walletBalanceService.rebuildBalances();
+
+        // Get the balances of the current customer, one per currency and without truncating the decimals
+        restWalletMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(2))
+            .andExpect(jsonPath("$.[0].currencyCode").value("EUR"))
+            .andExpect(jsonPath("$.[0].amount").value(sameNumber(new BigDecimal("0.3"))))
+            .andExpect(jsonPath("$.[1].currencyCode").value("USD"))
+            .andExpect(jsonPath("$.[1].amount").value(sameNumber(new BigDecimal("3.75"))));
+
+        // Get the balances of another customer
+        restWalletMockMvc
+            .perform(get(ENTITY_API_URL + "/other"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].amount").value(sameNumber(new BigDecimal("100"))));
+    }
+
+    @Test
+    void getWalletBalancesNotModified() throws Exception {
+        // Initialize the database
+        customerRepository.deleteAll();
+        Customer currentCustomer = customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        walletRepository.save(new Wallet().currencyCode("USD").amount(new BigDecimal("1.25")).customer(CustomerRef.of(currentCustomer)));
+        walletBalanceService.rebuildBalances();
+        // The writes are stored first, as the ETag changes again once they are
+        collectionChangeCounters.flushAll();
+
+        String eTag = restWalletMockMvc
+            .perform(get(ENTITY_API_URL))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+        assertThat(eTag).startsWith("W/");
+
+        restWalletMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+
+        // Writing the balances changes the ETag
+        walletBalanceService.rebuildBalances();
+        restWalletMockMvc
+            .perform(get(ENTITY_API_URL).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, not(eTag)))
+            .andExpect(jsonPath("$.[0].currencyCode").value("USD"));
+    }
+
+    @Test
+    void createAndDeleteWalletsUpdateBalances() throws Exception {
+        customerRepository.deleteAll();
+        customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        Wallet first = new Wallet().currencyCode("USD").amount(new BigDecimal("1.25"));
+        Wallet second = new Wallet().currencyCode("USD").amount(new BigDecimal("2.50"));
+
+        restWalletMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/user").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(first))
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.[0].amount").value(sameNumber(new BigDecimal("1.25"))));
+        restWalletMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/user").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(second))
+            )
+            .andExpect(status().isCreated())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$.[0].currencyCode").value("USD"))
+            .andExpect(jsonPath("$.[0].amount").value(sameNumber(new BigDecimal("3.75"))));
+
+        // Delete the first wallet
+        String firstId = walletRepository
+            .findAll()
+            .stream()
+            .filter(wallet -> wallet.getAmount().compareTo(first.getAmount()) == 0)
+            .findFirst()
+            .get()
+            .getId();
+        restWalletMockMvc.perform(delete(ENTITY_API_URL_ID, firstId)).andExpect(status().isNoContent());
+
+        restWalletMockMvc
+            .perform(get(ENTITY_API_URL + "/user"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[0].amount").value(sameNumber(new BigDecimal("2.50"))));
+    }
+
+    @Test
+    void createWalletWithInvalidCurrencyCode() throws Exception {
+        customerRepository.deleteAll();
+        customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        Wallet invalid = new Wallet().currencyCode("US.D").amount(new BigDecimal("1.25"));
+
+        restWalletMockMvc
+            .perform(
+                post(ENTITY_API_URL + "/user").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(invalid))
+            )
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("error.invalidcurrency"));
+
+        assertThat(walletRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void createWalletWithInvalidAmount() throws Exception {
+        customerRepository.deleteAll();
+        Customer currentCustomer = customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        walletBalanceService.saveWallet(
+            new Wallet().currencyCode("USD").amount(new BigDecimal("10000000000")).customer(CustomerRef.of(currentCustomer))
+        );
+        walletRepository.deleteAll();
+
+        for (String amount : new String[] { "1.0000000001", "10000000000000000000", "0.000000001" }) {
+            Wallet invalid = new Wallet().currencyCode("USD").amount(new BigDecimal(amount));
+            restWalletMockMvc
+                .perform(
+                    post(ENTITY_API_URL + "/user").contentType(MediaType.APPLICATION_JSON).content(TestUtil.convertObjectToJsonBytes(invalid))
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("error.invalidamount"));
+        }
+
+        assertThat(walletRepository.findAll()).isEmpty();
+        restWalletMockMvc.perform(get(ENTITY_API_URL + "/user")).andExpect(status().isOk());
+    }
+
+    @Test
+    void deleteWalletTwiceSubtractsItOnce() throws Exception {
+        customerRepository.deleteAll();
+        Customer currentCustomer = customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        walletBalanceService.saveWallet(
+            new Wallet().currencyCode("USD").amount(new BigDecimal("1.25")).customer(CustomerRef.of(currentCustomer))
+        );
+        Wallet deleted = walletBalanceService.saveWallet(
+            new Wallet().currencyCode("USD").amount(new BigDecimal("2.50")).customer(CustomerRef.of(currentCustomer))
+        );
+
+        walletBalanceService.deleteWallet(deleted.getId());
+        walletBalanceService.deleteWallet(deleted.getId());
+
+        WalletBalance balance = walletBalanceRepository.findById(currentCustomer.getId()).orElseThrow();
+        assertThat(balance.getBalances().get("USD").toBigDecimal()).isEqualByComparingTo("1.25");
+        assertThat(balance.getPending()).isZero();
+    }
+
+    @Test
+    void rebuildBalancesWaitsForThePendingChanges() throws Exception {
+        customerRepository.deleteAll();
+        Customer currentCustomer = customerRepository.save(new Customer().customerName("user").customerLegalEntity("user"));
+        walletRepository.save(new Wallet().currencyCode("USD").amount(new BigDecimal("1.25")).customer(CustomerRef.of(currentCustomer)));
+
+        // A change started and not applied yet is not overwritten
+        walletBalanceRepository.startChange(currentCustomer.getId());
+        assertThat(walletBalanceService.rebuildBalances(currentCustomer)).isFalse();
+
+        walletBalanceRepository.applyChange(currentCustomer.getId(), null, null);
+        assertThat(walletBalanceService.rebuildBalances(currentCustomer)).isTrue();
+        WalletBalance balance = walletBalanceRepository.findById(currentCustomer.getId()).orElseThrow();
+        assertThat(balance.getBalances().get("USD").toBigDecimal()).isEqualByComparingTo("1.25");
+
+        // A change pending for too long was interrupted, and is repaired
+        walletBalanceRepository.save(balance.pending(1L).changedDate(Instant.now().minus(1, ChronoUnit.HOURS)));
+        assertThat(walletBalanceService.rebuildBalances(currentCustomer)).isTrue();
+        assertThat(walletBalanceRepository.findById(currentCustomer.getId()).orElseThrow().getPending()).isZero();
+    }
+
+    @Test
+    void getAllWalletsWithInvalidCursor() throws Exception {
+        restWalletMockMvc.perform(get(ENTITY_API_URL + "?cursor=invalid")).andExpect(status().isBadRequest());
+    }
+
     @SuppressWarnings({ "unchecked" })
     void getAllWalletsWithEagerRelationshipsIsEnabled() throws Exception {
         when(walletRepositoryMock.findAllWithEagerRelationships(any())).thenReturn(new PageImpl(new ArrayList<>()));
@@ -35,6 +35,33 @@ class ExceptionTranslatorIT {
             .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_CONCURRENCY_FAILURE));
     }
 
+    @Test
+    void testPasswordHashingSaturated() throws Exception {
+        mockMvc
+            .perform(get("/api/exception-translator-test/password-hashing-saturated"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_PASSWORD_HASHING_SATURATED));
+    }
+
+    @Test
+    void testRejectedExecution() throws Exception {
+        mockMvc
+            .perform(get("/api/exception-translator-test/rejected-execution"))
+            .andExpect(status().isInternalServerError())
+            .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+            .andExpect(jsonPath("$.message").value("error.http.500"));
+    }
+
+    @Test
+    void testStreamingSaturated() throws Exception {
+        mockMvc
+            .perform(get("/api/exception-translator-test/streaming-saturated"))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(content().contentType(MediaType.APPLICATION_PROBLEM_JSON))
+            .andExpect(jsonPath("$.message").value(ErrorConstants.ERR_STREAMING_SATURATED));
+    }
+
     @Test
     void testMethodArgumentNotValid() throws Exception {
         mockMvc
@@ -1,5 +1,7 @@
 package com.osttra.fx.blockstream.web.rest.errors;
 
+import com.osttra.fx.blockstream.security.PasswordHashingSaturatedException;
+import java.util.concurrent.RejectedExecutionException;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.springframework.dao.ConcurrencyFailureException;
@@ -17,6 +19,21 @@ public class ExceptionTranslatorTestController {
         throw new ConcurrencyFailureException("test concurrency failure");
     }
 
+    @GetMapping("/password-hashing-saturated")
+    public void passwordHashingSaturated() {
+        throw new PasswordHashingSaturatedException();
+    }
+
+    @GetMapping("/rejected-execution")
+    public void rejectedExecution() {
+        throw new RejectedExecutionException();
+    }
+
+    @GetMapping("/streaming-saturated")
+    public void streamingSaturated() {
+        throw new StreamingSaturatedException(new RejectedExecutionException());
+    }
+
     @PostMapping("/method-argument")
     public void methodArgument(@Valid @RequestBody TestDTO testDTO) {}
 
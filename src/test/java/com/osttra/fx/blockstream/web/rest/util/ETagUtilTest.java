@@ -0,0 +1,46 @@
+package com.osttra.fx.blockstream.web.rest.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.osttra.fx.blockstream.domain.CollectionChangeCounter;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the {@link ETagUtil} utility class.
+ */
+class ETagUtilTest {
+
+    @Test
+    void weakETagIsStableForTheSameScope() {
+        assertThat(ETagUtil.weakETag(1L, 2L, "PARTY")).isEqualTo(ETagUtil.weakETag(1L, 2L, "PARTY")).startsWith("W/\"");
+    }
+
+    @Test
+    void weakETagTellsScopesWithTheSameHashCodeApart() {
+        // "Aa" and "BB" have the same String hash code
+        assertThat(ETagUtil.weakETag(1L, 2L, "Aa")).isNotEqualTo(ETagUtil.weakETag(1L, 2L, "BB"));
+    }
+
+    @Test
+    void weakETagTellsTheScopePartsApart() {
+        assertThat(ETagUtil.weakETag(1L, 2L, "ab", "c")).isNotEqualTo(ETagUtil.weakETag(1L, 2L, "a", "bc"));
+        assertThat(ETagUtil.weakETag(1L, 2L, (Object) null)).isNotEqualTo(ETagUtil.weakETag(1L, 2L, ""));
+    }
+
+    @Test
+    void weakETagChangesWithTheUnstoredWrites() {
+        CollectionChangeCounter changeCounter = new CollectionChangeCounter().epoch(1L).count(2L);
+        String eTag = ETagUtil.weakETag(changeCounter, "PARTY");
+        assertThat(eTag).isEqualTo(ETagUtil.weakETag(1L, 2L, "PARTY"));
+        assertThat(ETagUtil.weakETag(changeCounter.unstoredWrites("instance.1"), "PARTY"))
+            .isNotEqualTo(eTag)
+            .isNotEqualTo(ETagUtil.weakETag(changeCounter.unstoredWrites("instance.2"), "PARTY"));
+    }
+
+    @Test
+    void weakETagsMatchWeakly() {
+        String eTag = ETagUtil.weakETag(1L, 2L, "PARTY");
+        assertThat(ETagUtil.matches(eTag.substring(2), eTag)).isTrue();
+        assertThat(ETagUtil.matches(ETagUtil.weakETag(1L, 3L, "PARTY"), eTag)).isFalse();
+    }
+}
@@ -0,0 +1,78 @@
+package com.osttra.fx.blockstream.web.rest.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.osttra.fx.blockstream.web.rest.errors.BadRequestAlertException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.util.UriComponentsBuilder;
+
+/**
+ * Tests the {@link KeysetPaginationUtil} utility class.
+ */
+class KeysetPaginationUtilTest {
+
+    @Test
+    void emptyCursorIsFirstPage() {
+        KeysetPaginationUtil.Cursor cursor = KeysetPaginationUtil.decodeCursor("", "entity");
+        assertThat(cursor.getSortKey()).isNull();
+        assertThat(cursor.getId()).isNull();
+    }
+
+    @Test
+    void cursorRoundTrip() {
+        LocalDate tradeDate = LocalDate.of(2022, 9, 30);
+        String cursor = KeysetPaginationUtil.encodeCursor(tradeDate, "633697f3a5e8c4431b3e0b5c");
+
+        KeysetPaginationUtil.Cursor decoded = KeysetPaginationUtil.decodeCursor(cursor, "entity");
+        assertThat(decoded.getSortKey()).isEqualTo(tradeDate);
+        assertThat(decoded.getId()).isEqualTo("633697f3a5e8c4431b3e0b5c");
+    }
+
+    @Test
+    void cursorRoundTripWithoutSortKey() {
+        String cursor = KeysetPaginationUtil.encodeCursor(null, "633697f3a5e8c4431b3e0b5c");
+
+        KeysetPaginationUtil.Cursor decoded = KeysetPaginationUtil.decodeCursor(cursor, "entity");
+        assertThat(decoded.getSortKey()).isNull();
+        assertThat(decoded.getId()).isEqualTo("633697f3a5e8c4431b3e0b5c");
+    }
+
+    @Test
+    void invalidCursorIsRejected() {
+        assertThatThrownBy(() -> KeysetPaginationUtil.decodeCursor("not a cursor", "entity")).isInstanceOf(BadRequestAlertException.class);
+        assertThatThrownBy(() -> KeysetPaginationUtil.decodeCursor("bm8tc2VwYXJhdG9y", "entity"))
+            .isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void outOfRangeSortKeyIsRejected() {
+        String cursor = Base64
+            .getUrlEncoder()
+            .withoutPadding()
+            .encodeToString((Long.MAX_VALUE + ":633697f3a5e8c4431b3e0b5c").getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> KeysetPaginationUtil.decodeCursor(cursor, "entity")).isInstanceOf(BadRequestAlertException.class);
+    }
+
+    @Test
+    void generateKeysetHttpHeaders() {
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString("/api/_search/example?cursor=&size=10");
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders(uriBuilder, "abc");
+
+        assertThat(headers.getFirst(KeysetPaginationUtil.NEXT_CURSOR_HEADER)).isEqualTo("abc");
+        assertThat(headers.getFirst(HttpHeaders.LINK)).isEqualTo("</api/_search/example?size=10&cursor=abc>; rel=\"next\"");
+    }
+
+    @Test
+    void generateKeysetHttpHeadersOnLastPage() {
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString("/api/_search/example?cursor=abc");
+        HttpHeaders headers = KeysetPaginationUtil.generateKeysetHttpHeaders(uriBuilder, null);
+
+        assertThat(headers).isEmpty();
+    }
+}